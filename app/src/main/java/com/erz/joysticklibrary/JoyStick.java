@@ -23,11 +23,15 @@ import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
-import android.graphics.RectF;
+import android.graphics.RecordingCanvas;
+import android.graphics.RenderNode;
+import android.os.Build;
 import android.util.AttributeSet;
+import android.view.Choreographer;
 import android.view.GestureDetector;
 import android.view.MotionEvent;
 import android.view.View;
+import androidx.annotation.RequiresApi;
 import com.rdapps.gamepad.R;
 import lombok.Getter;
 import lombok.Setter;
@@ -35,6 +39,12 @@ import lombok.Setter;
 /**
  * Created by edgarramirez on 10/30/15.
  * JoyStick view with lots of customizable options
+ *
+ * <p>
+ * Touches reach the listener as they come in, drawing follows at most once per frame: moves
+ * only ask the {@link Choreographer} for the next frame and the view is invalidated from
+ * there. The bitmaps are scaled once per size change, and where the canvas is hardware
+ * accelerated the button is recorded once into a {@link RenderNode} that is only moved.
  */
 public class JoyStick extends View
         implements GestureDetector.OnGestureListener, GestureDetector.OnDoubleTapListener {
@@ -60,8 +70,12 @@ public class JoyStick extends View
     @Setter
     private JoyStickListener listener;
     private final Paint paint;
-    private final RectF temp;
     private final GestureDetector gestureDetector;
+    private final Choreographer.FrameCallback frameCallback = frameTimeNanos -> {
+        framePending = false;
+        invalidate();
+    };
+    private boolean framePending = false;
     @Getter
     private int direction = DIRECTION_CENTER;
     @Setter
@@ -80,13 +94,15 @@ public class JoyStick extends View
     private double power = 0;
     @Getter
     private double angle = 0;
+    //Time of the touch behind the last move, in SystemClock.uptimeMillis()
+    @Getter
+    private long eventTime = 0;
 
     //Background Color
     @Setter
     private int padColor;
 
     //Stick Color
-    @Setter
     private int buttonColor;
 
     //Keeps joystick in last position
@@ -101,6 +117,13 @@ public class JoyStick extends View
     //Button Bitmap
     private Bitmap buttonBitmap = null;
 
+    //Bitmaps scaled to the current size
+    private Bitmap scaledPadBitmap = null;
+    private Bitmap scaledButtonBitmap = null;
+
+    //Recorded button, only on API 29+
+    private Object buttonNode = null;
+
     public interface JoyStickListener {
         void onMove(JoyStick joyStick, double angle, double power, int direction);
 
@@ -120,8 +143,6 @@ public class JoyStick extends View
         paint.setAntiAlias(true);
         paint.setFilterBitmap(true);
 
-        temp = new RectF();
-
         gestureDetector = new GestureDetector(context, this);
         gestureDetector.setIsLongpressEnabled(false);
         gestureDetector.setOnDoubleTapListener(this);
@@ -169,8 +190,23 @@ public class JoyStick extends View
         float min = Math.min(width, height);
         posX = centerX;
         posY = centerY;
-        buttonRadius = (min / 2f * (percentage / 100f));
-        radius = (min / 2f * ((100f - percentage) / 100f));
+        float newButtonRadius = (min / 2f * (percentage / 100f));
+        float newRadius = (min / 2f * ((100f - percentage) / 100f));
+        if (newButtonRadius != buttonRadius || newRadius != radius) {
+            buttonRadius = newButtonRadius;
+            radius = newRadius;
+            scalePad();
+            scaleButton();
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        if (framePending) {
+            Choreographer.getInstance().removeFrameCallback(frameCallback);
+            framePending = false;
+        }
     }
 
     @Override
@@ -178,26 +214,92 @@ public class JoyStick extends View
         if (canvas == null) {
             return;
         }
-        if (padBgBitmap == null) {
+        if (scaledPadBitmap == null) {
             paint.setColor(padColor);
             canvas.drawCircle(centerX, centerY, radius, paint);
         } else {
-            temp.set(centerX - radius, centerY - radius, centerX + radius, centerY + radius);
-            canvas.drawBitmap(padBgBitmap, null, temp, paint);
+            canvas.drawBitmap(scaledPadBitmap, centerX - radius, centerY - radius, paint);
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q && buttonNode != null
+                && canvas.isHardwareAccelerated()) {
+            drawButtonNode(canvas);
+        } else {
+            drawButton(canvas, posX, posY);
         }
-        if (buttonBitmap == null) {
+    }
+
+    private void drawButton(Canvas canvas, float x, float y) {
+        if (scaledButtonBitmap == null) {
             paint.setColor(buttonColor);
-            canvas.drawCircle(posX, posY, buttonRadius, paint);
+            canvas.drawCircle(x, y, buttonRadius, paint);
         } else {
-            temp.set(posX - buttonRadius, posY - buttonRadius, posX + buttonRadius,
-                    posY + buttonRadius);
-            canvas.drawBitmap(buttonBitmap, null, temp, paint);
+            canvas.drawBitmap(scaledButtonBitmap, x - buttonRadius, y - buttonRadius, paint);
+        }
+    }
+
+    @RequiresApi(Build.VERSION_CODES.Q)
+    private void drawButtonNode(Canvas canvas) {
+        RenderNode node = (RenderNode) buttonNode;
+        node.setTranslationX(posX - buttonRadius);
+        node.setTranslationY(posY - buttonRadius);
+        canvas.drawRenderNode(node);
+    }
+
+    @RequiresApi(Build.VERSION_CODES.Q)
+    private void recordButtonNode() {
+        int size = (int) Math.ceil(buttonRadius * 2);
+        if (size <= 0) {
+            buttonNode = null;
+            return;
+        }
+        RenderNode node = buttonNode != null
+                ? (RenderNode) buttonNode
+                : new RenderNode("JoyStickButton");
+        node.setPosition(0, 0, size, size);
+        RecordingCanvas recordingCanvas = node.beginRecording(size, size);
+        try {
+            drawButton(recordingCanvas, buttonRadius, buttonRadius);
+        } finally {
+            node.endRecording();
+        }
+        buttonNode = node;
+    }
+
+    private void scalePad() {
+        scaledPadBitmap = scale(padBgBitmap, radius);
+        scheduleDraw();
+    }
+
+    private void scaleButton() {
+        scaledButtonBitmap = scale(buttonBitmap, buttonRadius);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            recordButtonNode();
+        }
+        scheduleDraw();
+    }
+
+    private static Bitmap scale(Bitmap bitmap, float radius) {
+        int size = (int) Math.ceil(radius * 2);
+        if (bitmap == null || size <= 0) {
+            return null;
+        }
+        return Bitmap.createScaledBitmap(bitmap, size, size, true);
+    }
+
+    /**
+     * Redraw on the next frame, however often the stick moves until then.
+     */
+    private void scheduleDraw() {
+        if (!framePending) {
+            framePending = true;
+            Choreographer.getInstance().postFrameCallback(frameCallback);
         }
     }
 
     @Override
     public boolean onTouchEvent(MotionEvent event) {
         gestureDetector.onTouchEvent(event);
+        eventTime = event.getEventTime();
 
         switch (event.getAction()) {
             case MotionEvent.ACTION_DOWN:
@@ -232,7 +334,7 @@ public class JoyStick extends View
 
                 direction = calculateDirection(Math.toDegrees(angle));
 
-                invalidate();
+                scheduleDraw();
                 break;
             case MotionEvent.ACTION_UP:
             case MotionEvent.ACTION_CANCEL:
@@ -242,7 +344,7 @@ public class JoyStick extends View
                     direction = DIRECTION_CENTER;
                     angle = 0;
                     power = 0;
-                    invalidate();
+                    scheduleDraw();
                 }
                 break;
             default:
@@ -323,6 +425,19 @@ public class JoyStick extends View
         }
     }
 
+    /**
+     * Move the button without a touch, e.g. to follow an external gamepad. x and y are
+     * relative to the center in radii, the listener is not called.
+     */
+    public void showPosition(float x, float y) {
+        posX = centerX + x * radius;
+        posY = centerY + y * radius;
+        angle = Math.atan2(centerY - posY, centerX - posX);
+        power = 100 * Math.min(1, Math.sqrt(x * x + y * y));
+        direction = power == 0 ? DIRECTION_CENTER : calculateDirection(Math.toDegrees(angle));
+        scheduleDraw();
+    }
+
     public double getAngleDegrees() {
         return Math.toDegrees(angle);
     }
@@ -344,20 +459,27 @@ public class JoyStick extends View
         this.stayPut = enable;
     }
 
+    public void setButtonColor(int buttonColor) {
+        this.buttonColor = buttonColor;
+        scaleButton();
+    }
+
     public void setPadBackground(int resId) {
-        this.padBgBitmap = BitmapFactory.decodeResource(getResources(), resId);
+        setPadBackground(BitmapFactory.decodeResource(getResources(), resId));
     }
 
     public void setPadBackground(Bitmap bitmap) {
         this.padBgBitmap = bitmap;
+        scalePad();
     }
 
     public void setButtonDrawable(int resId) {
-        this.buttonBitmap = BitmapFactory.decodeResource(getResources(), resId);
+        setButtonDrawable(BitmapFactory.decodeResource(getResources(), resId));
     }
 
     public void setButtonDrawable(Bitmap bitmap) {
         this.buttonBitmap = bitmap;
+        scaleButton();
     }
 
 }
\ No newline at end of file
@@ -23,11 +23,14 @@ import android.widget.ListView;
 import android.widget.Toast;
 import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.app.ButtonMappingAlertDialog;
 import androidx.appcompat.widget.Toolbar;
 import com.rdapps.gamepad.device.ButtonType;
 import com.rdapps.gamepad.device.JoystickType;
+import com.rdapps.gamepad.input.MappingProfileStore;
+import com.rdapps.gamepad.input.MappingProfiles;
 import com.rdapps.gamepad.listview.ButtonMappingViewAdapter;
 import com.rdapps.gamepad.model.ControllerAction;
 import com.rdapps.gamepad.util.ControllerActionUtils;
@@ -78,6 +81,7 @@ public class ButtonMappingActivity extends AppCompatActivity
         setSupportActionBar(mainToolbar);
 
         controllerActions = getControllerActions(this);
+        showProfileName();
 
         ListView listView = findViewById(R.id.button_mappings);
         adapter = new ButtonMappingViewAdapter(this, controllerActions);
@@ -107,11 +111,59 @@ public class ButtonMappingActivity extends AppCompatActivity
             controllerActions = CONTROLLER_ACTIONS;
             Optional.ofNullable(adapter).ifPresent(adapter -> adapter.refresh(controllerActions));
             return true;
+        } else if (id == R.id.action_mapping_profiles) {
+            showMappingProfiles();
+            return true;
         }
 
         return false;
     }
 
+    /**
+     * Switch, add or delete mapping profiles. Unsaved changes go to a new profile, switching
+     * drops them.
+     */
+    private void showMappingProfiles() {
+        MappingProfileStore store = MappingProfileStore.getInstance(this);
+        MappingProfiles profiles = store.getProfiles();
+        String[] names = new String[profiles.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = profiles.get(i).getName();
+        }
+        AlertDialog.Builder builder = new AlertDialog.Builder(this)
+                .setTitle(R.string.mapping_profiles)
+                .setSingleChoiceItems(names, profiles.getActiveIndex(), (dialog, which) -> {
+                    store.select(which);
+                    loadActiveProfile();
+                    dialog.dismiss();
+                });
+        if (profiles.size() < MappingProfiles.MAX_PROFILES) {
+            builder.setNeutralButton(R.string.new_mapping_profile, (dialog, which) -> {
+                String name = getString(R.string.mapping_profile_name, profiles.size() + 1);
+                store.addProfile(name, controllerActions);
+                loadActiveProfile();
+            });
+        }
+        if (profiles.size() > 1) {
+            builder.setNegativeButton(R.string.delete_mapping_profile, (dialog, which) -> {
+                store.removeProfile(profiles.getActiveIndex());
+                loadActiveProfile();
+            });
+        }
+        builder.show();
+    }
+
+    private void loadActiveProfile() {
+        controllerActions = getControllerActions(this);
+        Optional.ofNullable(adapter).ifPresent(adapter -> adapter.refresh(controllerActions));
+        showProfileName();
+    }
+
+    private void showProfileName() {
+        Optional.ofNullable(getSupportActionBar()).ifPresent(actionBar -> actionBar.setSubtitle(
+                MappingProfileStore.getInstance(this).getActive().getName()));
+    }
+
     @Override
     public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
         ButtonMappingViewAdapter adapter = (ButtonMappingViewAdapter) parent.getAdapter();
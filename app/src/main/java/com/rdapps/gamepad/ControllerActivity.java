@@ -47,6 +47,7 @@ import com.rdapps.gamepad.nintendoswitch.ProControllerFragment;
 import com.rdapps.gamepad.nintendoswitch.RightJoyConFragment;
 import com.rdapps.gamepad.protocol.ControllerType;
 import com.rdapps.gamepad.protocol.JoyController;
+import com.rdapps.gamepad.protocol.JoyControllerState;
 import com.rdapps.gamepad.service.BluetoothBroadcastReceiver;
 import com.rdapps.gamepad.service.BluetoothControllerService;
 import com.rdapps.gamepad.service.BluetoothControllerService.BluetoothControllerServiceBinder;
@@ -314,6 +315,12 @@ public class ControllerActivity extends AppCompatActivity {
         }
     }
 
+    public void setSensorMode(JoyControllerState.SensorMode sensorMode) {
+        if (Objects.nonNull(controllerFragment)) {
+            controllerFragment.onSensorModeChanged(sensorMode);
+        }
+    }
+
 
     private class BluetoothBroadcastReceiverListener
             extends BluetoothBroadcastReceiver.BbrListener {
@@ -20,14 +20,20 @@ import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.appcompat.app.AlertDialog;
 import androidx.preference.EditTextPreference;
+import androidx.preference.ListPreference;
+import androidx.preference.MultiSelectListPreference;
 import androidx.preference.Preference;
 import androidx.preference.PreferenceFragmentCompat;
 import androidx.preference.SeekBarPreference;
 import androidx.preference.SwitchPreferenceCompat;
 import com.azeesoft.lib.colorpicker.ColorPickerDialog;
 import com.jaredrummler.android.device.DeviceName;
+import com.rdapps.gamepad.amiibo.AmiiboStore;
+import com.rdapps.gamepad.input.DeviceCalibrationStore;
+import com.rdapps.gamepad.input.StickResponse;
+import com.rdapps.gamepad.input.StickSampler;
 import com.rdapps.gamepad.memory.ControllerMemory;
-import com.rdapps.gamepad.memory.RafSpiMemory;
+import com.rdapps.gamepad.memory.ControllerMemoryStore;
 import com.rdapps.gamepad.protocol.ControllerType;
 import com.rdapps.gamepad.toast.ToastHelper;
 import com.rdapps.gamepad.util.ByteUtils;
@@ -35,6 +41,7 @@ import com.rdapps.gamepad.util.MacUtils;
 import com.rdapps.gamepad.util.PreferenceUtils;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collections;
 import java.util.Optional;
 import org.apache.commons.io.IOUtils;
 
@@ -45,6 +52,13 @@ public class SettingsFragment extends PreferenceFragmentCompat {
     private static final String KEY_ENABLED_ACCELEROMETER = "ENABLED_ACCELEROMETER";
     private static final String KEY_ENABLED_GYROSCOPE = "ENABLED_GYROSCOPE";
     private static final String KEY_HAPTIC_FEEDBACK_ENABLED = "HAPTIC_FEEDBACK_ENABLED";
+    private static final String KEY_DIRECT_GAMEPAD_INPUT = "DIRECT_GAMEPAD_INPUT";
+    private static final String KEY_MAPPING_PROFILE_CHORD = "MAPPING_PROFILE_CHORD";
+    private static final String KEY_STICK_SAMPLING = "STICK_SAMPLING";
+    private static final String KEY_STICK_RESPONSE = "STICK_RESPONSE";
+    private static final String KEY_RESET_STICK_CALIBRATION = "reset_stick_calibration";
+    private static final String KEY_TURBO_BUTTONS = "TURBO_BUTTONS";
+    private static final String KEY_TURBO_PERIOD = "TURBO_PERIOD";
     private static final String KEY_ENABLED_AMIIBO = "ENABLED_AMIIBO";
     private static final String KEY_AMIIBO_FILE = "amiibo_file";
     private static final String KEY_PACKET_RATE = "PACKET_RATE";
@@ -73,7 +87,7 @@ public class SettingsFragment extends PreferenceFragmentCompat {
                         try (InputStream is = ctx.getContentResolver().openInputStream(uri)) {
                             PreferenceUtils.setAmiiboFileName(ctx, uri);
                             PreferenceUtils.setAmiiboFileUri(ctx, uri);
-                            PreferenceUtils.setAmiiboBytes(ctx, IOUtils.toByteArray(is));
+                            AmiiboStore.getInstance(ctx).setActive(IOUtils.toByteArray(is));
 
                             updateAmiiboFileSummary();
 
@@ -91,24 +105,12 @@ public class SettingsFragment extends PreferenceFragmentCompat {
 
         Context ctx = requireContext();
 
-        try {
-            leftEeprom = new ControllerMemory(new RafSpiMemory(ctx,
-                    ControllerType.LEFT_JOYCON.getBtName(),
-                    ControllerType.LEFT_JOYCON.getMemoryResource()));
-        } catch (IOException e) {
-            log(TAG, "Left EEPROM load failed", e);
-        }
-
-        try {
-            rightEeprom = new ControllerMemory(new RafSpiMemory(ctx,
-                    ControllerType.RIGHT_JOYCON.getBtName(),
-                    ControllerType.RIGHT_JOYCON.getMemoryResource()));
-        } catch (IOException e) {
-            log(TAG, "Right EEPROM load failed", e);
-        }
+        leftEeprom = ControllerMemoryStore.get(ctx, ControllerType.LEFT_JOYCON);
+        rightEeprom = ControllerMemoryStore.get(ctx, ControllerType.RIGHT_JOYCON);
 
         bluetoothAdapter = ctx.getSystemService(BluetoothManager.class).getAdapter();
 
+        setupStickCalibration();
         setupAmiiboSwitch();
         setupAmiiboFile();
         setupColorPreferences();
@@ -116,12 +118,22 @@ public class SettingsFragment extends PreferenceFragmentCompat {
         setupDeviceName();
     }
 
+    private void setupStickCalibration() {
+        Preference resetCalibration = findPreference(KEY_RESET_STICK_CALIBRATION);
+        resetCalibration.setOnPreferenceClickListener(pref -> {
+            DeviceCalibrationStore.getInstance(requireContext()).clear();
+            Toast.makeText(requireContext(), R.string.stick_calibration_reset,
+                    Toast.LENGTH_SHORT).show();
+            return true;
+        });
+    }
+
     private void setupAmiiboSwitch() {
         SwitchPreferenceCompat amiiboSwitch = findPreference(KEY_ENABLED_AMIIBO);
         amiiboSwitch.setOnPreferenceChangeListener((pref, newValue) -> {
             if (!(boolean) newValue) {
                 Context ctx = requireContext();
-                PreferenceUtils.removeAmiiboBytes(ctx);
+                AmiiboStore.getInstance(ctx).clearActive();
                 PreferenceUtils.removeAmiiboFileName(ctx);
                 PreferenceUtils.removeAmiiboFileUri(ctx);
                 setAmiiboFileVisible(false);
@@ -330,8 +342,14 @@ public class SettingsFragment extends PreferenceFragmentCompat {
         PreferenceUtils.removeAccelerometerEnabled(ctx);
         PreferenceUtils.removeGyroscopeEnabled(ctx);
         PreferenceUtils.removeHapticFeedbackEnabled(ctx);
+        PreferenceUtils.removeDirectGamepadInput(ctx);
+        PreferenceUtils.removeMappingProfileChord(ctx);
+        PreferenceUtils.removeStickSampling(ctx);
+        PreferenceUtils.removeStickResponse(ctx);
+        PreferenceUtils.removeTurboButtons(ctx);
+        PreferenceUtils.removeTurboPeriod(ctx);
         PreferenceUtils.removeAmiiboEnabled(ctx);
-        PreferenceUtils.removeAmiiboBytes(ctx);
+        AmiiboStore.getInstance(ctx).clearActive();
         PreferenceUtils.removeAmiiboFileName(ctx);
         PreferenceUtils.removeAmiiboFileUri(ctx);
         PreferenceUtils.removePacketRate(ctx);
@@ -374,6 +392,15 @@ public class SettingsFragment extends PreferenceFragmentCompat {
         ((SwitchPreferenceCompat) findPreference(KEY_ENABLED_ACCELEROMETER)).setChecked(true);
         ((SwitchPreferenceCompat) findPreference(KEY_ENABLED_GYROSCOPE)).setChecked(true);
         ((SwitchPreferenceCompat) findPreference(KEY_HAPTIC_FEEDBACK_ENABLED)).setChecked(false);
+        ((SwitchPreferenceCompat) findPreference(KEY_DIRECT_GAMEPAD_INPUT)).setChecked(true);
+        ((SwitchPreferenceCompat) findPreference(KEY_MAPPING_PROFILE_CHORD)).setChecked(false);
+        ((ListPreference) findPreference(KEY_STICK_SAMPLING))
+                .setValue(StickSampler.Policy.PEAK.name());
+        ((ListPreference) findPreference(KEY_STICK_RESPONSE))
+                .setValue(StickResponse.Preset.LINEAR.name());
+        ((MultiSelectListPreference) findPreference(KEY_TURBO_BUTTONS))
+                .setValues(Collections.emptySet());
+        ((ListPreference) findPreference(KEY_TURBO_PERIOD)).setValue("4");
         ((SwitchPreferenceCompat) findPreference(KEY_ENABLED_AMIIBO)).setChecked(false);
         setAmiiboFileVisible(false);
         updateAmiiboFileSummary();
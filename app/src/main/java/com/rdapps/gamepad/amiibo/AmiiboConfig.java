@@ -8,27 +8,58 @@ import com.rdapps.gamepad.util.PreferenceUtils;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.Objects;
-import lombok.AllArgsConstructor;
+import java.util.concurrent.atomic.AtomicReference;
 
-@AllArgsConstructor
 public class AmiiboConfig {
     private static final String TAG = AmiiboConfig.class.getName();
 
-    private Context appContext;
+    private final Context appContext;
+    private final AmiiboStore store;
+    // Latest dump waiting to be written back to the picked file
+    private final AtomicReference<byte[]> pendingFileWrite = new AtomicReference<>();
+
+    public AmiiboConfig(Context appContext) {
+        this.appContext = appContext;
+        this.store = AmiiboStore.getInstance(appContext);
+    }
 
     public void setAmiiboBytes(byte[] bytes) {
-        PreferenceUtils.setAmiiboBytes(appContext, bytes);
+        store.setActive(bytes);
     }
 
+    /**
+     * Replace the loaded dump after the console wrote to the tag.
+     */
+    public void updateAmiiboBytes(byte[] bytes) {
+        store.update(bytes);
+    }
+
+    /**
+     * @return the loaded dump, shared and read only: copy it before modifying
+     */
     public byte[] getAmiiboBytes() {
-        return PreferenceUtils.getAmiiboBytes(appContext);
+        return store.getActive();
     }
 
     public void removeAmiiboBytes() {
-        PreferenceUtils.removeAmiiboBytes(appContext);
+        store.clearActive();
     }
 
+    /**
+     * Write the dump back to the picked file on the store thread. Writes that arrive while
+     * one is queued replace it, only the latest dump reaches the file.
+     */
     public void saveAmiiboFileToDisk(byte[] bytes) {
+        if (Objects.isNull(pendingFileWrite.getAndSet(bytes))) {
+            AmiiboStore.execute(this::writeAmiiboFile);
+        }
+    }
+
+    private void writeAmiiboFile() {
+        byte[] bytes = pendingFileWrite.getAndSet(null);
+        if (Objects.isNull(bytes)) {
+            return;
+        }
         Uri uri = PreferenceUtils.getAmiiboFileUri(appContext);
         if (Objects.isNull(uri)) {
             return;
@@ -0,0 +1,231 @@
+package com.rdapps.gamepad.amiibo;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Index of the amiibo dumps found in a library folder.
+ *
+ * <p>
+ * Entries are kept in display order with a tag id lookup, so selecting by position or by
+ * tag is O(1). The index is stored as a small binary file (magic, version, entries); on a
+ * rescan entries whose document did not change (same size and mtime) are reused and only new
+ * or modified files are read.
+ */
+public class AmiiboIndex {
+    private static final int MAGIC = 0x414D4958;
+    private static final int VERSION = 1;
+
+    private static final int UID_SIZE = 8;
+
+    // Tag header the index keeps: UID pages and the character id at pages 21-22
+    static final int HEADER_SIZE = 0x5C;
+    private static final int CHARACTER_ID_OFFSET = 0x54;
+
+    /**
+     * Smallest and largest dump sizes accepted while scanning (NTAG215: 532, 540 or 572).
+     */
+    public static final int MIN_DUMP_SIZE = 520;
+    public static final int MAX_DUMP_SIZE = 600;
+
+    public static final class Entry {
+        private final String documentId;
+        private final String name;
+        private final String tagId;
+        private final long characterId;
+        private final long crc;
+        private final long lastModified;
+        private final long size;
+
+        public Entry(String documentId, String name, String tagId, long characterId,
+                     long crc, long lastModified, long size) {
+            this.documentId = documentId;
+            this.name = name;
+            this.tagId = tagId;
+            this.characterId = characterId;
+            this.crc = crc;
+            this.lastModified = lastModified;
+            this.size = size;
+        }
+
+        public String getDocumentId() {
+            return documentId;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getTagId() {
+            return tagId;
+        }
+
+        public long getCharacterId() {
+            return characterId;
+        }
+
+        public long getCrc() {
+            return crc;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        boolean isUnchanged(long lastModified, long size) {
+            return this.lastModified == lastModified && this.size == size;
+        }
+    }
+
+    private final List<Entry> entries;
+    private final Map<String, Integer> byTag = new HashMap<>();
+    private final Map<String, Integer> byDocument = new HashMap<>();
+
+    public AmiiboIndex(List<Entry> entries) {
+        List<Entry> sorted = new ArrayList<>(entries);
+        sorted.sort((a, b) -> a.name.compareToIgnoreCase(b.name));
+        this.entries = Collections.unmodifiableList(sorted);
+        for (int i = 0; i < sorted.size(); i++) {
+            Entry entry = sorted.get(i);
+            byTag.putIfAbsent(entry.tagId, i);
+            byDocument.put(entry.documentId, i);
+        }
+    }
+
+    public static AmiiboIndex empty() {
+        return new AmiiboIndex(Collections.emptyList());
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public Entry get(int index) {
+        return entries.get(index);
+    }
+
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * @return position of the first dump with the tag id, -1 when it is not in the library
+     */
+    public int indexOf(String tagId) {
+        Integer index = byTag.get(tagId);
+        return index != null ? index : -1;
+    }
+
+    /**
+     * @return position of a document, -1 when it is not in the library
+     */
+    public int indexOfDocument(String documentId) {
+        Integer index = byDocument.get(documentId);
+        return index != null ? index : -1;
+    }
+
+    /**
+     * @return the previous entry of a document if it can be reused for a rescan
+     */
+    public Entry reuse(String documentId, long lastModified, long size) {
+        int index = indexOfDocument(documentId);
+        if (index < 0) {
+            return null;
+        }
+        Entry entry = entries.get(index);
+        return entry.isUnchanged(lastModified, size) ? entry : null;
+    }
+
+    /**
+     * Tag id of a dump: the 7 byte UID (the check byte at index 3 is skipped) in hex.
+     */
+    public static String tagId(byte[] bytes) {
+        StringBuilder builder = new StringBuilder(14);
+        for (int i = 0; i < UID_SIZE && i < bytes.length; i++) {
+            if (i != 3) {
+                builder.append(String.format(Locale.ROOT, "%02X", bytes[i]));
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Build an entry by streaming a dump once: the header is kept, the rest is only hashed.
+     */
+    public static Entry readEntry(String documentId, String name, long lastModified,
+                                  InputStream in) throws IOException {
+        byte[] header = new byte[HEADER_SIZE];
+        byte[] buffer = new byte[256];
+        CRC32 crc = new CRC32();
+        long size = 0;
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+            crc.update(buffer, 0, read);
+            if (size < HEADER_SIZE) {
+                System.arraycopy(buffer, 0, header, (int) size,
+                        (int) Math.min(read, HEADER_SIZE - size));
+            }
+            size += read;
+        }
+        if (size < MIN_DUMP_SIZE || size > MAX_DUMP_SIZE) {
+            throw new IOException("Not an amiibo dump: " + name + " (" + size + " bytes)");
+        }
+        long characterId = 0;
+        for (int i = 0; i < 8; i++) {
+            characterId = (characterId << 8) | (header[CHARACTER_ID_OFFSET + i] & 0xFF);
+        }
+        return new Entry(documentId, name, tagId(header), characterId,
+                crc.getValue(), lastModified, size);
+    }
+
+    public void write(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(entries.size());
+        for (Entry entry : entries) {
+            data.writeUTF(entry.documentId);
+            data.writeUTF(entry.name);
+            data.writeUTF(entry.tagId);
+            data.writeLong(entry.characterId);
+            data.writeInt((int) entry.crc);
+            data.writeLong(entry.lastModified);
+            data.writeInt((int) entry.size);
+        }
+        data.flush();
+    }
+
+    public static AmiiboIndex read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC || data.readInt() != VERSION) {
+            throw new IOException("Unknown amiibo index format");
+        }
+        int count = data.readInt();
+        List<Entry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            entries.add(new Entry(
+                    data.readUTF(),
+                    data.readUTF(),
+                    data.readUTF(),
+                    data.readLong(),
+                    data.readInt() & 0xFFFFFFFFL,
+                    data.readLong(),
+                    data.readInt()));
+        }
+        return new AmiiboIndex(entries);
+    }
+}
@@ -0,0 +1,325 @@
+package com.rdapps.gamepad.amiibo;
+
+import static com.rdapps.gamepad.log.JoyConLog.log;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Process;
+import android.provider.DocumentsContract;
+import android.provider.DocumentsContract.Document;
+import com.rdapps.gamepad.util.PreferenceUtils;
+import com.rdapps.gamepad.util.PriorityThreadFactory;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Amiibo dumps of a folder picked once by the user.
+ *
+ * <p>
+ * The folder is scanned on a background thread into an {@link AmiiboIndex} kept next to the
+ * amiibo store; unchanged documents are taken from the previous index, so a rescan only
+ * reads new or modified dumps. A small LRU keeps recently used dumps decoded: switching to a
+ * cached entry is a map lookup and a reference swap in {@link AmiiboStore}, the neighbours of
+ * the selected entry are prefetched so cycling through the library stays instant.
+ */
+public class AmiiboLibrary {
+    private static final String TAG = AmiiboLibrary.class.getName();
+
+    private static final String INDEX_FILE = "library.idx";
+    private static final int CACHE_SIZE = 16;
+
+    private static final String[] PROJECTION = {
+            Document.COLUMN_DOCUMENT_ID,
+            Document.COLUMN_DISPLAY_NAME,
+            Document.COLUMN_MIME_TYPE,
+            Document.COLUMN_LAST_MODIFIED,
+            Document.COLUMN_SIZE
+    };
+
+    private static final ExecutorService LIBRARY_EXECUTOR =
+            Executors.newSingleThreadExecutor(
+                    new PriorityThreadFactory(Process.THREAD_PRIORITY_BACKGROUND,
+                            true,
+                            "Amiibo Library Thread",
+                            false)
+            );
+
+    private static AmiiboLibrary instance;
+
+    private final Context context;
+    private final AmiiboStore store;
+    private final File indexFile;
+
+    // Access ordered: iteration starts at the least recently used dump
+    private final Map<String, byte[]> cache =
+            new LinkedHashMap<String, byte[]>(CACHE_SIZE, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            };
+
+    private volatile AmiiboIndex index = AmiiboIndex.empty();
+    private volatile String activeDocumentId;
+
+    private AmiiboLibrary(Context context) {
+        this.context = context;
+        this.store = AmiiboStore.getInstance(context);
+        this.indexFile = new File(new File(context.getFilesDir(), "amiibo"), INDEX_FILE);
+        LIBRARY_EXECUTOR.execute(this::loadIndex);
+    }
+
+    public static synchronized AmiiboLibrary getInstance(Context context) {
+        if (Objects.isNull(instance)) {
+            instance = new AmiiboLibrary(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    public AmiiboIndex getIndex() {
+        return index;
+    }
+
+    public Uri getFolder() {
+        return PreferenceUtils.getAmiiboLibraryUri(context);
+    }
+
+    /**
+     * Use a document tree as library and index it.
+     */
+    public CompletableFuture<AmiiboIndex> setFolder(Uri treeUri) {
+        PreferenceUtils.setAmiiboLibraryUri(context, treeUri);
+        return scan();
+    }
+
+    /**
+     * Re-index the library folder, reading only documents that changed since the last scan.
+     */
+    public CompletableFuture<AmiiboIndex> scan() {
+        return CompletableFuture.supplyAsync(() -> {
+            Uri treeUri = getFolder();
+            if (Objects.isNull(treeUri)) {
+                return index;
+            }
+            long start = System.nanoTime();
+            AmiiboIndex previous = index;
+            List<AmiiboIndex.Entry> entries = new ArrayList<>();
+            int[] read = new int[1];
+            try {
+                list(context.getContentResolver(), treeUri,
+                        DocumentsContract.getTreeDocumentId(treeUri), previous, entries, read);
+            } catch (RuntimeException e) {
+                throw new CompletionException(e);
+            }
+            AmiiboIndex scanned = new AmiiboIndex(entries);
+            index = scanned;
+            saveIndex(scanned);
+            log(TAG, "Indexed " + entries.size() + " amiibo (" + read[0] + " read) in "
+                    + (System.nanoTime() - start) / 1000000 + "ms");
+            return scanned;
+        }, LIBRARY_EXECUTOR);
+    }
+
+    /**
+     * @return position of the active tag in the library, -1 when it is not part of it
+     */
+    public int getActivePosition() {
+        String tag = store.getActiveTag();
+        return Objects.nonNull(tag) ? index.indexOf(tag) : -1;
+    }
+
+    public CompletableFuture<Void> select(String tagId) {
+        int position = index.indexOf(tagId);
+        if (position < 0) {
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            future.completeExceptionally(new IllegalArgumentException("Unknown tag " + tagId));
+            return future;
+        }
+        return select(position);
+    }
+
+    public CompletableFuture<Void> select(int position) {
+        return select(index.get(position));
+    }
+
+    /**
+     * Make a library entry the active tag. Completes immediately when the dump is cached,
+     * otherwise after it was read on the library thread. The entry may come from an index
+     * that a scan has replaced since, it is read from its document either way.
+     */
+    public CompletableFuture<Void> select(AmiiboIndex.Entry entry) {
+        byte[] bytes;
+        synchronized (cache) {
+            bytes = cache.get(entry.getDocumentId());
+        }
+        CompletableFuture<Void> future;
+        if (Objects.nonNull(bytes)) {
+            activate(entry, bytes);
+            future = CompletableFuture.completedFuture(null);
+        } else {
+            future = CompletableFuture.runAsync(() -> {
+                try {
+                    activate(entry, load(entry));
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+            }, LIBRARY_EXECUTOR);
+        }
+        AmiiboIndex current = index;
+        int position = current.indexOfDocument(entry.getDocumentId());
+        int size = current.size();
+        if (position >= 0 && size > 1) {
+            prefetch(current.get((position + 1) % size));
+            prefetch(current.get((position + size - 1) % size));
+        }
+        return future;
+    }
+
+    private void activate(AmiiboIndex.Entry entry, byte[] bytes) {
+        String previous = activeDocumentId;
+        if (Objects.nonNull(previous) && !previous.equals(entry.getDocumentId())) {
+            // The console may have written to it, read it again next time
+            synchronized (cache) {
+                cache.remove(previous);
+            }
+        }
+        activeDocumentId = entry.getDocumentId();
+        store.setActive(bytes);
+        Uri treeUri = getFolder();
+        if (Objects.nonNull(treeUri)) {
+            PreferenceUtils.setAmiiboDocument(context, entry.getName(),
+                    DocumentsContract.buildDocumentUriUsingTree(
+                            treeUri, entry.getDocumentId()));
+        }
+        log(TAG, "Active amiibo: " + entry.getName());
+    }
+
+    private void prefetch(AmiiboIndex.Entry entry) {
+        LIBRARY_EXECUTOR.execute(() -> {
+            synchronized (cache) {
+                if (cache.containsKey(entry.getDocumentId())) {
+                    return;
+                }
+            }
+            try {
+                load(entry);
+            } catch (IOException e) {
+                log(TAG, "Prefetch of " + entry.getName() + " failed", e);
+            }
+        });
+    }
+
+    private byte[] load(AmiiboIndex.Entry entry) throws IOException {
+        Uri treeUri = getFolder();
+        if (Objects.isNull(treeUri)) {
+            throw new IOException("No amiibo library folder");
+        }
+        Uri uri = DocumentsContract.buildDocumentUriUsingTree(treeUri, entry.getDocumentId());
+        byte[] bytes;
+        try (InputStream in = context.getContentResolver().openInputStream(uri)) {
+            if (Objects.isNull(in)) {
+                throw new IOException("Cannot open " + entry.getName());
+            }
+            bytes = IOUtils.toByteArray(in);
+        }
+        synchronized (cache) {
+            cache.put(entry.getDocumentId(), bytes);
+        }
+        return bytes;
+    }
+
+    private void list(ContentResolver resolver, Uri treeUri, String parentId,
+                      AmiiboIndex previous, List<AmiiboIndex.Entry> entries, int[] read) {
+        Uri children = DocumentsContract.buildChildDocumentsUriUsingTree(treeUri, parentId);
+        try (Cursor cursor = resolver.query(children, PROJECTION, null, null, null)) {
+            if (Objects.isNull(cursor)) {
+                return;
+            }
+            while (cursor.moveToNext()) {
+                String documentId = cursor.getString(0);
+                String name = cursor.getString(1);
+                String mimeType = cursor.getString(2);
+                long lastModified = cursor.getLong(3);
+                long size = cursor.getLong(4);
+                if (Document.MIME_TYPE_DIR.equals(mimeType)) {
+                    list(resolver, treeUri, documentId, previous, entries, read);
+                    continue;
+                }
+                if (size < AmiiboIndex.MIN_DUMP_SIZE || size > AmiiboIndex.MAX_DUMP_SIZE) {
+                    continue;
+                }
+                AmiiboIndex.Entry entry = previous.reuse(documentId, lastModified, size);
+                if (Objects.isNull(entry)) {
+                    Uri uri = DocumentsContract.buildDocumentUriUsingTree(treeUri, documentId);
+                    try (InputStream in = resolver.openInputStream(uri)) {
+                        if (Objects.isNull(in)) {
+                            continue;
+                        }
+                        entry = AmiiboIndex.readEntry(
+                                documentId, stripExtension(name), lastModified, in);
+                        read[0]++;
+                    } catch (IOException | SecurityException e) {
+                        log(TAG, "Skipped " + name + ": " + e.getMessage());
+                        continue;
+                    }
+                }
+                entries.add(entry);
+            }
+        }
+    }
+
+    private static String stripExtension(String name) {
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    private void loadIndex() {
+        if (!indexFile.exists()) {
+            return;
+        }
+        try (InputStream in = new FileInputStream(indexFile)) {
+            index = AmiiboIndex.read(new BufferedInputStream(in));
+        } catch (IOException e) {
+            log(TAG, "Amiibo index could not be read, rescanning", e);
+            scan();
+        }
+    }
+
+    private void saveIndex(AmiiboIndex scanned) {
+        File directory = indexFile.getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            log(TAG, "Amiibo directory could not be created", true);
+            return;
+        }
+        File tmp = new File(directory, INDEX_FILE + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            scanned.write(new BufferedOutputStream(out));
+            out.getFD().sync();
+        } catch (IOException e) {
+            log(TAG, "Amiibo index could not be written", e);
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(indexFile)) {
+            log(TAG, "Amiibo index rename failed", true);
+            tmp.delete();
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.rdapps.gamepad.amiibo;
+
+import static com.rdapps.gamepad.log.JoyConLog.log;
+
+import android.content.Context;
+import android.os.Process;
+import com.rdapps.gamepad.util.PreferenceUtils;
+import com.rdapps.gamepad.util.PriorityThreadFactory;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Amiibo dumps stored as one binary file per tag under getFilesDir()/amiibo.
+ *
+ * <p>
+ * The active dump is kept in memory and handed out as is, callers must not modify the
+ * returned array: a changed dump is a new array passed to {@link #update(byte[])}. Files are
+ * written on a background thread to a temporary file that is renamed over the tag file, so a
+ * crash leaves either the old or the new dump. Writes to the same tag that pile up while one
+ * is in flight collapse into the latest. Only the id of the active tag stays in preferences.
+ *
+ * <p>
+ * The active dump is loaded on the store thread, so getting the store never reads a file or
+ * migrates preferences on the caller's thread. Until it is loaded there is no active dump; a
+ * dump set before that replaces the stored one.
+ */
+public class AmiiboStore {
+    private static final String TAG = AmiiboStore.class.getName();
+
+    private static final String DIRECTORY = "amiibo";
+    private static final String EXTENSION = ".bin";
+
+    private static final ExecutorService STORE_EXECUTOR =
+            Executors.newSingleThreadExecutor(
+                    new PriorityThreadFactory(Process.THREAD_PRIORITY_BACKGROUND,
+                            true,
+                            "Amiibo Store Thread",
+                            false)
+            );
+
+    private static AmiiboStore instance;
+
+    private final Context context;
+    private final File directory;
+    private final Map<String, byte[]> pendingWrites = new ConcurrentHashMap<>();
+
+    private volatile byte[] activeBytes;
+    private volatile String activeTag;
+    // Set once loaded, or once the active dump was set or cleared before that
+    private boolean loaded = false;
+
+    private AmiiboStore(Context context) {
+        this.context = context;
+        this.directory = new File(context.getFilesDir(), DIRECTORY);
+        STORE_EXECUTOR.execute(this::load);
+    }
+
+    public static synchronized AmiiboStore getInstance(Context context) {
+        if (Objects.isNull(instance)) {
+            instance = new AmiiboStore(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * @return the active dump, or null when no amiibo is loaded. Must not be modified.
+     */
+    public byte[] getActive() {
+        return activeBytes;
+    }
+
+    public String getActiveTag() {
+        return activeTag;
+    }
+
+    /**
+     * Load a new dump (file picked by the user) and make its tag the active one.
+     */
+    public synchronized void setActive(byte[] bytes) {
+        loaded = true;
+        String tag = AmiiboIndex.tagId(bytes);
+        activeBytes = bytes;
+        activeTag = tag;
+        PreferenceUtils.setAmiiboTag(context, tag);
+        schedulePersist(tag, bytes);
+    }
+
+    /**
+     * Replace the dump of the active tag, e.g. after the console wrote to it.
+     */
+    public synchronized void update(byte[] bytes) {
+        String tag = activeTag;
+        if (Objects.isNull(tag)) {
+            setActive(bytes);
+            return;
+        }
+        activeBytes = bytes;
+        schedulePersist(tag, bytes);
+    }
+
+    /**
+     * Unload the active dump. The tag file stays on disk.
+     */
+    public synchronized void clearActive() {
+        loaded = true;
+        activeBytes = null;
+        activeTag = null;
+        PreferenceUtils.removeAmiiboTag(context);
+        PreferenceUtils.removeAmiiboBytes(context);
+    }
+
+    /**
+     * Run blocking work (content resolver writes) on the store thread.
+     */
+    static void execute(Runnable runnable) {
+        STORE_EXECUTOR.execute(runnable);
+    }
+
+    private synchronized void load() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        // Dumps used to be kept as Base64 in the default preferences
+        byte[] legacy = PreferenceUtils.getAmiiboBytes(context);
+        if (Objects.nonNull(legacy)) {
+            setActive(legacy);
+            PreferenceUtils.removeAmiiboBytes(context);
+            log(TAG, "Migrated amiibo " + activeTag + " out of preferences");
+            return;
+        }
+        String tag = PreferenceUtils.getAmiiboTag(context);
+        if (Objects.isNull(tag)) {
+            return;
+        }
+        try {
+            activeBytes = Files.readAllBytes(getFile(tag).toPath());
+            activeTag = tag;
+        } catch (IOException e) {
+            log(TAG, "Amiibo " + tag + " could not be loaded", e);
+            PreferenceUtils.removeAmiiboTag(context);
+        }
+    }
+
+    private File getFile(String tag) {
+        return new File(directory, tag + EXTENSION);
+    }
+
+    private void schedulePersist(String tag, byte[] bytes) {
+        if (Objects.isNull(pendingWrites.put(tag, bytes))) {
+            STORE_EXECUTOR.execute(() -> persist(tag));
+        }
+    }
+
+    private void persist(String tag) {
+        byte[] bytes = pendingWrites.remove(tag);
+        if (Objects.isNull(bytes)) {
+            return;
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            log(TAG, "Amiibo directory could not be created", true);
+            return;
+        }
+        File file = getFile(tag);
+        File tmp = new File(directory, tag + EXTENSION + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            out.write(bytes);
+            out.getFD().sync();
+        } catch (IOException e) {
+            log(TAG, "Amiibo " + tag + " could not be written", e);
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(file)) {
+            log(TAG, "Amiibo " + tag + " rename failed", true);
+            tmp.delete();
+        }
+    }
+}
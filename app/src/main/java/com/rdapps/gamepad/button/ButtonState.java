@@ -16,6 +16,9 @@ public class ButtonState {
     public static final int STICK_NEGATIVE = -100;
     public static final int STICK_POSITIVE = 100;
 
+    private static final ButtonEnum[] BUTTONS = ButtonEnum.values();
+    private static final AxisEnum[] AXES = AxisEnum.values();
+
     private ControllerType type;
     private Map<ButtonEnum, Integer> buttons;
     private Map<AxisEnum, Integer> axes;
@@ -46,4 +49,47 @@ public class ButtonState {
     public int getAxis(AxisEnum axis) {
         return axes.getOrDefault(axis, STICK_CENTER);
     }
+
+    /**
+     * Copy every button and axis of another state, e.g. into a report snapshot. Allocates
+     * nothing, button and stick values are within the cached boxes.
+     */
+    public void copyFrom(ButtonState other) {
+        for (ButtonEnum button : BUTTONS) {
+            buttons.put(button, other.getButton(button));
+        }
+        for (AxisEnum axis : AXES) {
+            axes.put(axis, other.getAxis(axis));
+        }
+    }
+
+    /**
+     * @return pressed buttons, one bit per {@link ButtonEnum} ordinal
+     */
+    public int getButtonMask() {
+        int mask = 0;
+        for (ButtonEnum button : BUTTONS) {
+            if (getButton(button) != BUTTON_UP) {
+                mask |= 1 << button.ordinal();
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Press and release buttons by mask, one bit per {@link ButtonEnum} ordinal.
+     */
+    public void applyButtonMasks(int pressMask, int releaseMask) {
+        if ((pressMask | releaseMask) == 0) {
+            return;
+        }
+        for (ButtonEnum button : BUTTONS) {
+            int bit = 1 << button.ordinal();
+            if ((pressMask & bit) != 0) {
+                buttons.put(button, BUTTON_DOWN);
+            } else if ((releaseMask & bit) != 0) {
+                buttons.put(button, BUTTON_UP);
+            }
+        }
+    }
 }
@@ -8,6 +8,8 @@ import static com.rdapps.gamepad.report.InputReportMode.SIMPLE_HID;
 import static com.rdapps.gamepad.report.InputReportMode.STANDARD_FULL_MODE;
 import static com.rdapps.gamepad.util.ThreadUtil.safeSleep;
 
+import android.os.SystemClock;
+import android.os.Trace;
 import com.rdapps.gamepad.button.ButtonState;
 import com.rdapps.gamepad.protocol.Callback;
 import com.rdapps.gamepad.protocol.ControllerType;
@@ -50,7 +52,6 @@ public class InputHandler {
 
     public boolean sendStandardFullReport() {
         JoyControllerState state = joyController.getState();
-        ButtonState buttonState = joyController.getButtonState();
         ControllerType controllerType = joyController.getControllerType();
         InputReportMode inputReportMode = state.getInputReportMode();
         InputReport inputReport = new InputReport(
@@ -58,14 +59,39 @@ public class InputHandler {
         inputReport.fillTime(state);
         inputReport.fillBattery(state);
         inputReport.fillConnectionInfo(state);
-        inputReport.fillFullButtonReport(controllerType, buttonState);
-        inputReport.fillVibratorData(state);
-        inputReport.fillSensorData(joyController);
 
-        if (inputReportMode == NFC_IR_MODE) {
-            inputReport.fillNfcIrData(joyController);
+        Trace.beginSection("JoyCon:snapshot");
+        ButtonState buttonState;
+        try {
+            joyController.sampleSticks();
+            buttonState = joyController.snapshotButtonState();
+        } finally {
+            Trace.endSection();
         }
-        return joyController.sendReport(inputReport);
+
+        Trace.beginSection("JoyCon:fill");
+        try {
+            inputReport.fillFullButtonReport(controllerType, buttonState);
+            inputReport.fillVibratorData(state);
+            inputReport.fillSensorData(joyController);
+            joyController.onReportFilled(inputReport.build());
+
+            if (inputReportMode == NFC_IR_MODE) {
+                inputReport.fillNfcIrData(joyController);
+            }
+        } finally {
+            Trace.endSection();
+        }
+
+        Trace.beginSection("JoyCon:send");
+        boolean sent;
+        try {
+            sent = joyController.sendReport(inputReport);
+        } finally {
+            Trace.endSection();
+        }
+        joyController.getLatencyTracer().onReportSent(SystemClock.uptimeMillis(), sent);
+        return sent;
     }
 
     public boolean sendFullReport() {
@@ -11,13 +11,16 @@ import static com.rdapps.gamepad.nfcirmcu.NfcIrMcu.Action.START_TAG_POLLING;
 import static com.rdapps.gamepad.nfcirmcu.NfcIrMcu.Action.WRITE_TAG_ACK;
 import static com.rdapps.gamepad.nfcirmcu.NfcIrMcu.Action.WRITE_TAG_AWAITING;
 import static com.rdapps.gamepad.nfcirmcu.NfcIrMcu.Action.WRITE_TAG_SETUP;
+import static com.rdapps.gamepad.nfcirmcu.NfcIrMcu.McuState.IRC;
 import static java.util.Arrays.asList;
 
 import com.google.android.gms.common.util.Hex;
 import com.rdapps.gamepad.amiibo.AmiiboConfig;
 import com.rdapps.gamepad.button.ButtonState;
 import com.rdapps.gamepad.command.handler.subcommand.SubCommand;
+import com.rdapps.gamepad.command.handler.subcommand.SubCommandReplyCache;
 import com.rdapps.gamepad.nfcirmcu.NfcIrMcu;
+import com.rdapps.gamepad.nfcirmcu.NfcWriteBuffer;
 import com.rdapps.gamepad.protocol.ControllerType;
 import com.rdapps.gamepad.protocol.JoyController;
 import com.rdapps.gamepad.protocol.JoyControllerState;
@@ -25,9 +28,7 @@ import com.rdapps.gamepad.report.InputReport;
 import com.rdapps.gamepad.report.InputReportMode;
 import com.rdapps.gamepad.report.OutputReport;
 import com.rdapps.gamepad.report.OutputReportMode;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
 
 public class OutputHandler {
     private static final String TAG = OutputHandler.class.getName();
@@ -61,9 +62,15 @@ public class OutputHandler {
     }
 
     private void handleRumbleAndSubCommand(OutputReport outputReport) {
-        SubCommand subCommand = SubCommand.getSubCommand(outputReport.getSubCommandId());
-        InputReport subCommandReply = subCommand.getHandler()
-                .handleRumbleAndSubCommand(joyController, outputReport);
+        SubCommandReplyCache replyCache = joyController.getReplyCache();
+        InputReport subCommandReply = replyCache.get(outputReport);
+        if (subCommandReply == null) {
+            long computedAt = replyCache.getVersion();
+            SubCommand subCommand = SubCommand.getSubCommand(outputReport.getSubCommandId());
+            subCommandReply = subCommand.getHandler()
+                    .handleRumbleAndSubCommand(joyController, outputReport);
+            replyCache.put(outputReport, subCommandReply, computedAt);
+        }
 
         JoyControllerState state = joyController.getState();
         ControllerType controllerType = joyController.getControllerType();
@@ -96,6 +103,11 @@ public class OutputHandler {
 
         log(TAG, "subCommand: " + subCommand + " nfcCommand: " + nfcCommand);
 
+        if (nfcIrMcu.getMcuState() == IRC) {
+            handleIrRequest(subCommand, data, nfcIrMcu);
+            return;
+        }
+
         if (asList(READ_TAG, READ_TAG_2).contains(nfcIrMcu.getAction())) {
             return;
         }
@@ -148,7 +160,7 @@ public class OutputHandler {
                     log(TAG, "NFC 0x06: UID=" + uid
                             + " → " + (isWrite ? "WRITE_TAG_SETUP" : "READ_TAG"));
                     if (isWrite) {
-                        nfcIrMcu.setWriteBuffer(new ArrayList<>());
+                        nfcIrMcu.getWriteBuffer().reset();
                         nfcIrMcu.setAckSeqNo(0);
                         nfcIrMcu.setLastWritePacketReceived(false);
                         nfcIrMcu.setRemoveFramesRemaining(0);
@@ -168,6 +180,18 @@ public class OutputHandler {
         }
     }
 
+    private void handleIrRequest(byte subCommand, byte[] data, NfcIrMcu nfcIrMcu) {
+        if (subCommand == 0x01) {
+            nfcIrMcu.setAction(REQUEST_STATUS);
+        } else if (subCommand == 0x03) {
+            // Image transfer: acknowledgement or resend request for a fragment
+            nfcIrMcu.setAction(NON);
+            nfcIrMcu.getIrCamera().onAck(data);
+        } else {
+            log(TAG, "Unknown IR MCU SubCommand : " + subCommand, true);
+        }
+    }
+
     private void handleWritePacket(byte[] data, NfcIrMcu nfcIrMcu, AmiiboConfig amiiboConfig) {
         // data[11] = seqNo, data[13] = endFlag, data[14] = payloadLen, data[15..] = payload
         if (data.length < 15) {
@@ -177,36 +201,28 @@ public class OutputHandler {
         byte endFlag = data[13];
         int payloadLen = data[14] & 0xFF;
 
+        NfcWriteBuffer buf = nfcIrMcu.getWriteBuffer();
         if (seqNo == 0 && endFlag == 0x08) {
             // Single-packet write (edge case, never seen in practice)
             if (data.length >= 15 + payloadLen) {
-                byte[] payload = Arrays.copyOfRange(data, 15, 15 + payloadLen);
                 log(TAG, "NFC write: single-packet write, payload="
-                        + payload.length + " bytes, processing");
-                processNfcWrite(payload, amiiboConfig);
+                        + payloadLen + " bytes, processing");
+                processNfcWrite(data, 15, payloadLen, amiiboConfig);
             }
             nfcIrMcu.setAckSeqNo(0);
             nfcIrMcu.setLastWritePacketReceived(true);
             nfcIrMcu.setRemoveFramesRemaining(4);
         } else if (seqNo == nfcIrMcu.getAckSeqNo() + 1) {
             // Next packet in sequence – append payload
-            List<Byte> buf = nfcIrMcu.getWriteBuffer();
-            int limit = Math.min(15 + payloadLen, data.length);
-            for (int i = 15; i < limit; i++) {
-                buf.add(data[i]);
-            }
+            buf.append(data, 15, Math.max(0, Math.min(payloadLen, data.length - 15)));
             nfcIrMcu.setAckSeqNo(seqNo);
 
             if (endFlag == 0x08) {
                 // Last packet – process write
-                byte[] payload = new byte[buf.size()];
-                for (int i = 0; i < payload.length; i++) {
-                    payload[i] = buf.get(i);
-                }
                 log(TAG, "NFC write: last packet (seqNo=" + seqNo + "), total payload="
-                        + payload.length + " bytes, processing");
-                processNfcWrite(payload, amiiboConfig);
-                nfcIrMcu.setWriteBuffer(new ArrayList<>());
+                        + buf.size() + " bytes, processing");
+                processNfcWrite(buf.array(), 0, buf.size(), amiiboConfig);
+                buf.reset();
                 nfcIrMcu.setLastWritePacketReceived(true);
                 nfcIrMcu.setRemoveFramesRemaining(4);
             }
@@ -217,30 +233,38 @@ public class OutputHandler {
         nfcIrMcu.setAction(WRITE_TAG_ACK);
     }
 
-    private void processNfcWrite(byte[] payload, AmiiboConfig amiiboConfig) {
-        byte[] amiiboBytes = amiiboConfig.getAmiiboBytes();
-        if (amiiboBytes == null) {
+    /**
+     * Apply a reassembled write, payload[offset, offset + length), to a copy of the dump.
+     */
+    private void processNfcWrite(
+            byte[] payload, int offset, int length, AmiiboConfig amiiboConfig) {
+        byte[] loaded = amiiboConfig.getAmiiboBytes();
+        if (loaded == null) {
             log(TAG, "NFC write: no amiibo loaded", true);
             return;
         }
-        if (payload.length < 22) {
-            log(TAG, "NFC write: payload too short (" + payload.length + " bytes)", true);
+        if (length < 22) {
+            log(TAG, "NFC write: payload too short (" + length + " bytes)", true);
             return;
         }
 
+        // The loaded dump is shared with the report thread, modify a copy
+        byte[] amiiboBytes = loaded.clone();
+
         // Apply write lock: payload[13:17] → amiiboBytes[16:20]
-        System.arraycopy(payload, 13, amiiboBytes, 16, 4);
+        System.arraycopy(payload, offset + 13, amiiboBytes, 16, 4);
 
         // Apply page writes starting at payload[22]
-        int i = 22;
-        while (i + 1 < payload.length) {
+        int end = offset + length;
+        int i = offset + 22;
+        while (i + 1 < end) {
             int pageAddr = payload[i] & 0xFF;
             int len = payload[i + 1] & 0xFF;
             if (pageAddr == 0 || len == 0) {
                 break;
             }
             int byteOffset = pageAddr * 4;
-            if (byteOffset + len <= amiiboBytes.length && i + 2 + len <= payload.length) {
+            if (byteOffset + len <= amiiboBytes.length && i + 2 + len <= end) {
                 System.arraycopy(payload, i + 2, amiiboBytes, byteOffset, len);
             } else {
                 log(TAG, "NFC page write: addr=" + pageAddr + " len=" + len
@@ -250,10 +274,10 @@ public class OutputHandler {
         }
 
         // Remove write lock: payload[17:21] → amiiboBytes[16:20]
-        System.arraycopy(payload, 17, amiiboBytes, 16, 4);
+        System.arraycopy(payload, offset + 17, amiiboBytes, 16, 4);
 
-        amiiboConfig.setAmiiboBytes(amiiboBytes);
+        amiiboConfig.updateAmiiboBytes(amiiboBytes);
         amiiboConfig.saveAmiiboFileToDisk(amiiboBytes);
-        log(TAG, "NFC write completed and persisted");
+        log(TAG, "NFC write completed, persisting in background");
     }
 }
@@ -45,7 +45,7 @@ class RequestDeviceInfoHandler implements SubCommandHandler {
         //If 01, colors in SPI are used. Otherwise, default ones.
         //  buffer[index + 11] = 0x01;
         ControllerMemory controllerMemory = joyController.getControllerMemory();
-        deviceInfo[11] = controllerMemory.read(0x601B, 1)[0];
+        deviceInfo[11] = controllerMemory.readByte(0x601B);
         subcommandReply.fillData(14, deviceInfo);
     }
 }
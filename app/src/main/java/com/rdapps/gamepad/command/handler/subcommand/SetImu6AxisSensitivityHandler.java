@@ -7,6 +7,9 @@ import com.rdapps.gamepad.protocol.JoyController;
 import com.rdapps.gamepad.report.InputReport;
 import com.rdapps.gamepad.report.OutputReport;
 
+/**
+ * https://github.com/dekuNukem/Nintendo_Switch_Reverse_Engineering/blob/master/bluetooth_hid_subcommands_notes.md#subcommand-0x41-set-imu-sensitivity
+ */
 class SetImu6AxisSensitivityHandler implements SubCommandHandler {
     private static final String TAG = SetImu6AxisSensitivityHandler.class.getName();
     private static final byte ACK = (byte) 0x80;
@@ -17,9 +20,11 @@ class SetImu6AxisSensitivityHandler implements SubCommandHandler {
         InputReport subCommandReply = new InputReport(SUBCOMMAND_REPLY_REPORT);
         subCommandReply.fillAckByte(ACK);
         subCommandReply.fillSubCommand(outputReport.getSubCommandId());
-        byte sensitivity = outputReport.getData()[10];
-        log(TAG, "6AxisSensor Sensitivity: " + sensitivity);
-        //TODO set sensitivity
+        byte[] data = outputReport.getData();
+        int gyroSensitivity = data[10];
+        int accSensitivity = data[11];
+        log(TAG, "6AxisSensor Sensitivity Gyro: " + gyroSensitivity + " Acc: " + accSensitivity);
+        joyController.setImuSensitivity(gyroSensitivity, accSensitivity);
         return subCommandReply;
     }
 }
@@ -1,10 +1,12 @@
 package com.rdapps.gamepad.command.handler.subcommand;
 
 import static com.rdapps.gamepad.log.JoyConLog.log;
+import static com.rdapps.gamepad.nfcirmcu.NfcIrMcu.McuState.IRC;
 import static com.rdapps.gamepad.nfcirmcu.NfcIrMcu.McuState.NFC;
 import static com.rdapps.gamepad.nfcirmcu.NfcIrMcu.McuState.STAND_BY;
 import static com.rdapps.gamepad.report.InputReport.Type.SUBCOMMAND_REPLY_REPORT;
 
+import com.rdapps.gamepad.nfcirmcu.IrCamera;
 import com.rdapps.gamepad.nfcirmcu.NfcIrMcu;
 import com.rdapps.gamepad.protocol.JoyController;
 import com.rdapps.gamepad.protocol.JoyControllerState;
@@ -37,16 +39,23 @@ class SetNfcIrMcuConfigHandler implements SubCommandHandler {
 
         if (mcucmd == 0x21) {
             if (mcusubcmd == 0) {
+                if (mode != 5) {
+                    nfcIrMcu.getIrCamera().stop();
+                }
                 if (mode == 0) {
                     nfcIrMcu.setMcuState(STAND_BY);
                 } else if (mode == 4) {
                     nfcIrMcu.setMcuState(NFC);
+                } else if (mode == 5) {
+                    nfcIrMcu.setMcuState(IRC);
                 } else {
                     log(TAG, "Unknown NFC Mode " + mode, true);
                 }
             } else {
                 log(TAG, "Unknown MCU Config SubCommand" + mcusubcmd, true);
             }
+        } else if (mcucmd == 0x23) {
+            handleIrConfig(nfcIrMcu.getIrCamera(), data, buffer);
         } else {
             log(TAG, "Unknown MCU Config Command" + mcucmd, true);
         }
@@ -55,6 +64,29 @@ class SetNfcIrMcuConfigHandler implements SubCommandHandler {
         return subCommandReply;
     }
 
+    /**
+     * MCU command 0x23: 0x01 sets the IR mode (data[12]) and last fragment number (data[13]),
+     * 0x04 writes data[12] camera registers given as (page, address, value) from data[13].
+     */
+    private void handleIrConfig(IrCamera irCamera, byte[] data, byte[] buffer) {
+        byte mcusubcmd = data[11];
+        if (mcusubcmd == 0x01) {
+            irCamera.configure(data[12] & 0xFF, data[13] & 0xFF);
+            buffer[14] = 0x0B;
+        } else if (mcusubcmd == 0x04) {
+            int count = data[12] & 0xFF;
+            for (int i = 0; i < count && 13 + i * 3 + 2 < data.length; i++) {
+                int pos = 13 + i * 3;
+                irCamera.writeRegister(data[pos] & 0xFF, data[pos + 1] & 0xFF, data[pos + 2]);
+            }
+            buffer[14] = 0x13;
+            buffer[15] = 0x00;
+            buffer[16] = (byte) irCamera.getMode();
+        } else {
+            log(TAG, "Unknown IR Config SubCommand" + mcusubcmd, true);
+        }
+    }
+
     private void fillMcuStatus(JoyController joyController, InputReport subCommandReply) {
         byte[] buffer = subCommandReply.getBuffer();
         buffer[14] = 0x01;
@@ -25,6 +25,7 @@ class SetNfcIrMcuStateHandler implements SubCommandHandler {
         NfcIrMcu nfcIrMcu = state.getNfcIrMcu();
         byte[] data = outputReport.getData();
         byte arg = data[10];
+        nfcIrMcu.getIrCamera().stop();
         if (arg == 0x00) {
             nfcIrMcu.setMcuState(STAND_BY);
         } else if (arg == 0x01) {
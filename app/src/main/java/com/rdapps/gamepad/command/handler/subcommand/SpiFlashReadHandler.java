@@ -33,12 +33,11 @@ class SpiFlashReadHandler implements SubCommandHandler {
                 + " READ Length: " + len);
 
         ControllerMemory controllerMemory = joyController.getControllerMemory();
-        byte[] readBytes = controllerMemory.read(eepromLocation, len);
         byte[] buffer = subCommandReply.getBuffer();
         //Copy Address And Length
         System.arraycopy(data, 10, buffer, 14, 5);
-        //Copy Memory Data
-        System.arraycopy(readBytes, 0, buffer, 19, readBytes.length);
+        //Copy Memory Data straight into the reply
+        controllerMemory.read(eepromLocation, buffer, 19, Math.min(len, buffer.length - 19));
         return subCommandReply;
     }
 }
@@ -36,7 +36,7 @@ class SpiFlashWriteHandler implements SubCommandHandler {
 
         ControllerMemory controllerMemory = joyController.getControllerMemory();
         if (len > 0) {
-            controllerMemory.write(eepromLocation, Arrays.copyOfRange(data, 15, len));
+            controllerMemory.write(eepromLocation, Arrays.copyOfRange(data, 15, 15 + len));
         }
         return subCommandReply;
     }
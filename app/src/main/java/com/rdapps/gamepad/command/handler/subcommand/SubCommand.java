@@ -1,6 +1,5 @@
 package com.rdapps.gamepad.command.handler.subcommand;
 
-import java.util.Arrays;
 import lombok.Getter;
 
 @Getter
@@ -38,6 +37,14 @@ public enum SubCommand {
     //TODO .... BUNCH OF THINGS
     ;
 
+    private static final SubCommand[] BY_ID = new SubCommand[256];
+
+    static {
+        for (SubCommand subCommand : values()) {
+            BY_ID[subCommand.subCommandId & 0xFF] = subCommand;
+        }
+    }
+
     private final byte subCommandId;
     private final SubCommandHandler handler;
 
@@ -47,9 +54,7 @@ public enum SubCommand {
     }
 
     public static SubCommand getSubCommand(byte subCommandId) {
-        return Arrays.stream(values())
-                .filter(subCommand -> subCommand.subCommandId == subCommandId)
-                .findAny()
-                .orElse(UNKNOWN);
+        SubCommand subCommand = BY_ID[subCommandId & 0xFF];
+        return subCommand != null ? subCommand : UNKNOWN;
     }
 }
@@ -0,0 +1,165 @@
+package com.rdapps.gamepad.command.handler.subcommand;
+
+import static com.rdapps.gamepad.log.JoyConLog.log;
+import static com.rdapps.gamepad.report.InputReport.Type.SUBCOMMAND_REPLY_REPORT;
+
+import com.rdapps.gamepad.memory.ControllerMemory;
+import com.rdapps.gamepad.protocol.JoyController;
+import com.rdapps.gamepad.report.InputReport;
+import com.rdapps.gamepad.report.OutputReport;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Replies of deterministic subcommands keyed by (subcommand, argument bytes).
+ *
+ * <p>
+ * The console sends the same burst on every connection: device info and a series of SPI
+ * reads at fixed addresses. Their replies only depend on the SPI image and the MAC address,
+ * so the handler output (everything up to the subcommand data, before time, battery and
+ * buttons are filled) is kept and copied into a fresh report on the next request. SPI writes
+ * drop the entries whose range they touch, and a reply computed while a write landed is not
+ * kept, since it may have read the image before the write.
+ */
+public class SubCommandReplyCache implements ControllerMemory.ChangeListener {
+    private static final String TAG = SubCommandReplyCache.class.getName();
+
+    private static final byte REQUEST_DEVICE_INFO = 0x02;
+    private static final byte SPI_FLASH_READ = 0x10;
+    // SPI color byte used by the device info reply
+    private static final int DEVICE_INFO_SPI_LOCATION = 0x601B;
+
+    // Address and length of the SPI reads of the connection handshake
+    private static final int[][] HANDSHAKE_SPI_READS = {
+            {0x6000, 0x10},
+            {0x6020, 0x18},
+            {0x603D, 0x19},
+            {0x6050, 0x0D},
+            {0x6080, 0x18},
+            {0x6098, 0x12},
+            {0x8010, 0x18},
+            {0x8028, 0x18},
+    };
+
+    private final Map<Long, byte[]> replies = new ConcurrentHashMap<>();
+    private final AtomicLong version = new AtomicLong();
+
+    public static boolean isCacheable(byte subCommandId) {
+        return subCommandId == REQUEST_DEVICE_INFO || subCommandId == SPI_FLASH_READ;
+    }
+
+    // subcommand id in the top byte, SPI address and length below it
+    private static long key(byte[] data) {
+        long key = (data[9] & 0xFFL) << 40;
+        if (data[9] == SPI_FLASH_READ) {
+            for (int i = 0; i < 5; i++) {
+                key |= (data[10 + i] & 0xFFL) << (i * 8);
+            }
+        }
+        return key;
+    }
+
+    /**
+     * @return a copy of the cached reply, or null
+     */
+    public InputReport get(OutputReport outputReport) {
+        byte[] data = outputReport.getData();
+        if (!isCacheable(data[9])) {
+            return null;
+        }
+        byte[] template = replies.get(key(data));
+        if (template == null) {
+            return null;
+        }
+        InputReport reply = new InputReport(SUBCOMMAND_REPLY_REPORT);
+        System.arraycopy(template, 0, reply.getBuffer(), 0, template.length);
+        return reply;
+    }
+
+    /**
+     * @return the number of SPI changes seen so far, taken before a reply is computed
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Remember the handler output. Must be called before the dynamic fields are filled.
+     *
+     * @param computedAt {@link #getVersion()} before the handler ran
+     */
+    public void put(OutputReport outputReport, InputReport reply, long computedAt) {
+        byte[] data = outputReport.getData();
+        if (!isCacheable(data[9]) || version.get() != computedAt) {
+            return;
+        }
+        long key = key(data);
+        replies.put(key, reply.getBuffer().clone());
+        if (version.get() != computedAt) {
+            // A write raced the put, its invalidation may have run before the entry existed
+            replies.remove(key);
+        }
+    }
+
+    /**
+     * Run the handshake requests through their handlers once, so the first connection is
+     * served from memory too. Reads the SPI image, so it is meant for the controller's own
+     * thread, never under a lock shared with other threads.
+     */
+    public void prewarm(JoyController joyController) {
+        long start = System.nanoTime();
+        warm(joyController, request(REQUEST_DEVICE_INFO));
+        for (int[] read : HANDSHAKE_SPI_READS) {
+            byte[] data = request(SPI_FLASH_READ);
+            for (int i = 0; i < 4; i++) {
+                data[10 + i] = (byte) (read[0] >> (i * 8));
+            }
+            data[14] = (byte) read[1];
+            warm(joyController, data);
+        }
+        log(TAG, "Prewarmed " + replies.size() + " replies in "
+                + (System.nanoTime() - start) / 1000 + "us");
+    }
+
+    private static byte[] request(byte subCommandId) {
+        byte[] data = new byte[48];
+        data[9] = subCommandId;
+        return data;
+    }
+
+    private void warm(JoyController joyController, byte[] data) {
+        OutputReport outputReport = new OutputReport((byte) 0x01, data);
+        SubCommandHandler handler = SubCommand.getSubCommand(data[9]).getHandler();
+        long computedAt = version.get();
+        put(outputReport, handler.handleRumbleAndSubCommand(joyController, outputReport),
+                computedAt);
+    }
+
+    @Override
+    public void onSpiChanged(int location, int length) {
+        version.incrementAndGet();
+        long end = (long) location + length;
+        Iterator<Map.Entry<Long, byte[]>> iterator = replies.entrySet().iterator();
+        while (iterator.hasNext()) {
+            long key = iterator.next().getKey();
+            int start;
+            int len;
+            if ((byte) (key >> 40) == SPI_FLASH_READ) {
+                start = (int) key;
+                len = (int) ((key >> 32) & 0xFF);
+            } else {
+                start = DEVICE_INFO_SPI_LOCATION;
+                len = 1;
+            }
+            if (start < end && location < (long) start + len) {
+                iterator.remove();
+            }
+        }
+    }
+
+    public void clear() {
+        replies.clear();
+    }
+}
@@ -0,0 +1,141 @@
+package com.rdapps.gamepad.input;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Center and range of the motion axes of one input device, learned while it is used.
+ *
+ * <p>
+ * Every value read widens the range of its axis, so a stick that does not reach the rim is
+ * mapped to the full -1..1 range after a few movements. Ranges start at {@link #INITIAL_RANGE}
+ * so a stick is usable before it reached the rim once.
+ *
+ * <p>
+ * The center is only learned from a resting stick: values near zero that stayed within
+ * {@link #STEADY} of each other for {@link #STEADY_SAMPLES} samples pull it very slowly towards
+ * them. A thumb holding a small deflection jitters more than that and is not taken for the
+ * center, a stick that rests off center is corrected over a few thousand samples.
+ */
+public final class AxisCalibration {
+    private static final int MAGIC = 0x4A434143;
+    private static final int VERSION = 1;
+
+    static final float INITIAL_RANGE = 0.8f;
+    // Values this close to zero can be a resting stick
+    private static final float REST = 0.1f;
+    private static final float MAX_CENTER = REST;
+    private static final float STEADY = 0.004f;
+    private static final int STEADY_SAMPLES = 60;
+    private static final float CENTER_RATE = 0.001f;
+
+    private final float[] mins = new float[ControllerMapping.AXIS_COUNT];
+    private final float[] maxs = new float[ControllerMapping.AXIS_COUNT];
+    private final float[] centers = new float[ControllerMapping.AXIS_COUNT];
+    // Start and length of the current run of steady values per axis
+    private final float[] runStarts = new float[ControllerMapping.AXIS_COUNT];
+    private final int[] runLengths = new int[ControllerMapping.AXIS_COUNT];
+    private boolean dirty = false;
+
+    public AxisCalibration() {
+        Arrays.fill(mins, -INITIAL_RANGE);
+        Arrays.fill(maxs, INITIAL_RANGE);
+    }
+
+    /**
+     * Learn from a raw axis value.
+     *
+     * @return the value relative to the learned center and range, -1..1
+     */
+    public float apply(int axis, float value) {
+        float center = centers[axis];
+        boolean steady = updateRun(axis, value);
+        if (value < mins[axis]) {
+            mins[axis] = value;
+            dirty = true;
+        } else if (value > maxs[axis]) {
+            maxs[axis] = value;
+            dirty = true;
+        } else if (steady && value != center && Math.abs(value) < REST) {
+            center += (value - center) * CENTER_RATE;
+            centers[axis] = Math.max(-MAX_CENTER, Math.min(MAX_CENTER, center));
+            dirty = true;
+        }
+        float offset = value - center;
+        float range = offset >= 0 ? maxs[axis] - center : center - mins[axis];
+        return range > 0 ? Math.max(-1, Math.min(1, offset / range)) : 0;
+    }
+
+    /**
+     * @return true once the axis held still long enough
+     */
+    private boolean updateRun(int axis, float value) {
+        if (Math.abs(value - runStarts[axis]) > STEADY) {
+            runStarts[axis] = value;
+            runLengths[axis] = 0;
+            return false;
+        }
+        if (runLengths[axis] < STEADY_SAMPLES) {
+            runLengths[axis]++;
+        }
+        return runLengths[axis] >= STEADY_SAMPLES;
+    }
+
+    public float getCenter(int axis) {
+        return centers[axis];
+    }
+
+    public float getMin(int axis) {
+        return mins[axis];
+    }
+
+    public float getMax(int axis) {
+        return maxs[axis];
+    }
+
+    /**
+     * @return true if something was learned since the last call
+     */
+    public boolean takeDirty() {
+        boolean wasDirty = dirty;
+        dirty = false;
+        return wasDirty;
+    }
+
+    public void write(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeByte(ControllerMapping.AXIS_COUNT);
+        for (int axis = 0; axis < ControllerMapping.AXIS_COUNT; axis++) {
+            data.writeFloat(mins[axis]);
+            data.writeFloat(maxs[axis]);
+            data.writeFloat(centers[axis]);
+        }
+        data.flush();
+    }
+
+    public static AxisCalibration read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC || data.readInt() != VERSION) {
+            throw new IOException("Unknown axis calibration format");
+        }
+        int count = data.readUnsignedByte();
+        AxisCalibration calibration = new AxisCalibration();
+        for (int axis = 0; axis < count; axis++) {
+            float min = data.readFloat();
+            float max = data.readFloat();
+            float center = data.readFloat();
+            if (axis < ControllerMapping.AXIS_COUNT) {
+                calibration.mins[axis] = min;
+                calibration.maxs[axis] = max;
+                calibration.centers[axis] = center;
+            }
+        }
+        return calibration;
+    }
+}
@@ -0,0 +1,75 @@
+package com.rdapps.gamepad.input;
+
+import android.util.LongSparseArray;
+import android.view.InputDevice;
+import android.view.MotionEvent;
+import java.util.Objects;
+
+/**
+ * Flat values of the motion ranges of input devices, read once per device and source.
+ *
+ * <p>
+ * A joystick at rest does not always report an absolute position of (0,0), values within the
+ * flat region around the center are ignored. Looking up the range on every event allocates
+ * and walks the device's range list; here the flat of every axis is kept in an array per
+ * device id and input source, as ranges differ between the sources of one device, and the
+ * last pair is checked first.
+ */
+public class AxisFlats {
+    private static final float[] NO_FLATS = new float[ControllerMapping.AXIS_COUNT];
+
+    private static final long NONE = Long.MIN_VALUE;
+
+    private final LongSparseArray<float[]> devices = new LongSparseArray<>();
+    private long lastKey = NONE;
+    private float[] lastFlats = NO_FLATS;
+
+    /**
+     * @return flat per axis for the device and source of the event, zeros if it has no ranges
+     */
+    public float[] get(MotionEvent event) {
+        long key = (long) event.getDeviceId() << 32 | (event.getSource() & 0xFFFFFFFFL);
+        if (key == lastKey) {
+            return lastFlats;
+        }
+        float[] flats = devices.get(key);
+        if (Objects.isNull(flats)) {
+            flats = read(event.getDevice(), event.getSource());
+            devices.put(key, flats);
+        }
+        lastKey = key;
+        lastFlats = flats;
+        return flats;
+    }
+
+    /**
+     * Devices were added or removed, ranges are read again.
+     */
+    public void clear() {
+        devices.clear();
+        lastKey = NONE;
+        lastFlats = NO_FLATS;
+    }
+
+    /**
+     * @return the axis value, 0 inside the flat region
+     */
+    public static float getCenteredAxis(float[] flats, MotionEvent event, int axis) {
+        float value = event.getAxisValue(axis);
+        return Math.abs(value) > flats[axis] ? value : 0;
+    }
+
+    private static float[] read(InputDevice device, int source) {
+        if (Objects.isNull(device)) {
+            return NO_FLATS;
+        }
+        float[] flats = new float[ControllerMapping.AXIS_COUNT];
+        for (int axis = 0; axis < flats.length; axis++) {
+            InputDevice.MotionRange range = device.getMotionRange(axis, source);
+            if (Objects.nonNull(range)) {
+                flats[axis] = range.getFlat();
+            }
+        }
+        return flats;
+    }
+}
@@ -0,0 +1,136 @@
+package com.rdapps.gamepad.input;
+
+import com.rdapps.gamepad.device.ButtonType;
+import com.rdapps.gamepad.device.JoystickType;
+import com.rdapps.gamepad.model.ControllerAction;
+import java.util.List;
+
+/**
+ * Button mapping compiled into flat tables.
+ *
+ * <p>
+ * Buttons are looked up by key code in an array, axis buttons and joysticks are kept as
+ * parallel primitive arrays, so handling an event is a few array reads: no boxing, no
+ * hashing and no allocation. When a key code or a joystick is mapped more than once the last
+ * action wins; axis buttons are all kept, in order, so one axis direction can press several
+ * buttons.
+ */
+public final class ControllerMapping {
+    /**
+     * Number of motion axes, AXIS_X (0) to AXIS_GENERIC_16 (47).
+     */
+    public static final int AXIS_COUNT = 48;
+
+    private static final JoystickType[] JOYSTICKS = JoystickType.values();
+
+    private final ButtonType[] keyButtons;
+
+    private final int axisButtonCount;
+    private final int[] axisButtonAxes;
+    private final int[] axisButtonDirections;
+    private final ButtonType[] axisButtons;
+
+    // Per JoystickType ordinal
+    private final boolean[] sticks = new boolean[JOYSTICKS.length];
+    private final int[] stickAxesX = new int[JOYSTICKS.length];
+    private final int[] stickDirectionsX = new int[JOYSTICKS.length];
+    private final int[] stickAxesY = new int[JOYSTICKS.length];
+    private final int[] stickDirectionsY = new int[JOYSTICKS.length];
+
+    private ControllerMapping(List<ControllerAction> actions) {
+        int maxKeyCode = -1;
+        int axisCount = 0;
+        for (ControllerAction action : actions) {
+            if (action.getType() == ControllerAction.Type.BUTTON) {
+                maxKeyCode = Math.max(maxKeyCode, action.getKey());
+            } else if (action.getType() == ControllerAction.Type.AXIS) {
+                axisCount++;
+            }
+        }
+        keyButtons = new ButtonType[maxKeyCode + 1];
+        axisButtonAxes = new int[axisCount];
+        axisButtonDirections = new int[axisCount];
+        axisButtons = new ButtonType[axisCount];
+
+        int count = 0;
+        for (ControllerAction action : actions) {
+            if (action.getType() == ControllerAction.Type.BUTTON) {
+                if (action.getKey() >= 0) {
+                    keyButtons[action.getKey()] = action.getButton();
+                }
+            } else if (action.getType() == ControllerAction.Type.AXIS) {
+                if (isAxis(action.getAxisX())) {
+                    axisButtonAxes[count] = action.getAxisX();
+                    axisButtonDirections[count] = action.getDirectionX();
+                    axisButtons[count] = action.getButton();
+                    count++;
+                }
+            } else if (action.getType() == ControllerAction.Type.JOYSTICK) {
+                if (action.getJoystick() != null
+                        && isAxis(action.getAxisX()) && isAxis(action.getAxisY())) {
+                    int index = action.getJoystick().ordinal();
+                    sticks[index] = true;
+                    stickAxesX[index] = action.getAxisX();
+                    stickDirectionsX[index] = action.getDirectionX();
+                    stickAxesY[index] = action.getAxisY();
+                    stickDirectionsY[index] = action.getDirectionY();
+                }
+            }
+        }
+        axisButtonCount = count;
+    }
+
+    public static ControllerMapping compile(List<ControllerAction> actions) {
+        return new ControllerMapping(actions);
+    }
+
+    private static boolean isAxis(int axis) {
+        return axis >= 0 && axis < AXIS_COUNT;
+    }
+
+    /**
+     * @return button mapped to the key code, null if none
+     */
+    public ButtonType getButton(int keyCode) {
+        return keyCode >= 0 && keyCode < keyButtons.length ? keyButtons[keyCode] : null;
+    }
+
+    public int getAxisButtonCount() {
+        return axisButtonCount;
+    }
+
+    public int getAxisButtonAxis(int index) {
+        return axisButtonAxes[index];
+    }
+
+    /**
+     * @return 1 or -1, the side of the axis that presses the button
+     */
+    public int getAxisButtonDirection(int index) {
+        return axisButtonDirections[index];
+    }
+
+    public ButtonType getAxisButton(int index) {
+        return axisButtons[index];
+    }
+
+    public boolean hasStick(JoystickType joystick) {
+        return sticks[joystick.ordinal()];
+    }
+
+    public int getStickAxisX(JoystickType joystick) {
+        return stickAxesX[joystick.ordinal()];
+    }
+
+    public int getStickDirectionX(JoystickType joystick) {
+        return stickDirectionsX[joystick.ordinal()];
+    }
+
+    public int getStickAxisY(JoystickType joystick) {
+        return stickAxesY[joystick.ordinal()];
+    }
+
+    public int getStickDirectionY(JoystickType joystick) {
+        return stickDirectionsY[joystick.ordinal()];
+    }
+}
@@ -0,0 +1,215 @@
+package com.rdapps.gamepad.input;
+
+import static com.rdapps.gamepad.log.JoyConLog.log;
+
+import android.content.Context;
+import android.os.Process;
+import android.util.SparseArray;
+import android.view.InputDevice;
+import android.view.MotionEvent;
+import com.rdapps.gamepad.util.PriorityThreadFactory;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * {@link AxisCalibration} of every gamepad, stored in getFilesDir()/calibration by the
+ * descriptor of the input device so it survives reconnects and reboots.
+ *
+ * <p>
+ * The stored calibrations are read on a background thread when the store is created; motion
+ * that arrives before they are read is mapped with the default range and learns nothing that
+ * is kept. A calibration is looked up by device id, the device of the previous event is
+ * checked first. {@link #save()} writes the calibrations that learned something on a
+ * background thread.
+ *
+ * <p>
+ * Not thread safe, used on the UI thread.
+ */
+public class DeviceCalibrationStore {
+    private static final String TAG = DeviceCalibrationStore.class.getName();
+
+    private static final String DIRECTORY_NAME = "calibration";
+    private static final String FILE_SUFFIX = ".bin";
+
+    private static final ExecutorService STORE_EXECUTOR =
+            Executors.newSingleThreadExecutor(
+                    new PriorityThreadFactory(Process.THREAD_PRIORITY_BACKGROUND,
+                            true,
+                            "Calibration Thread",
+                            false)
+            );
+
+    private static DeviceCalibrationStore instance;
+
+    private final File directory;
+    // Keyed by the file name the descriptor is stored under
+    private final Map<String, AxisCalibration> byDescriptor = new HashMap<>();
+    private final SparseArray<AxisCalibration> byDeviceId = new SparseArray<>();
+    // Events without a device are not calibrated across sessions
+    private AxisCalibration unknownDevice = new AxisCalibration();
+    private final AxisCalibration loading = new AxisCalibration();
+    private Future<Map<String, AxisCalibration>> stored;
+
+    private int lastDeviceId = Integer.MIN_VALUE;
+    private AxisCalibration lastCalibration;
+
+    private DeviceCalibrationStore(Context context) {
+        this.directory = new File(context.getFilesDir(), DIRECTORY_NAME);
+        this.stored = STORE_EXECUTOR.submit(() -> loadAll(directory));
+    }
+
+    public static synchronized DeviceCalibrationStore getInstance(Context context) {
+        if (Objects.isNull(instance)) {
+            instance = new DeviceCalibrationStore(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    public AxisCalibration get(MotionEvent event) {
+        int deviceId = event.getDeviceId();
+        if (deviceId == lastDeviceId && Objects.nonNull(lastCalibration)) {
+            return lastCalibration;
+        }
+        if (!takeStored()) {
+            return loading;
+        }
+        AxisCalibration calibration = byDeviceId.get(deviceId);
+        if (Objects.isNull(calibration)) {
+            InputDevice device = event.getDevice();
+            calibration = Objects.nonNull(device)
+                    ? getByDescriptor(device.getDescriptor())
+                    : unknownDevice;
+            byDeviceId.put(deviceId, calibration);
+        }
+        lastDeviceId = deviceId;
+        lastCalibration = calibration;
+        return calibration;
+    }
+
+    /**
+     * Write the calibrations that changed since they were read or last saved.
+     */
+    public void save() {
+        for (Map.Entry<String, AxisCalibration> entry : byDescriptor.entrySet()) {
+            if (!entry.getValue().takeDirty()) {
+                continue;
+            }
+            // Copied here, the calibration keeps learning while the file is written
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try {
+                entry.getValue().write(bytes);
+            } catch (IOException e) {
+                log(TAG, "Calibration could not be copied", e);
+                continue;
+            }
+            File file = new File(directory, entry.getKey() + FILE_SUFFIX);
+            byte[] data = bytes.toByteArray();
+            STORE_EXECUTOR.execute(() -> persist(file, data));
+        }
+    }
+
+    /**
+     * Forget every calibration, the gamepads start from the default range again.
+     */
+    public void clear() {
+        // Whatever the background read finds is deleted below
+        stored = null;
+        byDescriptor.clear();
+        byDeviceId.clear();
+        unknownDevice = new AxisCalibration();
+        lastDeviceId = Integer.MIN_VALUE;
+        lastCalibration = null;
+        STORE_EXECUTOR.execute(() -> {
+            File[] files = directory.listFiles();
+            if (Objects.nonNull(files)) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+        });
+    }
+
+    /**
+     * @return false while the stored calibrations are still being read
+     */
+    private boolean takeStored() {
+        Future<Map<String, AxisCalibration>> future = stored;
+        if (Objects.isNull(future)) {
+            return true;
+        }
+        if (!future.isDone()) {
+            return false;
+        }
+        stored = null;
+        try {
+            byDescriptor.putAll(future.get());
+        } catch (ExecutionException | InterruptedException e) {
+            log(TAG, "Calibrations could not be loaded", e);
+        }
+        return true;
+    }
+
+    private AxisCalibration getByDescriptor(String descriptor) {
+        String key = descriptor.replaceAll("[^A-Za-z0-9_-]", "_");
+        AxisCalibration calibration = byDescriptor.get(key);
+        if (Objects.isNull(calibration)) {
+            calibration = new AxisCalibration();
+            byDescriptor.put(key, calibration);
+        }
+        return calibration;
+    }
+
+    private static Map<String, AxisCalibration> loadAll(File directory) {
+        Map<String, AxisCalibration> calibrations = new HashMap<>();
+        File[] files = directory.listFiles();
+        if (Objects.isNull(files)) {
+            return calibrations;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (!name.endsWith(FILE_SUFFIX) || !file.isFile()) {
+                continue;
+            }
+            try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+                calibrations.put(name.substring(0, name.length() - FILE_SUFFIX.length()),
+                        AxisCalibration.read(in));
+            } catch (IOException e) {
+                log(TAG, "Calibration could not be loaded", e);
+            }
+        }
+        return calibrations;
+    }
+
+    private static void persist(File file, byte[] data) {
+        File directory = file.getParentFile();
+        if (Objects.nonNull(directory) && !directory.isDirectory() && !directory.mkdirs()) {
+            log(TAG, "Calibration directory could not be created", true);
+            return;
+        }
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            out.write(data);
+            out.getFD().sync();
+        } catch (IOException e) {
+            log(TAG, "Calibration could not be written", e);
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(file)) {
+            log(TAG, "Calibration rename failed", true);
+            tmp.delete();
+        }
+    }
+}
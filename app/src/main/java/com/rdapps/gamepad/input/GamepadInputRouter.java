@@ -0,0 +1,368 @@
+package com.rdapps.gamepad.input;
+
+import static android.view.KeyEvent.KEYCODE_DPAD_DOWN;
+import static android.view.KeyEvent.KEYCODE_DPAD_LEFT;
+import static android.view.KeyEvent.KEYCODE_DPAD_RIGHT;
+import static android.view.KeyEvent.KEYCODE_DPAD_UP;
+import static com.rdapps.gamepad.button.ButtonState.BUTTON_DOWN;
+import static com.rdapps.gamepad.button.ButtonState.BUTTON_UP;
+import static com.rdapps.gamepad.input.AxisFlats.getCenteredAxis;
+import static com.rdapps.gamepad.input.InputLatencyTracer.Source.GAMEPAD;
+
+import android.os.SystemClock;
+import android.os.Trace;
+import android.view.KeyEvent;
+import android.view.MotionEvent;
+import com.rdapps.gamepad.button.AxisEnum;
+import com.rdapps.gamepad.button.ButtonEnum;
+import com.rdapps.gamepad.device.ButtonType;
+import com.rdapps.gamepad.device.JoystickType;
+import com.rdapps.gamepad.protocol.JoyController;
+import java.util.Objects;
+
+/**
+ * Routes the events of an external gamepad straight into the controller state.
+ *
+ * <p>
+ * The {@link ControllerMapping} is resolved once against the buttons and sticks of the
+ * on-screen controller into tables indexed by key code and axis, and each event updates
+ * {@link JoyController} on the spot instead of being turned into synthetic touches for the
+ * on-screen views. The views only follow the state: changes
+ * are collected as bit masks and the {@link Target} is told once per event, so it can
+ * refresh them on the next frame.
+ *
+ * <p>
+ * Stick motion batched into an event is also added with its event times to the
+ * {@link StickSampler} of the stick, which picks the value at report time. Stick axes skip
+ * the flat of the device: they go through the {@link AxisCalibration} learned for the device
+ * and then the {@link StickResponse}, which owns the deadzones.
+ *
+ * <p>
+ * Not thread safe, events and the refresh of the views both run on the UI thread.
+ */
+public class GamepadInputRouter {
+    private static final int NONE = -1;
+    private static final int STICK_RANGE = 100;
+    private static final JoystickType[] JOYSTICKS = JoystickType.values();
+
+    /**
+     * The on-screen controller the gamepad drives.
+     */
+    public interface Target {
+        /**
+         * @return button the controller emits for a mapped button, null if it has none or the
+         *     button cannot be set directly
+         */
+        ButtonEnum getButton(ButtonType buttonType);
+
+        boolean hasStick(JoystickType joystickType);
+
+        /**
+         * The sticks are drawn rotated, their x and y axes are swapped.
+         */
+        boolean reverseJoystickXy();
+
+        /**
+         * State changed, called at most once per event.
+         */
+        void onStateChanged();
+    }
+
+    private static final class Stick {
+        private final int axisX;
+        private final int directionX;
+        private final int axisY;
+        private final int directionY;
+        private final AxisEnum stateX;
+        private final AxisEnum stateY;
+        private final StickSampler sampler;
+
+        // Position on the on-screen stick, in radii
+        private float viewX;
+        private float viewY;
+
+        private Stick(ControllerMapping mapping, JoystickType joystick,
+                      AxisEnum stateX, AxisEnum stateY, StickSampler sampler) {
+            this.axisX = mapping.getStickAxisX(joystick);
+            this.directionX = mapping.getStickDirectionX(joystick);
+            this.axisY = mapping.getStickAxisY(joystick);
+            this.directionY = mapping.getStickDirectionY(joystick);
+            this.stateX = stateX;
+            this.stateY = stateY;
+            this.sampler = sampler;
+        }
+    }
+
+    private final JoyController device;
+    private final Target target;
+    private final AxisFlats axisFlats;
+    private final DeviceCalibrationStore calibrations;
+    private final StickResponse response;
+    private final boolean reverse;
+    private final float[] responseOut = new float[2];
+
+    private final ButtonEnum[] keyButtons = new ButtonEnum[KeyEvent.getMaxKeyCode() + 1];
+    private final int[] axisButtonAxes;
+    private final int[] axisButtonDirections;
+    private final ButtonEnum[] axisButtons;
+    private final int axisButtonCount;
+    private final Stick[] sticks = new Stick[JOYSTICKS.length];
+
+    private int changedButtons = 0;
+    private int changedSticks = 0;
+    private int hatXKeyCode = NONE;
+    private int hatYKeyCode = NONE;
+    // Time of the event being routed, stamped on the changes it makes
+    private long eventTime;
+
+    public GamepadInputRouter(JoyController device, Target target,
+                              ControllerMapping mapping, AxisFlats axisFlats,
+                              DeviceCalibrationStore calibrations, StickResponse response) {
+        this.device = device;
+        this.target = target;
+        this.axisFlats = axisFlats;
+        this.calibrations = calibrations;
+        this.response = response;
+        this.reverse = target.reverseJoystickXy();
+
+        for (int keyCode = 0; keyCode < keyButtons.length; keyCode++) {
+            ButtonType buttonType = mapping.getButton(keyCode);
+            if (Objects.nonNull(buttonType)) {
+                keyButtons[keyCode] = target.getButton(buttonType);
+            }
+        }
+
+        int count = 0;
+        axisButtonAxes = new int[mapping.getAxisButtonCount()];
+        axisButtonDirections = new int[mapping.getAxisButtonCount()];
+        axisButtons = new ButtonEnum[mapping.getAxisButtonCount()];
+        for (int i = 0; i < mapping.getAxisButtonCount(); i++) {
+            ButtonEnum button = target.getButton(mapping.getAxisButton(i));
+            if (Objects.nonNull(button)) {
+                axisButtonAxes[count] = mapping.getAxisButtonAxis(i);
+                axisButtonDirections[count] = mapping.getAxisButtonDirection(i);
+                axisButtons[count] = button;
+                count++;
+            }
+        }
+        axisButtonCount = count;
+
+        for (JoystickType joystick : JOYSTICKS) {
+            if (mapping.hasStick(joystick) && target.hasStick(joystick)) {
+                sticks[joystick.ordinal()] = joystick == JoystickType.LEFT_JOYSTICK
+                        ? new Stick(mapping, joystick, AxisEnum.LEFT_STICK_X,
+                                AxisEnum.LEFT_STICK_Y, device.getLeftStickSampler())
+                        : new Stick(mapping, joystick, AxisEnum.RIGHT_STICK_X,
+                                AxisEnum.RIGHT_STICK_Y, device.getRightStickSampler());
+            }
+        }
+    }
+
+    /**
+     * @return false if the key is not mapped to a button that can be set directly
+     */
+    public boolean onKey(int keyCode, KeyEvent event) {
+        int action = event.getAction();
+        if (action != KeyEvent.ACTION_DOWN && action != KeyEvent.ACTION_UP) {
+            return false;
+        }
+        ButtonEnum button = getKeyButton(keyCode);
+        if (Objects.isNull(button)) {
+            return false;
+        }
+        eventTime = event.getEventTime();
+        setButton(button, action == KeyEvent.ACTION_DOWN);
+        notifyChanged();
+        return true;
+    }
+
+    public boolean onMotion(MotionEvent event) {
+        Trace.beginSection("JoyCon:gamepad");
+        try {
+            routeMotion(event);
+        } finally {
+            Trace.endSection();
+        }
+        notifyChanged();
+        return true;
+    }
+
+    private void routeMotion(MotionEvent event) {
+        eventTime = event.getEventTime();
+        float[] flats = axisFlats.get(event);
+        AxisCalibration calibration = calibrations.get(event);
+        int historySize = event.getHistorySize();
+        for (int i = 0; i < sticks.length; i++) {
+            Stick stick = sticks[i];
+            if (Objects.nonNull(stick)) {
+                int axisX = reverse ? stick.axisY : stick.axisX;
+                int axisY = reverse ? stick.axisX : stick.axisY;
+                float signX = (reverse ? -1 : 1) * stick.directionX;
+                float signY = -stick.directionY;
+                for (int h = 0; h < historySize; h++) {
+                    response.apply(
+                            calibration.apply(axisX, event.getHistoricalAxisValue(axisX, h))
+                                    * signX,
+                            calibration.apply(axisY, event.getHistoricalAxisValue(axisY, h))
+                                    * signY,
+                            responseOut);
+                    addSample(stick, event.getHistoricalEventTime(h),
+                            responseOut[0], responseOut[1]);
+                }
+                response.apply(calibration.apply(axisX, event.getAxisValue(axisX)) * signX,
+                        calibration.apply(axisY, event.getAxisValue(axisY)) * signY,
+                        responseOut);
+                addSample(stick, event.getEventTime(), responseOut[0], responseOut[1]);
+                setStick(i, stick, responseOut[0], responseOut[1]);
+            }
+        }
+
+        hatXKeyCode = setHat(hatXKeyCode, event.getAxisValue(MotionEvent.AXIS_HAT_X),
+                KEYCODE_DPAD_LEFT, KEYCODE_DPAD_RIGHT);
+        hatYKeyCode = setHat(hatYKeyCode, event.getAxisValue(MotionEvent.AXIS_HAT_Y),
+                KEYCODE_DPAD_UP, KEYCODE_DPAD_DOWN);
+
+        for (int i = 0; i < axisButtonCount; i++) {
+            float value = getCenteredAxis(flats, event, axisButtonAxes[i]);
+            setButton(axisButtons[i], Math.signum(value) == axisButtonDirections[i]);
+        }
+    }
+
+    /**
+     * Release every button and center every stick the gamepad drives, e.g. before the mapping
+     * changes under held keys.
+     */
+    public void releaseAll() {
+        eventTime = SystemClock.uptimeMillis();
+        for (ButtonEnum button : keyButtons) {
+            if (Objects.nonNull(button)) {
+                setButton(button, false);
+            }
+        }
+        for (int i = 0; i < axisButtonCount; i++) {
+            setButton(axisButtons[i], false);
+        }
+        for (int i = 0; i < sticks.length; i++) {
+            Stick stick = sticks[i];
+            if (Objects.nonNull(stick)) {
+                stick.sampler.clear();
+                setStick(i, stick, 0, 0);
+            }
+        }
+        hatXKeyCode = NONE;
+        hatYKeyCode = NONE;
+        notifyChanged();
+    }
+
+    /**
+     * @return buttons changed since the last call, one bit per {@link ButtonEnum} ordinal
+     */
+    public int takeChangedButtons() {
+        int changed = changedButtons;
+        changedButtons = 0;
+        return changed;
+    }
+
+    /**
+     * @return sticks moved since the last call, one bit per {@link JoystickType} ordinal
+     */
+    public int takeChangedSticks() {
+        int changed = changedSticks;
+        changedSticks = 0;
+        return changed;
+    }
+
+    /**
+     * Horizontal position of the on-screen stick, in radii from its center.
+     */
+    public float getViewX(JoystickType joystick) {
+        Stick stick = sticks[joystick.ordinal()];
+        return Objects.nonNull(stick) ? stick.viewX : 0;
+    }
+
+    /**
+     * Vertical position of the on-screen stick, in radii from its center.
+     */
+    public float getViewY(JoystickType joystick) {
+        Stick stick = sticks[joystick.ordinal()];
+        return Objects.nonNull(stick) ? stick.viewY : 0;
+    }
+
+    private ButtonEnum getKeyButton(int keyCode) {
+        return keyCode >= 0 && keyCode < keyButtons.length ? keyButtons[keyCode] : null;
+    }
+
+    private int setHat(int previous, float value, int negativeKeyCode, int positiveKeyCode) {
+        int keyCode;
+        if (Float.compare(value, -1.0f) == 0) {
+            keyCode = negativeKeyCode;
+        } else if (Float.compare(value, 1.0f) == 0) {
+            keyCode = positiveKeyCode;
+        } else {
+            keyCode = NONE;
+        }
+        if (keyCode != previous) {
+            ButtonEnum released = previous != NONE ? getKeyButton(previous) : null;
+            if (Objects.nonNull(released)) {
+                setButton(released, false);
+            }
+            ButtonEnum pressed = keyCode != NONE ? getKeyButton(keyCode) : null;
+            if (Objects.nonNull(pressed)) {
+                setButton(pressed, true);
+            }
+        }
+        return keyCode;
+    }
+
+    private void setButton(ButtonEnum button, boolean pressed) {
+        int value = pressed ? BUTTON_DOWN : BUTTON_UP;
+        if (device.getButton(button) != value) {
+            device.setButton(button, value, GAMEPAD, eventTime);
+            changedButtons |= 1 << button.ordinal();
+        }
+    }
+
+    /**
+     * Same values the on-screen stick would report for a touch at (x, y) radii: the position
+     * is clamped to the pad and scaled to the stick range.
+     */
+    private void setStick(int index, Stick stick, float x, float y) {
+        float scale = clampScale(x, y);
+        x *= scale;
+        y *= scale;
+        if (Float.compare(x, stick.viewX) == 0 && Float.compare(y, stick.viewY) == 0) {
+            return;
+        }
+        stick.viewX = x;
+        stick.viewY = y;
+        device.setAxis(stick.stateX, (int) getStateX(x, y), GAMEPAD, eventTime);
+        device.setAxis(stick.stateY, (int) getStateY(x, y), GAMEPAD, eventTime);
+        changedSticks |= 1 << index;
+    }
+
+    private void addSample(Stick stick, long timeMs, float x, float y) {
+        float scale = clampScale(x, y);
+        x *= scale;
+        y *= scale;
+        stick.sampler.add(timeMs, (int) getStateX(x, y), (int) getStateY(x, y));
+    }
+
+    private static float clampScale(float x, float y) {
+        float length = (float) Math.sqrt(x * x + y * y);
+        return length > 1 ? 1 / length : 1;
+    }
+
+    private float getStateX(float x, float y) {
+        return (reverse ? y : x) * STICK_RANGE;
+    }
+
+    private float getStateY(float x, float y) {
+        return (reverse ? x : -y) * STICK_RANGE;
+    }
+
+    private void notifyChanged() {
+        if (changedButtons != 0 || changedSticks != 0) {
+            target.onStateChanged();
+        }
+    }
+}
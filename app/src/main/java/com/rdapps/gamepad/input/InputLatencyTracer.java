@@ -0,0 +1,179 @@
+package com.rdapps.gamepad.input;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Time from an input event to the report that carried its change to the console, per input
+ * source.
+ *
+ * <p>
+ * Every change of the controller state is stamped with the time of the event behind it and
+ * only the oldest stamp not sent yet is kept per source. The report thread takes the stamps
+ * right before it snapshots the state, so they travel with that snapshot, and records the
+ * time from each stamp to the return of the send into the histogram of its source. A change
+ * that lands between taking the stamps and the snapshot is counted for the next report, so
+ * latency is never under-reported. Times are in the clock of input events,
+ * {@code SystemClock.uptimeMillis()}.
+ *
+ * <p>
+ * Stamps are added from any thread, reports are sent from one thread and the histograms are
+ * read from any.
+ */
+public final class InputLatencyTracer {
+    private static final long NONE = Long.MAX_VALUE;
+
+    public enum Source {
+        TOUCH,
+        GAMEPAD,
+        WEB
+    }
+
+    private static final Source[] SOURCES = Source.values();
+
+    private final AtomicLongArray pending = new AtomicLongArray(SOURCES.length);
+    private final long[] taken = new long[SOURCES.length];
+    private final Histogram[] histograms = new Histogram[SOURCES.length];
+
+    public InputLatencyTracer() {
+        for (int i = 0; i < SOURCES.length; i++) {
+            pending.set(i, NONE);
+            taken[i] = NONE;
+            histograms[i] = new Histogram();
+        }
+    }
+
+    /**
+     * Note a state change, after the state was set.
+     */
+    public void stamp(Source source, long eventTimeMs) {
+        int index = source.ordinal();
+        long current;
+        do {
+            current = pending.get(index);
+            if (eventTimeMs >= current) {
+                return;
+            }
+        } while (!pending.compareAndSet(index, current, eventTimeMs));
+    }
+
+    /**
+     * Take the stamps of the changes the next snapshot carries, before the snapshot.
+     */
+    public void takePending() {
+        for (int i = 0; i < SOURCES.length; i++) {
+            taken[i] = Math.min(taken[i], pending.getAndSet(i, NONE));
+        }
+    }
+
+    /**
+     * @param sent false keeps the stamps for the next report
+     */
+    public void onReportSent(long nowMs, boolean sent) {
+        if (!sent) {
+            return;
+        }
+        for (int i = 0; i < SOURCES.length; i++) {
+            if (taken[i] != NONE) {
+                histograms[i].record(nowMs - taken[i]);
+                taken[i] = NONE;
+            }
+        }
+    }
+
+    /**
+     * @return copy of the latencies recorded for a source
+     */
+    public Histogram getHistogram(Source source) {
+        return histograms[source.ordinal()].copy();
+    }
+
+    public void reset() {
+        for (Histogram histogram : histograms) {
+            histogram.reset();
+        }
+    }
+
+    public String summary() {
+        StringBuilder builder = new StringBuilder("Input to report latency:");
+        for (Source source : SOURCES) {
+            Histogram histogram = histograms[source.ordinal()].copy();
+            if (histogram.getCount() == 0) {
+                continue;
+            }
+            builder.append(String.format(Locale.ROOT,
+                    " %s %d changes p50 %dms p90 %dms p99 %dms max %dms;",
+                    source, histogram.getCount(), histogram.getPercentile(50),
+                    histogram.getPercentile(90), histogram.getPercentile(99),
+                    histogram.getMax()));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Latencies in 1 ms buckets, the last bucket holds everything longer.
+     */
+    public static final class Histogram {
+        public static final int BUCKETS = 256;
+
+        private final long[] counts = new long[BUCKETS];
+        private long count;
+        private long total;
+        private long max;
+
+        public synchronized void record(long latencyMs) {
+            long latency = Math.max(0, latencyMs);
+            counts[(int) Math.min(BUCKETS - 1, latency)]++;
+            count++;
+            total += latency;
+            max = Math.max(max, latency);
+        }
+
+        public synchronized long getCount() {
+            return count;
+        }
+
+        public synchronized long getMax() {
+            return max;
+        }
+
+        public synchronized double getMean() {
+            return count == 0 ? 0 : (double) total / count;
+        }
+
+        /**
+         * @param percent 0 to 100
+         * @return latency in ms that the given percent of the changes did not exceed
+         */
+        public synchronized long getPercentile(double percent) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(count * percent / 100));
+            long seen = 0;
+            for (int bucket = 0; bucket < BUCKETS - 1; bucket++) {
+                seen += counts[bucket];
+                if (seen >= rank) {
+                    return Math.min(bucket, max);
+                }
+            }
+            return max;
+        }
+
+        public synchronized void reset() {
+            java.util.Arrays.fill(counts, 0);
+            count = 0;
+            total = 0;
+            max = 0;
+        }
+
+        synchronized Histogram copy() {
+            Histogram copy = new Histogram();
+            System.arraycopy(counts, 0, copy.counts, 0, BUCKETS);
+            copy.count = count;
+            copy.total = total;
+            copy.max = max;
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.rdapps.gamepad.input;
+
+import static com.rdapps.gamepad.log.JoyConLog.log;
+
+import android.content.Context;
+import android.os.Process;
+import com.rdapps.gamepad.R;
+import com.rdapps.gamepad.model.ControllerAction;
+import com.rdapps.gamepad.util.ControllerActionUtils;
+import com.rdapps.gamepad.util.PriorityThreadFactory;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Button mapping profiles kept in memory and stored in getFilesDir()/mapping_profiles.bin.
+ *
+ * <p>
+ * The file is read once, afterwards the compiled {@link MappingProfiles} are handed out as
+ * is. Every change replaces them, bumps the version and tells the listeners on the calling
+ * thread; the file is written on a background thread to a temporary file that is renamed over
+ * it, writes that pile up collapse into the latest profiles. The JSON mapping older versions
+ * kept in preferences becomes the first profile and is removed once the file is written. A
+ * file that cannot be read is moved aside to mapping_profiles.bin.bak, never overwritten.
+ */
+public class MappingProfileStore {
+    private static final String TAG = MappingProfileStore.class.getName();
+
+    private static final String FILE_NAME = "mapping_profiles.bin";
+
+    private static final ExecutorService STORE_EXECUTOR =
+            Executors.newSingleThreadExecutor(
+                    new PriorityThreadFactory(Process.THREAD_PRIORITY_BACKGROUND,
+                            true,
+                            "Mapping Profile Thread",
+                            false)
+            );
+
+    public interface Listener {
+        void onMappingProfileChanged(MappingProfiles.Profile profile);
+    }
+
+    private static MappingProfileStore instance;
+
+    private final Context context;
+    private final File file;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean writePending = new AtomicBoolean();
+    private volatile boolean migrated;
+
+    private volatile MappingProfiles profiles;
+    private volatile int version;
+
+    private MappingProfileStore(Context context) {
+        this.context = context;
+        this.file = new File(context.getFilesDir(), FILE_NAME);
+        load();
+    }
+
+    public static synchronized MappingProfileStore getInstance(Context context) {
+        if (Objects.isNull(instance)) {
+            instance = new MappingProfileStore(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    public MappingProfiles getProfiles() {
+        return profiles;
+    }
+
+    public MappingProfiles.Profile getActive() {
+        return profiles.getActive();
+    }
+
+    /**
+     * @return number of changes since the profiles were loaded
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public void select(int index) {
+        update(profiles.withActive(index));
+    }
+
+    /**
+     * Activate the profile {@code step} positions away, wrapping around.
+     */
+    public void selectNext(int step) {
+        update(profiles.withNext(step));
+    }
+
+    public void setActiveActions(List<ControllerAction> actions) {
+        update(profiles.withActions(actions));
+    }
+
+    /**
+     * Add a profile and make it active.
+     */
+    public void addProfile(String name, List<ControllerAction> actions) {
+        update(profiles.withProfile(name, actions));
+    }
+
+    public void removeProfile(int index) {
+        update(profiles.without(index));
+    }
+
+    private void update(MappingProfiles next) {
+        MappingProfiles.Profile active;
+        synchronized (this) {
+            if (next == profiles) {
+                return;
+            }
+            active = next.getActive();
+            profiles = next;
+            version++;
+            schedulePersist();
+        }
+        for (Listener listener : listeners) {
+            listener.onMappingProfileChanged(active);
+        }
+    }
+
+    private void load() {
+        if (file.isFile()) {
+            try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+                profiles = MappingProfiles.read(in);
+                return;
+            } catch (IOException e) {
+                log(TAG, "Mapping profiles could not be loaded", e);
+            }
+            File backup = new File(file.getPath() + ".bak");
+            if (!file.renameTo(backup)) {
+                log(TAG, "Mapping profiles could not be moved aside", true);
+            }
+        }
+        profiles = MappingProfiles.of(context.getString(R.string.default_mapping_profile),
+                ControllerActionUtils.migrateControllerActions(context));
+        migrated = true;
+        schedulePersist();
+    }
+
+    private void schedulePersist() {
+        if (writePending.compareAndSet(false, true)) {
+            STORE_EXECUTOR.execute(this::persist);
+        }
+    }
+
+    private void persist() {
+        writePending.set(false);
+        MappingProfiles current = profiles;
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            current.write(new BufferedOutputStream(out));
+            out.getFD().sync();
+        } catch (IOException e) {
+            log(TAG, "Mapping profiles could not be written", e);
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(file)) {
+            log(TAG, "Mapping profiles rename failed", true);
+            tmp.delete();
+            return;
+        }
+        if (migrated) {
+            migrated = false;
+            ControllerActionUtils.removeMigratedControllerActions(context);
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.rdapps.gamepad.input;
+
+import com.rdapps.gamepad.device.ButtonType;
+import com.rdapps.gamepad.device.JoystickType;
+import com.rdapps.gamepad.model.ControllerAction;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Named button mapping profiles, one of them active.
+ *
+ * <p>
+ * Immutable: every change returns a new instance that shares the untouched profiles, each
+ * profile compiles its {@link ControllerMapping} once when it is created. Switching the active
+ * profile only swaps an index, nothing is parsed or compiled again.
+ *
+ * <p>
+ * Stored as a small binary file (magic, version, active index, profiles), an action takes
+ * nine bytes.
+ */
+public final class MappingProfiles {
+    private static final int MAGIC = 0x4A434D50;
+    private static final int VERSION = 1;
+
+    /**
+     * The count and the active index are stored in one byte each.
+     */
+    public static final int MAX_PROFILES = 255;
+
+    private static final ButtonType[] BUTTONS = ButtonType.values();
+    private static final JoystickType[] JOYSTICKS = JoystickType.values();
+    private static final ControllerAction.Type[] TYPES = ControllerAction.Type.values();
+
+    public static final class Profile {
+        private final String name;
+        private final List<ControllerAction> actions;
+        private final ControllerMapping mapping;
+
+        private Profile(String name, List<ControllerAction> actions) {
+            this.name = name;
+            this.actions = Collections.unmodifiableList(copy(actions));
+            this.mapping = ControllerMapping.compile(this.actions);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the actions of the profile, callers must not modify the elements
+         */
+        public List<ControllerAction> getActions() {
+            return actions;
+        }
+
+        public ControllerMapping getMapping() {
+            return mapping;
+        }
+    }
+
+    private final Profile[] profiles;
+    private final int active;
+
+    private MappingProfiles(Profile[] profiles, int active) {
+        this.profiles = profiles;
+        this.active = active;
+    }
+
+    public static MappingProfiles of(String name, List<ControllerAction> actions) {
+        return new MappingProfiles(new Profile[] {new Profile(name, actions)}, 0);
+    }
+
+    public int size() {
+        return profiles.length;
+    }
+
+    public Profile get(int index) {
+        return profiles[index];
+    }
+
+    public int getActiveIndex() {
+        return active;
+    }
+
+    public Profile getActive() {
+        return profiles[active];
+    }
+
+    /**
+     * @return profiles with another active one, the profiles themselves are shared
+     */
+    public MappingProfiles withActive(int index) {
+        if (index < 0 || index >= profiles.length) {
+            throw new IndexOutOfBoundsException("No mapping profile " + index);
+        }
+        return index == active ? this : new MappingProfiles(profiles, index);
+    }
+
+    /**
+     * @return profiles with the one {@code step} positions away from the active one active,
+     *     wrapping around
+     */
+    public MappingProfiles withNext(int step) {
+        int index = Math.floorMod(active + step, profiles.length);
+        return withActive(index);
+    }
+
+    /**
+     * @return profiles with the actions of the active profile replaced
+     */
+    public MappingProfiles withActions(List<ControllerAction> actions) {
+        Profile[] next = profiles.clone();
+        next[active] = new Profile(profiles[active].name, actions);
+        return new MappingProfiles(next, active);
+    }
+
+    /**
+     * @return profiles with a new profile appended and made active, unchanged if there are
+     *     {@link #MAX_PROFILES} already
+     */
+    public MappingProfiles withProfile(String name, List<ControllerAction> actions) {
+        if (profiles.length >= MAX_PROFILES) {
+            return this;
+        }
+        Profile[] next = new Profile[profiles.length + 1];
+        System.arraycopy(profiles, 0, next, 0, profiles.length);
+        next[profiles.length] = new Profile(name, actions);
+        return new MappingProfiles(next, profiles.length);
+    }
+
+    /**
+     * @return profiles without the profile at index, the last profile cannot be removed
+     */
+    public MappingProfiles without(int index) {
+        if (profiles.length == 1) {
+            return this;
+        }
+        Profile[] next = new Profile[profiles.length - 1];
+        System.arraycopy(profiles, 0, next, 0, index);
+        System.arraycopy(profiles, index + 1, next, index, next.length - index);
+        int nextActive = active > index || active == next.length ? active - 1 : active;
+        return new MappingProfiles(next, nextActive);
+    }
+
+    public void write(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeByte(active);
+        data.writeByte(profiles.length);
+        for (Profile profile : profiles) {
+            data.writeUTF(profile.name);
+            data.writeShort(profile.actions.size());
+            for (ControllerAction action : profile.actions) {
+                data.writeByte(action.getType().ordinal());
+                data.writeShort(action.getKey());
+                data.writeByte(ordinal(action.getButton()));
+                data.writeByte(ordinal(action.getJoystick()));
+                data.writeByte(action.getAxisX());
+                data.writeByte(action.getDirectionX());
+                data.writeByte(action.getAxisY());
+                data.writeByte(action.getDirectionY());
+            }
+        }
+        data.flush();
+    }
+
+    public static MappingProfiles read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC || data.readInt() != VERSION) {
+            throw new IOException("Unknown mapping profile format");
+        }
+        int active = data.readUnsignedByte();
+        int count = data.readUnsignedByte();
+        if (count == 0 || active >= count) {
+            throw new IOException("Invalid mapping profiles: " + active + "/" + count);
+        }
+        Profile[] profiles = new Profile[count];
+        for (int i = 0; i < count; i++) {
+            String name = data.readUTF();
+            int size = data.readUnsignedShort();
+            List<ControllerAction> actions = new ArrayList<>(size);
+            for (int j = 0; j < size; j++) {
+                ControllerAction action = new ControllerAction();
+                action.setType(valueOf(TYPES, data.readUnsignedByte()));
+                action.setKey(data.readShort());
+                int button = data.readByte();
+                action.setButton(button >= 0 ? valueOf(BUTTONS, button) : null);
+                int joystick = data.readByte();
+                action.setJoystick(joystick >= 0 ? valueOf(JOYSTICKS, joystick) : null);
+                action.setAxisX(data.readByte());
+                action.setDirectionX(data.readByte());
+                action.setAxisY(data.readByte());
+                action.setDirectionY(data.readByte());
+                actions.add(action);
+            }
+            profiles[i] = new Profile(name, actions);
+        }
+        return new MappingProfiles(profiles, active);
+    }
+
+    private static int ordinal(Enum<?> value) {
+        return value != null ? value.ordinal() : -1;
+    }
+
+    private static <T> T valueOf(T[] values, int ordinal) throws IOException {
+        if (ordinal >= values.length) {
+            throw new IOException("Unknown value " + ordinal + " in mapping profile");
+        }
+        return values[ordinal];
+    }
+
+    private static List<ControllerAction> copy(List<ControllerAction> actions) {
+        List<ControllerAction> copies = new ArrayList<>(actions.size());
+        for (ControllerAction action : actions) {
+            ControllerAction copy = new ControllerAction();
+            copy.from(action);
+            copies.add(copy);
+        }
+        return copies;
+    }
+}
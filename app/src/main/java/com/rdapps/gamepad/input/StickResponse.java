@@ -0,0 +1,108 @@
+package com.rdapps.gamepad.input;
+
+/**
+ * Response curve of a stick: inner and outer deadzone, anti-deadzone and a power curve.
+ *
+ * <p>
+ * The curve is baked into a lookup table over the deflection when the response is created,
+ * applying it is a table read and, in radial mode, one square root. In radial mode the
+ * distance from the center goes through the curve and the direction is kept; in axial mode
+ * each axis goes through it on its own.
+ */
+public final class StickResponse {
+    private static final int LUT_SIZE = 256;
+
+    public enum Mode {
+        RADIAL,
+        AXIAL
+    }
+
+    public enum Preset {
+        LINEAR(Mode.RADIAL, 0.08f, 0.95f, 0, 1),
+        PRECISE(Mode.RADIAL, 0.08f, 0.95f, 0, 2),
+        FAST(Mode.RADIAL, 0.08f, 0.9f, 0, 0.6f),
+        ANTI_DEADZONE(Mode.RADIAL, 0.08f, 0.95f, 0.25f, 1),
+        AXIAL(Mode.AXIAL, 0.12f, 0.95f, 0, 1),
+        RAW(Mode.RADIAL, 0, 1, 0, 1);
+
+        private final Mode mode;
+        private final float innerDeadzone;
+        private final float outerDeadzone;
+        private final float antiDeadzone;
+        private final float exponent;
+
+        Preset(Mode mode, float innerDeadzone, float outerDeadzone, float antiDeadzone,
+               float exponent) {
+            this.mode = mode;
+            this.innerDeadzone = innerDeadzone;
+            this.outerDeadzone = outerDeadzone;
+            this.antiDeadzone = antiDeadzone;
+            this.exponent = exponent;
+        }
+
+        public StickResponse create() {
+            return new StickResponse(mode, innerDeadzone, outerDeadzone, antiDeadzone, exponent);
+        }
+    }
+
+    private final Mode mode;
+    private final float[] lut = new float[LUT_SIZE + 1];
+
+    /**
+     * @param innerDeadzone deflection below which the stick is centered, 0..1
+     * @param outerDeadzone deflection from which the stick is at full range, 0..1
+     * @param antiDeadzone  output right outside the inner deadzone, to skip the deadzone a
+     *                      game applies itself, 0..1
+     * @param exponent      curve between the deadzones, above 1 is finer around the center
+     */
+    public StickResponse(Mode mode, float innerDeadzone, float outerDeadzone,
+                         float antiDeadzone, float exponent) {
+        if (innerDeadzone < 0 || outerDeadzone > 1 || innerDeadzone >= outerDeadzone
+                || antiDeadzone < 0 || antiDeadzone >= 1 || exponent <= 0) {
+            throw new IllegalArgumentException("Invalid stick response " + innerDeadzone + "/"
+                    + outerDeadzone + "/" + antiDeadzone + "/" + exponent);
+        }
+        this.mode = mode;
+        for (int i = 0; i <= LUT_SIZE; i++) {
+            float deflection = (float) i / LUT_SIZE;
+            if (deflection <= innerDeadzone) {
+                lut[i] = 0;
+            } else {
+                float t = Math.min(1, (deflection - innerDeadzone)
+                        / (outerDeadzone - innerDeadzone));
+                lut[i] = antiDeadzone + (1 - antiDeadzone) * (float) Math.pow(t, exponent);
+            }
+        }
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * @param x   calibrated position, -1..1
+     * @param y   calibrated position, -1..1
+     * @param out x and y after the curve
+     */
+    public void apply(float x, float y, float[] out) {
+        if (mode == Mode.AXIAL) {
+            out[0] = Math.copySign(lookup(Math.abs(x)), x);
+            out[1] = Math.copySign(lookup(Math.abs(y)), y);
+            return;
+        }
+        float deflection = (float) Math.sqrt(x * x + y * y);
+        if (deflection == 0) {
+            out[0] = 0;
+            out[1] = 0;
+            return;
+        }
+        float scale = lookup(deflection) / deflection;
+        out[0] = x * scale;
+        out[1] = y * scale;
+    }
+
+    private float lookup(float deflection) {
+        int index = (int) (deflection * LUT_SIZE + 0.5f);
+        return lut[Math.min(index, LUT_SIZE)];
+    }
+}
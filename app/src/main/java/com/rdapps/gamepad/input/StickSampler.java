@@ -0,0 +1,173 @@
+package com.rdapps.gamepad.input;
+
+/**
+ * Timeline of the positions a stick went through between two reports.
+ *
+ * <p>
+ * Android batches joystick motion, one event can carry several historical samples. They are
+ * all added here with their event times and once per report {@link #sample(long, float[])}
+ * reduces the samples since the previous report to one value by the {@link Policy}, so a
+ * flick that starts and ends between two reports is not lost. Samples are kept in a fixed
+ * ring, when it is full the oldest ones are dropped.
+ *
+ * <p>
+ * Thread safe, samples are added on the UI thread and taken on the report thread.
+ */
+public final class StickSampler {
+    private static final int DEFAULT_CAPACITY = 64;
+
+    public enum Policy {
+        /**
+         * Newest sample, what the stick reported last.
+         */
+        LATEST,
+        /**
+         * Sample farthest from the center, keeps short flicks.
+         */
+        PEAK,
+        /**
+         * Average of the positions weighted by how long each was held.
+         */
+        AVERAGE
+    }
+
+    private final long[] times;
+    private final float[] xs;
+    private final float[] ys;
+    private int head = 0;
+    private int count = 0;
+
+    private volatile Policy policy = Policy.PEAK;
+
+    // Position before the current window and when the window started
+    private float carryX = 0;
+    private float carryY = 0;
+    private long windowStart = Long.MIN_VALUE;
+    // False while the last sampled value differs from the newest sample
+    private boolean settled = true;
+
+    public StickSampler() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public StickSampler(int capacity) {
+        times = new long[capacity];
+        xs = new float[capacity];
+        ys = new float[capacity];
+    }
+
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    public void setPolicy(Policy policy) {
+        this.policy = policy;
+    }
+
+    public synchronized void add(long timeMs, float x, float y) {
+        if (count == times.length) {
+            carryX = xs[head];
+            carryY = ys[head];
+            head = (head + 1) % times.length;
+            count--;
+        }
+        int index = (head + count) % times.length;
+        times[index] = timeMs;
+        xs[index] = x;
+        ys[index] = y;
+        count++;
+    }
+
+    /**
+     * Reduce the samples added since the last call and start a new window.
+     *
+     * @param out x and y of the sampled position
+     * @return false if nothing changed since the last call, out is not changed. A peak or an
+     *     average is followed by the newest sample on the next call, even without new samples.
+     */
+    public synchronized boolean sample(long nowMs, float[] out) {
+        if (count == 0) {
+            windowStart = nowMs;
+            if (settled) {
+                return false;
+            }
+            out[0] = carryX;
+            out[1] = carryY;
+            settled = true;
+            return true;
+        }
+        int last = (head + count - 1) % times.length;
+        switch (policy) {
+            case PEAK:
+                samplePeak(out);
+                break;
+            case AVERAGE:
+                sampleAverage(nowMs, out);
+                break;
+            default:
+                out[0] = xs[last];
+                out[1] = ys[last];
+        }
+        carryX = xs[last];
+        carryY = ys[last];
+        settled = Float.compare(out[0], carryX) == 0 && Float.compare(out[1], carryY) == 0;
+        head = 0;
+        count = 0;
+        windowStart = nowMs;
+        return true;
+    }
+
+    public synchronized void clear() {
+        head = 0;
+        count = 0;
+        carryX = 0;
+        carryY = 0;
+        windowStart = Long.MIN_VALUE;
+        settled = true;
+    }
+
+    private void samplePeak(float[] out) {
+        float peak = -1;
+        for (int i = 0; i < count; i++) {
+            int index = (head + i) % times.length;
+            float magnitude = xs[index] * xs[index] + ys[index] * ys[index];
+            // Later samples win ties, e.g. a stick held at the rim
+            if (magnitude >= peak) {
+                peak = magnitude;
+                out[0] = xs[index];
+                out[1] = ys[index];
+            }
+        }
+    }
+
+    private void sampleAverage(long nowMs, float[] out) {
+        long start = windowStart != Long.MIN_VALUE ? windowStart : times[head];
+        float x = carryX;
+        float y = carryY;
+        long time = start;
+        double sumX = 0;
+        double sumY = 0;
+        for (int i = 0; i < count; i++) {
+            int index = (head + i) % times.length;
+            // Samples that arrive late still count from the start of the window
+            long sampleTime = Math.max(times[index], start);
+            long held = Math.max(0, sampleTime - time);
+            sumX += x * held;
+            sumY += y * held;
+            time = Math.max(time, sampleTime);
+            x = xs[index];
+            y = ys[index];
+        }
+        long held = Math.max(0, nowMs - time);
+        sumX += x * held;
+        sumY += y * held;
+        long total = Math.max(time, nowMs) - start;
+        if (total <= 0) {
+            out[0] = x;
+            out[1] = y;
+        } else {
+            out[0] = (float) (sumX / total);
+            out[1] = (float) (sumY / total);
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package com.rdapps.gamepad.input;
+
+import android.graphics.Matrix;
+import android.graphics.RectF;
+import android.os.Trace;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewParent;
+import com.rdapps.gamepad.button.ButtonEnum;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Handles every touch of the on-screen controller at the root of its layout.
+ *
+ * <p>
+ * Each pointer is hit tested against a {@link TouchGrid} of the controls, built from their
+ * on-screen bounds whenever the layout changes, and owns the control it is on. A pointer on
+ * a button presses it and can slide over to the next button, releasing the first one; a
+ * button stays pressed while any pointer is on it. Buttons that change in one event are
+ * handed to the {@link Target} together, so a chord of fingers lands in one report. Controls
+ * that are not buttons, sticks and the sync button, get the touches of the pointer that went
+ * down on them as single pointer events in their own coordinates until it goes up.
+ *
+ * <p>
+ * Runs on the main thread.
+ */
+public class TouchDispatcher {
+    private static final int MAX_POINTERS = 32;
+    private static final int UNTRACKED = -2;
+
+    public interface Target {
+        /**
+         * Add the views of the on-screen controller that take touches.
+         */
+        void collectViews(List<View> views);
+
+        /**
+         * @return the button of a view, null if the view handles touches itself
+         */
+        ButtonEnum getButton(View view);
+
+        /**
+         * @param pressed   buttons pressed by the event, one bit per ButtonEnum ordinal
+         * @param released  buttons released by the event
+         * @param eventTime time of the event, in SystemClock.uptimeMillis()
+         */
+        void onButtonsChanged(int pressed, int released, long eventTime);
+    }
+
+    private final ViewGroup root;
+    private final Target target;
+    private final List<View> views = new ArrayList<>();
+    private final Matrix matrix = new Matrix();
+    private final RectF rect = new RectF();
+    private final float[] point = new float[2];
+
+    private TouchGrid grid;
+    private View[] regionViews = new View[0];
+    private ButtonEnum[] regionButtons = new ButtonEnum[0];
+    private Matrix[] regionInverses = new Matrix[0];
+    private boolean layoutChanged = true;
+
+    private final int[] pointerRegions = new int[MAX_POINTERS];
+    private final long[] pointerDownTimes = new long[MAX_POINTERS];
+    private final int[] buttonPointers = new int[ButtonEnum.values().length];
+    private int heldButtons = 0;
+
+    public TouchDispatcher(ViewGroup root, Target target) {
+        this.root = root;
+        this.target = target;
+        Arrays.fill(pointerRegions, UNTRACKED);
+        root.addOnLayoutChangeListener((v, left, top, right, bottom,
+                                        oldLeft, oldTop, oldRight, oldBottom) ->
+                layoutChanged = true);
+    }
+
+    /**
+     * Rebuild the grid on the next touch, e.g. after controls were shown or hidden.
+     */
+    public void invalidate() {
+        layoutChanged = true;
+    }
+
+    public boolean onTouchEvent(MotionEvent event) {
+        Trace.beginSection("JoyCon:touch");
+        try {
+            return dispatch(event);
+        } finally {
+            Trace.endSection();
+        }
+    }
+
+    private boolean dispatch(MotionEvent event) {
+        int before = heldButtons;
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                releaseStale();
+                // No pointer owns a region, so the regions can change
+                if (layoutChanged || Objects.isNull(grid)) {
+                    rebuild();
+                }
+                onPointerDown(event, event.getActionIndex());
+                break;
+            case MotionEvent.ACTION_POINTER_DOWN:
+                onPointerDown(event, event.getActionIndex());
+                break;
+            case MotionEvent.ACTION_MOVE:
+                for (int i = 0; i < event.getPointerCount(); i++) {
+                    onPointerMove(event, i);
+                }
+                break;
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_POINTER_UP:
+                onPointerUp(event, event.getActionIndex(), MotionEvent.ACTION_UP);
+                break;
+            case MotionEvent.ACTION_CANCEL:
+                for (int i = 0; i < event.getPointerCount(); i++) {
+                    onPointerUp(event, i, MotionEvent.ACTION_CANCEL);
+                }
+                break;
+            default:
+                return false;
+        }
+        int after = heldButtons;
+        if (before != after) {
+            target.onButtonsChanged(after & ~before, before & ~after, event.getEventTime());
+        }
+        return true;
+    }
+
+    private void onPointerDown(MotionEvent event, int index) {
+        int id = event.getPointerId(index);
+        if (id >= MAX_POINTERS) {
+            return;
+        }
+        int region = grid.hit(event.getX(index), event.getY(index));
+        pointerRegions[id] = region;
+        pointerDownTimes[id] = event.getEventTime();
+        if (region == TouchGrid.NONE) {
+            return;
+        }
+        if (Objects.nonNull(regionButtons[region])) {
+            press(region);
+        } else {
+            forward(event, index, region, MotionEvent.ACTION_DOWN);
+        }
+    }
+
+    private void onPointerMove(MotionEvent event, int index) {
+        int id = event.getPointerId(index);
+        if (id >= MAX_POINTERS || pointerRegions[id] == UNTRACKED) {
+            return;
+        }
+        int current = pointerRegions[id];
+        if (current != TouchGrid.NONE && Objects.isNull(regionButtons[current])) {
+            forward(event, index, current, MotionEvent.ACTION_MOVE);
+            return;
+        }
+        int region = grid.hit(event.getX(index), event.getY(index));
+        if (region != TouchGrid.NONE && Objects.isNull(regionButtons[region])) {
+            // Sliding onto a stick does not grab it
+            region = TouchGrid.NONE;
+        }
+        if (region == current) {
+            return;
+        }
+        if (current != TouchGrid.NONE) {
+            release(current);
+        }
+        if (region != TouchGrid.NONE) {
+            press(region);
+        }
+        pointerRegions[id] = region;
+    }
+
+    private void onPointerUp(MotionEvent event, int index, int action) {
+        int id = event.getPointerId(index);
+        if (id >= MAX_POINTERS || pointerRegions[id] == UNTRACKED) {
+            return;
+        }
+        int region = pointerRegions[id];
+        pointerRegions[id] = UNTRACKED;
+        if (region == TouchGrid.NONE) {
+            return;
+        }
+        if (Objects.nonNull(regionButtons[region])) {
+            release(region);
+        } else {
+            forward(event, index, region, action);
+        }
+    }
+
+    /**
+     * Release what pointers of a gesture that never saw its end still hold.
+     */
+    private void releaseStale() {
+        for (int id = 0; id < MAX_POINTERS; id++) {
+            int region = pointerRegions[id];
+            pointerRegions[id] = UNTRACKED;
+            if (region >= 0 && Objects.nonNull(regionButtons[region])) {
+                release(region);
+            }
+        }
+    }
+
+    private void press(int region) {
+        int button = regionButtons[region].ordinal();
+        if (buttonPointers[button]++ == 0) {
+            heldButtons |= 1 << button;
+        }
+    }
+
+    private void release(int region) {
+        int button = regionButtons[region].ordinal();
+        if (--buttonPointers[button] == 0) {
+            heldButtons &= ~(1 << button);
+        }
+    }
+
+    private void forward(MotionEvent event, int index, int region, int action) {
+        point[0] = event.getX(index);
+        point[1] = event.getY(index);
+        regionInverses[region].mapPoints(point);
+        MotionEvent forwarded = MotionEvent.obtain(pointerDownTimes[event.getPointerId(index)],
+                event.getEventTime(), action, point[0], point[1], event.getMetaState());
+        regionViews[region].dispatchTouchEvent(forwarded);
+        forwarded.recycle();
+    }
+
+    private void rebuild() {
+        layoutChanged = false;
+        views.clear();
+        target.collectViews(views);
+        TouchGrid.Builder builder = TouchGrid.builder(root.getWidth(), root.getHeight());
+        View[] newViews = new View[views.size()];
+        ButtonEnum[] newButtons = new ButtonEnum[views.size()];
+        Matrix[] newInverses = new Matrix[views.size()];
+        for (View view : views) {
+            if (!view.isShown() || view.getWidth() == 0 || view.getHeight() == 0
+                    || !getMatrixToRoot(view, matrix)) {
+                continue;
+            }
+            Matrix inverse = new Matrix();
+            if (!matrix.invert(inverse)) {
+                continue;
+            }
+            rect.set(0, 0, view.getWidth(), view.getHeight());
+            matrix.mapRect(rect);
+            int region = builder.add(rect.left, rect.top, rect.right, rect.bottom);
+            newViews[region] = view;
+            newButtons[region] = target.getButton(view);
+            newInverses[region] = inverse;
+        }
+        grid = builder.build();
+        regionViews = newViews;
+        regionButtons = newButtons;
+        regionInverses = newInverses;
+        views.clear();
+    }
+
+    /**
+     * Map from the coordinates of a view to the root, through the rotations of the layout.
+     *
+     * @return false if the view is not below the root
+     */
+    private boolean getMatrixToRoot(View view, Matrix out) {
+        out.reset();
+        View current = view;
+        while (current != root) {
+            out.postConcat(current.getMatrix());
+            out.postTranslate(current.getLeft(), current.getTop());
+            ViewParent parent = current.getParent();
+            if (!(parent instanceof View)) {
+                return false;
+            }
+            current = (View) parent;
+            out.postTranslate(-current.getScrollX(), -current.getScrollY());
+        }
+        return true;
+    }
+}
@@ -0,0 +1,140 @@
+package com.rdapps.gamepad.input;
+
+import java.util.Arrays;
+
+/**
+ * Rectangles of the on-screen controls bucketed into a uniform grid for hit tests.
+ *
+ * <p>
+ * Every cell lists the regions that overlap it, flattened into one index array, so a hit
+ * test looks at the few regions of one cell instead of walking the view tree. Where regions
+ * overlap the one whose center is closest wins, e.g. the corners of round buttons in square
+ * bounds. Built once per layout, immutable afterwards.
+ */
+public final class TouchGrid {
+    public static final int NONE = -1;
+
+    private static final int CELLS = 16;
+
+    private final float[] bounds;
+    private final int count;
+    private final float cellWidth;
+    private final float cellHeight;
+    private final int[] cellStarts;
+    private final int[] cellRegions;
+
+    private TouchGrid(float width, float height, float[] bounds, int count) {
+        this.bounds = bounds;
+        this.count = count;
+        this.cellWidth = Math.max(1, width / CELLS);
+        this.cellHeight = Math.max(1, height / CELLS);
+
+        int[] counts = new int[CELLS * CELLS];
+        for (int region = 0; region < count; region++) {
+            forEachCell(region, cell -> counts[cell]++);
+        }
+        cellStarts = new int[CELLS * CELLS + 1];
+        for (int cell = 0; cell < counts.length; cell++) {
+            cellStarts[cell + 1] = cellStarts[cell] + counts[cell];
+        }
+        cellRegions = new int[cellStarts[CELLS * CELLS]];
+        int[] fill = Arrays.copyOf(cellStarts, counts.length);
+        for (int region = 0; region < count; region++) {
+            int index = region;
+            forEachCell(region, cell -> cellRegions[fill[cell]++] = index);
+        }
+    }
+
+    public static Builder builder(float width, float height) {
+        return new Builder(width, height);
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @return the region at the point, {@link #NONE} if there is none
+     */
+    public int hit(float x, float y) {
+        int column = (int) (x / cellWidth);
+        int row = (int) (y / cellHeight);
+        if (x < 0 || y < 0 || column >= CELLS || row >= CELLS) {
+            return NONE;
+        }
+        int cell = row * CELLS + column;
+        int hit = NONE;
+        float best = Float.MAX_VALUE;
+        for (int i = cellStarts[cell]; i < cellStarts[cell + 1]; i++) {
+            int region = cellRegions[i];
+            int offset = region * 4;
+            float left = bounds[offset];
+            float top = bounds[offset + 1];
+            float right = bounds[offset + 2];
+            float bottom = bounds[offset + 3];
+            if (x < left || x >= right || y < top || y >= bottom) {
+                continue;
+            }
+            float dx = x - (left + right) / 2;
+            float dy = y - (top + bottom) / 2;
+            float distance = dx * dx + dy * dy;
+            if (distance < best) {
+                best = distance;
+                hit = region;
+            }
+        }
+        return hit;
+    }
+
+    private interface CellConsumer {
+        void accept(int cell);
+    }
+
+    private void forEachCell(int region, CellConsumer consumer) {
+        int offset = region * 4;
+        int firstColumn = clampCell(bounds[offset] / cellWidth);
+        int firstRow = clampCell(bounds[offset + 1] / cellHeight);
+        int lastColumn = clampCell(bounds[offset + 2] / cellWidth);
+        int lastRow = clampCell(bounds[offset + 3] / cellHeight);
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                consumer.accept(row * CELLS + column);
+            }
+        }
+    }
+
+    private static int clampCell(float cell) {
+        return Math.max(0, Math.min(CELLS - 1, (int) cell));
+    }
+
+    public static class Builder {
+        private final float width;
+        private final float height;
+        private float[] bounds = new float[4 * 32];
+        private int count = 0;
+
+        private Builder(float width, float height) {
+            this.width = width;
+            this.height = height;
+        }
+
+        /**
+         * @return index of the region
+         */
+        public int add(float left, float top, float right, float bottom) {
+            if (count * 4 == bounds.length) {
+                bounds = Arrays.copyOf(bounds, bounds.length * 2);
+            }
+            int offset = count * 4;
+            bounds[offset] = left;
+            bounds[offset + 1] = top;
+            bounds[offset + 2] = right;
+            bounds[offset + 3] = bottom;
+            return count++;
+        }
+
+        public TouchGrid build() {
+            return new TouchGrid(width, height, Arrays.copyOf(bounds, count * 4), count);
+        }
+    }
+}
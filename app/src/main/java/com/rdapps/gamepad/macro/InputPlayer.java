@@ -0,0 +1,128 @@
+package com.rdapps.gamepad.macro;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Plays a file written by {@link InputRecorder} back, one record per report.
+ *
+ * <p>
+ * The file is mapped into memory instead of read, {@link #next()} moves to the next record
+ * and the getters read it in place, so playback neither allocates nor blocks on reads the
+ * way a stream would. Records are played by report count, a recording plays frame for frame
+ * whatever the timing of the reports is.
+ *
+ * <p>
+ * Not thread safe, played on the report thread.
+ */
+public final class InputPlayer {
+    private final ByteBuffer records;
+    private final int packetRate;
+    private final boolean imu;
+    private final int recordSize;
+    private final int count;
+    private int index = -1;
+
+    public InputPlayer(File file) throws IOException {
+        try (FileInputStream in = new FileInputStream(file)) {
+            FileChannel channel = in.getChannel();
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size());
+            if (mapped.remaining() < InputRecorder.HEADER_SIZE) {
+                throw new IOException("Recording is too short");
+            }
+            int magic = mapped.getInt();
+            short version = mapped.getShort();
+            short flags = mapped.getShort();
+            if (!InputRecorder.isValid(magic, version)) {
+                throw new IOException("Unknown recording format");
+            }
+            this.packetRate = mapped.getInt();
+            this.imu = (flags & InputRecorder.FLAG_IMU) != 0;
+            this.recordSize = InputRecorder.getRecordSize(flags);
+            mapped.position(InputRecorder.HEADER_SIZE);
+            this.records = mapped.slice();
+            // A record cut short by a crash is dropped
+            this.count = records.remaining() / recordSize;
+        }
+    }
+
+    /**
+     * @return reports per second the file was recorded at
+     */
+    public int getPacketRate() {
+        return packetRate;
+    }
+
+    public boolean hasImu() {
+        return imu;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @return index of the current record, -1 before the first
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Move to the next record.
+     *
+     * @return false at the end of the recording
+     */
+    public boolean next() {
+        if (index + 1 >= count) {
+            index = count;
+            return false;
+        }
+        index++;
+        return true;
+    }
+
+    /**
+     * @return false before the first and after the last record
+     */
+    public boolean hasRecord() {
+        return index >= 0 && index < count;
+    }
+
+    public void rewind() {
+        index = -1;
+    }
+
+    /**
+     * @return pressed buttons of the current record, one bit per ButtonEnum ordinal
+     */
+    public int getButtons() {
+        return records.getInt(index * recordSize);
+    }
+
+    /**
+     * @param axis AxisEnum ordinal
+     */
+    public int getAxis(int axis) {
+        return records.get(index * recordSize + 4 + axis);
+    }
+
+    /**
+     * Copy the motion block of the current record, if the recording has one.
+     */
+    public void copyImu(byte[] report, int offset) {
+        if (!imu) {
+            return;
+        }
+        int position = index * recordSize + InputRecorder.STATE_SIZE;
+        for (int i = 0; i < InputRecorder.IMU_SIZE; i++) {
+            report[offset + i] = records.get(position + i);
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.rdapps.gamepad.macro;
+
+import android.os.Process;
+import com.rdapps.gamepad.util.PriorityThreadFactory;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Writes the controller state of every report to a file, one fixed size record per report.
+ *
+ * <p>
+ * The file starts with a 16 byte header: magic, version, flags and the packet rate it was
+ * recorded at. A record is the pressed buttons as an int, one bit per
+ * {@link com.rdapps.gamepad.button.ButtonEnum} ordinal, and the four stick axes as one byte
+ * each, followed by the 36 byte motion block of the report if it is recorded too. That is 8
+ * bytes a report, about 3.5 MB an hour at 120 reports a second. Records are collected in
+ * preallocated buffers; a full buffer is handed to a writer thread and the next free one is
+ * taken, so the report thread never waits for storage and recording allocates nothing per
+ * report. Only if the writer falls behind by all spare buffers is another one allocated.
+ *
+ * <p>
+ * The recording is written next to the file as a .tmp and renamed over it on close, so a
+ * player that has the previous recording mapped never sees the file shrink.
+ *
+ * <p>
+ * Thread safe, records are added on the report thread and the recorder is closed from
+ * anywhere; closing waits for the writer.
+ */
+public final class InputRecorder {
+    static final int MAGIC = 0x4A434952;
+    static final short VERSION = 1;
+    static final short FLAG_IMU = 1;
+    static final int HEADER_SIZE = 16;
+    static final int STATE_SIZE = 8;
+    static final int IMU_SIZE = 36;
+
+    private static final int BUFFERED_RECORDS = 256;
+    private static final int BUFFERS = 4;
+
+    private static final ExecutorService WRITER_EXECUTOR =
+            Executors.newSingleThreadExecutor(
+                    new PriorityThreadFactory(Process.THREAD_PRIORITY_BACKGROUND,
+                            true,
+                            "Input Recorder Thread",
+                            false)
+            );
+
+    private final File file;
+    private final File tmpFile;
+    private final FileChannel channel;
+    private final BlockingQueue<ByteBuffer> free = new ArrayBlockingQueue<>(BUFFERS);
+    private final int bufferSize;
+    private final boolean imu;
+    private ByteBuffer buffer;
+    private int records = 0;
+    private boolean closed = false;
+    // First error of the writer thread, reported by the next record
+    private volatile IOException failure;
+
+    /**
+     * @param imu        record the motion block of the reports as well
+     * @param packetRate reports per second, kept for tools that read the file
+     */
+    public InputRecorder(File file, boolean imu, int packetRate) throws IOException {
+        this.imu = imu;
+        this.bufferSize = BUFFERED_RECORDS * (STATE_SIZE + (imu ? IMU_SIZE : 0));
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+        for (int i = 1; i < BUFFERS; i++) {
+            free.add(ByteBuffer.allocateDirect(bufferSize));
+        }
+        this.file = file;
+        this.tmpFile = new File(file.getPath() + ".tmp");
+        FileOutputStream out = new FileOutputStream(tmpFile);
+        this.channel = out.getChannel();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putShort(VERSION);
+        header.putShort(imu ? FLAG_IMU : 0);
+        header.putInt(packetRate);
+        header.putInt(0);
+        header.flip();
+        try {
+            write(header);
+        } catch (IOException e) {
+            out.close();
+            tmpFile.delete();
+            throw e;
+        }
+    }
+
+    public boolean isImu() {
+        return imu;
+    }
+
+    /**
+     * @return reports recorded so far
+     */
+    public synchronized int getRecords() {
+        return records;
+    }
+
+    /**
+     * Add the state of one report.
+     *
+     * @param buttons   pressed buttons, one bit per ButtonEnum ordinal
+     * @param report    report holding the motion block, ignored if motion is not recorded
+     * @param imuOffset offset of the motion block in the report
+     */
+    public synchronized void record(int buttons, int leftX, int leftY, int rightX, int rightY,
+                                    byte[] report, int imuOffset) throws IOException {
+        if (closed) {
+            return;
+        }
+        IOException error = failure;
+        if (error != null) {
+            throw error;
+        }
+        buffer.putInt(buttons);
+        buffer.put((byte) leftX);
+        buffer.put((byte) leftY);
+        buffer.put((byte) rightX);
+        buffer.put((byte) rightY);
+        if (imu) {
+            buffer.put(report, imuOffset, IMU_SIZE);
+        }
+        records++;
+        if (!buffer.hasRemaining()) {
+            handOff();
+            ByteBuffer next = free.poll();
+            buffer = next != null ? next : ByteBuffer.allocateDirect(bufferSize);
+        }
+    }
+
+    /**
+     * Write what is buffered and close the file, after the writer caught up, then move it over
+     * the target file.
+     */
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            handOff();
+        }
+        try {
+            WRITER_EXECUTOR.submit(() -> {
+                channel.close();
+                return null;
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            channel.close();
+            throw new IOException("Interrupted while closing", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Recording could not be closed", e.getCause());
+        } catch (RejectedExecutionException e) {
+            channel.close();
+            throw new IOException("Recording could not be closed", e);
+        }
+        IOException error = failure;
+        if (error != null) {
+            tmpFile.delete();
+            throw error;
+        }
+        if (!tmpFile.renameTo(file)) {
+            throw new IOException("Recording could not be moved to " + file);
+        }
+    }
+
+    // Called with the lock held
+    private void handOff() throws IOException {
+        ByteBuffer full = buffer;
+        full.flip();
+        try {
+            WRITER_EXECUTOR.execute(() -> writeBuffer(full));
+        } catch (RejectedExecutionException e) {
+            throw new IOException("Recorder writer rejected", e);
+        }
+    }
+
+    private void writeBuffer(ByteBuffer full) {
+        try {
+            if (failure == null) {
+                write(full);
+            }
+        } catch (IOException e) {
+            failure = e;
+        }
+        full.clear();
+        free.offer(full);
+    }
+
+    private void write(ByteBuffer data) throws IOException {
+        while (data.hasRemaining()) {
+            channel.write(data);
+        }
+    }
+
+    static boolean isValid(int magic, short version) {
+        return magic == MAGIC && version == VERSION;
+    }
+
+    static int getRecordSize(short flags) {
+        return STATE_SIZE + ((flags & FLAG_IMU) != 0 ? IMU_SIZE : 0);
+    }
+}
@@ -0,0 +1,142 @@
+package com.rdapps.gamepad.macro;
+
+import com.rdapps.gamepad.button.ButtonEnum;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Plays macros and turbo buttons in step with the reports the console receives.
+ *
+ * <p>
+ * {@link #tick(int)} runs once per report on the report thread and works out which buttons
+ * the report has to show pressed or released on top of the live state, timing is counted in
+ * reports instead of wall clock so a step of 3 frames is exactly 3 reports. A turbo button
+ * that is held is pressed for the first half of every period of reports, starting with the
+ * report it was pressed for; at 60 reports per second a period of 4 is 15 presses a second.
+ * The same input always gives the same masks and a tick allocates nothing.
+ *
+ * <p>
+ * Macros and turbo are set from any thread and take effect on the next tick.
+ */
+public final class MacroEngine {
+    private static final int BUTTON_COUNT = ButtonEnum.values().length;
+    private static final MacroProgram STOP = MacroProgram.builder().pause(1).build();
+
+    private final AtomicReference<MacroProgram> request = new AtomicReference<>();
+    private volatile int[] turboPeriods = new int[BUTTON_COUNT];
+    private volatile boolean playing = false;
+
+    // Report thread only
+    private final int[] turboFrames = new int[BUTTON_COUNT];
+    private MacroProgram program;
+    private int step;
+    private int stepFrame;
+    private int pressMask;
+    private int releaseMask;
+
+    /**
+     * Start a macro on the next report, replacing the one playing.
+     */
+    public void play(MacroProgram program) {
+        request.set(Objects.requireNonNull(program));
+        playing = true;
+    }
+
+    public void stop() {
+        request.set(STOP);
+        playing = false;
+    }
+
+    /**
+     * @return true from {@link #play(MacroProgram)} until the macro ended or was stopped
+     */
+    public boolean isPlaying() {
+        return playing;
+    }
+
+    /**
+     * @param periodFrames reports per press while the button is held, at least 2, 0 turns
+     *                     turbo off for the button
+     */
+    public synchronized void setTurbo(ButtonEnum button, int periodFrames) {
+        if (periodFrames != 0 && periodFrames < 2) {
+            throw new IllegalArgumentException("Turbo period must be at least 2 frames: "
+                    + periodFrames);
+        }
+        int[] periods = Arrays.copyOf(turboPeriods, BUTTON_COUNT);
+        periods[button.ordinal()] = periodFrames;
+        turboPeriods = periods;
+    }
+
+    public int getTurbo(ButtonEnum button) {
+        return turboPeriods[button.ordinal()];
+    }
+
+    public synchronized void clearTurbo() {
+        turboPeriods = new int[BUTTON_COUNT];
+    }
+
+    /**
+     * Advance one report.
+     *
+     * @param heldButtons buttons held in the live state, one bit per {@link ButtonEnum} ordinal
+     */
+    public void tick(int heldButtons) {
+        MacroProgram requested = request.getAndSet(null);
+        if (Objects.nonNull(requested)) {
+            program = requested != STOP ? requested : null;
+            step = 0;
+            stepFrame = 0;
+        }
+
+        int press = 0;
+        int release = 0;
+        int[] periods = turboPeriods;
+        for (int i = 0; i < BUTTON_COUNT; i++) {
+            int period = periods[i];
+            if (period == 0 || (heldButtons & (1 << i)) == 0) {
+                turboFrames[i] = 0;
+                continue;
+            }
+            if (turboFrames[i] >= (period + 1) / 2) {
+                release |= 1 << i;
+            }
+            turboFrames[i] = (turboFrames[i] + 1) % period;
+        }
+
+        if (Objects.nonNull(program)) {
+            int stepMask = program.getStepMask(step);
+            press = stepMask;
+            release = (release | program.getButtons()) & ~stepMask;
+            if (++stepFrame >= program.getStepFrames(step)) {
+                stepFrame = 0;
+                if (++step >= program.getStepCount()) {
+                    step = 0;
+                    if (!program.isLoop()) {
+                        program = null;
+                        if (Objects.isNull(request.get())) {
+                            playing = false;
+                        }
+                    }
+                }
+            }
+        }
+        pressMask = press;
+        releaseMask = release;
+    }
+
+    /**
+     * @return buttons the current report shows pressed whatever the live state is
+     */
+    public int getPressMask() {
+        return pressMask;
+    }
+
+    /**
+     * @return buttons the current report shows released whatever the live state is
+     */
+    public int getReleaseMask() {
+        return releaseMask;
+    }
+}
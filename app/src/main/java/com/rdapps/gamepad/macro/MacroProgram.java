@@ -0,0 +1,125 @@
+package com.rdapps.gamepad.macro;
+
+import com.rdapps.gamepad.button.ButtonEnum;
+import java.util.Arrays;
+
+/**
+ * Compiled button sequence, timed in reports.
+ *
+ * <p>
+ * Each step holds a set of buttons, one bit per {@link ButtonEnum} ordinal, for a number of
+ * reports. Steps are packed into one int array as mask and frame count pairs, so the
+ * {@link MacroEngine} walks it with two array reads per report. Buttons used by any step are
+ * held up by the macro in the steps that do not press them.
+ */
+public final class MacroProgram {
+    private final int[] steps;
+    private final int buttons;
+    private final boolean loop;
+
+    private MacroProgram(int[] steps, boolean loop) {
+        int mask = 0;
+        for (int i = 0; i < steps.length; i += 2) {
+            mask |= steps[i];
+        }
+        this.steps = steps;
+        this.buttons = mask;
+        this.loop = loop;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static int mask(ButtonEnum... buttons) {
+        int mask = 0;
+        for (ButtonEnum button : buttons) {
+            mask |= 1 << button.ordinal();
+        }
+        return mask;
+    }
+
+    public int getStepCount() {
+        return steps.length / 2;
+    }
+
+    public int getStepMask(int step) {
+        return steps[step * 2];
+    }
+
+    public int getStepFrames(int step) {
+        return steps[step * 2 + 1];
+    }
+
+    /**
+     * @return every button a step presses
+     */
+    public int getButtons() {
+        return buttons;
+    }
+
+    public boolean isLoop() {
+        return loop;
+    }
+
+    /**
+     * @return reports one pass through the steps takes
+     */
+    public int getFrames() {
+        int frames = 0;
+        for (int i = 1; i < steps.length; i += 2) {
+            frames += steps[i];
+        }
+        return frames;
+    }
+
+    public static class Builder {
+        private int[] steps = new int[16];
+        private int size = 0;
+        private boolean loop = false;
+
+        private Builder() {
+        }
+
+        /**
+         * Hold the buttons, and release every other button of the macro, for some reports.
+         */
+        public Builder hold(int frames, ButtonEnum... buttons) {
+            return step(mask(buttons), frames);
+        }
+
+        /**
+         * Release every button of the macro for some reports.
+         */
+        public Builder pause(int frames) {
+            return step(0, frames);
+        }
+
+        public Builder step(int mask, int frames) {
+            if (frames <= 0) {
+                throw new IllegalArgumentException("Step frames must be positive: " + frames);
+            }
+            if (size == steps.length) {
+                steps = Arrays.copyOf(steps, size * 2);
+            }
+            steps[size++] = mask;
+            steps[size++] = frames;
+            return this;
+        }
+
+        /**
+         * Start over after the last step until the macro is stopped.
+         */
+        public Builder loop() {
+            this.loop = true;
+            return this;
+        }
+
+        public MacroProgram build() {
+            if (size == 0) {
+                throw new IllegalStateException("Macro has no steps");
+            }
+            return new MacroProgram(Arrays.copyOf(steps, size), loop);
+        }
+    }
+}
@@ -1,25 +1,88 @@
 package com.rdapps.gamepad.memory;
 
+import android.graphics.Color;
 import com.rdapps.gamepad.util.ByteUtils;
+import java.io.IOException;
+import java.util.List;
 
 public class ControllerMemory implements SpiMemory {
-    private final SpiMemory delegate;
+    private final ProfileSpiMemory delegate;
+    private final ProvisionedSpiMemory image;
+    private volatile ChangeListener changeListener;
+
+    /**
+     * Notified after every write, and for the whole image when the profile changes.
+     */
+    public interface ChangeListener {
+        void onSpiChanged(int location, int length);
+    }
 
     private static final int BODY_LOCATION = 0x6050;
     private static final int BUTTON_LOCATION = 0x6053;
 
-    public ControllerMemory(SpiMemory delegate) {
+    public ControllerMemory(ProfileSpiMemory delegate, ProvisionedSpiMemory image) {
         this.delegate = delegate;
+        this.image = image;
+    }
+
+    /**
+     * Run once the image on disk replaces the bundled resource, immediately if it already did.
+     */
+    public void whenImageReady(Runnable callback) {
+        image.addOnProvisioned(callback);
+    }
+
+    public void setChangeListener(ChangeListener changeListener) {
+        this.changeListener = changeListener;
+    }
+
+    /**
+     * Tell the listener that the whole image may have changed.
+     */
+    public void invalidate() {
+        notifyChanged(0, Integer.MAX_VALUE);
+    }
+
+    private void notifyChanged(int location, int length) {
+        ChangeListener listener = changeListener;
+        if (listener != null) {
+            listener.onSpiChanged(location, length);
+        }
+    }
+
+    public List<String> listProfiles() {
+        return delegate.listProfiles();
+    }
+
+    public void createProfile(String name) throws IOException {
+        delegate.createProfile(name);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the profile does not exist
+     */
+    public void activateProfile(String name) {
+        delegate.activateProfile(name);
+        notifyChanged(0, Integer.MAX_VALUE);
+    }
+
+    public String getActiveProfile() {
+        return delegate.getActiveProfile();
     }
 
     public int getBodyColor() {
-        byte[] read = read(BODY_LOCATION, 3);
-        return ByteUtils.byteArrayToColor(read);
+        return readColor(BODY_LOCATION);
     }
 
     public int getButtonColor() {
-        byte[] read = read(BUTTON_LOCATION, 3);
-        return ByteUtils.byteArrayToColor(read);
+        return readColor(BUTTON_LOCATION);
+    }
+
+    private int readColor(int location) {
+        return Color.rgb(
+                readByte(location) & 0xFF,
+                readByte(location + 1) & 0xFF,
+                readByte(location + 2) & 0xFF);
     }
 
     public void setBodyColor(int color) {
@@ -37,8 +100,29 @@ public class ControllerMemory implements SpiMemory {
         return delegate.read(location, length);
     }
 
+    @Override
+    public void read(int location, byte[] dst, int off, int len) {
+        delegate.read(location, dst, off, len);
+    }
+
+    @Override
+    public byte readByte(int location) {
+        return delegate.readByte(location);
+    }
+
+    @Override
+    public short readShortLE(int location) {
+        return delegate.readShortLE(location);
+    }
+
     @Override
     public void write(int location, byte[] data) {
         delegate.write(location, data);
+        notifyChanged(location, data.length);
+    }
+
+    @Override
+    public void flush() {
+        delegate.flush();
     }
 }
@@ -0,0 +1,45 @@
+package com.rdapps.gamepad.memory;
+
+import android.content.Context;
+import com.rdapps.gamepad.protocol.ControllerType;
+import java.io.File;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * One SPI memory stack per controller type for the whole process.
+ *
+ * <p>
+ * The running controller and the settings screen share it, so every write goes through the
+ * same journal and reaches the change listener of the controller, whichever screen made it.
+ */
+public final class ControllerMemoryStore {
+    private static final Map<ControllerType, ControllerMemory> MEMORIES =
+            new EnumMap<>(ControllerType.class);
+
+    private ControllerMemoryStore() {
+    }
+
+    public static synchronized ControllerMemory get(Context context, ControllerType type) {
+        ControllerMemory memory = MEMORIES.get(type);
+        if (memory == null) {
+            memory = create(context.getApplicationContext(), type);
+            MEMORIES.put(type, memory);
+        }
+        return memory;
+    }
+
+    private static ControllerMemory create(Context context, ControllerType type) {
+        String name = type.getBtName();
+        // The image is copied in the background, reads use the bundled resource until then
+        ProvisionedSpiMemory image =
+                new ProvisionedSpiMemory(context, name, type.getMemoryResource());
+        // Writes from the console or the UI go through the journal, never straight to disk
+        File journalFile = new File(context.getFilesDir(), name + ".journal");
+        JournaledSpiMemory memory = new JournaledSpiMemory(image, journalFile, true);
+        // Writes made before the image was on disk are only in the journal until then
+        image.addOnProvisioned(memory::scheduleCompaction);
+        return new ControllerMemory(
+                new ProfileSpiMemory(memory, context.getFilesDir(), name), image);
+    }
+}
@@ -1,12 +1,38 @@
 package com.rdapps.gamepad.memory;
 
+import java.util.Arrays;
+
 public class DummySpiMemory implements SpiMemory {
     @Override
     public byte[] read(int location, int length) {
         return new byte[length];
     }
 
+    @Override
+    public void read(int location, byte[] dst, int off, int len) {
+        Arrays.fill(dst, off, off + len, (byte) 0);
+    }
+
+    @Override
+    public byte readByte(int location) {
+        return 0;
+    }
+
+    @Override
+    public short readShortLE(int location) {
+        return 0;
+    }
+
     @Override
     public void write(int location, byte[] data) {
     }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public boolean isPersistent() {
+        return false;
+    }
 }
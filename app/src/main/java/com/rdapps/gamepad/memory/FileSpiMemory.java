@@ -22,8 +22,32 @@ public class FileSpiMemory implements SpiMemory {
         return Arrays.copyOfRange(bytes, location, location + length);
     }
 
+    @Override
+    public void read(int location, byte[] dst, int off, int len) {
+        System.arraycopy(bytes, location, dst, off, len);
+    }
+
+    @Override
+    public byte readByte(int location) {
+        return bytes[location];
+    }
+
+    @Override
+    public short readShortLE(int location) {
+        return (short) ((bytes[location] & 0xFF) | (bytes[location + 1] << 8));
+    }
+
     @Override
     public void write(int location, byte[] data) {
         System.arraycopy(data, 0, bytes, location, data.length);
     }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public boolean isPersistent() {
+        return false;
+    }
 }
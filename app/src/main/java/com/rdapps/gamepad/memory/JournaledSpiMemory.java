@@ -0,0 +1,204 @@
+package com.rdapps.gamepad.memory;
+
+import static com.rdapps.gamepad.log.JoyConLog.log;
+
+import android.os.Process;
+import com.rdapps.gamepad.util.PriorityThreadFactory;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Write-behind journal in front of an SPI image.
+ *
+ * <p>
+ * Writes land in an in-memory {@link SpiOverlay} and are visible to reads immediately. A
+ * background thread appends them to a {@link SpiJournal} and, a little later, compacts the
+ * overlay into the image and flushes it before the journal is emptied. The journal is
+ * replayed on construction, so writes survive a crash between append and compaction.
+ * Callers, including the BT thread, never wait for storage.
+ *
+ * <p>
+ * When the image is not persistent (the heap copy of the raw resource, or an image still
+ * being provisioned) the overlay is not folded into it; the journal is rewritten as one
+ * record per range instead, so writes made by the console are kept across sessions. The
+ * journal is only emptied once the image holds the writes on storage.
+ */
+public class JournaledSpiMemory implements SpiMemory {
+    private static final String TAG = JournaledSpiMemory.class.getName();
+
+    private static final long COMPACT_DELAY_MS = 2000;
+
+    private static final ScheduledExecutorService JOURNAL_EXECUTOR =
+            Executors.newSingleThreadScheduledExecutor(
+                    new PriorityThreadFactory(Process.THREAD_PRIORITY_BACKGROUND,
+                            true,
+                            "SPI Journal Thread",
+                            false)
+            );
+
+    private final SpiMemory image;
+    private final SpiJournal journal;
+    private final boolean persistentImage;
+    private final SpiOverlay overlay = new SpiOverlay();
+    private final AtomicBoolean compactPending = new AtomicBoolean(false);
+    // Lets reads skip the overlay lock in the common case of no pending writes
+    private volatile boolean overlayEmpty;
+
+    public JournaledSpiMemory(SpiMemory image, File journalFile, boolean persistentImage) {
+        this.image = image;
+        this.journal = new SpiJournal(journalFile);
+        this.persistentImage = persistentImage;
+        try {
+            int records = journal.replay(overlay);
+            if (records > 0) {
+                log(TAG, "Replayed " + records + " SPI writes");
+            }
+        } catch (IOException e) {
+            log(TAG, "Journal replay failed.", e);
+        }
+        overlayEmpty = overlay.isEmpty();
+        if (!overlayEmpty) {
+            scheduleCompaction();
+        }
+    }
+
+    @Override
+    public byte[] read(int location, int length) {
+        byte[] result = new byte[length];
+        read(location, result, 0, length);
+        return result;
+    }
+
+    @Override
+    public void read(int location, byte[] dst, int off, int len) {
+        image.read(location, dst, off, len);
+        if (!overlayEmpty) {
+            synchronized (overlay) {
+                overlay.apply(location, dst, off, len);
+            }
+        }
+    }
+
+    @Override
+    public byte readByte(int location) {
+        if (!overlayEmpty) {
+            int value;
+            synchronized (overlay) {
+                value = overlay.get(location);
+            }
+            if (value >= 0) {
+                return (byte) value;
+            }
+        }
+        return image.readByte(location);
+    }
+
+    @Override
+    public short readShortLE(int location) {
+        if (overlayEmpty) {
+            return image.readShortLE(location);
+        }
+        return (short) ((readByte(location) & 0xFF) | (readByte(location + 1) << 8));
+    }
+
+    @Override
+    public void write(int location, byte[] data) {
+        byte[] copy = data.clone();
+        synchronized (overlay) {
+            overlay.put(location, copy);
+            overlayEmpty = false;
+        }
+        execute(() -> append(location, copy));
+        scheduleCompaction();
+    }
+
+    /**
+     * Compact now and wait for the image to be durable.
+     *
+     * <p>
+     * Compaction runs on the journal thread, behind the appends already queued, so a flush
+     * never races a scheduled compaction or writes the image before the journal has the data.
+     */
+    @Override
+    public void flush() {
+        try {
+            JOURNAL_EXECUTOR.submit(this::compact).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log(TAG, "Flush interrupted.", e);
+        } catch (ExecutionException e) {
+            log(TAG, "Flush failed.", e);
+        } catch (RejectedExecutionException e) {
+            log(TAG, "Executor Rejected", e);
+        }
+    }
+
+    private void append(int location, byte[] data) {
+        try {
+            journal.append(location, data);
+        } catch (IOException e) {
+            log(TAG, "Journal append failed.", e);
+        }
+    }
+
+    /**
+     * Compact a little later, e.g. once the image became persistent.
+     */
+    public void scheduleCompaction() {
+        if (compactPending.compareAndSet(false, true)) {
+            try {
+                JOURNAL_EXECUTOR.schedule(this::compact, COMPACT_DELAY_MS, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                compactPending.set(false);
+                log(TAG, "Executor Rejected", e);
+            }
+        }
+    }
+
+    private synchronized void compact() {
+        compactPending.set(false);
+        SpiOverlay snapshot;
+        synchronized (overlay) {
+            if (overlay.isEmpty()) {
+                return;
+            }
+            snapshot = overlay.snapshot();
+        }
+        try {
+            if (!persistentImage || !image.isPersistent()) {
+                journal.rewrite(snapshot);
+                return;
+            }
+            for (int i = 0; i < snapshot.getRangeCount(); i++) {
+                SpiOverlay.Range range = snapshot.getRange(i);
+                image.write(range.start, range.data);
+            }
+            image.flush();
+            synchronized (overlay) {
+                if (overlay.getVersion() != snapshot.getVersion()) {
+                    // Written meanwhile, the next compaction picks it up
+                    return;
+                }
+                overlay.clear();
+                overlayEmpty = true;
+            }
+            journal.reset();
+        } catch (IOException e) {
+            log(TAG, "Journal compaction failed.", e);
+        }
+    }
+
+    private void execute(Runnable runnable) {
+        try {
+            JOURNAL_EXECUTOR.execute(runnable);
+        } catch (RejectedExecutionException e) {
+            log(TAG, "Executor Rejected", e);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.rdapps.gamepad.memory;
+
+import static com.rdapps.gamepad.log.JoyConLog.log;
+
+import android.content.Context;
+import android.os.Process;
+import com.rdapps.gamepad.util.PriorityThreadFactory;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * SPI flash image mapped into memory.
+ *
+ * <p>
+ * Reads and writes use absolute positions on the mapping, so there is no shared file pointer
+ * to seek and reads need no lock. Writes land in the page cache immediately and are forced to
+ * storage in batches, at most once per {@link #FORCE_DELAY_MS}.
+ */
+public class MappedSpiMemory implements SpiMemory {
+    private static final String TAG = MappedSpiMemory.class.getName();
+
+    private static final long FORCE_DELAY_MS = 500;
+
+    private final MappedByteBuffer buffer;
+    private final int size;
+    private final AtomicBoolean forcePending = new AtomicBoolean(false);
+
+    // Shared by all mapped images, flushing is rare and never urgent
+    private static final ScheduledExecutorService FORCE_EXECUTOR =
+            Executors.newSingleThreadScheduledExecutor(
+                    new PriorityThreadFactory(Process.THREAD_PRIORITY_BACKGROUND,
+                            true,
+                            "SPI Flush Thread",
+                            false)
+            );
+
+    public MappedSpiMemory(Context context, String name, int rawResource) throws IOException {
+        this(SpiImageProvisioner.provision(context, name, rawResource));
+    }
+
+    public MappedSpiMemory(File file) throws IOException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+             FileChannel channel = randomAccessFile.getChannel()) {
+            // The mapping stays valid after the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        }
+        size = buffer.capacity();
+    }
+
+    @Override
+    public byte[] read(int location, int length) {
+        byte[] result = new byte[length];
+        read(location, result, 0, length);
+        return result;
+    }
+
+    @Override
+    public void read(int location, byte[] dst, int off, int len) {
+        if (location < 0 || location + len > size) {
+            log(TAG, "Read out of range: " + location + " " + len);
+            return;
+        }
+        for (int i = 0; i < len; i++) {
+            dst[off + i] = buffer.get(location + i);
+        }
+    }
+
+    @Override
+    public byte readByte(int location) {
+        if (location < 0 || location + 1 > size) {
+            log(TAG, "Read out of range: " + location + " 1");
+            return 0;
+        }
+        return buffer.get(location);
+    }
+
+    @Override
+    public short readShortLE(int location) {
+        if (location < 0 || location + 2 > size) {
+            log(TAG, "Read out of range: " + location + " 2");
+            return 0;
+        }
+        return (short) ((buffer.get(location) & 0xFF) | (buffer.get(location + 1) << 8));
+    }
+
+    @Override
+    public void write(int location, byte[] data) {
+        if (location < 0 || location + data.length > size) {
+            log(TAG, "Write out of range: " + location + " " + data.length);
+            return;
+        }
+        for (int i = 0; i < data.length; i++) {
+            buffer.put(location + i, data[i]);
+        }
+        scheduleForce();
+    }
+
+    private void scheduleForce() {
+        if (forcePending.compareAndSet(false, true)) {
+            FORCE_EXECUTOR.schedule(this::force, FORCE_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Write dirty pages of the mapping to storage.
+     */
+    public void force() {
+        forcePending.set(false);
+        buffer.force();
+    }
+
+    @Override
+    public void flush() {
+        force();
+    }
+}
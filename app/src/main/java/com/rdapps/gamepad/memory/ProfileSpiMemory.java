@@ -0,0 +1,160 @@
+package com.rdapps.gamepad.memory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Copy-on-write controller identities on one SPI image.
+ *
+ * <p>
+ * The default profile is the image itself. Every other profile is a {@link JournaledSpiMemory}
+ * over the image that never folds its writes back: reads hit the profile's sparse overlay
+ * first and the image second, writes only touch the overlay and its journal file. Profiles
+ * are loaded once, after that activating one is a single reference swap.
+ *
+ * <p>
+ * A profile is a snapshot of the image taken when it was created. Before the default profile
+ * writes a range, every other profile copies what it currently sees there into its own
+ * overlay, so the write does not show through.
+ */
+public class ProfileSpiMemory implements SpiMemory {
+    public static final String DEFAULT_PROFILE = "default";
+
+    private static final String SUFFIX = ".profile";
+    private static final Pattern VALID_NAME = Pattern.compile("[A-Za-z0-9_-]{1,32}");
+
+    private final SpiMemory image;
+    private final File directory;
+    private final String prefix;
+    private final Map<String, SpiMemory> profiles = new ConcurrentHashMap<>();
+
+    private boolean allLoaded;
+    private volatile SpiMemory active;
+    private volatile String activeProfile = DEFAULT_PROFILE;
+
+    /**
+     * @param image     the controller image, also the default profile
+     * @param directory where profile overlays are kept
+     * @param prefix    file name prefix, one per controller type
+     */
+    public ProfileSpiMemory(SpiMemory image, File directory, String prefix) {
+        this.image = image;
+        this.directory = directory;
+        this.prefix = prefix + ".";
+        this.active = image;
+        profiles.put(DEFAULT_PROFILE, image);
+    }
+
+    public List<String> listProfiles() {
+        List<String> names = new ArrayList<>();
+        names.add(DEFAULT_PROFILE);
+        File[] files = directory.listFiles();
+        if (Objects.nonNull(files)) {
+            for (File file : files) {
+                String name = file.getName();
+                if (name.startsWith(prefix) && name.endsWith(SUFFIX)) {
+                    names.add(name.substring(prefix.length(), name.length() - SUFFIX.length()));
+                }
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Create an empty profile, identical to the image until it is written to.
+     */
+    public synchronized void createProfile(String name) throws IOException {
+        checkName(name);
+        File file = profileFile(name);
+        if (!file.exists() && !file.createNewFile()) {
+            throw new IOException("Profile could not be created: " + name);
+        }
+        // Loaded now, so later writes of the default profile are kept out of it
+        profiles.computeIfAbsent(name, this::loadProfile);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the profile does not exist
+     */
+    public synchronized void activateProfile(String name) {
+        SpiMemory profile = profiles.computeIfAbsent(name, this::loadProfile);
+        active = profile;
+        activeProfile = name;
+    }
+
+    public String getActiveProfile() {
+        return activeProfile;
+    }
+
+    private SpiMemory loadProfile(String name) {
+        checkName(name);
+        File file = profileFile(name);
+        if (!file.exists()) {
+            throw new IllegalArgumentException("Unknown profile: " + name);
+        }
+        return new JournaledSpiMemory(image, file, false);
+    }
+
+    private File profileFile(String name) {
+        return new File(directory, prefix + name + SUFFIX);
+    }
+
+    private static void checkName(String name) {
+        if (DEFAULT_PROFILE.equals(name) || !VALID_NAME.matcher(name).matches()) {
+            throw new IllegalArgumentException("Invalid profile name: " + name);
+        }
+    }
+
+    @Override
+    public byte[] read(int location, int length) {
+        return active.read(location, length);
+    }
+
+    @Override
+    public void read(int location, byte[] dst, int off, int len) {
+        active.read(location, dst, off, len);
+    }
+
+    @Override
+    public byte readByte(int location) {
+        return active.readByte(location);
+    }
+
+    @Override
+    public short readShortLE(int location) {
+        return active.readShortLE(location);
+    }
+
+    @Override
+    public synchronized void write(int location, byte[] data) {
+        if (active == image) {
+            preserveProfiles(location, data.length);
+        }
+        active.write(location, data);
+    }
+
+    private void preserveProfiles(int location, int length) {
+        if (!allLoaded) {
+            for (String name : listProfiles()) {
+                profiles.computeIfAbsent(name, this::loadProfile);
+            }
+            allLoaded = true;
+        }
+        for (SpiMemory profile : profiles.values()) {
+            if (profile != image) {
+                profile.write(location, profile.read(location, length));
+            }
+        }
+    }
+
+    @Override
+    public void flush() {
+        active.flush();
+    }
+}
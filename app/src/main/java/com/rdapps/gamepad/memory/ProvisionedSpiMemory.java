@@ -0,0 +1,195 @@
+package com.rdapps.gamepad.memory;
+
+import static com.rdapps.gamepad.log.JoyConLog.log;
+
+import android.content.Context;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SPI image that is usable before it exists on disk.
+ *
+ * <p>
+ * Provisioning runs on a background thread. Until it completes, reads are served from the
+ * bundled resource and writes are held in an overlay; once the image is opened the held
+ * writes are applied to it and all access goes to it. Building the controller, and with it
+ * HID registration, no longer waits for the copy.
+ *
+ * <p>
+ * The image is opened as a mapping, a random access file, a heap copy of the resource or,
+ * if nothing else works, an empty image, whichever comes first. Only the first two are
+ * persistent; until one of them is open {@link #isPersistent()} is false, so writers keep
+ * their own record of what they wrote.
+ */
+public class ProvisionedSpiMemory implements SpiMemory {
+    private static final String TAG = ProvisionedSpiMemory.class.getName();
+
+    private final Context context;
+    private final int rawResource;
+    private final ResourceSpiMemory fallback;
+    private final SpiOverlay pending = new SpiOverlay();
+    private final List<Runnable> onProvisioned = new ArrayList<>();
+    private volatile SpiMemory image;
+
+    public ProvisionedSpiMemory(Context context, String name, int rawResource) {
+        this.context = context.getApplicationContext();
+        this.rawResource = rawResource;
+        this.fallback = new ResourceSpiMemory(context, rawResource);
+        // Already in place: a stat and a preference lookup, open it right away
+        File file = SpiImageProvisioner.getProvisionedFile(context, name);
+        if (file != null) {
+            image = open(file);
+            if (image != null) {
+                return;
+            }
+        }
+        SpiImageProvisioner.provisionAsync(context, name, rawResource)
+                .thenAccept(provisioned -> onProvisioned(open(provisioned)))
+                .exceptionally(e -> {
+                    log(TAG, "SPI image provisioning failed.", e);
+                    onProvisioned(null);
+                    return null;
+                });
+    }
+
+    /**
+     * Run once the image replaces the resource, immediately if it already did. Content read
+     * before may differ from the image (writes made by the console in earlier sessions).
+     */
+    public void addOnProvisioned(Runnable callback) {
+        synchronized (pending) {
+            if (image == null) {
+                onProvisioned.add(callback);
+                return;
+            }
+        }
+        callback.run();
+    }
+
+    private static SpiMemory open(File file) {
+        try {
+            return new MappedSpiMemory(file);
+        } catch (IOException e) {
+            log(TAG, "MappedSPIMemory Failed.", e);
+        }
+        try {
+            return new RafSpiMemory(file);
+        } catch (IOException e) {
+            log(TAG, "RAFSPIMemory Failed.", e);
+        }
+        return null;
+    }
+
+    private SpiMemory openInMemory() {
+        try {
+            return new FileSpiMemory(context, rawResource);
+        } catch (IOException e) {
+            log(TAG, "FileSPIMemory Failed.", e);
+        }
+        return new DummySpiMemory();
+    }
+
+    /**
+     * @param opened the image on disk, null to fall back to memory
+     */
+    private void onProvisioned(SpiMemory opened) {
+        SpiMemory ready = opened != null ? opened : openInMemory();
+        List<Runnable> callbacks;
+        synchronized (pending) {
+            for (int i = 0; i < pending.getRangeCount(); i++) {
+                SpiOverlay.Range range = pending.getRange(i);
+                ready.write(range.start, range.data);
+            }
+            pending.clear();
+            image = ready;
+            callbacks = new ArrayList<>(onProvisioned);
+            onProvisioned.clear();
+        }
+        log(TAG, "SPI image ready: " + ready.getClass().getSimpleName());
+        for (Runnable callback : callbacks) {
+            callback.run();
+        }
+    }
+
+    public boolean isProvisioned() {
+        return image != null;
+    }
+
+    @Override
+    public boolean isPersistent() {
+        SpiMemory current = image;
+        return current != null && current.isPersistent();
+    }
+
+    @Override
+    public byte[] read(int location, int length) {
+        byte[] result = new byte[length];
+        read(location, result, 0, length);
+        return result;
+    }
+
+    @Override
+    public void read(int location, byte[] dst, int off, int len) {
+        SpiMemory current = image;
+        if (current != null) {
+            current.read(location, dst, off, len);
+            return;
+        }
+        fallback.read(location, dst, off, len);
+        synchronized (pending) {
+            if (image != null) {
+                // Provisioned meanwhile, pending writes are in the image now
+                image.read(location, dst, off, len);
+            } else {
+                pending.apply(location, dst, off, len);
+            }
+        }
+    }
+
+    @Override
+    public byte readByte(int location) {
+        SpiMemory current = image;
+        if (current != null) {
+            return current.readByte(location);
+        }
+        byte[] value = new byte[1];
+        read(location, value, 0, 1);
+        return value[0];
+    }
+
+    @Override
+    public short readShortLE(int location) {
+        SpiMemory current = image;
+        if (current != null) {
+            return current.readShortLE(location);
+        }
+        byte[] value = new byte[2];
+        read(location, value, 0, 2);
+        return (short) ((value[0] & 0xFF) | (value[1] << 8));
+    }
+
+    @Override
+    public void write(int location, byte[] data) {
+        SpiMemory current = image;
+        if (current == null) {
+            synchronized (pending) {
+                current = image;
+                if (current == null) {
+                    pending.put(location, data);
+                    return;
+                }
+            }
+        }
+        current.write(location, data);
+    }
+
+    @Override
+    public void flush() {
+        SpiMemory current = image;
+        if (current != null) {
+            current.flush();
+        }
+    }
+}
@@ -1,16 +1,11 @@
 package com.rdapps.gamepad.memory;
 
 import static com.rdapps.gamepad.log.JoyConLog.log;
-import static com.rdapps.gamepad.util.PreferenceUtils.hasFile;
-import static com.rdapps.gamepad.util.PreferenceUtils.setFile;
 
 import android.content.Context;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.RandomAccessFile;
-import org.apache.commons.io.IOUtils;
 
 public class RafSpiMemory implements SpiMemory {
     private static final String TAG = RafSpiMemory.class.getName();
@@ -21,20 +16,51 @@ public class RafSpiMemory implements SpiMemory {
         createFile(context, name, rawResource);
     }
 
+    public RafSpiMemory(File file) throws IOException {
+        randomAccessFile = new RandomAccessFile(file, "rw");
+    }
+
     @Override
     public byte[] read(int location, int length) {
         byte[] result = new byte[length];
+        read(location, result, 0, length);
+        return result;
+    }
+
+    @Override
+    public synchronized void read(int location, byte[] dst, int off, int len) {
         try {
             randomAccessFile.seek(location);
-            randomAccessFile.read(result);
+            randomAccessFile.read(dst, off, len);
         } catch (IOException e) {
             log(TAG, "Read Failed.", e);
         }
-        return result;
     }
 
     @Override
-    public void write(int location, byte[] data) {
+    public synchronized byte readByte(int location) {
+        try {
+            randomAccessFile.seek(location);
+            return (byte) randomAccessFile.read();
+        } catch (IOException e) {
+            log(TAG, "Read Failed.", e);
+            return 0;
+        }
+    }
+
+    @Override
+    public synchronized short readShortLE(int location) {
+        try {
+            randomAccessFile.seek(location);
+            return Short.reverseBytes(randomAccessFile.readShort());
+        } catch (IOException e) {
+            log(TAG, "Read Failed.", e);
+            return 0;
+        }
+    }
+
+    @Override
+    public synchronized void write(int location, byte[] data) {
         try {
             randomAccessFile.seek(location);
             randomAccessFile.write(data);
@@ -43,19 +69,17 @@ public class RafSpiMemory implements SpiMemory {
         }
     }
 
-    private void createFile(Context context, String name, int rawResource) throws IOException {
-        File file = new File(context.getFilesDir(), name);
-        if (!hasFile(context, name) || !file.exists()) {
-            if (!file.exists()) {
-                file.createNewFile();
-            }
-            try (InputStream resourceAsStream = context.getResources()
-                    .openRawResource(rawResource)) {
-                FileOutputStream fileOutputStream = new FileOutputStream(file);
-                IOUtils.copy(resourceAsStream, fileOutputStream);
-                setFile(context, name, true);
-            }
+    @Override
+    public synchronized void flush() {
+        try {
+            randomAccessFile.getFD().sync();
+        } catch (IOException e) {
+            log(TAG, "Flush Failed.", e);
         }
+    }
+
+    private void createFile(Context context, String name, int rawResource) throws IOException {
+        File file = SpiImageProvisioner.provision(context, name, rawResource);
         randomAccessFile = new RandomAccessFile(file, "rw");
     }
 }
@@ -0,0 +1,70 @@
+package com.rdapps.gamepad.memory;
+
+import static com.rdapps.gamepad.log.JoyConLog.log;
+
+import android.content.Context;
+import java.io.IOException;
+import java.io.InputStream;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Read-only view of the bundled SPI image. Every read streams the raw resource up to the
+ * requested range, nothing is kept in memory. Only meant to bridge the time until the
+ * image has been provisioned, where a handful of reads is expected.
+ */
+public class ResourceSpiMemory implements SpiMemory {
+    private static final String TAG = ResourceSpiMemory.class.getName();
+
+    private final Context context;
+    private final int rawResource;
+
+    public ResourceSpiMemory(Context context, int rawResource) {
+        this.context = context.getApplicationContext();
+        this.rawResource = rawResource;
+    }
+
+    @Override
+    public byte[] read(int location, int length) {
+        byte[] result = new byte[length];
+        read(location, result, 0, length);
+        return result;
+    }
+
+    @Override
+    public void read(int location, byte[] dst, int off, int len) {
+        try (InputStream in = context.getResources().openRawResource(rawResource)) {
+            IOUtils.skipFully(in, location);
+            IOUtils.readFully(in, dst, off, len);
+        } catch (IOException e) {
+            log(TAG, "Read Failed.", e);
+        }
+    }
+
+    @Override
+    public byte readByte(int location) {
+        byte[] value = new byte[1];
+        read(location, value, 0, 1);
+        return value[0];
+    }
+
+    @Override
+    public short readShortLE(int location) {
+        byte[] value = new byte[2];
+        read(location, value, 0, 2);
+        return (short) ((value[0] & 0xFF) | (value[1] << 8));
+    }
+
+    @Override
+    public void write(int location, byte[] data) {
+        log(TAG, "Write ignored, resource image is read-only.");
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public boolean isPersistent() {
+        return false;
+    }
+}
@@ -0,0 +1,129 @@
+package com.rdapps.gamepad.memory;
+
+import static com.rdapps.gamepad.log.JoyConLog.log;
+import static com.rdapps.gamepad.util.PreferenceUtils.getFileVersion;
+import static com.rdapps.gamepad.util.PreferenceUtils.hasFile;
+import static com.rdapps.gamepad.util.PreferenceUtils.setFile;
+import static com.rdapps.gamepad.util.PreferenceUtils.setFileVersion;
+
+import android.content.Context;
+import android.os.Process;
+import com.rdapps.gamepad.BuildConfig;
+import com.rdapps.gamepad.util.PriorityThreadFactory;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Copies the bundled SPI image of a controller into getFilesDir() once.
+ *
+ * <p>
+ * The stored version is "app version code:CRC32 of the resource the image was copied from".
+ * Within one app version the check is a preference lookup and a stat. An image that is in
+ * place is never copied over, not even when an update bundles a different resource: it holds
+ * everything the console and the user wrote to it, e.g. the controller colors. Only a
+ * missing image, or one whose copy never completed, is copied. Copies go to a temporary file,
+ * are verified against the resource hash and renamed into place, so an interrupted copy never
+ * leaves a half written image behind.
+ */
+public final class SpiImageProvisioner {
+    private static final String TAG = SpiImageProvisioner.class.getName();
+
+    private static final ExecutorService PROVISION_EXECUTOR =
+            Executors.newSingleThreadExecutor(
+                    new PriorityThreadFactory(Process.THREAD_PRIORITY_BACKGROUND,
+                            true,
+                            "SPI Provision Thread",
+                            false)
+            );
+
+    private SpiImageProvisioner() {
+    }
+
+    public static CompletableFuture<File> provisionAsync(
+            Context context, String name, int rawResource) {
+        Context appContext = context.getApplicationContext();
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return provision(appContext, name, rawResource);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, PROVISION_EXECUTOR);
+    }
+
+    /**
+     * @return the image if it was provisioned by this app version, otherwise null
+     */
+    public static File getProvisionedFile(Context context, String name) {
+        File file = new File(context.getFilesDir(), name);
+        String version = getFileVersion(context, name);
+        if (file.exists() && version != null
+                && version.startsWith(BuildConfig.VERSION_CODE + ":")) {
+            return file;
+        }
+        return null;
+    }
+
+    /**
+     * Blocking variant, returns immediately when the image is already in place.
+     */
+    public static synchronized File provision(Context context, String name, int rawResource)
+            throws IOException {
+        File provisioned = getProvisionedFile(context, name);
+        if (provisioned != null) {
+            return provisioned;
+        }
+        File file = new File(context.getFilesDir(), name);
+        String version = getFileVersion(context, name);
+        String versionPrefix = BuildConfig.VERSION_CODE + ":";
+
+        // Copied by an earlier app version, or before versioning when the copy completed
+        if (file.exists() && (version != null || hasFile(context, name))) {
+            String source = version != null
+                    ? version.substring(version.indexOf(':') + 1) : "legacy";
+            setFileVersion(context, name, versionPrefix + source);
+            return file;
+        }
+
+        long resourceCrc = crc(context, rawResource);
+        long start = System.nanoTime();
+        File tmp = new File(context.getFilesDir(), name + ".tmp");
+        CRC32 crc = new CRC32();
+        try (InputStream in = new CheckedInputStream(
+                context.getResources().openRawResource(rawResource), crc);
+             FileOutputStream out = new FileOutputStream(tmp)) {
+            IOUtils.copy(in, out);
+            out.getFD().sync();
+        }
+        if (crc.getValue() != resourceCrc) {
+            tmp.delete();
+            throw new IOException("SPI image copy does not match resource: " + name);
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("SPI image rename failed: " + name);
+        }
+        setFile(context, name, true);
+        setFileVersion(context, name, versionPrefix + Long.toHexString(resourceCrc));
+        log(TAG, "Provisioned " + name + " in " + (System.nanoTime() - start) / 1000 + "us");
+        return file;
+    }
+
+    private static long crc(Context context, int rawResource) throws IOException {
+        CRC32 crc = new CRC32();
+        try (InputStream in = new CheckedInputStream(
+                context.getResources().openRawResource(rawResource), crc)) {
+            IOUtils.consume(in);
+        }
+        return crc.getValue();
+    }
+}
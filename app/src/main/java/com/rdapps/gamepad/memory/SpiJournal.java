@@ -0,0 +1,133 @@
+package com.rdapps.gamepad.memory;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of SPI writes.
+ *
+ * <p>
+ * Record: int location, int length, data, int CRC32 of the previous fields. Every append is
+ * synced, and replay stops at the first torn or corrupt record, so a crash loses at most the
+ * write that was being appended.
+ */
+public class SpiJournal {
+    private static final int HEADER_SIZE = 8;
+    private static final int MAX_RECORD_LENGTH = 0x1000;
+
+    private final File file;
+    private final CRC32 crc = new CRC32();
+
+    public SpiJournal(File file) {
+        this.file = file;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public long length() {
+        return file.length();
+    }
+
+    /**
+     * Apply every intact record to the overlay and cut off a torn tail.
+     *
+     * @return number of replayed records
+     */
+    public int replay(SpiOverlay overlay) throws IOException {
+        if (!file.exists()) {
+            return 0;
+        }
+        int records = 0;
+        long validLength = 0;
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                int location = in.readInt();
+                int length = in.readInt();
+                if (location < 0 || length <= 0 || length > MAX_RECORD_LENGTH) {
+                    break;
+                }
+                byte[] data = new byte[length];
+                in.readFully(data);
+                int checksum = in.readInt();
+                if (checksum != checksum(location, data)) {
+                    break;
+                }
+                overlay.put(location, data);
+                validLength += HEADER_SIZE + length + 4;
+                records++;
+            }
+        } catch (EOFException e) {
+            // torn tail
+        }
+        if (validLength < file.length()) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(validLength);
+                raf.getFD().sync();
+            }
+        }
+        return records;
+    }
+
+    public void append(int location, byte[] data) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(encode(location, data));
+            out.getFD().sync();
+        }
+    }
+
+    /**
+     * Replace the journal with one record per overlay range.
+     */
+    public void rewrite(SpiOverlay overlay) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            for (int i = 0; i < overlay.getRangeCount(); i++) {
+                SpiOverlay.Range range = overlay.getRange(i);
+                out.write(encode(range.start, range.data));
+            }
+            out.getFD().sync();
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Journal rename failed: " + file);
+        }
+    }
+
+    public void reset() throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(0);
+            raf.getFD().sync();
+        }
+    }
+
+    private byte[] encode(int location, byte[] data) {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + data.length + 4);
+        buffer.putInt(location);
+        buffer.putInt(data.length);
+        buffer.put(data);
+        buffer.putInt(checksum(location, data));
+        return buffer.array();
+    }
+
+    private synchronized int checksum(int location, byte[] data) {
+        crc.reset();
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            crc.update(location >>> shift);
+        }
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            crc.update(data.length >>> shift);
+        }
+        crc.update(data, 0, data.length);
+        return (int) crc.getValue();
+    }
+}
@@ -3,5 +3,26 @@ package com.rdapps.gamepad.memory;
 public interface SpiMemory {
     byte[] read(int location, int length);
 
+    /**
+     * Copy len bytes starting at location into dst[off], without allocating.
+     */
+    void read(int location, byte[] dst, int off, int len);
+
+    byte readByte(int location);
+
+    short readShortLE(int location);
+
     void write(int location, byte[] data);
+
+    /**
+     * Make previous writes durable. No-op for backends without storage.
+     */
+    void flush();
+
+    /**
+     * @return false if writes are lost with the process, even after {@link #flush()}
+     */
+    default boolean isPersistent() {
+        return true;
+    }
 }
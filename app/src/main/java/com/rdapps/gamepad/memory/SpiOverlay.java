@@ -0,0 +1,153 @@
+package com.rdapps.gamepad.memory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sparse set of modified SPI ranges on top of an image.
+ *
+ * <p>
+ * Ranges are kept sorted by start address, never overlap and never touch: a write that
+ * overlaps or is adjacent to existing ranges is merged with them. Lookups binary search the
+ * start addresses. Range data arrays are replaced on every merge and never modified in place,
+ * so a {@link #snapshot()} can be read without holding a lock.
+ */
+public class SpiOverlay {
+    private final List<Range> ranges;
+    private int version = 0;
+
+    public SpiOverlay() {
+        this.ranges = new ArrayList<>();
+    }
+
+    private SpiOverlay(List<Range> ranges) {
+        this.ranges = ranges;
+    }
+
+    public static final class Range {
+        public final int start;
+        public final byte[] data;
+
+        Range(int start, byte[] data) {
+            this.start = start;
+            this.data = data;
+        }
+
+        public int end() {
+            return start + data.length;
+        }
+    }
+
+    public void put(int location, byte[] src, int off, int len) {
+        if (len <= 0) {
+            return;
+        }
+        int end = location + len;
+        // First range that ends at or after location (adjacent ranges merge too)
+        int first = firstEndingAtOrAfter(location);
+        int last = first;
+        int mergedStart = location;
+        int mergedEnd = end;
+        while (last < ranges.size() && ranges.get(last).start <= end) {
+            Range range = ranges.get(last);
+            mergedStart = Math.min(mergedStart, range.start);
+            mergedEnd = Math.max(mergedEnd, range.end());
+            last++;
+        }
+
+        byte[] merged = new byte[mergedEnd - mergedStart];
+        for (int i = first; i < last; i++) {
+            Range range = ranges.get(i);
+            System.arraycopy(range.data, 0, merged, range.start - mergedStart, range.data.length);
+        }
+        System.arraycopy(src, off, merged, location - mergedStart, len);
+
+        ranges.subList(first, last).clear();
+        ranges.add(first, new Range(mergedStart, merged));
+        version++;
+    }
+
+    public void put(int location, byte[] data) {
+        put(location, data, 0, data.length);
+    }
+
+    /**
+     * Copy overlay bytes of [location, location + len) over dst[off], leaving the bytes not
+     * covered by the overlay untouched.
+     */
+    public void apply(int location, byte[] dst, int off, int len) {
+        int end = location + len;
+        for (int i = firstEndingAfter(location); i < ranges.size(); i++) {
+            Range range = ranges.get(i);
+            if (range.start >= end) {
+                break;
+            }
+            int from = Math.max(location, range.start);
+            int to = Math.min(end, range.end());
+            System.arraycopy(range.data, from - range.start, dst, off + from - location, to - from);
+        }
+    }
+
+    /**
+     * @return the overlay byte at location as 0..255, or -1 if it is not overlaid
+     */
+    public int get(int location) {
+        int index = firstEndingAfter(location);
+        if (index < ranges.size()) {
+            Range range = ranges.get(index);
+            if (range.start <= location) {
+                return range.data[location - range.start] & 0xFF;
+            }
+        }
+        return -1;
+    }
+
+    public boolean isEmpty() {
+        return ranges.isEmpty();
+    }
+
+    public int getRangeCount() {
+        return ranges.size();
+    }
+
+    public Range getRange(int index) {
+        return ranges.get(index);
+    }
+
+    /**
+     * Incremented on every modification.
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    public void clear() {
+        ranges.clear();
+        version++;
+    }
+
+    public SpiOverlay snapshot() {
+        SpiOverlay copy = new SpiOverlay(new ArrayList<>(ranges));
+        copy.version = version;
+        return copy;
+    }
+
+    // Binary search: index of the first range with end > location
+    private int firstEndingAfter(int location) {
+        int low = 0;
+        int high = ranges.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (ranges.get(mid).end() <= location) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int firstEndingAtOrAfter(int location) {
+        return firstEndingAfter(location - 1);
+    }
+}
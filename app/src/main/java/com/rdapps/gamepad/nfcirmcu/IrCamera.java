@@ -0,0 +1,177 @@
+package com.rdapps.gamepad.nfcirmcu;
+
+import static com.rdapps.gamepad.log.JoyConLog.log;
+
+import android.os.Process;
+import com.rdapps.gamepad.util.PriorityThreadFactory;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * IR camera side of the NFC/IR MCU.
+ *
+ * <p>
+ * The console configures an IR mode and the image size, then pulls fragments with 0x11
+ * reports while acknowledging them. Frames come from an {@link IrFrameSource} (a test pattern
+ * unless one is set) and are captured and scaled on the IR camera thread, one frame ahead of
+ * the one being streamed, so the report thread only copies fragments. A source without a new
+ * frame gets its last one streamed again, a black one until it delivered any.
+ *
+ * <p>
+ * Captures run one at a time on one long-lived thread. Stopping the camera starts a new
+ * generation; captures requested before it are skipped and one still running does not
+ * publish.
+ */
+public class IrCamera {
+    private static final String TAG = IrCamera.class.getName();
+
+    // IR modes of MCU command 0x23 0x01
+    public static final int MODE_IMAGE_TRANSFER = 0x07;
+
+    private static final ExecutorService CAPTURE_EXECUTOR =
+            Executors.newSingleThreadExecutor(
+                    new PriorityThreadFactory(Process.THREAD_PRIORITY_DEFAULT,
+                            true,
+                            "IR Camera Thread",
+                            false)
+            );
+
+    private final IrFragmentStreamer streamer = new IrFragmentStreamer(this::requestFrame);
+    private final Runnable captureTask = this::capture;
+
+    private volatile IrFrameSource source =
+            new TestPatternIrSource(IrResolution.R320X240.getWidth(),
+                    IrResolution.R320X240.getHeight());
+    private volatile boolean streaming = false;
+    private volatile int mode = 0;
+
+    private final AtomicInteger generation = new AtomicInteger();
+    private volatile int requestedGeneration = 0;
+
+    // Only touched on the capture thread
+    private byte[] sourceFrame;
+    // Source of the frame in sourceFrame, null before the first frame was read
+    private IrFrameSource sourceFrameOwner;
+
+    public void setSource(IrFrameSource source) {
+        IrFrameSource previous = this.source;
+        this.source = source;
+        closeQuietly(previous);
+    }
+
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    public int getMode() {
+        return mode;
+    }
+
+    /**
+     * MCU command 0x23 0x01: IR mode and the last fragment number of a frame.
+     */
+    public void configure(int mode, int maxFragment) {
+        this.mode = mode;
+        IrResolution resolution = IrResolution.fromMaxFragment(maxFragment);
+        if (Objects.nonNull(resolution)) {
+            streamer.reset(resolution);
+        } else {
+            log(TAG, "Unknown IR fragment count " + (maxFragment + 1), true);
+        }
+        streaming = mode == MODE_IMAGE_TRANSFER;
+        log(TAG, "IR mode " + mode + " " + streamer.getResolution());
+    }
+
+    /**
+     * MCU command 0x23 0x04: camera register write.
+     */
+    public void writeRegister(int page, int address, int value) {
+        if (page == IrResolution.RESOLUTION_PAGE && address == IrResolution.RESOLUTION_REGISTER) {
+            IrResolution resolution = IrResolution.fromRegister(value);
+            if (Objects.nonNull(resolution) && resolution != streamer.getResolution()) {
+                streamer.reset(resolution);
+                log(TAG, "IR resolution " + resolution);
+            }
+        }
+    }
+
+    /**
+     * MCU request 0x03 of a 0x11 report: data[11] resend flag, data[12] missed fragment,
+     * data[13] last acknowledged fragment.
+     */
+    public void onAck(byte[] data) {
+        if (data.length < 14) {
+            return;
+        }
+        streamer.onAck(data[11] == 0x01, data[12] & 0xFF, data[13] & 0xFF);
+    }
+
+    /**
+     * Fill the MCU block of a 0x31 report at buffer[offset].
+     */
+    public void fill(byte[] buffer, int offset) {
+        streamer.fill(buffer, offset);
+    }
+
+    public void stop() {
+        streaming = false;
+        mode = 0;
+        generation.incrementAndGet();
+    }
+
+    private void requestFrame() {
+        requestedGeneration = generation.get();
+        try {
+            CAPTURE_EXECUTOR.execute(captureTask);
+        } catch (RejectedExecutionException e) {
+            log(TAG, "IR capture rejected", e);
+        }
+    }
+
+    private void capture() {
+        int captureGeneration = requestedGeneration;
+        if (captureGeneration != generation.get()) {
+            return;
+        }
+        IrFrameSource frameSource = source;
+        IrResolution resolution = streamer.getResolution();
+        byte[] back = streamer.getBackBuffer();
+        int size = frameSource.getWidth() * frameSource.getHeight();
+        if (Objects.isNull(sourceFrame) || sourceFrame.length < size) {
+            sourceFrame = new byte[size];
+            sourceFrameOwner = null;
+        }
+        boolean read = false;
+        try {
+            read = frameSource.readFrame(sourceFrame);
+        } catch (IOException e) {
+            log(TAG, "IR frame could not be read", e);
+        }
+        if (read) {
+            sourceFrameOwner = frameSource;
+        } else if (sourceFrameOwner != frameSource) {
+            // Nothing to stream again from this source yet
+            Arrays.fill(sourceFrame, 0, size, (byte) 0);
+        }
+        IrDownsampler.scale(sourceFrame, frameSource.getWidth(), frameSource.getHeight(),
+                back, resolution.getWidth(), resolution.getHeight());
+        if (captureGeneration == generation.get()) {
+            streamer.publish(resolution);
+        }
+    }
+
+    private static void closeQuietly(IrFrameSource source) {
+        if (Objects.nonNull(source)) {
+            try {
+                source.close();
+            } catch (IOException e) {
+                log(TAG, "IR source close failed", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.rdapps.gamepad.nfcirmcu;
+
+/**
+ * Scales 8-bit luma frames to an IR camera resolution.
+ *
+ * <p>
+ * Each output pixel is the average of the source box it covers (integer bounds, at least one
+ * pixel), so larger sources are filtered instead of aliased and smaller ones are repeated.
+ */
+public final class IrDownsampler {
+    private IrDownsampler() {
+    }
+
+    public static void scale(byte[] src, int srcWidth, int srcHeight,
+                             byte[] dst, int dstWidth, int dstHeight) {
+        for (int y = 0; y < dstHeight; y++) {
+            int y0 = y * srcHeight / dstHeight;
+            int y1 = Math.max(y0 + 1, (y + 1) * srcHeight / dstHeight);
+            for (int x = 0; x < dstWidth; x++) {
+                int x0 = x * srcWidth / dstWidth;
+                int x1 = Math.max(x0 + 1, (x + 1) * srcWidth / dstWidth);
+                int sum = 0;
+                for (int sy = y0; sy < y1; sy++) {
+                    int row = sy * srcWidth;
+                    for (int sx = x0; sx < x1; sx++) {
+                        sum += src[row + sx] & 0xFF;
+                    }
+                }
+                int count = (y1 - y0) * (x1 - x0);
+                dst[y * dstWidth + x] = (byte) ((sum + count / 2) / count);
+            }
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.rdapps.gamepad.nfcirmcu;
+
+/**
+ * Splits IR frames into MCU fragments and tracks the console's acknowledgements.
+ *
+ * <p>
+ * Frames are double buffered: the report thread packs fragments of the front frame while the
+ * camera thread fills the back one, and the buffers are swapped when the last fragment of a
+ * frame was acknowledged. Packing is one arraycopy into the report, nothing is allocated per
+ * report. Up to {@link #WINDOW} fragments are sent ahead of the last acknowledgement; a
+ * resend request is served first, and a stalled stream restarts after the last acknowledged
+ * fragment.
+ *
+ * <p>
+ * Fragment layout inside the 313 byte MCU block: 0x03 (IR data), two reserved bytes, the
+ * fragment number, six header bytes and {@link #FRAGMENT_SIZE} bytes of luma. Without a frame
+ * to send the block starts with {@link #EMPTY}.
+ */
+public class IrFragmentStreamer {
+    public static final int FRAGMENT_SIZE = 300;
+    public static final int HEADER_SIZE = 10;
+    static final byte IR_DATA = 0x03;
+    static final byte EMPTY = (byte) 0xFF;
+
+    static final int WINDOW = 4;
+    static final int STALL_REPORTS = 8;
+
+    private static final int MAX_FRAME_SIZE =
+            IrResolution.R320X240.getWidth() * IrResolution.R320X240.getHeight();
+
+    private final byte[][] frames = new byte[2][MAX_FRAME_SIZE];
+    private final Runnable frameRequest;
+
+    private IrResolution resolution = IrResolution.R320X240;
+    private int front = 0;
+    private boolean backReady = false;
+    private boolean frontValid = false;
+
+    private int nextFragment = 0;
+    private int ackedFragment = -1;
+    private int resendFragment = -1;
+    private int stalledReports = 0;
+
+    /**
+     * @param frameRequest called when the back buffer can take the next frame, must not block
+     */
+    public IrFragmentStreamer(Runnable frameRequest) {
+        this.frameRequest = frameRequest;
+    }
+
+    /**
+     * Restart streaming at another resolution. Frames already captured are dropped.
+     */
+    public synchronized void reset(IrResolution resolution) {
+        this.resolution = resolution;
+        backReady = false;
+        frontValid = false;
+        nextFragment = 0;
+        ackedFragment = -1;
+        resendFragment = -1;
+        stalledReports = 0;
+        frameRequest.run();
+    }
+
+    public synchronized IrResolution getResolution() {
+        return resolution;
+    }
+
+    /**
+     * Buffer for the camera thread to fill. Valid until {@link #publish(IrResolution)}.
+     */
+    public synchronized byte[] getBackBuffer() {
+        return frames[1 - front];
+    }
+
+    /**
+     * The back buffer holds a complete frame of the given resolution.
+     *
+     * @return false if the resolution changed while the frame was captured
+     */
+    public synchronized boolean publish(IrResolution captured) {
+        if (captured != resolution) {
+            return false;
+        }
+        if (!frontValid) {
+            front = 1 - front;
+            frontValid = true;
+            frameRequest.run();
+        } else {
+            backReady = true;
+        }
+        return true;
+    }
+
+    /**
+     * Acknowledgement from the console's 0x11 report.
+     *
+     * @param resend   the console missed a fragment
+     * @param missed   fragment to send again when resend is set
+     * @param acked    last fragment received in order
+     */
+    public synchronized void onAck(boolean resend, int missed, int acked) {
+        int count = resolution.getFragmentCount();
+        if (resend) {
+            if (missed < count) {
+                resendFragment = missed;
+            }
+            return;
+        }
+        if (acked > ackedFragment && acked < nextFragment) {
+            ackedFragment = acked;
+            stalledReports = 0;
+        }
+    }
+
+    /**
+     * Write the next fragment, or an empty block, at buffer[offset].
+     *
+     * @return the fragment number written, -1 for an empty block
+     */
+    public synchronized int fill(byte[] buffer, int offset) {
+        if (!frontValid) {
+            buffer[offset] = EMPTY;
+            return -1;
+        }
+        int count = resolution.getFragmentCount();
+        int fragment;
+        if (resendFragment >= 0) {
+            fragment = resendFragment;
+            resendFragment = -1;
+        } else if (ackedFragment == count - 1) {
+            startNextFrame();
+            fragment = nextFragment++;
+        } else if (nextFragment < count && nextFragment - ackedFragment <= WINDOW) {
+            fragment = nextFragment++;
+        } else if (++stalledReports >= STALL_REPORTS) {
+            // Nothing acknowledged for a while, go back to the first missing fragment
+            stalledReports = 0;
+            nextFragment = ackedFragment + 1;
+            fragment = nextFragment++;
+        } else {
+            buffer[offset] = EMPTY;
+            return -1;
+        }
+        pack(buffer, offset, fragment);
+        return fragment;
+    }
+
+    private void startNextFrame() {
+        if (backReady) {
+            front = 1 - front;
+            backReady = false;
+            frameRequest.run();
+        }
+        nextFragment = 0;
+        ackedFragment = -1;
+        stalledReports = 0;
+    }
+
+    private void pack(byte[] buffer, int offset, int fragment) {
+        buffer[offset] = IR_DATA;
+        buffer[offset + 1] = 0x00;
+        buffer[offset + 2] = 0x00;
+        buffer[offset + 3] = (byte) fragment;
+        for (int i = 4; i < HEADER_SIZE; i++) {
+            buffer[offset + i] = 0x00;
+        }
+        System.arraycopy(frames[front], fragment * FRAGMENT_SIZE,
+                buffer, offset + HEADER_SIZE, FRAGMENT_SIZE);
+    }
+}
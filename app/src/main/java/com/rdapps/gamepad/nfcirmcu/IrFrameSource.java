@@ -0,0 +1,27 @@
+package com.rdapps.gamepad.nfcirmcu;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Provides frames for the emulated IR camera as 8-bit luma, row major, at the native size of
+ * the source. Frames are scaled to the resolution the console selected by the camera.
+ * Called from the IR camera thread only.
+ */
+public interface IrFrameSource extends Closeable {
+    int getWidth();
+
+    int getHeight();
+
+    /**
+     * Fill luma[0, width * height) with the next frame.
+     *
+     * @return false when no new frame is available and luma was left as is, the previous
+     *         frame is streamed again
+     */
+    boolean readFrame(byte[] luma) throws IOException;
+
+    @Override
+    default void close() throws IOException {
+    }
+}
@@ -0,0 +1,69 @@
+package com.rdapps.gamepad.nfcirmcu;
+
+/**
+ * Image sizes of the Joy-Con IR camera.
+ *
+ * <p>
+ * Frames are streamed as 8-bit luma in fragments of {@link IrFragmentStreamer#FRAGMENT_SIZE}
+ * bytes; the console announces the last fragment number with the IR mode and selects the
+ * size with register 0x2E of page 0.
+ */
+public enum IrResolution {
+    R320X240(320, 240, 0x00, 0xFF),
+    R160X120(160, 120, 0x50, 0x3F),
+    R80X60(80, 60, 0x64, 0x0F),
+    R40X30(40, 30, 0x69, 0x03);
+
+    public static final int RESOLUTION_PAGE = 0x00;
+    public static final int RESOLUTION_REGISTER = 0x2E;
+
+    private final int width;
+    private final int height;
+    private final int register;
+    private final int maxFragment;
+
+    IrResolution(int width, int height, int register, int maxFragment) {
+        this.width = width;
+        this.height = height;
+        this.register = register;
+        this.maxFragment = maxFragment;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getRegister() {
+        return register;
+    }
+
+    public int getMaxFragment() {
+        return maxFragment;
+    }
+
+    public int getFragmentCount() {
+        return maxFragment + 1;
+    }
+
+    public static IrResolution fromRegister(int register) {
+        for (IrResolution resolution : values()) {
+            if (resolution.register == (register & 0xFF)) {
+                return resolution;
+            }
+        }
+        return null;
+    }
+
+    public static IrResolution fromMaxFragment(int maxFragment) {
+        for (IrResolution resolution : values()) {
+            if (resolution.maxFragment == (maxFragment & 0xFF)) {
+                return resolution;
+            }
+        }
+        return null;
+    }
+}
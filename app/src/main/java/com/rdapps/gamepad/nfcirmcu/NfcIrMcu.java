@@ -3,8 +3,6 @@ package com.rdapps.gamepad.nfcirmcu;
 import static com.rdapps.gamepad.nfcirmcu.NfcIrMcu.Action.NON;
 import static com.rdapps.gamepad.nfcirmcu.NfcIrMcu.McuState.NOT_INITIALIZED;
 
-import java.util.ArrayList;
-import java.util.List;
 import lombok.Data;
 
 @Data
@@ -34,6 +32,7 @@ public class NfcIrMcu {
         public byte getByte() {
             return switch (this) {
                 case NFC -> 0x04;
+                case IRC -> 0x05;
                 case BUSY -> 0x06;
                 case NOT_INITIALIZED, STAND_BY -> 0x01;
                 default -> 0x00;
@@ -50,8 +49,11 @@ public class NfcIrMcu {
     private boolean firstPollSent = false;
 
     // Write state
-    private List<Byte> writeBuffer = new ArrayList<>();
+    private final NfcWriteBuffer writeBuffer = new NfcWriteBuffer();
     private int ackSeqNo = 0;
     private boolean lastWritePacketReceived = false;
     private int removeFramesRemaining = 0;
+
+    // IR camera state
+    private final IrCamera irCamera = new IrCamera();
 }
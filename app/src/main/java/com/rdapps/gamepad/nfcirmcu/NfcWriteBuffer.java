@@ -0,0 +1,40 @@
+package com.rdapps.gamepad.nfcirmcu;
+
+import java.util.Arrays;
+
+/**
+ * Reassembly buffer for the payload of a multi-packet NFC write.
+ *
+ * <p>
+ * Sized for a full NTAG215 write (540 bytes of pages plus the lock and page headers) so a
+ * write never grows it; larger payloads double the array instead of failing.
+ */
+public class NfcWriteBuffer {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private byte[] bytes = new byte[INITIAL_CAPACITY];
+    private int size = 0;
+
+    public void append(byte[] src, int offset, int length) {
+        if (size + length > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + length));
+        }
+        System.arraycopy(src, offset, bytes, size, length);
+        size += length;
+    }
+
+    public void reset() {
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Backing array, valid up to {@link #size()}.
+     */
+    public byte[] array() {
+        return bytes;
+    }
+}
@@ -0,0 +1,83 @@
+package com.rdapps.gamepad.nfcirmcu;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Still image from a binary PGM (P5, 8-bit) file. The file is read once, every frame is the
+ * same image. Plain files keep the IR path testable without a camera or Android.
+ */
+public class PgmIrSource implements IrFrameSource {
+    private final int width;
+    private final int height;
+    private final byte[] image;
+
+    public PgmIrSource(File file) throws IOException {
+        this(new FileInputStream(file));
+    }
+
+    public PgmIrSource(InputStream stream) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(stream))) {
+            if (!"P5".equals(token(in))) {
+                throw new IOException("Not a binary PGM image");
+            }
+            width = Integer.parseInt(token(in));
+            height = Integer.parseInt(token(in));
+            int maxValue = Integer.parseInt(token(in));
+            if (width <= 0 || height <= 0 || maxValue <= 0 || maxValue > 0xFF) {
+                throw new IOException("Unsupported PGM image " + width + "x" + height
+                        + " max " + maxValue);
+            }
+            image = new byte[width * height];
+            in.readFully(image);
+            if (maxValue != 0xFF) {
+                for (int i = 0; i < image.length; i++) {
+                    image[i] = (byte) ((image[i] & 0xFF) * 0xFF / maxValue);
+                }
+            }
+        }
+    }
+
+    // Header token: skips whitespace and comments, consumes one trailing whitespace byte
+    private static String token(InputStream in) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        int c;
+        while ((c = in.read()) != -1) {
+            if (c == '#' && builder.length() == 0) {
+                while ((c = in.read()) != -1 && c != '\n') {
+                    // comment
+                }
+            } else if (Character.isWhitespace(c)) {
+                if (builder.length() > 0) {
+                    break;
+                }
+            } else {
+                builder.append((char) c);
+            }
+        }
+        if (builder.length() == 0) {
+            throw new IOException("Truncated PGM header");
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public boolean readFrame(byte[] luma) {
+        System.arraycopy(image, 0, luma, 0, image.length);
+        return true;
+    }
+}
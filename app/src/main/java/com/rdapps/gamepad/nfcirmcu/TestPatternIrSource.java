@@ -0,0 +1,43 @@
+package com.rdapps.gamepad.nfcirmcu;
+
+/**
+ * Moving diagonal gradient with a bright square, enough to see that frames, fragment order
+ * and scaling arrive intact on the console.
+ */
+public class TestPatternIrSource implements IrFrameSource {
+    private final int width;
+    private final int height;
+    private int frame = 0;
+
+    public TestPatternIrSource(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public boolean readFrame(byte[] luma) {
+        int square = Math.min(width, height) / 4;
+        int squareX = frame % (width - square);
+        int squareY = (height - square) / 2;
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            for (int x = 0; x < width; x++) {
+                boolean inSquare = x >= squareX && x < squareX + square
+                        && y >= squareY && y < squareY + square;
+                luma[row + x] = inSquare ? (byte) 0xFF : (byte) ((x + y + frame) & 0x7F);
+            }
+        }
+        frame++;
+        return true;
+    }
+}
@@ -5,14 +5,25 @@ import static android.os.VibrationEffect.DEFAULT_AMPLITUDE;
 import static android.view.KeyEvent.KEYCODE_DPAD_DOWN;
 import static android.view.KeyEvent.KEYCODE_DPAD_LEFT;
 import static android.view.KeyEvent.KEYCODE_DPAD_RIGHT;
+import static android.view.KeyEvent.KEYCODE_BUTTON_L1;
+import static android.view.KeyEvent.KEYCODE_BUTTON_R1;
+import static android.view.KeyEvent.KEYCODE_BUTTON_SELECT;
 import static android.view.KeyEvent.KEYCODE_DPAD_UP;
-import static com.rdapps.gamepad.util.ControllerActionUtils.getAxisMapping;
-import static com.rdapps.gamepad.util.ControllerActionUtils.getButtonMapping;
-import static com.rdapps.gamepad.util.ControllerActionUtils.getJoystickMapping;
-import static com.rdapps.gamepad.util.EventUtils.getCenteredAxis;
+import static com.rdapps.gamepad.button.ButtonEnum.LEFT_STICK_BUTTON;
+import static com.rdapps.gamepad.button.ButtonEnum.RIGHT_STICK_BUTTON;
+import static com.rdapps.gamepad.button.ButtonState.BUTTON_DOWN;
+import static com.rdapps.gamepad.button.ButtonState.BUTTON_UP;
+import static com.rdapps.gamepad.device.JoystickType.LEFT_JOYSTICK;
+import static com.rdapps.gamepad.device.JoystickType.RIGHT_JOYSTICK;
+import static com.rdapps.gamepad.log.JoyConLog.log;
+import static com.rdapps.gamepad.input.AxisFlats.getCenteredAxis;
+import static com.rdapps.gamepad.input.InputLatencyTracer.Source.GAMEPAD;
+import static com.rdapps.gamepad.input.InputLatencyTracer.Source.TOUCH;
 import static com.rdapps.gamepad.util.EventUtils.getJoyStickEvent;
 import static com.rdapps.gamepad.util.EventUtils.getTouchDownEvent;
 import static com.rdapps.gamepad.util.EventUtils.getTouchUpEvent;
+import static com.rdapps.gamepad.vibrator.VibrationPattern.BUTTON_PRESS;
+import static com.rdapps.gamepad.vibrator.VibrationPattern.BUTTON_RELEASE;
 
 import android.content.Context;
 import android.content.Intent;
@@ -20,45 +31,82 @@ import android.hardware.Sensor;
 import android.hardware.SensorManager;
 import android.net.Uri;
 import android.os.Build;
+import android.os.Bundle;
 import android.os.VibrationAttributes;
 import android.os.VibrationEffect;
 import android.os.Vibrator;
-import android.view.InputDevice;
 import android.view.KeyEvent;
 import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewGroup;
 import android.widget.ImageButton;
+import android.widget.Toast;
 import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.appcompat.app.AlertDialog;
 import androidx.fragment.app.Fragment;
+import androidx.fragment.app.FragmentActivity;
 import com.erz.joysticklibrary.JoyStick;
+import com.rdapps.gamepad.R;
+import com.rdapps.gamepad.amiibo.AmiiboIndex;
+import com.rdapps.gamepad.amiibo.AmiiboLibrary;
+import com.rdapps.gamepad.button.ButtonEnum;
 import com.rdapps.gamepad.device.ButtonType;
 import com.rdapps.gamepad.device.JoystickType;
+import com.rdapps.gamepad.input.AxisFlats;
+import com.rdapps.gamepad.input.ControllerMapping;
+import com.rdapps.gamepad.input.DeviceCalibrationStore;
+import com.rdapps.gamepad.input.GamepadInputRouter;
+import com.rdapps.gamepad.input.MappingProfileStore;
+import com.rdapps.gamepad.input.MappingProfiles;
+import com.rdapps.gamepad.input.StickResponse;
+import com.rdapps.gamepad.input.StickSampler;
+import com.rdapps.gamepad.input.TouchDispatcher;
 import com.rdapps.gamepad.led.LedState;
-import com.rdapps.gamepad.model.ControllerAction;
 import com.rdapps.gamepad.protocol.JoyController;
-import com.rdapps.gamepad.util.Pair;
+import com.rdapps.gamepad.protocol.JoyControllerState;
+import com.rdapps.gamepad.sensor.BatchedSensorSource;
+import com.rdapps.gamepad.sensor.DirectChannelSensorSource;
+import com.rdapps.gamepad.sensor.SensorSource;
+import com.rdapps.gamepad.sensor.SensorTiming;
 import com.rdapps.gamepad.util.PreferenceUtils;
 import com.rdapps.gamepad.vibrator.VibrationPattern;
+import com.rdapps.gamepad.widget.TouchDispatchLayout;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Map;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
-import lombok.Setter;
 import org.apache.commons.io.IOUtils;
 
 public abstract class ControllerFragment extends Fragment {
+    private static final String TAG = ControllerFragment.class.getName();
+
+    private static final ButtonEnum[] BUTTONS = ButtonEnum.values();
+
     private Context context;
     private SensorManager sensorManager;
-    private Sensor senAccelerometer;
-    private Sensor senGyroscope;
+    private SensorSource sensorSource;
+    private boolean directChannelFailed = false;
 
-    @Setter
     protected JoyController device;
 
-    private Map<Integer, ButtonType> buttonMap;
-    private Map<Pair<Integer, Integer>, ButtonType> axisMap;
-    private Map<JoystickType, ControllerAction> joystickMap;
+    private ControllerMapping mapping;
+    private final AxisFlats axisFlats = new AxisFlats();
+    private final MappingProfileStore.Listener mappingProfileListener =
+            this::onMappingProfileChanged;
+    private boolean mappingProfileChord = false;
+    private boolean chordKeyDown = false;
+    private int chordConsumedKeyCode = KeyEvent.KEYCODE_UNKNOWN;
+
+    private boolean directGamepadInput = true;
+    private StickSampler.Policy stickSampling = StickSampler.Policy.PEAK;
+    private StickResponse stickResponse = StickResponse.Preset.LINEAR.create();
+    private GamepadInputRouter inputRouter;
+    private ImageButton[] gamepadButtonViews;
+    private ImageButton[] touchButtonViews = new ImageButton[BUTTONS.length];
+    private boolean gamepadRefreshPending = false;
+    private final Runnable gamepadRefresh = this::refreshGamepadInput;
 
     protected Boolean hapticFeedBackEnabled;
     protected Vibrator vibrator;
@@ -77,6 +125,12 @@ public abstract class ControllerFragment extends Fragment {
                         }
                     });
 
+    private final ActivityResultLauncher<Uri> selectFolderResultLauncher =
+            registerForActivityResult(new ActivityResultContracts.OpenDocumentTree(),
+                    this::onFolderSelected);
+
+    private AlertDialog amiiboLibraryDialog;
+
     @Override
     public void onAttach(Context context) {
         super.onAttach(context);
@@ -118,31 +172,117 @@ public abstract class ControllerFragment extends Fragment {
         return Optional.ofNullable(this.vibrator);
     }
 
+    /**
+     * Put the layout of the on-screen controller under a root that takes all of its touches,
+     * for {@link #onCreateView}.
+     */
+    protected View wrapTouchRoot(View content) {
+        TouchDispatchLayout layout = new TouchDispatchLayout(content.getContext());
+        layout.setLayoutParams(new ViewGroup.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+        layout.addView(content);
+        return layout;
+    }
+
+    @Override
+    public void onViewCreated(View view, Bundle savedInstanceState) {
+        super.onViewCreated(view, savedInstanceState);
+        if (view instanceof TouchDispatchLayout layout) {
+            layout.setDispatcher(new TouchDispatcher(layout, new TouchTarget()));
+        }
+    }
+
+    private class TouchTarget implements TouchDispatcher.Target {
+        @Override
+        public void collectViews(List<View> views) {
+            ImageButton[] buttonViews = new ImageButton[BUTTONS.length];
+            for (ButtonType buttonType : ButtonType.values()) {
+                ImageButton view = getImageButton(buttonType);
+                if (Objects.isNull(view) || views.contains(view)) {
+                    continue;
+                }
+                views.add(view);
+                ButtonEnum button = getButtonEnum(view);
+                if (Objects.nonNull(button)) {
+                    buttonViews[button.ordinal()] = view;
+                }
+            }
+            Optional.ofNullable(getLeftJoyStick()).ifPresent(views::add);
+            Optional.ofNullable(getRightJoyStick()).ifPresent(views::add);
+            touchButtonViews = buttonViews;
+        }
+
+        @Override
+        public ButtonEnum getButton(View view) {
+            return getButtonEnum(view);
+        }
+
+        @Override
+        public void onButtonsChanged(int pressed, int released, long eventTime) {
+            if (Objects.isNull(device)) {
+                return;
+            }
+            device.setButtons(pressed, released, TOUCH, eventTime);
+            for (ButtonEnum button : BUTTONS) {
+                int bit = 1 << button.ordinal();
+                ImageButton view = touchButtonViews[button.ordinal()];
+                if (((pressed | released) & bit) != 0 && Objects.nonNull(view)) {
+                    view.setPressed((pressed & bit) != 0);
+                }
+            }
+            vibrate(pressed != 0 ? BUTTON_PRESS : BUTTON_RELEASE);
+        }
+    }
+
+    public void setDevice(JoyController device) {
+        this.device = device;
+        this.inputRouter = null;
+    }
+
     @Override
     public void onStart() {
         super.onStart();
-        buttonMap = getButtonMapping(getContext());
+        Context context = getContext();
+        MappingProfileStore mappingProfiles = MappingProfileStore.getInstance(context);
+        mappingProfiles.addListener(mappingProfileListener);
+        mapping = mappingProfiles.getActive().getMapping();
+        axisFlats.clear();
+        directGamepadInput = PreferenceUtils.getDirectGamepadInput(context);
+        stickSampling = PreferenceUtils.getStickSampling(context);
+        stickResponse = PreferenceUtils.getStickResponse(context).create();
+        mappingProfileChord = PreferenceUtils.getMappingProfileChord(context);
+        chordKeyDown = false;
+        chordConsumedKeyCode = KeyEvent.KEYCODE_UNKNOWN;
+        inputRouter = null;
     }
 
-    public Map<Integer, ButtonType> getButtonMap() {
-        if (Objects.isNull(buttonMap)) {
-            buttonMap = getButtonMapping(getContext());
+    @Override
+    public void onStop() {
+        super.onStop();
+        Optional.ofNullable(getContext()).ifPresent(context -> {
+            MappingProfileStore.getInstance(context).removeListener(mappingProfileListener);
+            DeviceCalibrationStore.getInstance(context).save();
+        });
+        if (Objects.nonNull(device)) {
+            log(TAG, device.getLatencyTracer().summary());
         }
-        return buttonMap;
     }
 
-    public Map<JoystickType, ControllerAction> getJoystickMap() {
-        if (Objects.isNull(joystickMap)) {
-            joystickMap = getJoystickMapping(getContext());
+    private void onMappingProfileChanged(MappingProfiles.Profile profile) {
+        // Keys held under the old mapping would never see their release
+        if (Objects.nonNull(inputRouter)) {
+            inputRouter.releaseAll();
+            refreshGamepadInput();
         }
-        return joystickMap;
+        mapping = profile.getMapping();
+        inputRouter = null;
     }
 
-    public Map<Pair<Integer, Integer>, ButtonType> getAxisMap() {
-        if (Objects.isNull(axisMap)) {
-            axisMap = getAxisMapping(getContext());
+    public ControllerMapping getMapping() {
+        if (Objects.isNull(mapping)) {
+            mapping = MappingProfileStore.getInstance(getContext()).getActive().getMapping();
         }
-        return axisMap;
+        return mapping;
     }
 
 
@@ -194,7 +334,167 @@ public abstract class ControllerFragment extends Fragment {
 
     public abstract boolean reverseJoystickXy();
 
+    /**
+     * @return the button a view of the on-screen controller emits, null if it is not a button
+     */
+    protected ButtonEnum getButtonEnum(View view) {
+        return null;
+    }
+
+    /**
+     * Gamepad events update the controller state directly when enabled, otherwise they are
+     * replayed as touches on the on-screen views. Both ways stamp their changes with the event
+     * time.
+     */
     public boolean handleKey(int keyCode, KeyEvent keyEvent) {
+        if (mappingProfileChord && handleMappingProfileChord(keyCode, keyEvent)) {
+            return true;
+        }
+        GamepadInputRouter router = getInputRouter();
+        if (Objects.nonNull(router) && router.onKey(keyCode, keyEvent)) {
+            return true;
+        }
+        return dispatchKey(keyCode, keyEvent);
+    }
+
+    public boolean handleGenericMotionEvent(MotionEvent motionEvent) {
+        if (motionEvent == null) {
+            return false;
+        }
+        GamepadInputRouter router = getInputRouter();
+        if (Objects.nonNull(router)) {
+            router.onMotion(motionEvent);
+            return true;
+        }
+        return dispatchGenericMotionEvent(motionEvent);
+    }
+
+    /**
+     * Select + L1/R1 on the gamepad switches to the previous/next mapping profile. Select still
+     * reaches the controller, the shoulder button of the chord does not.
+     */
+    private boolean handleMappingProfileChord(int keyCode, KeyEvent keyEvent) {
+        int action = keyEvent.getAction();
+        if (keyCode == KEYCODE_BUTTON_SELECT) {
+            chordKeyDown = action == KeyEvent.ACTION_DOWN;
+            return false;
+        }
+        if (keyCode == chordConsumedKeyCode) {
+            if (action == KeyEvent.ACTION_UP) {
+                chordConsumedKeyCode = KeyEvent.KEYCODE_UNKNOWN;
+            }
+            return true;
+        }
+        Context context = getContext();
+        if (chordKeyDown && action == KeyEvent.ACTION_DOWN && Objects.nonNull(context)
+                && (keyCode == KEYCODE_BUTTON_L1 || keyCode == KEYCODE_BUTTON_R1)) {
+            chordConsumedKeyCode = keyCode;
+            MappingProfileStore store = MappingProfileStore.getInstance(context);
+            store.selectNext(keyCode == KEYCODE_BUTTON_R1 ? 1 : -1);
+            Toast.makeText(context,
+                    getString(R.string.mapping_profile_selected, store.getActive().getName()),
+                    Toast.LENGTH_SHORT).show();
+            return true;
+        }
+        return false;
+    }
+
+    private GamepadInputRouter getInputRouter() {
+        if (!directGamepadInput || Objects.isNull(device)) {
+            return null;
+        }
+        if (Objects.isNull(inputRouter)) {
+            ImageButton[] views = new ImageButton[BUTTONS.length];
+            for (ButtonType buttonType : ButtonType.values()) {
+                ImageButton view = getImageButton(buttonType);
+                ButtonEnum button = Objects.nonNull(view) ? getButtonEnum(view) : null;
+                if (Objects.nonNull(button)) {
+                    views[button.ordinal()] = view;
+                }
+            }
+            gamepadButtonViews = views;
+            device.setStickSamplingPolicy(stickSampling);
+            inputRouter = new GamepadInputRouter(device, new GamepadTarget(),
+                    getMapping(), axisFlats,
+                    DeviceCalibrationStore.getInstance(getContext()), stickResponse);
+        }
+        return inputRouter;
+    }
+
+    private class GamepadTarget implements GamepadInputRouter.Target {
+        @Override
+        public ButtonEnum getButton(ButtonType buttonType) {
+            return switch (buttonType) {
+                case LEFT_STICK -> hasStick(LEFT_JOYSTICK) ? LEFT_STICK_BUTTON : null;
+                case RIGHT_STICK -> hasStick(RIGHT_JOYSTICK) ? RIGHT_STICK_BUTTON : null;
+                default -> Optional.ofNullable(getImageButton(buttonType))
+                        .map(ControllerFragment.this::getButtonEnum)
+                        .orElse(null);
+            };
+        }
+
+        @Override
+        public boolean hasStick(JoystickType joystickType) {
+            return Objects.nonNull(joystickType == LEFT_JOYSTICK
+                    ? getLeftJoyStick() : getRightJoyStick());
+        }
+
+        @Override
+        public boolean reverseJoystickXy() {
+            return ControllerFragment.this.reverseJoystickXy();
+        }
+
+        @Override
+        public void onStateChanged() {
+            View view = getView();
+            if (!gamepadRefreshPending && Objects.nonNull(view)) {
+                gamepadRefreshPending = true;
+                view.postOnAnimation(gamepadRefresh);
+            }
+        }
+    }
+
+    /**
+     * Let the on-screen controller show the state set by the gamepad, once per frame.
+     */
+    private void refreshGamepadInput() {
+        gamepadRefreshPending = false;
+        GamepadInputRouter router = inputRouter;
+        if (Objects.isNull(router) || Objects.isNull(device)) {
+            return;
+        }
+        int changedButtons = router.takeChangedButtons();
+        for (ButtonEnum button : BUTTONS) {
+            if ((changedButtons & (1 << button.ordinal())) == 0) {
+                continue;
+            }
+            boolean pressed = device.getButton(button) == BUTTON_DOWN;
+            if (button == LEFT_STICK_BUTTON) {
+                setLeftStickPress(pressed);
+            } else if (button == RIGHT_STICK_BUTTON) {
+                setRightStickPress(pressed);
+            } else if (Objects.nonNull(gamepadButtonViews[button.ordinal()])) {
+                gamepadButtonViews[button.ordinal()].setPressed(pressed);
+                vibrate(pressed ? BUTTON_PRESS : BUTTON_RELEASE);
+            }
+        }
+        int changedSticks = router.takeChangedSticks();
+        if ((changedSticks & (1 << LEFT_JOYSTICK.ordinal())) != 0) {
+            showStick(getLeftJoyStick(), router, LEFT_JOYSTICK);
+        }
+        if ((changedSticks & (1 << RIGHT_JOYSTICK.ordinal())) != 0) {
+            showStick(getRightJoyStick(), router, RIGHT_JOYSTICK);
+        }
+    }
+
+    private static void showStick(JoyStick joyStick, GamepadInputRouter router,
+                                  JoystickType joystickType) {
+        if (Objects.nonNull(joyStick)) {
+            joyStick.showPosition(router.getViewX(joystickType), router.getViewY(joystickType));
+        }
+    }
+
+    private boolean dispatchKey(int keyCode, KeyEvent keyEvent) {
         MotionEvent event;
         if (keyEvent.getAction() == KeyEvent.ACTION_DOWN) {
             event = getTouchDownEvent();
@@ -204,39 +504,69 @@ public abstract class ControllerFragment extends Fragment {
             return false;
         }
 
-        Map<Integer, ButtonType> buttonMap = getButtonMap();
-        ButtonType buttonType = buttonMap.get(keyCode);
+        ButtonType buttonType = getMapping().getButton(keyCode);
         if (Objects.isNull(buttonType)) {
+            event.recycle();
             return false;
         }
 
-        return dispatchButton(keyEvent, event, buttonType);
+        boolean handled = dispatchButton(keyEvent, event, buttonType, keyEvent.getEventTime());
+        event.recycle();
+        return handled;
     }
 
-    private boolean dispatchButton(KeyEvent keyEvent, MotionEvent event, ButtonType buttonType) {
+    private boolean dispatchButton(KeyEvent keyEvent, MotionEvent event, ButtonType buttonType,
+                                   long eventTime) {
         return switch (buttonType) {
-            case LEFT -> dispatchEvent(getImageButtonLeft(), event);
-            case RIGHT -> dispatchEvent(getImageButtonRight(), event);
-            case UP -> dispatchEvent(getImageButtonUp(), event);
-            case DOWN -> dispatchEvent(getImageButtonDown(), event);
-            case B -> dispatchEvent(getImageButtonB(), event);
-            case A -> dispatchEvent(getImageButtonA(), event);
-            case Y -> dispatchEvent(getImageButtonY(), event);
-            case X -> dispatchEvent(getImageButtonX(), event);
-            case R -> dispatchEvent(getImageButtonR(), event);
-            case ZR -> dispatchEvent(getImageButtonZr(), event);
-            case RIGHT_SR, LEFT_SR -> dispatchEvent(getImageButtonSr(), event);
-            case L -> dispatchEvent(getImageButtonL(), event);
-            case ZL -> dispatchEvent(getImageButtonZl(), event);
-            case RIGHT_SL, LEFT_SL -> dispatchEvent(getImageButtonSl(), event);
-            case PLUS -> dispatchEvent(getImageButtonPlus(), event);
-            case MINUS -> dispatchEvent(getImageButtonMinus(), event);
-            case HOME -> dispatchEvent(getImageButtonHome(), event);
-            case CAPTURE -> dispatchEvent(getImageButtonCapture(), event);
             case LEFT_STICK -> setLeftStickPress(keyEvent.getAction() == KeyEvent.ACTION_DOWN);
             case RIGHT_STICK -> setRightStickPress(keyEvent.getAction() == KeyEvent.ACTION_DOWN);
-            case SYNC -> dispatchEvent(getImageButtonSync(), event);
-            default -> false;
+            default -> setButtonPressed(getImageButton(buttonType), event, eventTime);
+        };
+    }
+
+    /**
+     * Press or release a button of the on-screen controller the way a touch on it does, views
+     * that are not buttons get the event itself.
+     *
+     * @param eventTime time of the gamepad event behind it, to stamp the change
+     */
+    private boolean setButtonPressed(ImageButton view, MotionEvent event, long eventTime) {
+        ButtonEnum button = Objects.nonNull(view) ? getButtonEnum(view) : null;
+        if (Objects.isNull(button)) {
+            return dispatchEvent(view, event);
+        }
+        if (Objects.isNull(device)) {
+            return false;
+        }
+        boolean pressed = event.getAction() == MotionEvent.ACTION_DOWN;
+        view.setPressed(pressed);
+        vibrate(pressed ? BUTTON_PRESS : BUTTON_RELEASE);
+        device.setButton(button, pressed ? BUTTON_DOWN : BUTTON_UP, GAMEPAD, eventTime);
+        return true;
+    }
+
+    private ImageButton getImageButton(ButtonType buttonType) {
+        return switch (buttonType) {
+            case LEFT -> getImageButtonLeft();
+            case RIGHT -> getImageButtonRight();
+            case UP -> getImageButtonUp();
+            case DOWN -> getImageButtonDown();
+            case B -> getImageButtonB();
+            case A -> getImageButtonA();
+            case Y -> getImageButtonY();
+            case X -> getImageButtonX();
+            case R -> getImageButtonR();
+            case ZR -> getImageButtonZr();
+            case RIGHT_SR, LEFT_SR -> getImageButtonSr();
+            case L -> getImageButtonL();
+            case ZL -> getImageButtonZl();
+            case RIGHT_SL, LEFT_SL -> getImageButtonSl();
+            case PLUS -> getImageButtonPlus();
+            case MINUS -> getImageButtonMinus();
+            case HOME -> getImageButtonHome();
+            case CAPTURE -> getImageButtonCapture();
+            case SYNC -> getImageButtonSync();
+            default -> null;
         };
     }
 
@@ -246,38 +576,15 @@ public abstract class ControllerFragment extends Fragment {
                 .orElse(false);
     }
 
-    public boolean handleGenericMotionEvent(MotionEvent motionEvent) {
-        if (motionEvent == null) {
-            return false;
-        }
-
-        InputDevice device = motionEvent.getDevice();
+    private boolean dispatchGenericMotionEvent(MotionEvent motionEvent) {
+        ControllerMapping mapping = getMapping();
+        float[] flats = axisFlats.get(motionEvent);
         boolean reverse = reverseJoystickXy();
-        Map<JoystickType, ControllerAction> joystickMap = getJoystickMap();
-        ControllerAction rightJoystickAction = joystickMap.get(JoystickType.RIGHT_JOYSTICK);
-        ControllerAction leftJoystickAction = joystickMap.get(JoystickType.LEFT_JOYSTICK);
-
-        float rightStickX = 0;
-        float rightStickY = 0;
-        if (rightJoystickAction != null) {
-            rightStickX = (reverse ? -1 : 1) * getCenteredAxis(motionEvent, device,
-                    reverse ? rightJoystickAction.getAxisY() : rightJoystickAction.getAxisX());
-            rightStickY = getCenteredAxis(motionEvent, device,
-                    reverse ? rightJoystickAction.getAxisX() : rightJoystickAction.getAxisY());
-            rightStickX = rightStickX * rightJoystickAction.getDirectionX();
-            rightStickY = rightStickY * rightJoystickAction.getDirectionY() * -1;
-        }
-
-        float leftStickX = 0;
-        float leftStickY = 0;
-        if (leftJoystickAction != null) {
-            leftStickX = (reverse ? -1 : 1) * getCenteredAxis(motionEvent, device,
-                    reverse ? leftJoystickAction.getAxisY() : leftJoystickAction.getAxisX());
-            leftStickY = getCenteredAxis(motionEvent, device,
-                    reverse ? leftJoystickAction.getAxisX() : leftJoystickAction.getAxisY());
-            leftStickX = leftStickX * leftJoystickAction.getDirectionX();
-            leftStickY = leftStickY * leftJoystickAction.getDirectionY() * -1;
-        }
+
+        float rightStickX = getStickX(mapping, RIGHT_JOYSTICK, flats, motionEvent, reverse);
+        float rightStickY = getStickY(mapping, RIGHT_JOYSTICK, flats, motionEvent, reverse);
+        float leftStickX = getStickX(mapping, LEFT_JOYSTICK, flats, motionEvent, reverse);
+        float leftStickY = getStickY(mapping, LEFT_JOYSTICK, flats, motionEvent, reverse);
 
         JoyStick leftJoyStick = getLeftJoyStick();
         if (leftJoyStick != null) {
@@ -287,6 +594,7 @@ public abstract class ControllerFragment extends Fragment {
             MotionEvent joyStickEvent = getJoyStickEvent(leftStickX, leftStickY,
                     radius, centerX, centerY);
             leftJoyStick.dispatchTouchEvent(joyStickEvent);
+            joyStickEvent.recycle();
         }
 
         JoyStick rightJoyStick = getRightJoyStick();
@@ -294,9 +602,10 @@ public abstract class ControllerFragment extends Fragment {
             float radius = rightJoyStick.getRadius();
             float centerX = rightJoyStick.getCenterX();
             float centerY = rightJoyStick.getCenterY();
-            rightJoyStick.dispatchTouchEvent(
-                    getJoyStickEvent(rightStickX, rightStickY,
-                            radius, centerX, centerY));
+            MotionEvent joyStickEvent = getJoyStickEvent(rightStickX, rightStickY,
+                    radius, centerX, centerY);
+            rightJoyStick.dispatchTouchEvent(joyStickEvent);
+            joyStickEvent.recycle();
         }
 
         final boolean processed = Float.compare(leftStickX, prevLeftX) != 0
@@ -314,24 +623,44 @@ public abstract class ControllerFragment extends Fragment {
             processAxisHatY(motionEvent);
         }
 
-        Map<Pair<Integer, Integer>, ButtonType> axisMap = getAxisMap();
-        for (Map.Entry<Pair<Integer, Integer>, ButtonType> axisEntry : axisMap.entrySet()) {
-            Pair<Integer, Integer> key = axisEntry.getKey();
-            float centeredAxis = getCenteredAxis(motionEvent, device, key.getKey());
+        for (int i = 0; i < mapping.getAxisButtonCount(); i++) {
+            float centeredAxis = getCenteredAxis(flats, motionEvent, mapping.getAxisButtonAxis(i));
             MotionEvent event;
             KeyEvent keyEvent;
-            if (Math.signum(centeredAxis) == key.getValue()) {
+            if (Math.signum(centeredAxis) == mapping.getAxisButtonDirection(i)) {
                 event = getTouchDownEvent();
                 keyEvent = new KeyEvent(KeyEvent.ACTION_DOWN, 0);
             } else {
                 event = getTouchUpEvent();
                 keyEvent = new KeyEvent(KeyEvent.ACTION_UP, 0);
             }
-            dispatchButton(keyEvent, event, axisEntry.getValue());
+            dispatchButton(keyEvent, event, mapping.getAxisButton(i),
+                    motionEvent.getEventTime());
+            event.recycle();
         }
         return true;
     }
 
+    private static float getStickX(ControllerMapping mapping, JoystickType joystick,
+                                   float[] flats, MotionEvent motionEvent, boolean reverse) {
+        if (!mapping.hasStick(joystick)) {
+            return 0;
+        }
+        int axis = reverse ? mapping.getStickAxisY(joystick) : mapping.getStickAxisX(joystick);
+        return (reverse ? -1 : 1) * getCenteredAxis(flats, motionEvent, axis)
+                * mapping.getStickDirectionX(joystick);
+    }
+
+    private static float getStickY(ControllerMapping mapping, JoystickType joystick,
+                                   float[] flats, MotionEvent motionEvent, boolean reverse) {
+        if (!mapping.hasStick(joystick)) {
+            return 0;
+        }
+        int axis = reverse ? mapping.getStickAxisX(joystick) : mapping.getStickAxisY(joystick);
+        return getCenteredAxis(flats, motionEvent, axis)
+                * mapping.getStickDirectionY(joystick) * -1;
+    }
+
     private int prevXkeyCode = -1;
     private int prevYkexCode = -1;
 
@@ -348,11 +677,11 @@ public abstract class ControllerFragment extends Fragment {
         }
 
         if (prevXkeyCode != keyCode && prevXkeyCode != -1) {
-            handleKey(prevXkeyCode, new KeyEvent(KeyEvent.ACTION_UP, prevXkeyCode));
+            dispatchKey(prevXkeyCode, new KeyEvent(KeyEvent.ACTION_UP, prevXkeyCode));
         }
         prevXkeyCode = keyCode;
         if (keyCode != -1) {
-            handleKey(keyCode, new KeyEvent(KeyEvent.ACTION_DOWN, keyCode));
+            dispatchKey(keyCode, new KeyEvent(KeyEvent.ACTION_DOWN, keyCode));
         }
     }
 
@@ -368,11 +697,11 @@ public abstract class ControllerFragment extends Fragment {
         }
 
         if (prevYkexCode != keyCode && prevYkexCode != -1) {
-            handleKey(prevYkexCode, new KeyEvent(KeyEvent.ACTION_UP, prevYkexCode));
+            dispatchKey(prevYkexCode, new KeyEvent(KeyEvent.ACTION_UP, prevYkexCode));
         }
         prevYkexCode = keyCode;
         if (keyCode != -1) {
-            handleKey(keyCode, new KeyEvent(KeyEvent.ACTION_DOWN, keyCode));
+            dispatchKey(keyCode, new KeyEvent(KeyEvent.ACTION_DOWN, keyCode));
         }
     }
 
@@ -386,33 +715,88 @@ public abstract class ControllerFragment extends Fragment {
         return sensorManager;
     }
 
+    /**
+     * Motion samples go through the sensor hub's shared memory when the device supports it,
+     * otherwise through batched listener callbacks on a sensor thread.
+     */
+    private synchronized SensorSource getSensorSource() {
+        if (Objects.isNull(sensorSource) && Objects.nonNull(device)) {
+            SensorManager sensorManager = getSensorManager();
+            if (Objects.isNull(sensorManager)) {
+                return null;
+            }
+            if (!directChannelFailed && DirectChannelSensorSource.isSupported(sensorManager)) {
+                sensorSource = new DirectChannelSensorSource(sensorManager, device);
+                device.getMotionPipeline().setSensorSource(sensorSource);
+            } else {
+                sensorSource = new BatchedSensorSource(sensorManager, device);
+            }
+        }
+        return sensorSource;
+    }
+
+    private void registerSensor(int sensorType) {
+        SensorSource source = getSensorSource();
+        if (Objects.isNull(source)) {
+            return;
+        }
+        JoyControllerState.SensorMode sensorMode = device.getState().getSensorMode();
+        if (sensorMode == JoyControllerState.SensorMode.INACTIVE) {
+            // The console has not asked for motion, nothing to sample yet
+            source.unregister(sensorType);
+            return;
+        }
+        int packetRate = PreferenceUtils.getPacketRate(getContext());
+        int samplingPeriodUs = SensorTiming.samplingPeriodUs(
+                packetRate, sensorMode == JoyControllerState.SensorMode.QUATERNION);
+        if (!source.register(sensorType, samplingPeriodUs,
+                SensorTiming.maxReportLatencyUs(packetRate, samplingPeriodUs))) {
+            if (source instanceof DirectChannelSensorSource) {
+                fallBackToBatchedSource();
+            } else {
+                log(TAG, "Sensor " + sensorType + " not available");
+            }
+        }
+    }
+
+    /**
+     * The direct channel could not take a sensor, switch both sensors to listeners.
+     */
+    private synchronized void fallBackToBatchedSource() {
+        log(TAG, "Direct channel failed, using sensor listeners");
+        directChannelFailed = true;
+        device.getMotionPipeline().setSensorSource(null);
+        sensorSource.close();
+        sensorSource = null;
+        registerAccelerometerListener();
+        registerGyroscopeListener();
+    }
+
+    /**
+     * Follow the IMU configuration sent with subcommand 0x40.
+     */
+    public void onSensorModeChanged(JoyControllerState.SensorMode sensorMode) {
+        log(TAG, "Sensor mode changed: " + sensorMode);
+        registerAccelerometerListener();
+        registerGyroscopeListener();
+    }
+
     public void registerAccelerometerListener() {
         if (Objects.isNull(device)) {
             return;
         }
-        SensorManager sensorManager = getSensorManager();
-        if (Objects.nonNull(sensorManager)) {
-            senAccelerometer = sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
-            if (Objects.nonNull(senAccelerometer)
-                    && device.isAccelerometerEnabled()
-                    && PreferenceUtils.getAccelerometerEnabled(getContext())
-            ) {
-                sensorManager.registerListener(
-                        device, senAccelerometer, SwitchController.SAMPLING_INTERVAL);
-            }
+        if (device.isAccelerometerEnabled()
+                && PreferenceUtils.getAccelerometerEnabled(getContext())) {
+            registerSensor(Sensor.TYPE_ACCELEROMETER);
         }
     }
 
     public void unregisterAccelerometerListener() {
-        if (Objects.isNull(device)) {
+        if (Objects.isNull(device) || Objects.isNull(sensorSource)) {
             return;
         }
-        SensorManager sensorManager = getSensorManager();
-        if (Objects.nonNull(sensorManager)) {
-            senAccelerometer = sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
-            if (Objects.nonNull(senAccelerometer) && !device.isAccelerometerEnabled()) {
-                sensorManager.unregisterListener(device, senAccelerometer);
-            }
+        if (!device.isAccelerometerEnabled()) {
+            sensorSource.unregister(Sensor.TYPE_ACCELEROMETER);
         }
     }
 
@@ -420,29 +804,30 @@ public abstract class ControllerFragment extends Fragment {
         if (Objects.isNull(device)) {
             return;
         }
-        SensorManager sensorManager = getSensorManager();
-        if (Objects.nonNull(sensorManager)) {
-            senGyroscope = sensorManager.getDefaultSensor(Sensor.TYPE_GYROSCOPE);
-            if (Objects.nonNull(senGyroscope)
-                    && device.isGyroscopeEnabled()
-                    && PreferenceUtils.getGyroscopeEnabled(getContext())
-            ) {
-                sensorManager.registerListener(
-                        device, senGyroscope, SwitchController.SAMPLING_INTERVAL);
-            }
+        if (device.isGyroscopeEnabled()
+                && PreferenceUtils.getGyroscopeEnabled(getContext())) {
+            registerSensor(Sensor.TYPE_GYROSCOPE);
         }
     }
 
     public void unregisterGyroscopeListener() {
-        if (Objects.isNull(device)) {
+        if (Objects.isNull(device) || Objects.isNull(sensorSource)) {
             return;
         }
-        SensorManager sensorManager = getSensorManager();
-        if (Objects.nonNull(sensorManager)) {
-            senGyroscope = sensorManager.getDefaultSensor(Sensor.TYPE_GYROSCOPE);
-            if (Objects.nonNull(senGyroscope) && !device.isGyroscopeEnabled()) {
-                sensorManager.unregisterListener(device, senGyroscope);
+        if (!device.isGyroscopeEnabled()) {
+            sensorSource.unregister(Sensor.TYPE_GYROSCOPE);
+        }
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        if (Objects.nonNull(sensorSource)) {
+            if (Objects.nonNull(device)) {
+                device.getMotionPipeline().setSensorSource(null);
             }
+            sensorSource.close();
+            sensorSource = null;
         }
     }
 
@@ -492,6 +877,64 @@ public abstract class ControllerFragment extends Fragment {
         selectFileResultLauncher.launch(intent);
     }
 
+    /**
+     * Pick the active tag from the amiibo library, or choose a library folder or single file.
+     */
+    protected void showAmiiboLibrary() {
+        Context context = getContext();
+        if (Objects.isNull(context) || Objects.isNull(device)) {
+            return;
+        }
+        if (Objects.nonNull(amiiboLibraryDialog) && amiiboLibraryDialog.isShowing()) {
+            return;
+        }
+        AmiiboLibrary library = AmiiboLibrary.getInstance(context);
+        AmiiboIndex index = library.getIndex();
+        AlertDialog.Builder builder = new AlertDialog.Builder(context)
+                .setTitle(R.string.amiibo_library_title)
+                .setNeutralButton(R.string.amiibo_library_folder,
+                        (dialog, which) -> selectFolderResultLauncher.launch(library.getFolder()))
+                .setNegativeButton(R.string.amiibo_library_file,
+                        (dialog, which) -> openFileSelectionDialog());
+        if (index.size() == 0) {
+            builder.setMessage(R.string.amiibo_library_empty);
+        } else {
+            String[] names = new String[index.size()];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = index.get(i).getName();
+            }
+            // By entry, the scan below may reorder the index while the dialog is open
+            builder.setSingleChoiceItems(names, library.getActivePosition(), (dialog, which) -> {
+                device.selectAmiibo(index.get(which)).exceptionally(e -> {
+                    log(TAG, "Amiibo selection failed", e);
+                    return null;
+                });
+                dialog.dismiss();
+            });
+            // Pick up added or changed dumps for the next time
+            library.scan();
+        }
+        amiiboLibraryDialog = builder.show();
+    }
+
+    protected void onFolderSelected(Uri treeUri) {
+        Context context = getContext();
+        if (Objects.isNull(treeUri) || Objects.isNull(context)) {
+            return;
+        }
+        AmiiboLibrary.getInstance(context).setFolder(treeUri)
+                .thenRun(() -> {
+                    FragmentActivity activity = getActivity();
+                    if (Objects.nonNull(activity)) {
+                        activity.runOnUiThread(this::showAmiiboLibrary);
+                    }
+                })
+                .exceptionally(e -> {
+                    log(TAG, "Amiibo library scan failed", e);
+                    return null;
+                });
+    }
+
     protected void onFileSelected(Intent data) {
         if (data != null) {
             Context context = getContext();
@@ -4,6 +4,7 @@ import static android.app.Activity.RESULT_OK;
 import static com.rdapps.gamepad.ControllerActivity.CUSTOM_UI_URL;
 import static com.rdapps.gamepad.button.ButtonState.BUTTON_DOWN;
 import static com.rdapps.gamepad.button.ButtonState.BUTTON_UP;
+import static com.rdapps.gamepad.input.InputLatencyTracer.Source.WEB;
 import static com.rdapps.gamepad.log.JoyConLog.log;
 
 import android.annotation.SuppressLint;
@@ -11,6 +12,7 @@ import android.content.Context;
 import android.content.Intent;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -183,8 +185,9 @@ public class CustomFragment extends ControllerFragment {
             double x = power * Math.cos(angle);
             double y = power * Math.sin(angle);
 
-            device.setAxis(AxisEnum.LEFT_STICK_X, (int) x);
-            device.setAxis(AxisEnum.LEFT_STICK_Y, (int) y);
+            long eventTime = SystemClock.uptimeMillis();
+            device.setAxis(AxisEnum.LEFT_STICK_X, (int) x, WEB, eventTime);
+            device.setAxis(AxisEnum.LEFT_STICK_Y, (int) y, WEB, eventTime);
         }
 
         @JavascriptInterface
@@ -245,8 +248,9 @@ public class CustomFragment extends ControllerFragment {
             double x = power * Math.cos(angle);
             double y = power * Math.sin(angle);
 
-            device.setAxis(AxisEnum.RIGHT_STICK_X, (int) x);
-            device.setAxis(AxisEnum.RIGHT_STICK_Y, (int) y);
+            long eventTime = SystemClock.uptimeMillis();
+            device.setAxis(AxisEnum.RIGHT_STICK_X, (int) x, WEB, eventTime);
+            device.setAxis(AxisEnum.RIGHT_STICK_Y, (int) y, WEB, eventTime);
         }
 
         @JavascriptInterface
@@ -362,7 +366,7 @@ public class CustomFragment extends ControllerFragment {
             buttonState = BUTTON_UP;
         }
 
-        device.setButton(buttonEnum, buttonState);
+        device.setButton(buttonEnum, buttonState, WEB, SystemClock.uptimeMillis());
     }
 
     @Override
@@ -6,10 +6,8 @@ import static com.rdapps.gamepad.button.ButtonEnum.LEFT_SR;
 import static com.rdapps.gamepad.button.ButtonEnum.LEFT_STICK_BUTTON;
 import static com.rdapps.gamepad.button.ButtonEnum.MINUS;
 import static com.rdapps.gamepad.button.ButtonEnum.RIGHT;
-import static com.rdapps.gamepad.button.ButtonState.BUTTON_DOWN;
+import static com.rdapps.gamepad.input.InputLatencyTracer.Source.TOUCH;
 import static com.rdapps.gamepad.nintendoswitch.SwitchController.ButtonStates.UP;
-import static com.rdapps.gamepad.vibrator.VibrationPattern.BUTTON_PRESS;
-import static com.rdapps.gamepad.vibrator.VibrationPattern.BUTTON_RELEASE;
 import static com.rdapps.gamepad.vibrator.VibrationPattern.STICK_PRESS;
 import static com.rdapps.gamepad.vibrator.VibrationPattern.STICK_RELEASE;
 
@@ -17,7 +15,6 @@ import android.content.Context;
 import android.graphics.drawable.Drawable;
 import android.os.Bundle;
 import android.view.LayoutInflater;
-import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ImageButton;
@@ -62,7 +59,7 @@ public class LeftJoyConFragment extends ControllerFragment
 
     @Override
     public View onCreateView(LayoutInflater inflater, ViewGroup parent, Bundle savedInstanceState) {
-        return inflater.inflate(R.layout.left_joycon_layout, parent, false);
+        return wrapTouchRoot(inflater.inflate(R.layout.left_joycon_layout, parent, false));
     }
 
     @Override
@@ -86,17 +83,6 @@ public class LeftJoyConFragment extends ControllerFragment
         led3 = view.findViewById(R.id.led3);
         led4 = view.findViewById(R.id.led4);
 
-        View.OnTouchListener buttonTouchListener = new ButtonTouchListener();
-        imageButtonSr.setOnTouchListener(buttonTouchListener);
-        imageButtonSl.setOnTouchListener(buttonTouchListener);
-        imageButtonUp.setOnTouchListener(buttonTouchListener);
-        imageButtonDown.setOnTouchListener(buttonTouchListener);
-        imageButtonLeft.setOnTouchListener(buttonTouchListener);
-        imageButtonRight.setOnTouchListener(buttonTouchListener);
-        imageButtonL.setOnTouchListener(buttonTouchListener);
-        imageButtonZl.setOnTouchListener(buttonTouchListener);
-        imageButtonCapture.setOnTouchListener(buttonTouchListener);
-        imageButtonMinus.setOnTouchListener(buttonTouchListener);
         joyStick.setListener(this);
         imageButtonSync.setOnClickListener(this);
     }
@@ -109,8 +95,8 @@ public class LeftJoyConFragment extends ControllerFragment
 
         double x = power * Math.cos(angle) * -1;
         double y = power * Math.sin(angle);
-        device.setAxis(AxisEnum.LEFT_STICK_X, (int) x);
-        device.setAxis(AxisEnum.LEFT_STICK_Y, (int) y);
+        device.setAxis(AxisEnum.LEFT_STICK_X, (int) x, TOUCH, joyStick.getEventTime());
+        device.setAxis(AxisEnum.LEFT_STICK_Y, (int) y, TOUCH, joyStick.getEventTime());
     }
 
     @Override
@@ -157,55 +143,30 @@ public class LeftJoyConFragment extends ControllerFragment
         }
     }
 
-    private class ButtonTouchListener implements View.OnTouchListener {
-
-        @Override
-        public boolean onTouch(View v, MotionEvent event) {
-            if (Objects.isNull(device)) {
-                return false;
-            }
-
-            int action = event.getAction();
-            int buttonState;
-            if (action == MotionEvent.ACTION_DOWN) {
-                v.setPressed(true);
-                buttonState = SwitchController.ButtonStates.DOWN;
-            } else if (action == MotionEvent.ACTION_UP) {
-                v.setPressed(false);
-                buttonState = UP;
-            } else {
-                return false;
-            }
-
-            vibrate(buttonState == BUTTON_DOWN ? BUTTON_PRESS : BUTTON_RELEASE);
-
-            ButtonEnum buttonEnum;
-            if (v == imageButtonSl) {
-                buttonEnum = LEFT_SL;
-            } else if (v == imageButtonSr) {
-                buttonEnum = LEFT_SR;
-            } else if (v == imageButtonLeft) {
-                buttonEnum = LEFT;
-            } else if (v == imageButtonRight) {
-                buttonEnum = RIGHT;
-            } else if (v == imageButtonDown) {
-                buttonEnum = ButtonEnum.DOWN;
-            } else if (v == imageButtonUp) {
-                buttonEnum = ButtonEnum.UP;
-            } else if (v == imageButtonL) {
-                buttonEnum = ButtonEnum.L;
-            } else if (v == imageButtonZl) {
-                buttonEnum = ButtonEnum.ZL;
-            } else if (v == imageButtonCapture) {
-                buttonEnum = ButtonEnum.CAPTURE;
-            } else if (v == imageButtonMinus) {
-                buttonEnum = MINUS;
-            } else {
-                return false;
-            }
-            device.setButton(buttonEnum, buttonState);
-            return true;
+    @Override
+    protected ButtonEnum getButtonEnum(View view) {
+        if (view == imageButtonSl) {
+            return LEFT_SL;
+        } else if (view == imageButtonSr) {
+            return LEFT_SR;
+        } else if (view == imageButtonLeft) {
+            return LEFT;
+        } else if (view == imageButtonRight) {
+            return RIGHT;
+        } else if (view == imageButtonDown) {
+            return ButtonEnum.DOWN;
+        } else if (view == imageButtonUp) {
+            return ButtonEnum.UP;
+        } else if (view == imageButtonL) {
+            return ButtonEnum.L;
+        } else if (view == imageButtonZl) {
+            return ButtonEnum.ZL;
+        } else if (view == imageButtonCapture) {
+            return ButtonEnum.CAPTURE;
+        } else if (view == imageButtonMinus) {
+            return MINUS;
         }
+        return null;
     }
 
     @Override
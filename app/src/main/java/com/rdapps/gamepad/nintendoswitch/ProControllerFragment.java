@@ -18,8 +18,7 @@ import static com.rdapps.gamepad.button.ButtonEnum.ZL;
 import static com.rdapps.gamepad.button.ButtonEnum.ZR;
 import static com.rdapps.gamepad.button.ButtonState.BUTTON_DOWN;
 import static com.rdapps.gamepad.button.ButtonState.BUTTON_UP;
-import static com.rdapps.gamepad.vibrator.VibrationPattern.BUTTON_PRESS;
-import static com.rdapps.gamepad.vibrator.VibrationPattern.BUTTON_RELEASE;
+import static com.rdapps.gamepad.input.InputLatencyTracer.Source.TOUCH;
 import static com.rdapps.gamepad.vibrator.VibrationPattern.STICK_PRESS;
 import static com.rdapps.gamepad.vibrator.VibrationPattern.STICK_RELEASE;
 
@@ -27,7 +26,6 @@ import android.content.Context;
 import android.graphics.drawable.Drawable;
 import android.os.Bundle;
 import android.view.LayoutInflater;
-import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ImageButton;
@@ -79,7 +77,7 @@ public class ProControllerFragment extends ControllerFragment implements View.On
 
     @Override
     public View onCreateView(LayoutInflater inflater, ViewGroup parent, Bundle savedInstanceState) {
-        return inflater.inflate(R.layout.pro_controller_layout, parent, false);
+        return wrapTouchRoot(inflater.inflate(R.layout.pro_controller_layout, parent, false));
     }
 
     @Override
@@ -110,24 +108,7 @@ public class ProControllerFragment extends ControllerFragment implements View.On
         led3 = view.findViewById(R.id.led3);
         led4 = view.findViewById(R.id.led4);
 
-        View.OnTouchListener buttonTouchListener = new ButtonTouchListener();
-        imageButtonUp.setOnTouchListener(buttonTouchListener);
-        imageButtonDown.setOnTouchListener(buttonTouchListener);
-        imageButtonLeft.setOnTouchListener(buttonTouchListener);
-        imageButtonRight.setOnTouchListener(buttonTouchListener);
-        imageButtonL.setOnTouchListener(buttonTouchListener);
-        imageButtonZl.setOnTouchListener(buttonTouchListener);
-        imageButtonCapture.setOnTouchListener(buttonTouchListener);
-        imageButtonMinus.setOnTouchListener(buttonTouchListener);
         leftJoyStick.setListener(new LeftStickListener());
-        imageButtonA.setOnTouchListener(buttonTouchListener);
-        imageButtonB.setOnTouchListener(buttonTouchListener);
-        imageButtonX.setOnTouchListener(buttonTouchListener);
-        imageButtonY.setOnTouchListener(buttonTouchListener);
-        imageButtonR.setOnTouchListener(buttonTouchListener);
-        imageButtonZr.setOnTouchListener(buttonTouchListener);
-        imageButtonHome.setOnTouchListener(buttonTouchListener);
-        imageButtonPlus.setOnTouchListener(buttonTouchListener);
         rightJoyStick.setListener(new RightStickListener());
         imageButtonSync.setOnClickListener(this);
     }
@@ -142,8 +123,8 @@ public class ProControllerFragment extends ControllerFragment implements View.On
             double x = power * Math.cos(angle) * -1;
             double y = power * Math.sin(angle) * -1;
 
-            device.setAxis(AxisEnum.LEFT_STICK_X, (int) y);
-            device.setAxis(AxisEnum.LEFT_STICK_Y, (int) x);
+            device.setAxis(AxisEnum.LEFT_STICK_X, (int) y, TOUCH, joyStick.getEventTime());
+            device.setAxis(AxisEnum.LEFT_STICK_Y, (int) x, TOUCH, joyStick.getEventTime());
         }
 
         @Override
@@ -187,8 +168,8 @@ public class ProControllerFragment extends ControllerFragment implements View.On
             double x = power * Math.cos(angle) * -1;
             double y = power * Math.sin(angle) * -1;
 
-            device.setAxis(AxisEnum.RIGHT_STICK_X, (int) y);
-            device.setAxis(AxisEnum.RIGHT_STICK_Y, (int) x);
+            device.setAxis(AxisEnum.RIGHT_STICK_X, (int) y, TOUCH, joyStick.getEventTime());
+            device.setAxis(AxisEnum.RIGHT_STICK_Y, (int) x, TOUCH, joyStick.getEventTime());
         }
 
         @Override
@@ -230,67 +211,42 @@ public class ProControllerFragment extends ControllerFragment implements View.On
         }
     }
 
-    private class ButtonTouchListener implements View.OnTouchListener {
-
-        @Override
-        public boolean onTouch(View v, MotionEvent event) {
-            if (Objects.isNull(device)) {
-                return false;
-            }
-
-            int action = event.getAction();
-            int buttonState;
-            if (action == MotionEvent.ACTION_DOWN) {
-                v.setPressed(true);
-                buttonState = BUTTON_DOWN;
-            } else if (action == MotionEvent.ACTION_UP) {
-                v.setPressed(false);
-                buttonState = BUTTON_UP;
-            } else {
-                return false;
-            }
-
-            vibrate(buttonState == BUTTON_DOWN ? BUTTON_PRESS : BUTTON_RELEASE);
-
-            ButtonEnum buttonEnum;
-            if (v == imageButtonLeft) {
-                buttonEnum = LEFT;
-            } else if (v == imageButtonRight) {
-                buttonEnum = RIGHT;
-            } else if (v == imageButtonDown) {
-                buttonEnum = DOWN;
-            } else if (v == imageButtonUp) {
-                buttonEnum = UP;
-            } else if (v == imageButtonL) {
-                buttonEnum = L;
-            } else if (v == imageButtonZl) {
-                buttonEnum = ZL;
-            } else if (v == imageButtonCapture) {
-                buttonEnum = CAPTURE;
-            } else if (v == imageButtonMinus) {
-                buttonEnum = MINUS;
-            } else if (v == imageButtonY) {
-                buttonEnum = Y;
-            } else if (v == imageButtonA) {
-                buttonEnum = A;
-            } else if (v == imageButtonB) {
-                buttonEnum = B;
-            } else if (v == imageButtonX) {
-                buttonEnum = X;
-            } else if (v == imageButtonR) {
-                buttonEnum = ButtonEnum.R;
-            } else if (v == imageButtonZr) {
-                buttonEnum = ZR;
-            } else if (v == imageButtonHome) {
-                buttonEnum = HOME;
-            } else if (v == imageButtonPlus) {
-                buttonEnum = PLUS;
-            } else {
-                return false;
-            }
-            device.setButton(buttonEnum, buttonState);
-            return true;
+    @Override
+    protected ButtonEnum getButtonEnum(View view) {
+        if (view == imageButtonLeft) {
+            return LEFT;
+        } else if (view == imageButtonRight) {
+            return RIGHT;
+        } else if (view == imageButtonDown) {
+            return DOWN;
+        } else if (view == imageButtonUp) {
+            return UP;
+        } else if (view == imageButtonL) {
+            return L;
+        } else if (view == imageButtonZl) {
+            return ZL;
+        } else if (view == imageButtonCapture) {
+            return CAPTURE;
+        } else if (view == imageButtonMinus) {
+            return MINUS;
+        } else if (view == imageButtonY) {
+            return Y;
+        } else if (view == imageButtonA) {
+            return A;
+        } else if (view == imageButtonB) {
+            return B;
+        } else if (view == imageButtonX) {
+            return X;
+        } else if (view == imageButtonR) {
+            return ButtonEnum.R;
+        } else if (view == imageButtonZr) {
+            return ZR;
+        } else if (view == imageButtonHome) {
+            return HOME;
+        } else if (view == imageButtonPlus) {
+            return PLUS;
         }
+        return null;
     }
 
     @Override
@@ -406,7 +362,7 @@ public class ProControllerFragment extends ControllerFragment implements View.On
 
     @Override
     public void showAmiiboPicker() {
-        openFileSelectionDialog();
+        showAmiiboLibrary();
     }
 
     @Override
@@ -10,11 +10,9 @@ import static com.rdapps.gamepad.button.ButtonEnum.RIGHT_STICK_BUTTON;
 import static com.rdapps.gamepad.button.ButtonEnum.X;
 import static com.rdapps.gamepad.button.ButtonEnum.Y;
 import static com.rdapps.gamepad.button.ButtonEnum.ZR;
-import static com.rdapps.gamepad.button.ButtonState.BUTTON_DOWN;
+import static com.rdapps.gamepad.input.InputLatencyTracer.Source.TOUCH;
 import static com.rdapps.gamepad.nintendoswitch.SwitchController.ButtonStates.DOWN;
 import static com.rdapps.gamepad.nintendoswitch.SwitchController.ButtonStates.UP;
-import static com.rdapps.gamepad.vibrator.VibrationPattern.BUTTON_PRESS;
-import static com.rdapps.gamepad.vibrator.VibrationPattern.BUTTON_RELEASE;
 import static com.rdapps.gamepad.vibrator.VibrationPattern.STICK_PRESS;
 import static com.rdapps.gamepad.vibrator.VibrationPattern.STICK_RELEASE;
 
@@ -22,7 +20,6 @@ import android.content.Context;
 import android.graphics.drawable.Drawable;
 import android.os.Bundle;
 import android.view.LayoutInflater;
-import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ImageButton;
@@ -67,7 +64,7 @@ public class RightJoyConFragment extends ControllerFragment
 
     @Override
     public View onCreateView(LayoutInflater inflater, ViewGroup parent, Bundle savedInstanceState) {
-        return inflater.inflate(R.layout.right_joycon_layout, parent, false);
+        return wrapTouchRoot(inflater.inflate(R.layout.right_joycon_layout, parent, false));
     }
 
     @Override
@@ -91,17 +88,6 @@ public class RightJoyConFragment extends ControllerFragment
         led3 = view.findViewById(R.id.led3);
         led4 = view.findViewById(R.id.led4);
 
-        View.OnTouchListener buttonTouchListener = new ButtonTouchListener();
-        imageButtonSr.setOnTouchListener(buttonTouchListener);
-        imageButtonSl.setOnTouchListener(buttonTouchListener);
-        imageButtonA.setOnTouchListener(buttonTouchListener);
-        imageButtonB.setOnTouchListener(buttonTouchListener);
-        imageButtonX.setOnTouchListener(buttonTouchListener);
-        imageButtonY.setOnTouchListener(buttonTouchListener);
-        imageButtonR.setOnTouchListener(buttonTouchListener);
-        imageButtonZr.setOnTouchListener(buttonTouchListener);
-        imageButtonHome.setOnTouchListener(buttonTouchListener);
-        imageButtonPlus.setOnTouchListener(buttonTouchListener);
         joyStick.setListener(this);
         imageButtonSync.setOnClickListener(this);
     }
@@ -114,8 +100,8 @@ public class RightJoyConFragment extends ControllerFragment
 
         double x = power * Math.cos(angle) * -1;
         double y = power * Math.sin(angle);
-        device.setAxis(AxisEnum.RIGHT_STICK_X, (int) x);
-        device.setAxis(AxisEnum.RIGHT_STICK_Y, (int) y);
+        device.setAxis(AxisEnum.RIGHT_STICK_X, (int) x, TOUCH, joyStick.getEventTime());
+        device.setAxis(AxisEnum.RIGHT_STICK_Y, (int) y, TOUCH, joyStick.getEventTime());
     }
 
     @Override
@@ -162,55 +148,30 @@ public class RightJoyConFragment extends ControllerFragment
         return true;
     }
 
-    private class ButtonTouchListener implements View.OnTouchListener {
-
-        @Override
-        public boolean onTouch(View v, MotionEvent event) {
-            if (Objects.isNull(device)) {
-                return false;
-            }
-
-            int action = event.getAction();
-            int buttonState;
-            if (action == MotionEvent.ACTION_DOWN) {
-                v.setPressed(true);
-                buttonState = DOWN;
-            } else if (action == MotionEvent.ACTION_UP) {
-                v.setPressed(false);
-                buttonState = UP;
-            } else {
-                return false;
-            }
-
-            vibrate(buttonState == BUTTON_DOWN ? BUTTON_PRESS : BUTTON_RELEASE);
-
-            ButtonEnum buttonEnum;
-            if (v == imageButtonSl) {
-                buttonEnum = RIGHT_SL;
-            } else if (v == imageButtonSr) {
-                buttonEnum = RIGHT_SR;
-            } else if (v == imageButtonY) {
-                buttonEnum = Y;
-            } else if (v == imageButtonA) {
-                buttonEnum = A;
-            } else if (v == imageButtonB) {
-                buttonEnum = B;
-            } else if (v == imageButtonX) {
-                buttonEnum = X;
-            } else if (v == imageButtonR) {
-                buttonEnum = ButtonEnum.R;
-            } else if (v == imageButtonZr) {
-                buttonEnum = ZR;
-            } else if (v == imageButtonHome) {
-                buttonEnum = HOME;
-            } else if (v == imageButtonPlus) {
-                buttonEnum = PLUS;
-            } else {
-                return false;
-            }
-            device.setButton(buttonEnum, buttonState);
-            return true;
+    @Override
+    protected ButtonEnum getButtonEnum(View view) {
+        if (view == imageButtonSl) {
+            return RIGHT_SL;
+        } else if (view == imageButtonSr) {
+            return RIGHT_SR;
+        } else if (view == imageButtonY) {
+            return Y;
+        } else if (view == imageButtonA) {
+            return A;
+        } else if (view == imageButtonB) {
+            return B;
+        } else if (view == imageButtonX) {
+            return X;
+        } else if (view == imageButtonR) {
+            return ButtonEnum.R;
+        } else if (view == imageButtonZr) {
+            return ZR;
+        } else if (view == imageButtonHome) {
+            return HOME;
+        } else if (view == imageButtonPlus) {
+            return PLUS;
         }
+        return null;
     }
 
     @Override
@@ -325,7 +286,7 @@ public class RightJoyConFragment extends ControllerFragment
 
     @Override
     public void showAmiiboPicker() {
-        openFileSelectionDialog();
+        showAmiiboLibrary();
     }
 
     @Override
@@ -79,6 +79,7 @@ import android.os.Build;
 import android.os.Process;
 import android.util.Log;
 import com.google.android.gms.common.util.Hex;
+import com.rdapps.gamepad.amiibo.AmiiboStore;
 import com.rdapps.gamepad.device.AbstractDevice;
 import com.rdapps.gamepad.log.JoyConLog;
 import com.rdapps.gamepad.memory.FileSpiMemory;
@@ -190,7 +191,7 @@ public class SwitchController extends AbstractDevice {
         calculateCoeffs();
         this.amiiboBytes = null;
         this.mcuMode = new McuMode();
-        this.amiiboBytes = PreferenceUtils.getAmiiboBytes(context);
+        this.amiiboBytes = AmiiboStore.getInstance(context).getActive();
     }
 
     private void calculateCoeffs() {
@@ -544,12 +545,10 @@ public class SwitchController extends AbstractDevice {
             output[12] = ACK | REQUEST_SPI_FLASH_READ;
             output[13] = subcommand;
 
-            byte[] readBytes = eeprom.read(eepromLocation, len);
-
             //SPI read reply
             //Copy parameters back to reply
             System.arraycopy(data, 10, output, 14, 5);
-            System.arraycopy(readBytes, 0, output, 19, readBytes.length);
+            eeprom.read(eepromLocation, output, 19, Math.min(len, output.length - 19));
         } else if (subcommand == REQUEST_SPI_FLASH_WRITE) { // SPI flash Write
             Log.w(TAG, "Unknown Subcommand : " + ByteUtils.encodeHexString(subcommand));
             Log.w(TAG, "Unknown Subcommand  Data: " + Hex.bytesToStringUppercase(data));
@@ -878,7 +877,7 @@ public class SwitchController extends AbstractDevice {
         buffer[index + 1] = (byte) 0x06; //0x91;
         //JoyCon Type 1=Left Joy-Con, 2=Right Joy-Con, 3=Pro Controller.
         //buffer[index + 2] = type.getTypeByte();
-        buffer[index + 2] = eeprom.read(0x6012, 1)[0];
+        buffer[index + 2] = eeprom.readByte(0x6012);
         //Unknown
         buffer[index + 3] = 0x02;
 
@@ -892,7 +891,7 @@ public class SwitchController extends AbstractDevice {
         buffer[index + 10] = 0x01;
         //If 01, colors in SPI are used. Otherwise, default ones.
         //  buffer[index + 11] = 0x01;
-        buffer[index + 11] = eeprom.read(0x601B, 1)[0];
+        buffer[index + 11] = eeprom.readByte(0x601B);
         ;
     }
 
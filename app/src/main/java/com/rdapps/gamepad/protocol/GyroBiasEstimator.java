@@ -0,0 +1,157 @@
+package com.rdapps.gamepad.protocol;
+
+/**
+ * Online gyroscope bias estimate for the phone's own gyro.
+ *
+ * <p>
+ * Keeps an exponential moving mean and variance of both sensors. While both variances stay
+ * below their thresholds and the gyro mean is close to the current bias estimate for
+ * {@link #STATIONARY_NS}, the phone is considered to be lying still and the bias is pulled
+ * towards the measured rate with a slow EMA. Windows and the bias EMA follow the sample
+ * timestamps, so they last as long at the 45 Hz of a low packet rate as at 200 Hz. A sample
+ * costs a few multiply-adds and nothing is allocated.
+ *
+ * <p>
+ * A slow, steady rotation looks the same as a bias, so the window is long and the rate
+ * accepted as still is small; once the estimate has settled it may only move by
+ * {@link #MAX_BIAS_STEP} per still period, so a slow pan is not learned as bias.
+ */
+public class GyroBiasEstimator {
+    // Fast EMA used for the stillness statistics
+    private static final float STAT_ALPHA = 0.1f;
+    // Time constant of the slow EMA for the bias itself
+    private static final float BIAS_TIME_CONSTANT_S = 2.5f;
+
+    // Summed variance over the three axes
+    private static final float GYRO_VARIANCE_THRESHOLD = 1e-3f; // (rad/s)^2
+    private static final float ACC_VARIANCE_THRESHOLD = 2e-2f; // (m/s^2)^2
+    // Largest believable bias, a constant rate above this is a real rotation
+    private static final float MAX_BIAS = 0.035f; // rad/s
+    // Largest distance from a settled estimate that is still taken for bias
+    private static final float MAX_BIAS_STEP = 0.01f; // rad/s
+    // Still time before the bias is learned, and learning time until it has settled
+    private static final long STATIONARY_NS = 1_000_000_000L;
+    private static final long SETTLED_NS = 5_000_000_000L;
+    // Longest gap between samples counted as time, e.g. after the sensor was paused
+    private static final long MAX_SAMPLE_GAP_NS = 100_000_000L;
+    private static final long NONE = Long.MIN_VALUE;
+
+    private final float[] bias = new float[3];
+    private final float[] gyroMean = new float[3];
+    private final float[] accMean = new float[3];
+    private float gyroVariance = Float.MAX_VALUE;
+    private float accVariance = Float.MAX_VALUE;
+    private long lastGyroNs = NONE;
+    private long stillSinceNs = NONE;
+    private long learnedNs = 0;
+    private boolean stationary = false;
+    private boolean gyroSeen = false;
+    private boolean accSeen = false;
+
+    public void updateAccel(float x, float y, float z) {
+        if (!accSeen) {
+            accMean[0] = x;
+            accMean[1] = y;
+            accMean[2] = z;
+            accSeen = true;
+        }
+        accVariance = updateStats(accMean, accVariance, x, y, z);
+    }
+
+    /**
+     * Feed a gyroscope sample (rad/s, sensor frame) and update the bias when still.
+     *
+     * @param timestampNs sample time, SensorEvent.timestamp clock
+     */
+    public void updateGyro(float x, float y, float z, long timestampNs) {
+        long dtNs = lastGyroNs == NONE ? 0
+                : Math.max(0, Math.min(MAX_SAMPLE_GAP_NS, timestampNs - lastGyroNs));
+        lastGyroNs = timestampNs;
+        if (!gyroSeen) {
+            gyroMean[0] = x;
+            gyroMean[1] = y;
+            gyroMean[2] = z;
+            gyroSeen = true;
+        }
+        gyroVariance = updateStats(gyroMean, gyroVariance, x, y, z);
+
+        if (!isStill()) {
+            stillSinceNs = NONE;
+            stationary = false;
+            return;
+        }
+        if (stillSinceNs == NONE) {
+            stillSinceNs = timestampNs;
+        }
+        stationary = timestampNs - stillSinceNs >= STATIONARY_NS;
+        if (stationary) {
+            float alpha = Math.min(1f, dtNs / 1e9f / BIAS_TIME_CONSTANT_S);
+            bias[0] += alpha * (x - bias[0]);
+            bias[1] += alpha * (y - bias[1]);
+            bias[2] += alpha * (z - bias[2]);
+            if (learnedNs < SETTLED_NS) {
+                learnedNs += dtNs;
+            }
+        }
+    }
+
+    private boolean isStill() {
+        if (gyroVariance > GYRO_VARIANCE_THRESHOLD || accVariance > ACC_VARIANCE_THRESHOLD) {
+            return false;
+        }
+        float dx = gyroMean[0] - bias[0];
+        float dy = gyroMean[1] - bias[1];
+        float dz = gyroMean[2] - bias[2];
+        float maxStep = learnedNs >= SETTLED_NS ? MAX_BIAS_STEP : MAX_BIAS;
+        return gyroMean[0] * gyroMean[0] + gyroMean[1] * gyroMean[1]
+                + gyroMean[2] * gyroMean[2] < MAX_BIAS * MAX_BIAS
+                && dx * dx + dy * dy + dz * dz < maxStep * maxStep;
+    }
+
+    // EMA mean/variance (West's incremental form), returns the new summed variance
+    private static float updateStats(float[] mean, float variance, float x, float y, float z) {
+        float dx = x - mean[0];
+        float dy = y - mean[1];
+        float dz = z - mean[2];
+        mean[0] += STAT_ALPHA * dx;
+        mean[1] += STAT_ALPHA * dy;
+        mean[2] += STAT_ALPHA * dz;
+        float sample = dx * dx + dy * dy + dz * dz;
+        if (variance == Float.MAX_VALUE) {
+            return sample;
+        }
+        return (1 - STAT_ALPHA) * (variance + STAT_ALPHA * sample);
+    }
+
+    public float getBiasX() {
+        return bias[0];
+    }
+
+    public float getBiasY() {
+        return bias[1];
+    }
+
+    public float getBiasZ() {
+        return bias[2];
+    }
+
+    public boolean isStationary() {
+        return stationary;
+    }
+
+    public void reset() {
+        for (int i = 0; i < 3; i++) {
+            bias[i] = 0;
+            gyroMean[i] = 0;
+            accMean[i] = 0;
+        }
+        gyroVariance = Float.MAX_VALUE;
+        accVariance = Float.MAX_VALUE;
+        lastGyroNs = NONE;
+        stillSinceNs = NONE;
+        learnedNs = 0;
+        stationary = false;
+        gyroSeen = false;
+        accSeen = false;
+    }
+}
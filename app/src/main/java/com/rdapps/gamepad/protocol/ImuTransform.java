@@ -0,0 +1,139 @@
+package com.rdapps.gamepad.protocol;
+
+import static com.rdapps.gamepad.protocol.ControllerType.PRO_CONTROLLER;
+import static com.rdapps.gamepad.protocol.ControllerType.RIGHT_JOYCON;
+
+/**
+ * Converts Android sensor samples into raw Joy-Con IMU values.
+ *
+ * <p>
+ * The orientation remap (Joy-Cons are held sideways, the Pro Controller is not), the sign
+ * flips of the right Joy-Con and the SPI calibration scale are folded into one 3x3 matrix
+ * per sensor when the coefficients are calculated. Matrices and offsets are stored as
+ * 16.16 fixed-point ints, so a sample costs nine integer multiply-adds and no branches.
+ */
+public class ImuTransform {
+    private static final int FRACTION_BITS = 16;
+    private static final float ONE = 1 << FRACTION_BITS;
+    private static final long ROUND = 1L << (2 * FRACTION_BITS - 1);
+
+    // Row major: out[i] = sum(matrix[i * 3 + j] * in[j]) + offset[i]
+    private final int[] accMatrix = new int[9];
+    private final int[] gyrMatrix = new int[9];
+    private final long[] accOffset = new long[3];
+    private final long[] gyrOffset = new long[3];
+
+    // Remap without calibration scale (rad/s in, rad/s out) for quaternion integration
+    private final double[] gyrRemap = new double[9];
+
+    private ImuTransform() {
+    }
+
+    /**
+     * Compile the transform for a controller type from the SPI calibration coefficients.
+     *
+     * @param controllerType emulated controller
+     * @param accCoeffs      accelerometer scale per axis (raw units per m/s^2)
+     * @param gyrCoeffs      gyroscope scale per axis (raw units per rad/s)
+     * @param gyrOffset      gyroscope raw offset per axis
+     */
+    public static ImuTransform compile(ControllerType controllerType,
+                                       double[] accCoeffs,
+                                       double[] gyrCoeffs,
+                                       short[] gyrOffset) {
+        ImuTransform transform = new ImuTransform();
+        double[] remap = remapMatrix(controllerType);
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) {
+                int index = i * 3 + j;
+                transform.accMatrix[index] = toFixed(remap[index] * accCoeffs[i]);
+                transform.gyrMatrix[index] = toFixed(remap[index] * gyrCoeffs[i]);
+                transform.gyrRemap[index] = remap[index];
+            }
+            transform.gyrOffset[i] = ((long) gyrOffset[i]) << (2 * FRACTION_BITS);
+        }
+        return transform;
+    }
+
+    /**
+     * Sensor axis to Joy-Con axis matrix.
+     * Pro Controller: (x, y, z). Joy-Con: (y, -x, z). Right Joy-Con additionally flips x and z.
+     */
+    private static double[] remapMatrix(ControllerType controllerType) {
+        double sign = controllerType == RIGHT_JOYCON ? -1 : 1;
+        if (controllerType == PRO_CONTROLLER) {
+            return new double[]{
+                    sign, 0, 0,
+                    0, 1, 0,
+                    0, 0, sign
+            };
+        }
+        return new double[]{
+                0, 1, 0,
+                -sign, 0, 0,
+                0, 0, sign
+        };
+    }
+
+    private static int toFixed(double value) {
+        return (int) Math.round(value * ONE);
+    }
+
+    /**
+     * Convert an accelerometer sample (m/s^2) and write it little-endian at buf[offset].
+     */
+    public void writeAccel(float x, float y, float z, byte[] buf, int offset) {
+        apply(accMatrix, accOffset, x, y, z, buf, offset);
+    }
+
+    /**
+     * Convert a gyroscope sample (rad/s) and write it little-endian at buf[offset].
+     */
+    public void writeGyro(float x, float y, float z, byte[] buf, int offset) {
+        apply(gyrMatrix, gyrOffset, x, y, z, buf, offset);
+    }
+
+    /**
+     * Convert an accelerometer sample (m/s^2) into out[0..2].
+     */
+    public void transformAccel(float x, float y, float z, short[] out) {
+        long fx = Math.round(x * ONE);
+        long fy = Math.round(y * ONE);
+        long fz = Math.round(z * ONE);
+        for (int i = 0; i < 3; i++) {
+            out[i] = toRaw(accMatrix[i * 3] * fx
+                    + accMatrix[i * 3 + 1] * fy
+                    + accMatrix[i * 3 + 2] * fz);
+        }
+    }
+
+    /**
+     * Rotate a gyroscope sample (rad/s) into the controller frame without scaling.
+     */
+    public void remapGyro(float x, float y, float z, double[] out) {
+        for (int i = 0; i < 3; i++) {
+            out[i] = gyrRemap[i * 3] * x + gyrRemap[i * 3 + 1] * y + gyrRemap[i * 3 + 2] * z;
+        }
+    }
+
+    private static void apply(int[] matrix, long[] offset,
+                              float x, float y, float z, byte[] buf, int pos) {
+        long fx = Math.round(x * ONE);
+        long fy = Math.round(y * ONE);
+        long fz = Math.round(z * ONE);
+        for (int i = 0; i < 3; i++) {
+            short raw = toRaw(matrix[i * 3] * fx
+                    + matrix[i * 3 + 1] * fy
+                    + matrix[i * 3 + 2] * fz
+                    + offset[i]);
+            buf[pos + i * 2] = (byte) (raw & 0xFF);
+            buf[pos + i * 2 + 1] = (byte) ((raw >> 8) & 0xFF);
+        }
+    }
+
+    // 32.32 accumulator -> rounded, saturated int16
+    private static short toRaw(long acc) {
+        long value = (acc + ROUND) >> (2 * FRACTION_BITS);
+        return (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, value));
+    }
+}
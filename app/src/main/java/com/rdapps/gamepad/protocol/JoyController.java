@@ -1,6 +1,7 @@
 package com.rdapps.gamepad.protocol;
 
 import static com.rdapps.gamepad.log.JoyConLog.log;
+import static com.rdapps.gamepad.nfcirmcu.NfcIrMcu.Action.START_TAG_POLLING;
 import static com.rdapps.gamepad.toast.ToastHelper.missingPermission;
 
 import android.Manifest;
@@ -10,27 +11,43 @@ import android.content.Context;
 import android.hardware.Sensor;
 import android.hardware.SensorEvent;
 import android.os.Build;
+import android.os.SystemClock;
 import com.google.android.gms.common.util.Hex;
 import com.rdapps.gamepad.BuildConfig;
 import com.rdapps.gamepad.amiibo.AmiiboConfig;
+import com.rdapps.gamepad.amiibo.AmiiboIndex;
+import com.rdapps.gamepad.amiibo.AmiiboLibrary;
 import com.rdapps.gamepad.button.AxisEnum;
 import com.rdapps.gamepad.button.ButtonEnum;
 import com.rdapps.gamepad.button.ButtonState;
 import com.rdapps.gamepad.command.handler.InputHandler;
 import com.rdapps.gamepad.command.handler.OutputHandler;
+import com.rdapps.gamepad.command.handler.subcommand.SubCommandReplyCache;
 import com.rdapps.gamepad.device.AbstractDevice;
+import com.rdapps.gamepad.input.InputLatencyTracer;
+import com.rdapps.gamepad.input.StickSampler;
 import com.rdapps.gamepad.led.LedState;
 import com.rdapps.gamepad.log.JoyConLog;
+import com.rdapps.gamepad.macro.InputPlayer;
+import com.rdapps.gamepad.macro.InputRecorder;
+import com.rdapps.gamepad.macro.MacroEngine;
 import com.rdapps.gamepad.memory.ControllerMemory;
+import com.rdapps.gamepad.nfcirmcu.IrFrameSource;
+import com.rdapps.gamepad.nfcirmcu.NfcIrMcu;
 import com.rdapps.gamepad.report.InputReport;
 import com.rdapps.gamepad.report.OutputReport;
 import com.rdapps.gamepad.sensor.AccelerometerEvent;
 import com.rdapps.gamepad.sensor.GyroscopeEvent;
+import com.rdapps.gamepad.sensor.SensorSink;
 import com.rdapps.gamepad.util.ByteUtils;
 import com.rdapps.gamepad.util.ThreadUtil;
 import com.rdapps.gamepad.vibrator.RumbleData;
+import java.io.File;
+import java.io.IOException;
 import java.util.Objects;
 import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
@@ -40,8 +57,10 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import lombok.Getter;
 import lombok.Setter;
 
-public class JoyController extends AbstractDevice {
+public class JoyController extends AbstractDevice implements SensorSink {
     private static final String TAG = JoyController.class.getName();
+    private static final AxisEnum[] AXES = AxisEnum.values();
+    private static final int SENSOR_POOL_SIZE = 32;
 
     @Getter
     private final ControllerType controllerType;
@@ -54,6 +73,22 @@ public class JoyController extends AbstractDevice {
     @Getter
     private final ButtonState buttonState;
 
+    //Gamepad stick timelines, resolved once per report
+    @Getter
+    private final StickSampler leftStickSampler = new StickSampler();
+    @Getter
+    private final StickSampler rightStickSampler = new StickSampler();
+    private final float[] stickSample = new float[2];
+
+    // Button state as sent in the current report, with macros, turbo and playback applied
+    private final ButtonState reportButtonState;
+    @Getter
+    private final MacroEngine macroEngine = new MacroEngine();
+    private volatile InputRecorder inputRecorder;
+    private volatile InputPlayer inputPlayer;
+    @Getter
+    private final InputLatencyTracer latencyTracer = new InputLatencyTracer();
+
     //Amiibo
     @Getter
     private final AmiiboConfig amiiboConfig;
@@ -84,6 +119,22 @@ public class JoyController extends AbstractDevice {
     private final Queue<AccelerometerEvent> accelerometerEvents = new LinkedBlockingQueue<>();
     @Getter
     private final Queue<GyroscopeEvent> gyroscopeEvents = new LinkedBlockingQueue<>();
+    // Samples handed back by the motion pipeline, reused instead of allocating per sample
+    private final Queue<AccelerometerEvent> freeAccelerometerEvents =
+            new ArrayBlockingQueue<>(SENSOR_POOL_SIZE);
+    private final Queue<GyroscopeEvent> freeGyroscopeEvents =
+            new ArrayBlockingQueue<>(SENSOR_POOL_SIZE);
+
+    //Motion
+    @Getter
+    private final MotionPipeline motionPipeline;
+
+    //Handshake replies
+    @Getter
+    private final SubCommandReplyCache replyCache;
+
+    // Set on connection, cleared once the first full report is out
+    private volatile long connectTimeNs = 0;
 
     @Getter
     @Setter
@@ -118,18 +169,60 @@ public class JoyController extends AbstractDevice {
         this.controllerType = controllerType;
         this.controllerMemory = controllerMemory;
         this.buttonState = buttonState;
+        this.reportButtonState = new ButtonState(controllerType);
         this.amiiboConfig = amiiboConfig;
         this.executorService = executorService;
         this.controllerConfig = controllerConfig;
         this.state = state;
         this.listener = listener;
         this.isInFullMode = new AtomicBoolean(false);
+        for (int i = 0; i < SENSOR_POOL_SIZE; i++) {
+            AccelerometerEvent accelerometerEvent = new AccelerometerEvent();
+            accelerometerEvent.values = new float[3];
+            freeAccelerometerEvents.add(accelerometerEvent);
+            GyroscopeEvent gyroscopeEvent = new GyroscopeEvent();
+            gyroscopeEvent.values = new float[3];
+            freeGyroscopeEvents.add(gyroscopeEvent);
+        }
+        this.motionPipeline = new MotionPipeline(accelerometerEvents, gyroscopeEvents,
+                freeAccelerometerEvents, freeGyroscopeEvents, state);
+        this.replyCache = new SubCommandReplyCache();
+        controllerMemory.setChangeListener(replyCache);
     }
 
     public void setButton(ButtonEnum button, int value) {
         this.buttonState.setButton(button, value);
     }
 
+    /**
+     * Set a button and stamp the change with the time of the input event behind it. Setting
+     * the value it already has is not a change and is not stamped.
+     */
+    public void setButton(ButtonEnum button, int value,
+                          InputLatencyTracer.Source source, long eventTime) {
+        if (this.buttonState.getButton(button) == value) {
+            return;
+        }
+        this.buttonState.setButton(button, value);
+        latencyTracer.stamp(source, eventTime);
+    }
+
+    /**
+     * Press and release several buttons at once, one bit per {@link ButtonEnum} ordinal.
+     */
+    public void setButtons(int pressMask, int releaseMask) {
+        this.buttonState.applyButtonMasks(pressMask, releaseMask);
+    }
+
+    public void setButtons(int pressMask, int releaseMask,
+                           InputLatencyTracer.Source source, long eventTime) {
+        int before = this.buttonState.getButtonMask();
+        this.buttonState.applyButtonMasks(pressMask, releaseMask);
+        if (this.buttonState.getButtonMask() != before) {
+            latencyTracer.stamp(source, eventTime);
+        }
+    }
+
     public int getButton(ButtonEnum button) {
         return this.buttonState.getButton(button);
     }
@@ -138,19 +231,192 @@ public class JoyController extends AbstractDevice {
         this.buttonState.setAxis(axis, value);
     }
 
+    /**
+     * Set an axis and stamp the change, like {@link #setButton(ButtonEnum, int,
+     * InputLatencyTracer.Source, long)}.
+     */
+    public void setAxis(AxisEnum axis, int value,
+                        InputLatencyTracer.Source source, long eventTime) {
+        if (this.buttonState.getAxis(axis) == value) {
+            return;
+        }
+        this.buttonState.setAxis(axis, value);
+        latencyTracer.stamp(source, eventTime);
+    }
+
     public int getAxis(AxisEnum axis) {
         return this.buttonState.getAxis(axis);
     }
 
+    public void setStickSamplingPolicy(StickSampler.Policy policy) {
+        leftStickSampler.setPolicy(policy);
+        rightStickSampler.setPolicy(policy);
+    }
+
+    /**
+     * Write the sticks sampled since the last report into the button state. Sticks without
+     * new gamepad samples keep their state, e.g. from touches. Called on the report thread.
+     */
+    public void sampleSticks() {
+        long now = SystemClock.uptimeMillis();
+        sampleStick(leftStickSampler, now, AxisEnum.LEFT_STICK_X, AxisEnum.LEFT_STICK_Y);
+        sampleStick(rightStickSampler, now, AxisEnum.RIGHT_STICK_X, AxisEnum.RIGHT_STICK_Y);
+    }
+
+    private void sampleStick(StickSampler sampler, long now, AxisEnum axisX, AxisEnum axisY) {
+        if (sampler.sample(now, stickSample)) {
+            setAxis(axisX, Math.round(stickSample[0]));
+            setAxis(axisY, Math.round(stickSample[1]));
+        }
+    }
+
+    /**
+     * Copy the button state for the next report and lay the macros and turbo buttons of this
+     * report over it. Called on the report thread, once per report.
+     *
+     * <p>
+     * The input stamps are taken first, a change set after them reaches the
+     * {@link InputLatencyTracer} with the next report even if this snapshot already has it.
+     */
+    public ButtonState snapshotButtonState() {
+        latencyTracer.takePending();
+        reportButtonState.copyFrom(buttonState);
+        macroEngine.tick(reportButtonState.getButtonMask());
+        reportButtonState.applyButtonMasks(macroEngine.getPressMask(),
+                macroEngine.getReleaseMask());
+
+        InputPlayer player = inputPlayer;
+        if (Objects.nonNull(player)) {
+            if (player.next()) {
+                int buttons = player.getButtons();
+                reportButtonState.applyButtonMasks(buttons, ~buttons);
+                for (AxisEnum axis : AXES) {
+                    reportButtonState.setAxis(axis, player.getAxis(axis.ordinal()));
+                }
+            } else {
+                log(TAG, "Playback finished after " + player.getCount() + " reports");
+                if (inputPlayer == player) {
+                    inputPlayer = null;
+                }
+            }
+        }
+        return reportButtonState;
+    }
+
+    /**
+     * Put the motion of the playback into the filled report and record the report. Called on
+     * the report thread after {@link #snapshotButtonState()} once the report is filled.
+     */
+    public void onReportFilled(byte[] report) {
+        InputPlayer player = inputPlayer;
+        if (Objects.nonNull(player) && player.hasRecord()) {
+            player.copyImu(report, InputReport.MOTION_OFFSET);
+        }
+        InputRecorder recorder = inputRecorder;
+        if (Objects.nonNull(recorder)) {
+            try {
+                recorder.record(reportButtonState.getButtonMask(),
+                        reportButtonState.getAxis(AxisEnum.LEFT_STICK_X),
+                        reportButtonState.getAxis(AxisEnum.LEFT_STICK_Y),
+                        reportButtonState.getAxis(AxisEnum.RIGHT_STICK_X),
+                        reportButtonState.getAxis(AxisEnum.RIGHT_STICK_Y),
+                        report, InputReport.MOTION_OFFSET);
+            } catch (IOException e) {
+                log(TAG, "Recording failed", e);
+                stopRecording();
+            }
+        }
+    }
+
+    /**
+     * Record the state of every full report into a file, replacing a running recording and
+     * stopping a playback. The service notification starts and stops a recording and replays
+     * the last one.
+     *
+     * @param imu record the motion block as well
+     */
+    public synchronized void startRecording(File file, boolean imu) throws IOException {
+        stopRecording();
+        stopPlayback();
+        inputRecorder = new InputRecorder(file, imu, controllerConfig.getPacketRate());
+    }
+
+    public synchronized void stopRecording() {
+        InputRecorder recorder = inputRecorder;
+        inputRecorder = null;
+        if (Objects.nonNull(recorder)) {
+            try {
+                recorder.close();
+                log(TAG, "Recorded " + recorder.getRecords() + " reports");
+            } catch (IOException e) {
+                log(TAG, "Recording could not be closed", e);
+            }
+        }
+    }
+
+    public boolean isRecording() {
+        return Objects.nonNull(inputRecorder);
+    }
+
+    /**
+     * Send a recording from the next full report on, one record per report, instead of the
+     * live input. Ends by itself after the last record.
+     */
+    public void startPlayback(File file) throws IOException {
+        InputPlayer player = new InputPlayer(file);
+        if (player.getPacketRate() != controllerConfig.getPacketRate()) {
+            log(TAG, "Recorded at " + player.getPacketRate() + " reports per second, playing at "
+                    + controllerConfig.getPacketRate());
+        }
+        inputPlayer = player;
+    }
+
+    public void stopPlayback() {
+        inputPlayer = null;
+    }
+
+    public boolean isPlayingBack() {
+        return Objects.nonNull(inputPlayer);
+    }
+
+    private void applyTurbo() {
+        int period = controllerConfig.getTurboPeriod();
+        macroEngine.clearTurbo();
+        for (ButtonEnum button : controllerConfig.getTurboButtons()) {
+            macroEngine.setTurbo(button, period);
+        }
+    }
+
     public void setAmiiboBytes(byte[] bytes) {
         amiiboConfig.setAmiiboBytes(bytes);
     }
 
+    /**
+     * Put a library tag on the reader. While the console polls, an empty reader is reported
+     * for a few frames first so the swap is noticed.
+     */
+    public CompletableFuture<Void> selectAmiibo(AmiiboIndex.Entry entry) {
+        return AmiiboLibrary.getInstance(context).select(entry).thenRun(() -> {
+            NfcIrMcu nfcIrMcu = state.getNfcIrMcu();
+            if (nfcIrMcu.getAction() == START_TAG_POLLING) {
+                nfcIrMcu.setRemoveFramesRemaining(4);
+            }
+        });
+    }
+
+    /**
+     * Frames for the emulated IR camera, a test pattern until set.
+     */
+    public void setIrFrameSource(IrFrameSource source) {
+        state.getNfcIrMcu().getIrCamera().setSource(source);
+    }
+
     @Override
     public void setRemoteDevice(BluetoothDevice pluggedDevice) {
         super.setRemoteDevice(pluggedDevice);
         // TODO Is handshake needed?
         if (Objects.nonNull(pluggedDevice)) {
+            connectTimeNs = System.nanoTime();
             log(TAG, "Handshake sent.");
             startHandShake();
         } else {
@@ -174,11 +440,18 @@ public class JoyController extends AbstractDevice {
     public synchronized void startFullReportMode() {
         stopFullReportMode();
         isInFullMode.set(true);
+        applyTurbo();
+        motionPipeline.start(getDelay());
         executorService.execute(() -> {
             do {
                 long startTime = System.nanoTime();
                 boolean result = inputHandler.sendFullReport();
                 log(TAG, "Result: " + result);
+                if (result && connectTimeNs != 0) {
+                    log(TAG, "Connect to first full report: "
+                            + (System.nanoTime() - connectTimeNs) / 1000_000L + "ms");
+                    connectTimeNs = 0;
+                }
                 ControllerType controllerType = getControllerType();
                 long delay = getDelay();
                 long endTime = System.nanoTime();
@@ -198,6 +471,7 @@ public class JoyController extends AbstractDevice {
 
     public synchronized void stopFullReportMode() {
         isInFullMode.set(false);
+        motionPipeline.stop();
         if (Objects.nonNull(scheduledFuture) && !scheduledFuture.isCancelled()) {
             scheduledFuture.cancel(false);
         }
@@ -228,10 +502,47 @@ public class JoyController extends AbstractDevice {
     }
 
     public void setSensorMode(JoyControllerState.SensorMode mode) {
+        JoyControllerState.SensorMode previous = state.getSensorMode();
         state.setSensorMode(mode);
         if (mode == JoyControllerState.SensorMode.QUATERNION) {
             state.getQuaternionPacker().reset();
         }
+        if (previous != mode && listener != null) {
+            listener.setSensorMode(mode);
+        }
+    }
+
+    public void setImuSensitivity(int gyroSensitivity, int accSensitivity) {
+        state.setImuSensitivity(gyroSensitivity, accSensitivity);
+    }
+
+    /**
+     * Switch the SPI identity (colors, serial, calibration) and recompute what is derived
+     * from it. Meant to be called before the console reads the SPI image.
+     */
+    public void activateProfile(String name) {
+        controllerMemory.activateProfile(name);
+        state.calculateCoeffs(controllerMemory, controllerType);
+    }
+
+    /**
+     * Fill the reply cache for the connection handshake on the controller thread.
+     */
+    public void prewarmReplies() {
+        try {
+            executorService.execute(() -> replyCache.prewarm(this));
+        } catch (RejectedExecutionException e) {
+            log(TAG, "Executor Rejected", e);
+        }
+    }
+
+    /**
+     * The SPI image finished provisioning, drop everything derived from the bundled copy.
+     */
+    public void onSpiImageReady() {
+        controllerMemory.invalidate();
+        state.calculateCoeffs(controllerMemory, controllerType);
+        prewarmReplies();
     }
 
     public void setVibrationEnabled(boolean enabled) {
@@ -280,16 +591,42 @@ public class JoyController extends AbstractDevice {
     @Override
     public void stop() {
         stopFullReportMode();
+        motionPipeline.shutdown();
     }
 
     @Override
     public void onSensorChanged(SensorEvent event) {
-        if (Objects.nonNull(event) && Objects.nonNull(event.sensor)) {
-            if (event.sensor.getType() == Sensor.TYPE_ACCELEROMETER && isAccelerometerEnabled()) {
-                accelerometerEvents.add(AccelerometerEvent.createFromSensorEvent(event));
-            } else if (event.sensor.getType() == Sensor.TYPE_GYROSCOPE && isGyroscopeEnabled()) {
-                gyroscopeEvents.add(GyroscopeEvent.createFromSensorEvent(event));
+        if (Objects.nonNull(event) && Objects.nonNull(event.sensor) && event.values.length >= 3) {
+            // The sensor manager reuses its events, so the values are copied out
+            onSensorSample(event.sensor.getType(), event.timestamp,
+                    event.values[0], event.values[1], event.values[2]);
+        }
+    }
+
+    @Override
+    public void onSensorSample(int sensorType, long timestampNs, float x, float y, float z) {
+        if (sensorType == Sensor.TYPE_ACCELEROMETER && isAccelerometerEnabled()) {
+            AccelerometerEvent event = freeAccelerometerEvents.poll();
+            if (Objects.isNull(event)) {
+                event = new AccelerometerEvent();
+                event.values = new float[3];
+            }
+            event.timestamp = timestampNs;
+            event.values[0] = x;
+            event.values[1] = y;
+            event.values[2] = z;
+            accelerometerEvents.add(event);
+        } else if (sensorType == Sensor.TYPE_GYROSCOPE && isGyroscopeEnabled()) {
+            GyroscopeEvent event = freeGyroscopeEvents.poll();
+            if (Objects.isNull(event)) {
+                event = new GyroscopeEvent();
+                event.values = new float[3];
             }
+            event.timestamp = timestampNs;
+            event.values[0] = x;
+            event.values[1] = y;
+            event.values[2] = z;
+            gyroscopeEvents.add(event);
         }
     }
 
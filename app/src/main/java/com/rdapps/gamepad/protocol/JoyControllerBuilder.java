@@ -8,13 +8,9 @@ import com.rdapps.gamepad.command.handler.InputHandler;
 import com.rdapps.gamepad.command.handler.OutputHandler;
 import com.rdapps.gamepad.log.JoyConLog;
 import com.rdapps.gamepad.memory.ControllerMemory;
-import com.rdapps.gamepad.memory.DummySpiMemory;
-import com.rdapps.gamepad.memory.FileSpiMemory;
-import com.rdapps.gamepad.memory.RafSpiMemory;
-import com.rdapps.gamepad.memory.SpiMemory;
+import com.rdapps.gamepad.memory.ControllerMemoryStore;
 import com.rdapps.gamepad.util.MacUtils;
 import com.rdapps.gamepad.util.PriorityThreadFactory;
-import java.io.IOException;
 import java.util.Objects;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -54,7 +50,7 @@ public class JoyControllerBuilder {
 
         createExecutorService();
         JoyControllerState joyControllerState = new JoyControllerState(getMacBytes());
-        joyControllerState.calculateCoeffs(memory);
+        joyControllerState.calculateCoeffs(memory, type);
         JoyController joyController = new JoyController(
                 context,
                 type,
@@ -69,6 +65,8 @@ public class JoyControllerBuilder {
 
         joyController.setInputHandler(new InputHandler(joyController));
         joyController.setOutputHandler(new OutputHandler(joyController));
+        joyController.prewarmReplies();
+        memory.whenImageReady(joyController::onSpiImageReady);
         return joyController;
     }
 
@@ -103,37 +101,7 @@ public class JoyControllerBuilder {
     }
 
     private void createMemory() {
-        SpiMemory memory = null;
-        try {
-            memory = createRafSpiMemory();
-        } catch (IOException e) {
-            JoyConLog.log(TAG, "RAFSPIMemory Failed.", e);
-        }
-
-        if (Objects.isNull(memory)) {
-            try {
-                memory = createFileMemory();
-            } catch (IOException e) {
-                JoyConLog.log(TAG, "FileSPIMemory Failed.", e);
-            }
-        }
-
-        if (Objects.isNull(memory)) {
-            memory = new DummySpiMemory();
-        }
-
-        this.memory = new ControllerMemory(memory);
-    }
-
-    private RafSpiMemory createRafSpiMemory() throws IOException {
-        String bluetoothName = type.getBtName();
-        int memoryResource = type.getMemoryResource();
-        return new RafSpiMemory(context, bluetoothName, memoryResource);
-    }
-
-    private FileSpiMemory createFileMemory() throws IOException {
-        int memoryResource = type.getMemoryResource();
-        return new FileSpiMemory(context, memoryResource);
+        this.memory = ControllerMemoryStore.get(context, type);
     }
 
     private void createButtonsState() {
@@ -1,7 +1,9 @@
 package com.rdapps.gamepad.protocol;
 
 import android.content.Context;
+import com.rdapps.gamepad.button.ButtonEnum;
 import com.rdapps.gamepad.util.PreferenceUtils;
+import java.util.Set;
 import lombok.AllArgsConstructor;
 
 @AllArgsConstructor
@@ -17,4 +19,12 @@ public class JoyControllerConfig {
     public int getPacketRate() {
         return PreferenceUtils.getPacketRate(appContext);
     }
+
+    public Set<ButtonEnum> getTurboButtons() {
+        return PreferenceUtils.getTurboButtons(appContext);
+    }
+
+    public int getTurboPeriod() {
+        return PreferenceUtils.getTurboPeriod(appContext);
+    }
 }
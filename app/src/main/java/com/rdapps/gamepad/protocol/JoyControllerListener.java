@@ -8,4 +8,6 @@ public interface JoyControllerListener {
     void setPlayerLights(LedState led1, LedState led2, LedState led3, LedState led4);
 
     void rumble(int androidAmplitude);
+
+    void setSensorMode(JoyControllerState.SensorMode sensorMode);
 }
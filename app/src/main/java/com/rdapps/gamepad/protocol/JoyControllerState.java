@@ -21,6 +21,12 @@ public class JoyControllerState {
 
     private static final double G = 9.8f;
 
+    // Subcommand 0x41 ranges indexed by argument. Calibration is for the defaults.
+    private static final int[] GYRO_RANGES_DPS = {250, 500, 1000, 2000};
+    private static final int[] ACC_RANGES_G = {8, 4, 2, 16};
+    private static final int DEFAULT_GYRO_SENSITIVITY = 3;
+    private static final int DEFAULT_ACC_SENSITIVITY = 0;
+
     public enum SensorMode {
         INACTIVE, STANDARD, QUATERNION
     }
@@ -71,21 +77,28 @@ public class JoyControllerState {
     private double[] gyrCoeffs;
     @Getter
     private short[] gyrOffset;
+    @Getter
+    private volatile ImuTransform imuTransform;
+
+    private ControllerType controllerType;
+    @Getter
+    private int gyroSensitivity = DEFAULT_GYRO_SENSITIVITY;
+    @Getter
+    private int accSensitivity = DEFAULT_ACC_SENSITIVITY;
 
     public JoyControllerState(byte[] macBytes) {
         this.macBytes = macBytes;
     }
 
-    public void calculateCoeffs(SpiMemory memory) {
+    public void calculateCoeffs(SpiMemory memory, ControllerType controllerType) {
         accCoeffs = new double[3];
         gyrCoeffs = new double[3];
         accOffset = new int[3];
         gyrOffset = new short[3];
 
-        byte[] motionCalibration = memory.read(0x8026, 26);
-        if (toShort(motionCalibration, 0) != (short) 0xB2A1) {
-            motionCalibration = memory.read(0x601E, 26);
-        }
+        byte[] motionCalibration = new byte[26];
+        int calibrationLocation = memory.readShortLE(0x8026) == (short) 0xB2A1 ? 0x8026 : 0x601E;
+        memory.read(calibrationLocation, motionCalibration, 0, motionCalibration.length);
 
         log(TAG, "Motion Calibration: " + Hex.bytesToStringUppercase(motionCalibration));
 
@@ -103,6 +116,37 @@ public class JoyControllerState {
             log(TAG, "Gyro Calibration: " + i + ": " + gyrCoeffs[i]);
         }
 
+        this.controllerType = controllerType;
+        compileImuTransform();
+    }
+
+    /**
+     * Apply the ranges requested with subcommand 0x41. A narrower range means more raw units
+     * per m/s^2 or rad/s, so the calibrated scale is multiplied by default range / range.
+     * Unknown values fall back to the default range.
+     */
+    public void setImuSensitivity(int gyroSensitivity, int accSensitivity) {
+        this.gyroSensitivity = gyroSensitivity >= 0 && gyroSensitivity < GYRO_RANGES_DPS.length
+                ? gyroSensitivity : DEFAULT_GYRO_SENSITIVITY;
+        this.accSensitivity = accSensitivity >= 0 && accSensitivity < ACC_RANGES_G.length
+                ? accSensitivity : DEFAULT_ACC_SENSITIVITY;
+        if (controllerType != null) {
+            compileImuTransform();
+        }
+    }
+
+    private void compileImuTransform() {
+        double accScale = (double) ACC_RANGES_G[DEFAULT_ACC_SENSITIVITY]
+                / ACC_RANGES_G[accSensitivity];
+        double gyrScale = (double) GYRO_RANGES_DPS[DEFAULT_GYRO_SENSITIVITY]
+                / GYRO_RANGES_DPS[gyroSensitivity];
+        double[] scaledAcc = new double[3];
+        double[] scaledGyr = new double[3];
+        for (int i = 0; i < 3; i++) {
+            scaledAcc[i] = accCoeffs[i] * accScale;
+            scaledGyr[i] = gyrCoeffs[i] * gyrScale;
+        }
+        imuTransform = ImuTransform.compile(controllerType, scaledAcc, scaledGyr, gyrOffset);
     }
 
     /**
@@ -127,6 +171,7 @@ public class JoyControllerState {
         if (inputReportMode != NFC_IR_MODE) {
             nfcIrMcu.setMcuState(NfcIrMcu.McuState.NOT_INITIALIZED);
             nfcIrMcu.setAction(NfcIrMcu.Action.NON);
+            nfcIrMcu.getIrCamera().stop();
         }
     }
 
@@ -0,0 +1,252 @@
+package com.rdapps.gamepad.protocol;
+
+import static com.rdapps.gamepad.log.JoyConLog.log;
+
+import android.os.Process;
+import android.os.SystemClock;
+import com.rdapps.gamepad.sensor.AccelerometerEvent;
+import com.rdapps.gamepad.sensor.GyroscopeEvent;
+import com.rdapps.gamepad.sensor.SensorSource;
+import com.rdapps.gamepad.util.PriorityThreadFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Motion stage of the report pipeline.
+ *
+ * <p>
+ * Runs on its own thread at the packet rate: drains the sensor queues, converts the samples
+ * (and integrates the quaternion when requested) and publishes the 36 byte motion block into a
+ * double buffer. The report tick only copies the latest published block, so IMU processing is
+ * no longer part of the time between the schedule deadline and sendReport. A run that finds
+ * no new samples publishes nothing, so the report keeps the last block with data instead of
+ * a zeroed one, and a sensor without new samples keeps its last frames.
+ * The phone gyro bias estimated while the phone lies still is removed before either path.
+ */
+public class MotionPipeline {
+    private static final String TAG = MotionPipeline.class.getName();
+
+    public static final int BLOCK_SIZE = 36;
+
+    private final Queue<AccelerometerEvent> accelerometerEvents;
+    private final Queue<GyroscopeEvent> gyroscopeEvents;
+    private final Queue<AccelerometerEvent> freeAccelerometerEvents;
+    private final Queue<GyroscopeEvent> freeGyroscopeEvents;
+    private final JoyControllerState state;
+
+    // Double buffer guarded by a sequence counter: odd while a block is being published.
+    private final byte[][] blocks = new byte[2][BLOCK_SIZE];
+    private final AtomicInteger sequence = new AtomicInteger(0);
+    private volatile int front = 0;
+
+    // Scratch space, only touched under the process() lock
+    private final List<AccelerometerEvent> accEvents = new ArrayList<>();
+    private final List<GyroscopeEvent> gyrEvents = new ArrayList<>();
+    private final float[] accs = new float[3 * 3];
+    private final float[] gyrs = new float[3 * 3];
+    private final short[][] accelSamples = new short[3][3];
+    private final double[] gyrIn = new double[3];
+    private final GyroBiasEstimator gyroBiasEstimator = new GyroBiasEstimator();
+
+    // Shared memory sources are read here instead of pushing samples through callbacks
+    private volatile SensorSource sensorSource;
+
+    private ScheduledExecutorService executorService;
+    private ScheduledFuture<?> scheduledFuture;
+
+    /**
+     * Processed samples are handed back to the free queues for reuse, a full queue drops them.
+     */
+    public MotionPipeline(Queue<AccelerometerEvent> accelerometerEvents,
+                          Queue<GyroscopeEvent> gyroscopeEvents,
+                          Queue<AccelerometerEvent> freeAccelerometerEvents,
+                          Queue<GyroscopeEvent> freeGyroscopeEvents,
+                          JoyControllerState state) {
+        this.accelerometerEvents = accelerometerEvents;
+        this.gyroscopeEvents = gyroscopeEvents;
+        this.freeAccelerometerEvents = freeAccelerometerEvents;
+        this.freeGyroscopeEvents = freeGyroscopeEvents;
+        this.state = state;
+    }
+
+    public synchronized void start(long periodNs) {
+        stop();
+        if (Objects.isNull(executorService) || executorService.isShutdown()) {
+            executorService = Executors.newSingleThreadScheduledExecutor(
+                    new PriorityThreadFactory(Process.THREAD_PRIORITY_AUDIO,
+                            true,
+                            "Motion Thread",
+                            false)
+            );
+        }
+        try {
+            scheduledFuture = executorService.scheduleAtFixedRate(
+                    this::process, 0, periodNs, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            log(TAG, "Executor Rejected", e);
+        }
+    }
+
+    public synchronized void stop() {
+        if (Objects.nonNull(scheduledFuture)) {
+            scheduledFuture.cancel(false);
+            scheduledFuture = null;
+        }
+    }
+
+    public synchronized void shutdown() {
+        stop();
+        if (Objects.nonNull(executorService)) {
+            executorService.shutdownNow();
+            executorService = null;
+        }
+    }
+
+    public GyroBiasEstimator getGyroBiasEstimator() {
+        return gyroBiasEstimator;
+    }
+
+    public void setSensorSource(SensorSource sensorSource) {
+        this.sensorSource = sensorSource;
+    }
+
+    public boolean isRunning() {
+        ScheduledFuture<?> future = scheduledFuture;
+        return Objects.nonNull(future) && !future.isDone();
+    }
+
+    /**
+     * Copy the latest published motion block into buf[offset].
+     */
+    public void copyLatest(byte[] buf, int offset) {
+        int seq;
+        do {
+            seq = sequence.get();
+            System.arraycopy(blocks[front], 0, buf, offset, BLOCK_SIZE);
+        } while ((seq & 1) != 0 || seq != sequence.get());
+    }
+
+    /**
+     * Drain pending sensor samples and publish a new motion block.
+     */
+    public void process() {
+        synchronized (accEvents) {
+            drain();
+            if (accEvents.isEmpty() && gyrEvents.isEmpty()) {
+                return;
+            }
+            int back = 1 - front;
+            byte[] block = blocks[back];
+            fillBlock(block);
+            sequence.incrementAndGet();
+            front = back;
+            sequence.incrementAndGet();
+            recycle();
+        }
+    }
+
+    private void recycle() {
+        for (AccelerometerEvent ev : accEvents) {
+            freeAccelerometerEvents.offer(ev);
+        }
+        for (GyroscopeEvent ev : gyrEvents) {
+            freeGyroscopeEvents.offer(ev);
+        }
+        accEvents.clear();
+        gyrEvents.clear();
+    }
+
+    private void drain() {
+        SensorSource source = sensorSource;
+        if (Objects.nonNull(source)) {
+            source.poll();
+        }
+        accEvents.clear();
+        gyrEvents.clear();
+        AccelerometerEvent acc;
+        while ((acc = accelerometerEvents.poll()) != null) {
+            accEvents.add(acc);
+        }
+        GyroscopeEvent gyr;
+        while ((gyr = gyroscopeEvents.poll()) != null) {
+            gyrEvents.add(gyr);
+        }
+
+        for (AccelerometerEvent ev : accEvents) {
+            gyroBiasEstimator.updateAccel(ev.values[0], ev.values[1], ev.values[2]);
+        }
+        for (GyroscopeEvent ev : gyrEvents) {
+            gyroBiasEstimator.updateGyro(ev.values[0], ev.values[1], ev.values[2], ev.timestamp);
+        }
+
+        int accSize = accEvents.size();
+        if (accSize > 0) {
+            //First, middle and last sample of the window
+            fillFrames(accs,
+                    accEvents.get(0).values,
+                    accEvents.get((accSize - 1) / 2).values,
+                    accEvents.get(accSize / 2).values,
+                    accEvents.get(accSize - 1).values);
+        }
+        int gyrSize = gyrEvents.size();
+        if (gyrSize > 0) {
+            fillFrames(gyrs,
+                    gyrEvents.get(0).values,
+                    gyrEvents.get((gyrSize - 1) / 2).values,
+                    gyrEvents.get(gyrSize / 2).values,
+                    gyrEvents.get(gyrSize - 1).values);
+            for (int i = 0; i < 3; i++) {
+                gyrs[i * 3] -= gyroBiasEstimator.getBiasX();
+                gyrs[i * 3 + 1] -= gyroBiasEstimator.getBiasY();
+                gyrs[i * 3 + 2] -= gyroBiasEstimator.getBiasZ();
+            }
+        }
+    }
+
+    private static void fillFrames(
+            float[] frames, float[] first, float[] midLow, float[] midHigh, float[] last) {
+        for (int i = 0; i < 3; i++) {
+            frames[i] = first[i];
+            frames[3 + i] = (midLow[i] + midHigh[i]) / 2;
+            frames[6 + i] = last[i];
+        }
+    }
+
+    private void fillBlock(byte[] block) {
+        Arrays.fill(block, (byte) 0);
+        ImuTransform imuTransform = state.getImuTransform();
+        if (state.getSensorMode() == JoyControllerState.SensorMode.QUATERNION) {
+            QuaternionPacker packer = state.getQuaternionPacker();
+            float biasX = gyroBiasEstimator.getBiasX();
+            float biasY = gyroBiasEstimator.getBiasY();
+            float biasZ = gyroBiasEstimator.getBiasZ();
+            for (GyroscopeEvent ev : gyrEvents) {
+                imuTransform.remapGyro(
+                        ev.values[0] - biasX, ev.values[1] - biasY, ev.values[2] - biasZ, gyrIn);
+                packer.integrateGyro(gyrIn[0], gyrIn[1], gyrIn[2], ev.timestamp);
+            }
+
+            for (int i = 0; i < 3; i++) {
+                imuTransform.transformAccel(
+                        accs[i * 3], accs[i * 3 + 1], accs[i * 3 + 2], accelSamples[i]);
+            }
+            packer.pack(block, 0, accelSamples, SystemClock.elapsedRealtime());
+        } else {
+            for (int i = 0; i < 3; i++) {
+                imuTransform.writeAccel(
+                        accs[i * 3], accs[i * 3 + 1], accs[i * 3 + 2], block, i * 12);
+                imuTransform.writeGyro(
+                        gyrs[i * 3], gyrs[i * 3 + 1], gyrs[i * 3 + 2], block, 6 + i * 12);
+            }
+        }
+    }
+}
@@ -1,6 +1,5 @@
 package com.rdapps.gamepad.report;
 
-import static androidx.core.math.MathUtils.clamp;
 import static com.rdapps.gamepad.button.AxisEnum.LEFT_STICK_X;
 import static com.rdapps.gamepad.button.AxisEnum.LEFT_STICK_Y;
 import static com.rdapps.gamepad.button.AxisEnum.RIGHT_STICK_X;
@@ -32,6 +31,7 @@ import static com.rdapps.gamepad.nfcirmcu.NfcIrMcu.Action.NON;
 import static com.rdapps.gamepad.nfcirmcu.NfcIrMcu.Action.READ_TAG;
 import static com.rdapps.gamepad.nfcirmcu.NfcIrMcu.Action.READ_TAG_2;
 import static com.rdapps.gamepad.nfcirmcu.NfcIrMcu.Action.READ_TAG_FINISHED;
+import static com.rdapps.gamepad.nfcirmcu.NfcIrMcu.Action.REQUEST_STATUS;
 import static com.rdapps.gamepad.nfcirmcu.NfcIrMcu.Action.START_TAG_DISCOVERY;
 import static com.rdapps.gamepad.nfcirmcu.NfcIrMcu.Action.START_TAG_DISCOVERY_AUTO_MOVE;
 import static com.rdapps.gamepad.nfcirmcu.NfcIrMcu.Action.START_TAG_POLLING;
@@ -73,26 +73,21 @@ import static com.rdapps.gamepad.protocol.ControllerType.LEFT_JOYCON;
 import static com.rdapps.gamepad.protocol.ControllerType.PRO_CONTROLLER;
 import static com.rdapps.gamepad.protocol.ControllerType.RIGHT_JOYCON;
 import static java.lang.Math.round;
-import static java.lang.Short.MAX_VALUE;
-import static java.lang.Short.MIN_VALUE;
 
-import android.os.SystemClock;
 import com.google.android.gms.common.util.Hex;
 import com.rdapps.gamepad.amiibo.AmiiboConfig;
 import com.rdapps.gamepad.battery.BatteryData;
 import com.rdapps.gamepad.button.ButtonState;
+import com.rdapps.gamepad.nfcirmcu.IrCamera;
 import com.rdapps.gamepad.nfcirmcu.NfcIrMcu;
 import com.rdapps.gamepad.protocol.ControllerType;
 import com.rdapps.gamepad.protocol.JoyController;
 import com.rdapps.gamepad.protocol.JoyControllerState;
-import com.rdapps.gamepad.protocol.QuaternionPacker;
-import com.rdapps.gamepad.sensor.AccelerometerEvent;
-import com.rdapps.gamepad.sensor.GyroscopeEvent;
+import com.rdapps.gamepad.protocol.MotionPipeline;
 import com.rdapps.gamepad.util.ByteUtils;
 import com.rdapps.gamepad.vibrator.VibratorData;
 import java.util.Arrays;
 import java.util.Objects;
-import java.util.Queue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import lombok.Data;
@@ -102,6 +97,8 @@ import lombok.Getter;
 public class InputReport {
     private static final String TAG = InputReport.class.getName();
 
+    public static final int MOTION_OFFSET = 12;
+
     @Getter
     public enum Type {
         SIMPLE_HID_REPORT(0x3F, 11),
@@ -313,150 +310,24 @@ public class InputReport {
     }
 
     public void fillSensorData(JoyController controller) {
-        float[] accs = new float[3 * 3];
-        Arrays.fill(accs, 0);
-        float[] gyrs = new float[3 * 3];
-        Arrays.fill(gyrs, 0);
-
-        ControllerType controllerType = controller.getControllerType();
-        final JoyControllerState state = controller.getState();
-        Queue<AccelerometerEvent> accelerometerEvents = controller.getAccelerometerEvents();
-        Queue<GyroscopeEvent> gyroscopeEvents = controller.getGyroscopeEvents();
-        int multiplier = 1;
-        final boolean isPro = controllerType == PRO_CONTROLLER;
-        if (controllerType == RIGHT_JOYCON) {
-            multiplier = -1;
-        }
-
-        byte[] sensorData = new byte[36];
-        Arrays.fill(sensorData, (byte) 0);
-
-        AccelerometerEvent[] accEvents = accelerometerEvents.toArray(new AccelerometerEvent[]{});
-        final GyroscopeEvent[] gyrEvents = gyroscopeEvents.toArray(new GyroscopeEvent[]{});
-        accelerometerEvents.clear();
-        gyroscopeEvents.clear();
-
-        //log(TAG, "accSize: " + accEvents.length);
-        if (accEvents.length > 0) {
-            int start = 0;
-            //Start
-
-            accs[0] = accEvents[start].values[0];
-            accs[1] = accEvents[start].values[1];
-            accs[2] = accEvents[start].values[2];
-
-            int end = accEvents.length - 1;
-
-            accs[6] = accEvents[end].values[0];
-            accs[7] = accEvents[end].values[1];
-            accs[8] = accEvents[end].values[2];
-            while (start < end) {
-                start++;
-                end--;
-            }
-            accs[3] = (accEvents[end].values[0] + accEvents[start].values[0]) / 2;
-            accs[4] = (accEvents[end].values[1] + accEvents[start].values[1]) / 2;
-            accs[5] = (accEvents[end].values[2] + accEvents[start].values[2]) / 2;
-        }
-        //log(TAG, "Accs: " + Arrays.toString(accs));
-
-        //log(TAG, "gyrSize: " + gyrEvents.length);
-        if (gyrEvents.length > 0) {
-            int start = 0;
-            //Start
-            gyrs[0] = gyrEvents[start].values[0];
-            gyrs[1] = gyrEvents[start].values[1];
-            gyrs[2] = gyrEvents[start].values[2];
-
-            int end = gyrEvents.length - 1;
-
-            gyrs[6] = gyrEvents[end].values[0];
-            gyrs[7] = gyrEvents[end].values[1];
-            gyrs[8] = gyrEvents[end].values[2];
-            while (start < end) {
-                start++;
-                end--;
-            }
-            gyrs[3] = (gyrEvents[end].values[0] + gyrEvents[start].values[0]) / 2;
-            gyrs[4] = (gyrEvents[end].values[1] + gyrEvents[start].values[1]) / 2;
-            gyrs[5] = (gyrEvents[end].values[2] + gyrEvents[start].values[2]) / 2;
+        MotionPipeline motionPipeline = controller.getMotionPipeline();
+        if (!motionPipeline.isRunning()) {
+            motionPipeline.process();
         }
-
-        //log(TAG, "Gyrs: " + Arrays.toString(gyrs));
-
-        double[] accCoeffs = state.getAccCoeffs();
-
-        if (state.getSensorMode() == JoyControllerState.SensorMode.QUATERNION) {
-            QuaternionPacker packer = state.getQuaternionPacker();
-            for (GyroscopeEvent ev : gyrEvents) {
-                double gyrInX = multiplier * ev.values[0];
-                double gyrInY = ev.values[1];
-                double gyrInZ = multiplier * ev.values[2];
-                packer.integrateGyro(
-                        isPro ? gyrInX :  gyrInY,
-                        isPro ? gyrInY : -gyrInX,
-                        gyrInZ,
-                        ev.timestamp);
-            }
-
-            short[][] accelSamples = new short[3][];
-            for (int i = 0; i < 3; i++) {
-                accelSamples[i] = computeRawAccel(accs, i, multiplier, isPro, accCoeffs);
-            }
-            packer.pack(sensorData, 0, accelSamples, SystemClock.elapsedRealtime());
-        } else {
-            double[] gyrCoeffs = state.getGyrCoeffs();
-            short[] gyrOffset = state.getGyrOffset();
-
-            for (int i = 0; i < 3; i++) {
-                short[] rawAcc = computeRawAccel(accs, i, multiplier, isPro, accCoeffs);
-                sensorData[i * 12] = (byte) (rawAcc[0] & 0xFF);
-                sensorData[1 + i * 12] = (byte) (rawAcc[0] >> 8 & 0xFF);
-                sensorData[2 + i * 12] = (byte) (rawAcc[1] & 0xFF);
-                sensorData[3 + i * 12] = (byte) (rawAcc[1] >> 8 & 0xFF);
-                sensorData[4 + i * 12] = (byte) (rawAcc[2] & 0xFF);
-                sensorData[5 + i * 12] = (byte) (rawAcc[2] >> 8 & 0xFF);
-
-                float gyrX = multiplier * gyrs[i * 3];
-                float gyrY = gyrs[i * 3 + 1];
-                float gyrZ = multiplier * gyrs[i * 3 + 2];
-                short rawGyrX = (short) round(clamp((isPro ? gyrX : gyrY)
-                        * gyrCoeffs[0] + gyrOffset[0], MIN_VALUE, MAX_VALUE));
-                short rawGyrY = (short) round(clamp((isPro ? gyrY : -gyrX)
-                        * gyrCoeffs[1] + gyrOffset[1], MIN_VALUE, MAX_VALUE));
-                final short rawGyrZ = (short) round(clamp(gyrZ
-                        * gyrCoeffs[2] + gyrOffset[2], MIN_VALUE, MAX_VALUE));
-
-                sensorData[6 + i * 12] = (byte) (rawGyrX & 0xFF);
-                sensorData[7 + i * 12] = (byte) (rawGyrX >> 8 & 0xFF);
-                sensorData[8 + i * 12] = (byte) (rawGyrY & 0xFF);
-                sensorData[9 + i * 12] = (byte) (rawGyrY >> 8 & 0xFF);
-                sensorData[10 + i * 12] = (byte) (rawGyrZ & 0xFF);
-                sensorData[11 + i * 12] = (byte) (rawGyrZ >> 8 & 0xFF);
-            }
-        }
-
-        System.arraycopy(sensorData, 0, buffer, 12, 36);
-    }
-
-    private static short[] computeRawAccel(
-            float[] accs, int frame, int multiplier, boolean isPro, double[] accCoeffs) {
-        float accX = multiplier * accs[frame * 3];
-        float accY = accs[frame * 3 + 1];
-        float accZ = multiplier * accs[frame * 3 + 2];
-        short rawX = (short) round(clamp(
-                (isPro ? accX : accY) * accCoeffs[0], MIN_VALUE, MAX_VALUE));
-        short rawY = (short) round(clamp(
-                (isPro ? accY : -accX) * accCoeffs[1], MIN_VALUE, MAX_VALUE));
-        short rawZ = (short) round(clamp(
-                accZ * accCoeffs[2], MIN_VALUE, MAX_VALUE));
-        return new short[]{rawX, rawY, rawZ};
+        motionPipeline.copyLatest(buffer, MOTION_OFFSET);
     }
 
     public void fillNfcIrData(JoyController controller) {
         JoyControllerState state = controller.getState();
         NfcIrMcu nfcIrMcu = state.getNfcIrMcu();
         NfcIrMcu.Action action = nfcIrMcu.getAction();
+        IrCamera irCamera = nfcIrMcu.getIrCamera();
+        if (nfcIrMcu.getMcuState() == NfcIrMcu.McuState.IRC && action != REQUEST_STATUS
+                && irCamera.isStreaming()) {
+            irCamera.fill(buffer, 48);
+            buffer[buffer.length - 1] = ByteUtils.crc8(buffer, 48, buffer.length - 49);
+            return;
+        }
         switch (action) {
             case NON:
                 // NFC NONE: no tag present
@@ -502,7 +373,7 @@ public class InputReport {
             default:
         }
 
-        buffer[buffer.length - 1] = ByteUtils.crc8(Arrays.copyOfRange(buffer, 48, buffer.length));
+        buffer[buffer.length - 1] = ByteUtils.crc8(buffer, 48, buffer.length - 49);
     }
 
     private void fillReadFinished(JoyController controller) {
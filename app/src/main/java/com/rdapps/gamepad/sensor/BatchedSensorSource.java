@@ -0,0 +1,86 @@
+package com.rdapps.gamepad.sensor;
+
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.util.SparseArray;
+import java.util.Objects;
+
+/**
+ * Listener based source. Registers with a batching latency so the sensor hub fills its FIFO
+ * and wakes the app about once per packet, and receives the callbacks on a dedicated thread
+ * instead of the main looper.
+ */
+public class BatchedSensorSource implements SensorSource, SensorEventListener {
+    private final SensorManager sensorManager;
+    private final SensorSink sink;
+    private final SparseArray<Sensor> registered = new SparseArray<>();
+
+    private HandlerThread handlerThread;
+    private Handler handler;
+
+    public BatchedSensorSource(SensorManager sensorManager, SensorSink sink) {
+        this.sensorManager = sensorManager;
+        this.sink = sink;
+    }
+
+    @Override
+    public synchronized boolean register(int sensorType,
+                                         int samplingPeriodUs,
+                                         int maxReportLatencyUs) {
+        Sensor sensor = sensorManager.getDefaultSensor(sensorType);
+        if (Objects.isNull(sensor)) {
+            return false;
+        }
+        if (Objects.isNull(handlerThread)) {
+            handlerThread = new HandlerThread("Sensor Thread", Process.THREAD_PRIORITY_AUDIO);
+            handlerThread.start();
+            handler = new Handler(handlerThread.getLooper());
+        }
+        sensorManager.unregisterListener(this, sensor);
+        boolean result = sensorManager.registerListener(
+                this, sensor, samplingPeriodUs, maxReportLatencyUs, handler);
+        if (result) {
+            registered.put(sensorType, sensor);
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized void unregister(int sensorType) {
+        Sensor sensor = registered.get(sensorType);
+        if (Objects.nonNull(sensor)) {
+            sensorManager.unregisterListener(this, sensor);
+            registered.remove(sensorType);
+        }
+    }
+
+    @Override
+    public void poll() {
+    }
+
+    @Override
+    public synchronized void close() {
+        sensorManager.unregisterListener(this);
+        registered.clear();
+        if (Objects.nonNull(handlerThread)) {
+            handlerThread.quitSafely();
+            handlerThread = null;
+            handler = null;
+        }
+    }
+
+    @Override
+    public void onSensorChanged(SensorEvent event) {
+        sink.onSensorSample(event.sensor.getType(), event.timestamp,
+                event.values[0], event.values[1], event.values[2]);
+    }
+
+    @Override
+    public void onAccuracyChanged(Sensor sensor, int accuracy) {
+    }
+}
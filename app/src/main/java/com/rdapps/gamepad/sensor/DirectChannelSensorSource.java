@@ -0,0 +1,144 @@
+package com.rdapps.gamepad.sensor;
+
+import static com.rdapps.gamepad.log.JoyConLog.log;
+
+import android.hardware.Sensor;
+import android.hardware.SensorDirectChannel;
+import android.hardware.SensorManager;
+import android.os.MemoryFile;
+import android.util.SparseArray;
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * Shared memory source. The sensor hub writes samples straight into a {@link MemoryFile}
+ * through a {@link SensorDirectChannel}; the motion thread reads the ring on {@link #poll()}.
+ * No callback, binder transaction or event object per sample.
+ */
+public class DirectChannelSensorSource implements SensorSource {
+    private static final String TAG = DirectChannelSensorSource.class.getName();
+
+    // Enough for one packet period at the fastest rate level of two sensors
+    private static final int CAPACITY = 256;
+
+    private final SensorManager sensorManager;
+    private final SensorSink sink;
+    private final byte[] snapshot = new byte[CAPACITY * DirectReportParser.RECORD_SIZE];
+    private final DirectReportParser parser = new DirectReportParser(CAPACITY);
+    private final DirectReportParser.RingReader reader = this::readRing;
+    private final SparseArray<Sensor> registered = new SparseArray<>();
+
+    private MemoryFile memoryFile;
+    private SensorDirectChannel channel;
+
+    public DirectChannelSensorSource(SensorManager sensorManager, SensorSink sink) {
+        this.sensorManager = sensorManager;
+        this.sink = sink;
+    }
+
+    /**
+     * Whether both motion sensors can report into a memory file on this device.
+     */
+    public static boolean isSupported(SensorManager sensorManager) {
+        return isSupported(sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER))
+                && isSupported(sensorManager.getDefaultSensor(Sensor.TYPE_GYROSCOPE));
+    }
+
+    private static boolean isSupported(Sensor sensor) {
+        return Objects.nonNull(sensor)
+                && sensor.isDirectChannelTypeSupported(SensorDirectChannel.TYPE_MEMORY_FILE)
+                && sensor.getHighestDirectReportRateLevel() != SensorDirectChannel.RATE_STOP;
+    }
+
+    @Override
+    public synchronized boolean register(int sensorType,
+                                         int samplingPeriodUs,
+                                         int maxReportLatencyUs) {
+        Sensor sensor = sensorManager.getDefaultSensor(sensorType);
+        if (!isSupported(sensor) || !openChannel()) {
+            return false;
+        }
+        int rateLevel = Math.min(rateLevel(samplingPeriodUs),
+                sensor.getHighestDirectReportRateLevel());
+        try {
+            if (channel.configure(sensor, rateLevel) <= 0) {
+                log(TAG, "Direct channel configure failed for sensor " + sensorType);
+                return false;
+            }
+        } catch (SecurityException e) {
+            // Rates above RATE_NORMAL need HIGH_SAMPLING_RATE_SENSORS
+            log(TAG, "Direct channel rate not allowed for sensor " + sensorType, e);
+            return false;
+        }
+        registered.put(sensorType, sensor);
+        return true;
+    }
+
+    @Override
+    public synchronized void unregister(int sensorType) {
+        Sensor sensor = registered.get(sensorType);
+        if (Objects.nonNull(sensor) && Objects.nonNull(channel)) {
+            channel.configure(sensor, SensorDirectChannel.RATE_STOP);
+            registered.remove(sensorType);
+        }
+    }
+
+    @Override
+    public synchronized void poll() {
+        if (Objects.isNull(memoryFile) || registered.size() == 0) {
+            return;
+        }
+        // Only the records written since the last poll, not the whole ring
+        if (parser.copyNew(reader, snapshot)) {
+            parser.parse(snapshot, sink);
+        }
+    }
+
+    private boolean readRing(byte[] buffer, int offset, int length) {
+        try {
+            memoryFile.readBytes(buffer, offset, offset, length);
+            return true;
+        } catch (IOException e) {
+            log(TAG, "Direct channel read failed", e);
+            return false;
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        registered.clear();
+        if (Objects.nonNull(channel)) {
+            channel.close();
+            channel = null;
+        }
+        if (Objects.nonNull(memoryFile)) {
+            memoryFile.close();
+            memoryFile = null;
+        }
+    }
+
+    private boolean openChannel() {
+        if (Objects.nonNull(channel)) {
+            return true;
+        }
+        try {
+            memoryFile = new MemoryFile("sensor_direct", snapshot.length);
+            channel = sensorManager.createDirectChannel(memoryFile);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            log(TAG, "Direct channel not available", e);
+            close();
+            return false;
+        }
+    }
+
+    // Nominal rates: NORMAL ~50Hz, FAST ~200Hz, VERY_FAST ~800Hz
+    private static int rateLevel(int samplingPeriodUs) {
+        if (samplingPeriodUs <= 1250) {
+            return SensorDirectChannel.RATE_VERY_FAST;
+        } else if (samplingPeriodUs <= 5000) {
+            return SensorDirectChannel.RATE_FAST;
+        }
+        return SensorDirectChannel.RATE_NORMAL;
+    }
+}
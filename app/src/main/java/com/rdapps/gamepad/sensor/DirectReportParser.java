@@ -0,0 +1,181 @@
+package com.rdapps.gamepad.sensor;
+
+/**
+ * Parses the sensor direct report ring written by the sensor hub into a shared memory channel.
+ *
+ * <p>
+ * Each record is 104 bytes, little-endian: [0-3] size, [4-7] report token, [8-11] sensor type,
+ * [12-15] atomic counter, [16-23] timestamp, [24-87] float[16] data, [88-103] reserved.
+ * Records are written circularly from offset 0 and the counter increases by one per record,
+ * which is how new records are told apart from stale ones without any callback.
+ *
+ * <p>
+ * The ring is parsed from a snapshot, {@link #copyNew} copies only the records written since
+ * the last parse into it.
+ */
+public class DirectReportParser {
+    public static final int RECORD_SIZE = 104;
+
+    // Records copied at once while looking for the newest one
+    private static final int COPY_CHUNK = 16;
+
+    /**
+     * Copies part of the shared ring into the snapshot, at the same offset.
+     */
+    public interface RingReader {
+        /**
+         * @return false if the ring could not be read
+         */
+        boolean read(byte[] snapshot, int offset, int length);
+    }
+
+    private static final int OFFSET_SIZE = 0;
+    private static final int OFFSET_TYPE = 8;
+    private static final int OFFSET_COUNTER = 12;
+    private static final int OFFSET_TIMESTAMP = 16;
+    private static final int OFFSET_DATA = 24;
+
+    private final int capacity;
+    private int nextIndex = 0;
+    private int lastCounter = 0;
+    private int lostRecords = 0;
+
+    public DirectReportParser(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public int getLostRecords() {
+        return lostRecords;
+    }
+
+    /**
+     * Copy the records written since the last parse from the ring into the snapshot, in chunks
+     * from the next record on until a chunk ends in a stale record. The whole ring is copied
+     * if the writer lapped the reader.
+     *
+     * @return false if there is nothing new or the ring could not be read
+     */
+    public boolean copyNew(RingReader reader, byte[] snapshot) {
+        if (!copy(reader, snapshot, nextIndex, 1)) {
+            return false;
+        }
+        int distance = readInt(snapshot, nextIndex * RECORD_SIZE + OFFSET_COUNTER)
+                - (lastCounter + 1);
+        if (distance > 0) {
+            return copy(reader, snapshot, 0, capacity);
+        }
+        if (distance != 0) {
+            return false;
+        }
+        int copied = 1;
+        while (copied < capacity) {
+            int index = (nextIndex + copied) % capacity;
+            int count = Math.min(COPY_CHUNK, Math.min(capacity - index, capacity - copied));
+            if (!copy(reader, snapshot, index, count)) {
+                return false;
+            }
+            copied += count;
+            int last = (nextIndex + copied - 1) % capacity;
+            if (readInt(snapshot, last * RECORD_SIZE + OFFSET_COUNTER) != lastCounter + copied) {
+                break;
+            }
+        }
+        return true;
+    }
+
+    private static boolean copy(RingReader reader, byte[] snapshot, int index, int count) {
+        return reader.read(snapshot, index * RECORD_SIZE, count * RECORD_SIZE);
+    }
+
+    /**
+     * Deliver records written since the last call.
+     *
+     * @return number of delivered records
+     */
+    public int parse(byte[] ring, SensorSink sink) {
+        int counter = readInt(ring, nextIndex * RECORD_SIZE + OFFSET_COUNTER);
+        if (counter - (lastCounter + 1) > 0) {
+            // The writer lapped us, continue from the oldest record still in the ring
+            resync(ring);
+        }
+
+        int delivered = 0;
+        while (delivered < capacity) {
+            int offset = nextIndex * RECORD_SIZE;
+            counter = readInt(ring, offset + OFFSET_COUNTER);
+            if (readInt(ring, offset + OFFSET_SIZE) != RECORD_SIZE
+                    || counter != lastCounter + 1) {
+                break;
+            }
+            sink.onSensorSample(
+                    readInt(ring, offset + OFFSET_TYPE),
+                    readLong(ring, offset + OFFSET_TIMESTAMP),
+                    readFloat(ring, offset + OFFSET_DATA),
+                    readFloat(ring, offset + OFFSET_DATA + 4),
+                    readFloat(ring, offset + OFFSET_DATA + 8));
+            lastCounter = counter;
+            nextIndex = (nextIndex + 1) % capacity;
+            delivered++;
+        }
+        return delivered;
+    }
+
+    private void resync(byte[] ring) {
+        int oldestIndex = nextIndex;
+        int oldestDistance = Integer.MAX_VALUE;
+        for (int i = 0; i < capacity; i++) {
+            int offset = i * RECORD_SIZE;
+            int distance = readInt(ring, offset + OFFSET_COUNTER) - lastCounter;
+            if (readInt(ring, offset + OFFSET_SIZE) == RECORD_SIZE
+                    && distance > 0 && distance < oldestDistance) {
+                oldestDistance = distance;
+                oldestIndex = i;
+            }
+        }
+        if (oldestDistance != Integer.MAX_VALUE) {
+            lostRecords += oldestDistance - 1;
+            lastCounter += oldestDistance - 1;
+            nextIndex = oldestIndex;
+        }
+    }
+
+    static int readInt(byte[] buf, int offset) {
+        return (buf[offset] & 0xFF)
+                | (buf[offset + 1] & 0xFF) << 8
+                | (buf[offset + 2] & 0xFF) << 16
+                | (buf[offset + 3] & 0xFF) << 24;
+    }
+
+    static long readLong(byte[] buf, int offset) {
+        return (readInt(buf, offset) & 0xFFFFFFFFL) | ((long) readInt(buf, offset + 4)) << 32;
+    }
+
+    static float readFloat(byte[] buf, int offset) {
+        return Float.intBitsToFloat(readInt(buf, offset));
+    }
+
+    static void writeInt(byte[] buf, int offset, int value) {
+        buf[offset] = (byte) value;
+        buf[offset + 1] = (byte) (value >> 8);
+        buf[offset + 2] = (byte) (value >> 16);
+        buf[offset + 3] = (byte) (value >> 24);
+    }
+
+    /**
+     * Write one record in direct report format, used by in-memory sources.
+     */
+    static void writeRecord(byte[] ring, int index, int token, int sensorType, int counter,
+                            long timestampNs, float x, float y, float z) {
+        int offset = index * RECORD_SIZE;
+        writeInt(ring, offset + 4, token);
+        writeInt(ring, offset + OFFSET_TYPE, sensorType);
+        writeInt(ring, offset + OFFSET_TIMESTAMP, (int) timestampNs);
+        writeInt(ring, offset + OFFSET_TIMESTAMP + 4, (int) (timestampNs >>> 32));
+        writeInt(ring, offset + OFFSET_DATA, Float.floatToIntBits(x));
+        writeInt(ring, offset + OFFSET_DATA + 4, Float.floatToIntBits(y));
+        writeInt(ring, offset + OFFSET_DATA + 8, Float.floatToIntBits(z));
+        writeInt(ring, offset + OFFSET_SIZE, RECORD_SIZE);
+        // Counter last: a record becomes visible once its counter is written
+        writeInt(ring, offset + OFFSET_COUNTER, counter);
+    }
+}
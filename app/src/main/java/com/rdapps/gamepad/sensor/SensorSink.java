@@ -0,0 +1,12 @@
+package com.rdapps.gamepad.sensor;
+
+/**
+ * Receives motion samples from a {@link SensorSource}.
+ */
+public interface SensorSink {
+    /**
+     * @param sensorType  Sensor.TYPE_ACCELEROMETER or Sensor.TYPE_GYROSCOPE
+     * @param timestampNs sample time in nanoseconds (SensorEvent.timestamp clock)
+     */
+    void onSensorSample(int sensorType, long timestampNs, float x, float y, float z);
+}
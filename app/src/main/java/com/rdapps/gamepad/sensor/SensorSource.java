@@ -0,0 +1,27 @@
+package com.rdapps.gamepad.sensor;
+
+/**
+ * Where motion samples come from. Callback based sources push samples into their sink from
+ * their own thread, shared memory sources deliver pending samples when {@link #poll()} is
+ * called from the motion thread.
+ */
+public interface SensorSource {
+    /**
+     * Start delivering samples of a sensor type.
+     *
+     * @param sensorType         Sensor.TYPE_ACCELEROMETER or Sensor.TYPE_GYROSCOPE
+     * @param samplingPeriodUs   requested sampling period
+     * @param maxReportLatencyUs hardware FIFO batching latency, 0 for no batching
+     * @return false if the sensor is not available for this source
+     */
+    boolean register(int sensorType, int samplingPeriodUs, int maxReportLatencyUs);
+
+    void unregister(int sensorType);
+
+    /**
+     * Deliver samples that arrived since the last call. No-op for callback based sources.
+     */
+    void poll();
+
+    void close();
+}
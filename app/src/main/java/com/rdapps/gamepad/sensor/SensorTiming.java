@@ -0,0 +1,45 @@
+package com.rdapps.gamepad.sensor;
+
+/**
+ * Sampling and batching parameters derived from the report packet rate.
+ */
+public final class SensorTiming {
+    // A report carries 3 motion samples
+    public static final int SAMPLES_PER_REPORT = 3;
+    public static final int DEFAULT_SAMPLING_PERIOD_US = 5000;
+    // Below this the hub clamps to its own minimum delay anyway
+    public static final int MIN_SAMPLING_PERIOD_US = 1250;
+
+    private SensorTiming() {
+    }
+
+    public static int packetPeriodUs(int packetRate) {
+        return 1_000_000 / Math.max(1, packetRate);
+    }
+
+    /**
+     * Sampling period that yields the 3 samples a report carries per packet period. Quaternion
+     * mode integrates every gyroscope sample, so it never samples slower than the default.
+     */
+    public static int samplingPeriodUs(int packetRate, boolean quaternion) {
+        int periodUs = packetPeriodUs(packetRate) / SAMPLES_PER_REPORT;
+        if (quaternion) {
+            periodUs = Math.min(periodUs, DEFAULT_SAMPLING_PERIOD_US);
+        }
+        return Math.max(MIN_SAMPLING_PERIOD_US, periodUs);
+    }
+
+    /**
+     * Batching latency for the sensor FIFO. The hub is allowed to hold samples for one packet
+     * period, so the app is woken about once per report instead of once per sample. Batching
+     * is disabled when less than two samples fit in a packet period, there is nothing to
+     * coalesce then.
+     */
+    public static int maxReportLatencyUs(int packetRate, int samplingPeriodUs) {
+        int packetPeriodUs = packetPeriodUs(packetRate);
+        if (packetPeriodUs < 2 * samplingPeriodUs) {
+            return 0;
+        }
+        return packetPeriodUs;
+    }
+}
@@ -0,0 +1,116 @@
+package com.rdapps.gamepad.sensor;
+
+import java.util.Arrays;
+
+/**
+ * In-memory sensor source. Generates samples on a virtual clock, writes them into a ring in
+ * sensor direct report format and delivers them through {@link DirectReportParser} on poll,
+ * exactly like the shared memory channel. Used where no motion hardware is available and to
+ * test parsing and timing off device.
+ */
+public class SyntheticSensorSource implements SensorSource {
+    private static final int MAX_SENSORS = 4;
+
+    /**
+     * Produces the value of a sample.
+     */
+    public interface Waveform {
+        void sample(int sensorType, long timestampNs, float[] out);
+    }
+
+    private final SensorSink sink;
+    private final Waveform waveform;
+    private final int capacity;
+    private final byte[] ring;
+    private final byte[] snapshot;
+    private final DirectReportParser parser;
+    private final DirectReportParser.RingReader reader = this::readRing;
+
+    private final int[] sensorTypes = new int[MAX_SENSORS];
+    private final long[] periodNs = new long[MAX_SENSORS];
+    private final long[] nextSampleNs = new long[MAX_SENSORS];
+    private final float[] values = new float[3];
+
+    private long nowNs = 0;
+    private int writeIndex = 0;
+    private int counter = 0;
+
+    public SyntheticSensorSource(SensorSink sink, int capacity, Waveform waveform) {
+        this.sink = sink;
+        this.waveform = waveform;
+        this.capacity = capacity;
+        this.ring = new byte[capacity * DirectReportParser.RECORD_SIZE];
+        this.snapshot = new byte[ring.length];
+        this.parser = new DirectReportParser(capacity);
+        Arrays.fill(sensorTypes, -1);
+    }
+
+    @Override
+    public boolean register(int sensorType, int samplingPeriodUs, int maxReportLatencyUs) {
+        unregister(sensorType);
+        for (int i = 0; i < MAX_SENSORS; i++) {
+            if (sensorTypes[i] == -1) {
+                sensorTypes[i] = sensorType;
+                periodNs[i] = samplingPeriodUs * 1000L;
+                nextSampleNs[i] = nowNs + periodNs[i];
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void unregister(int sensorType) {
+        for (int i = 0; i < MAX_SENSORS; i++) {
+            if (sensorTypes[i] == sensorType) {
+                sensorTypes[i] = -1;
+            }
+        }
+    }
+
+    /**
+     * Move the virtual clock forward, writing every sample that falls due in time order.
+     */
+    public void advanceTo(long timestampNs) {
+        while (true) {
+            int next = -1;
+            for (int i = 0; i < MAX_SENSORS; i++) {
+                if (sensorTypes[i] != -1 && nextSampleNs[i] <= timestampNs
+                        && (next == -1 || nextSampleNs[i] < nextSampleNs[next])) {
+                    next = i;
+                }
+            }
+            if (next == -1) {
+                break;
+            }
+            long sampleNs = nextSampleNs[next];
+            waveform.sample(sensorTypes[next], sampleNs, values);
+            DirectReportParser.writeRecord(ring, writeIndex, next + 1, sensorTypes[next],
+                    ++counter, sampleNs, values[0], values[1], values[2]);
+            writeIndex = (writeIndex + 1) % capacity;
+            nextSampleNs[next] += periodNs[next];
+        }
+        nowNs = timestampNs;
+    }
+
+    public int getLostRecords() {
+        return parser.getLostRecords();
+    }
+
+    @Override
+    public void poll() {
+        if (parser.copyNew(reader, snapshot)) {
+            parser.parse(snapshot, sink);
+        }
+    }
+
+    private boolean readRing(byte[] buffer, int offset, int length) {
+        System.arraycopy(ring, offset, buffer, offset, length);
+        return true;
+    }
+
+    @Override
+    public void close() {
+        Arrays.fill(sensorTypes, -1);
+    }
+}
@@ -33,6 +33,7 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
 import android.graphics.Color;
+import android.graphics.drawable.Icon;
 import android.os.BatteryManager;
 import android.os.Binder;
 import android.os.Build;
@@ -45,7 +46,10 @@ import com.rdapps.gamepad.protocol.ControllerType;
 import com.rdapps.gamepad.protocol.JoyController;
 import com.rdapps.gamepad.protocol.JoyControllerBuilder;
 import com.rdapps.gamepad.protocol.JoyControllerListener;
+import com.rdapps.gamepad.protocol.JoyControllerState;
 import com.rdapps.gamepad.util.PreferenceUtils;
+import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Method;
 import java.util.Objects;
 import java.util.Optional;
@@ -69,6 +73,9 @@ public class BluetoothControllerService extends Service implements BluetoothProf
     public static final String NINTENDO_SWITCH = "Nintendo Switch";
 
     private static final String INTENT_DISCONNECT = "INTENT_DISCONNECT";
+    private static final String INTENT_TOGGLE_RECORDING = "INTENT_TOGGLE_RECORDING";
+    private static final String INTENT_REPLAY_RECORDING = "INTENT_REPLAY_RECORDING";
+    private static final String RECORDING_FILE_NAME = "input.rec";
 
 
     private static final int NOTIFICATION_ID = 1332;
@@ -336,6 +343,7 @@ public class BluetoothControllerService extends Service implements BluetoothProf
         }
 
         Notification.Builder notificationBuilder = new Notification.Builder(this, channelId);
+        addRecordingActions(notificationBuilder, smallIcon);
         return notificationBuilder.setOngoing(true)
                 .setSmallIcon(smallIcon)
                 .setContentTitle(contentTitle)
@@ -346,6 +354,65 @@ public class BluetoothControllerService extends Service implements BluetoothProf
                 .build();
     }
 
+    /**
+     * Record the input of every report to a file, or replay the last recording instead of the
+     * live input, from the notification.
+     */
+    private void addRecordingActions(Notification.Builder builder, int icon) {
+        JoyController device = switchController;
+        boolean recording = Objects.nonNull(device) && device.isRecording();
+        builder.addAction(createAction(icon,
+                getString(recording ? R.string.stop_recording : R.string.record_input),
+                INTENT_TOGGLE_RECORDING, 1));
+        if (!recording && getRecordingFile().isFile()) {
+            builder.addAction(createAction(icon, getString(R.string.replay_recording),
+                    INTENT_REPLAY_RECORDING, 2));
+        }
+    }
+
+    private Notification.Action createAction(int icon, String title, String action,
+                                             int requestCode) {
+        Intent intent = new Intent(getApplicationContext(), BluetoothControllerService.class);
+        intent.setAction(action);
+        PendingIntent pendingIntent = PendingIntent.getService(getApplicationContext(),
+                requestCode, intent, PendingIntent.FLAG_IMMUTABLE);
+        return new Notification.Action.Builder(
+                Icon.createWithResource(this, icon), title, pendingIntent).build();
+    }
+
+    private File getRecordingFile() {
+        return new File(getFilesDir(), RECORDING_FILE_NAME);
+    }
+
+    private void toggleRecording() {
+        JoyController device = switchController;
+        if (Objects.isNull(device)) {
+            return;
+        }
+        if (device.isRecording()) {
+            device.stopRecording();
+        } else {
+            try {
+                device.startRecording(getRecordingFile(), true);
+            } catch (IOException e) {
+                log(TAG, "Recording could not be started", e);
+            }
+        }
+        setNotification(controllerType);
+    }
+
+    private void replayRecording() {
+        JoyController device = switchController;
+        if (Objects.isNull(device)) {
+            return;
+        }
+        try {
+            device.startPlayback(getRecordingFile());
+        } catch (IOException e) {
+            log(TAG, "Recording could not be replayed", e);
+        }
+    }
+
     private void setNotification(ControllerType type) {
         startForeground(NOTIFICATION_ID, createNotification(type));
     }
@@ -384,6 +451,14 @@ public class BluetoothControllerService extends Service implements BluetoothProf
                 stopSelf();
                 return START_NOT_STICKY;
             }
+            if (INTENT_TOGGLE_RECORDING.equals(intent.getAction())) {
+                toggleRecording();
+                return START_STICKY;
+            }
+            if (INTENT_REPLAY_RECORDING.equals(intent.getAction())) {
+                replayRecording();
+                return START_STICKY;
+            }
         }
 
         if (Objects.nonNull(switchController) && deviceConnected && type != null
@@ -745,4 +820,11 @@ public class BluetoothControllerService extends Service implements BluetoothProf
             controllerActivity.rumble(androidAmplitude);
         }
     }
+
+    @Override
+    public void setSensorMode(JoyControllerState.SensorMode sensorMode) {
+        if (Objects.nonNull(controllerActivity)) {
+            controllerActivity.setSensorMode(sensorMode);
+        }
+    }
 }
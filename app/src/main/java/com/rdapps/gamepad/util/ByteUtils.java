@@ -31,10 +31,17 @@ public class ByteUtils {
     }
 
     public static byte crc8(byte[] bytes) {
+        return crc8(bytes, 0, bytes.length - 1);
+    }
+
+    /**
+     * CRC-8 of bytes[offset, offset + length) without copying the range.
+     */
+    public static byte crc8(byte[] bytes, int offset, int length) {
         byte polynomial = 0x07;
         byte accumulator = 0;
 
-        for (int j = 0; j < bytes.length - 1; j++) {
+        for (int j = offset; j < offset + length; j++) {
             byte b = bytes[j];
             accumulator = (byte) (accumulator ^ b);
             for (int i = 0; i < 8; i++) {
@@ -91,16 +91,14 @@ import static com.rdapps.gamepad.device.ButtonType.ZL;
 import static com.rdapps.gamepad.device.ButtonType.ZR;
 import static com.rdapps.gamepad.device.JoystickType.LEFT_JOYSTICK;
 import static com.rdapps.gamepad.device.JoystickType.RIGHT_JOYSTICK;
-import static com.rdapps.gamepad.model.ControllerAction.Type.AXIS;
-import static com.rdapps.gamepad.model.ControllerAction.Type.BUTTON;
 import static com.rdapps.gamepad.model.ControllerAction.Type.JOYSTICK;
 
 import android.content.Context;
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.rdapps.gamepad.device.ButtonType;
 import com.rdapps.gamepad.device.JoystickType;
+import com.rdapps.gamepad.input.ControllerMapping;
+import com.rdapps.gamepad.input.MappingProfileStore;
 import com.rdapps.gamepad.model.ControllerAction;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -485,34 +483,8 @@ public class ControllerActionUtils {
 
     private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
 
-    public static Map<Integer, ButtonType> getButtonMapping(Context context) {
-        return getButtonMapping(getControllerActions(context));
-    }
-
-    public static Map<Integer, ButtonType> getButtonMapping(
-            List<ControllerAction> controllerActions) {
-        return controllerActions
-                .stream()
-                .filter(ca -> ca.getType() == BUTTON)
-                .collect(Collectors.toMap(ControllerAction::getKey, ControllerAction::getButton));
-    }
-
-    public static Map<Pair<Integer, Integer>, ButtonType> getAxisMapping(Context context) {
-        return getAxisMapping(getControllerActions(context));
-    }
-
-    public static Map<Pair<Integer, Integer>, ButtonType> getAxisMapping(
-            List<ControllerAction> controllerActions) {
-        return controllerActions
-                .stream()
-                .filter(ca -> ca.getType() == AXIS)
-                .map(ca ->
-                        new Pair<>(new Pair<>(ca.getAxisX(), ca.getDirectionX()), ca.getButton()))
-                .collect(Collectors.toMap(Pair::getKey, Pair::getValue));
-    }
-
-    public static Map<JoystickType, ControllerAction> getJoystickMapping(Context context) {
-        return getJoystickMapping(getControllerActions(context));
+    public static ControllerMapping getControllerMapping(Context context) {
+        return MappingProfileStore.getInstance(context).getActive().getMapping();
     }
 
     public static Map<JoystickType, ControllerAction> getJoystickMapping(
@@ -523,19 +495,40 @@ public class ControllerActionUtils {
                 .collect(Collectors.toMap(ControllerAction::getJoystick, Function.identity()));
     }
 
+    /**
+     * @return a copy of the actions of the active mapping profile
+     */
     public static List<ControllerAction> getControllerActions(Context context) {
-        return Optional.ofNullable(PreferenceUtils.getButtonMapping(context))
+        List<ControllerAction> actions =
+                MappingProfileStore.getInstance(context).getActive().getActions();
+        List<ControllerAction> copies = new ArrayList<>(actions.size());
+        for (ControllerAction action : actions) {
+            ControllerAction copy = new ControllerAction();
+            copy.from(action);
+            copies.add(copy);
+        }
+        return copies;
+    }
+
+    public static void setControllerActions(Context context, List<ControllerAction> actions) {
+        MappingProfileStore.getInstance(context).setActiveActions(actions);
+    }
+
+    /**
+     * Read the mapping older versions kept as JSON in preferences. It stays there until
+     * {@link #removeMigratedControllerActions(Context)}, once it is stored elsewhere.
+     *
+     * @return the stored actions, or the defaults if there were none
+     */
+    public static List<ControllerAction> migrateControllerActions(Context context) {
+        return Optional
+                .ofNullable(PreferenceUtils.getButtonMapping(context))
                 .map(ControllerActionUtils::parseControllerActions)
                 .orElse(CONTROLLER_ACTIONS);
     }
 
-    public static void setControllerActions(Context context, List<ControllerAction> actions) {
-        try {
-            String actionsStr = OBJECT_MAPPER.writeValueAsString(actions);
-            PreferenceUtils.setButtonMapping(context, actionsStr);
-        } catch (JsonProcessingException e) {
-            throw new RuntimeException(e);
-        }
+    public static void removeMigratedControllerActions(Context context) {
+        PreferenceUtils.removeButtonMapping(context);
     }
 
     private static List<ControllerAction> parseControllerActions(String json) {
@@ -60,27 +60,6 @@ public class EventUtils {
         }
     }
 
-    public static float getCenteredAxis(MotionEvent event,
-                                        InputDevice device, int axis) {
-        final Optional<InputDevice.MotionRange> range =
-                Optional.ofNullable(device)
-                        .map(id -> id.getMotionRange(axis, event.getSource()));
-
-        // A joystick at rest does not always report an absolute position of
-        // (0,0). Use the getFlat() method to determine the range of values
-        // bounding the joystick axis center.
-        final float flat = range.map(InputDevice.MotionRange::getFlat)
-                .orElse(0f);
-        final float value = event.getAxisValue(axis);
-
-        // Ignore axis values that are within the 'flat' region of the
-        // joystick axis center.
-        if (Math.abs(value) > flat) {
-            return value;
-        }
-        return 0;
-    }
-
     public static int getMaxedAxis(MotionEvent event,
                                        InputDevice device, int axis) {
         final Optional<InputDevice.MotionRange> range =
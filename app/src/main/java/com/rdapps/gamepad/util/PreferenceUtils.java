@@ -7,8 +7,14 @@ import android.content.Intent;
 import android.net.Uri;
 import android.util.Base64;
 import androidx.preference.PreferenceManager;
+import com.rdapps.gamepad.button.ButtonEnum;
+import com.rdapps.gamepad.input.StickResponse;
+import com.rdapps.gamepad.input.StickSampler;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 
 public class PreferenceUtils {
     private static final String TAG = PreferenceUtils.class.getName();
@@ -21,6 +27,7 @@ public class PreferenceUtils {
     private static final String BT_ADDRESS_GENERATED = "BT_ADDRESS_GENERATED";
     private static final String DO_NOT_ASK_BT_ADDRESS = "DO_NOT_ASK_BT_ADDRESS";
     private static final String HAS_FILE_PREFIX = "HAS_";
+    private static final String FILE_VERSION_PREFIX = "FILE_VERSION_";
 
     private static final String ENABLED_ACCELEROMETER = "ENABLED_ACCELEROMETER";
     private static final String ENABLED_GYROSCOPE = "ENABLED_GYROSCOPE";
@@ -28,7 +35,16 @@ public class PreferenceUtils {
     private static final String AMIIBO_FILE_NAME = "AMIIBO_FILE_NAME";
     private static final String AMIIBO_FILE_URI = "AMIIBO_FILE_URI";
     private static final String AMIIBO_BYTES = "AMIIBO_BYTES";
+    private static final String AMIIBO_TAG = "AMIIBO_TAG";
+    private static final String AMIIBO_LIBRARY_URI = "AMIIBO_LIBRARY_URI";
     private static final String HAPTIC_FEEDBACK_ENABLED = "HAPTIC_FEEDBACK_ENABLED";
+    private static final String DIRECT_GAMEPAD_INPUT = "DIRECT_GAMEPAD_INPUT";
+    private static final String MAPPING_PROFILE_CHORD = "MAPPING_PROFILE_CHORD";
+    private static final String STICK_SAMPLING = "STICK_SAMPLING";
+    private static final String STICK_RESPONSE = "STICK_RESPONSE";
+    private static final String TURBO_BUTTONS = "TURBO_BUTTONS";
+    private static final String TURBO_PERIOD = "TURBO_PERIOD";
+    private static final int DEFAULT_TURBO_PERIOD = 4;
 
     private static final String PACKET_RATE = "PACKET_RATE";
 
@@ -84,10 +100,10 @@ public class PreferenceUtils {
                 .getString(BUTTON_MAPPING, null);
     }
 
-    static void setButtonMapping(Context context, String buttonMapping) {
+    static void removeButtonMapping(Context context) {
         PreferenceManager.getDefaultSharedPreferences(context)
                 .edit()
-                .putString(BUTTON_MAPPING, buttonMapping)
+                .remove(BUTTON_MAPPING)
                 .apply();
     }
 
@@ -141,6 +157,18 @@ public class PreferenceUtils {
                 .apply();
     }
 
+    public static String getFileVersion(Context context, String name) {
+        return PreferenceManager.getDefaultSharedPreferences(context)
+                .getString(FILE_VERSION_PREFIX + name, null);
+    }
+
+    public static void setFileVersion(Context context, String name, String version) {
+        PreferenceManager.getDefaultSharedPreferences(context)
+                .edit()
+                .putString(FILE_VERSION_PREFIX + name, version)
+                .apply();
+    }
+
     public static boolean getAccelerometerEnabled(Context context) {
         return PreferenceManager.getDefaultSharedPreferences(context)
                 .getBoolean(ENABLED_ACCELEROMETER, true);
@@ -230,13 +258,9 @@ public class PreferenceUtils {
                 .apply();
     }
 
-    public static void setAmiiboBytes(Context context, byte[] bytes) {
-        PreferenceManager.getDefaultSharedPreferences(context)
-                .edit()
-                .putString(AMIIBO_BYTES, Base64.encodeToString(bytes, Base64.DEFAULT))
-                .apply();
-    }
-
+    /**
+     * Dump saved by older versions, migrated into AmiiboStore on first load.
+     */
     public static byte[] getAmiiboBytes(Context context) {
         String amiiboBytes64 = PreferenceManager.getDefaultSharedPreferences(context)
                 .getString(AMIIBO_BYTES, null);
@@ -253,6 +277,25 @@ public class PreferenceUtils {
                 .apply();
     }
 
+    public static String getAmiiboTag(Context context) {
+        return PreferenceManager.getDefaultSharedPreferences(context)
+                .getString(AMIIBO_TAG, null);
+    }
+
+    public static void setAmiiboTag(Context context, String tag) {
+        PreferenceManager.getDefaultSharedPreferences(context)
+                .edit()
+                .putString(AMIIBO_TAG, tag)
+                .apply();
+    }
+
+    public static void removeAmiiboTag(Context context) {
+        PreferenceManager.getDefaultSharedPreferences(context)
+                .edit()
+                .remove(AMIIBO_TAG)
+                .apply();
+    }
+
     public static boolean getHapticFeedBackEnabled(Context context) {
         return PreferenceManager.getDefaultSharedPreferences(context)
                 .getBoolean(HAPTIC_FEEDBACK_ENABLED, false);
@@ -272,6 +315,108 @@ public class PreferenceUtils {
                 .apply();
     }
 
+    public static boolean getDirectGamepadInput(Context context) {
+        return PreferenceManager.getDefaultSharedPreferences(context)
+                .getBoolean(DIRECT_GAMEPAD_INPUT, true);
+    }
+
+    public static void removeDirectGamepadInput(Context context) {
+        PreferenceManager.getDefaultSharedPreferences(context)
+                .edit()
+                .remove(DIRECT_GAMEPAD_INPUT)
+                .apply();
+    }
+
+    public static boolean getMappingProfileChord(Context context) {
+        return PreferenceManager.getDefaultSharedPreferences(context)
+                .getBoolean(MAPPING_PROFILE_CHORD, false);
+    }
+
+    public static void removeMappingProfileChord(Context context) {
+        PreferenceManager.getDefaultSharedPreferences(context)
+                .edit()
+                .remove(MAPPING_PROFILE_CHORD)
+                .apply();
+    }
+
+    public static StickSampler.Policy getStickSampling(Context context) {
+        String policy = PreferenceManager.getDefaultSharedPreferences(context)
+                .getString(STICK_SAMPLING, StickSampler.Policy.PEAK.name());
+        try {
+            return StickSampler.Policy.valueOf(policy);
+        } catch (IllegalArgumentException e) {
+            log(TAG, "Unknown stick sampling " + policy, e);
+            return StickSampler.Policy.PEAK;
+        }
+    }
+
+    public static void removeStickSampling(Context context) {
+        PreferenceManager.getDefaultSharedPreferences(context)
+                .edit()
+                .remove(STICK_SAMPLING)
+                .apply();
+    }
+
+    public static StickResponse.Preset getStickResponse(Context context) {
+        String preset = PreferenceManager.getDefaultSharedPreferences(context)
+                .getString(STICK_RESPONSE, StickResponse.Preset.LINEAR.name());
+        try {
+            return StickResponse.Preset.valueOf(preset);
+        } catch (IllegalArgumentException e) {
+            log(TAG, "Unknown stick response " + preset, e);
+            return StickResponse.Preset.LINEAR;
+        }
+    }
+
+    public static void removeStickResponse(Context context) {
+        PreferenceManager.getDefaultSharedPreferences(context)
+                .edit()
+                .remove(STICK_RESPONSE)
+                .apply();
+    }
+
+    public static Set<ButtonEnum> getTurboButtons(Context context) {
+        Set<String> names = PreferenceManager.getDefaultSharedPreferences(context)
+                .getStringSet(TURBO_BUTTONS, Collections.emptySet());
+        Set<ButtonEnum> buttons = EnumSet.noneOf(ButtonEnum.class);
+        for (String name : names) {
+            try {
+                buttons.add(ButtonEnum.valueOf(name));
+            } catch (IllegalArgumentException e) {
+                log(TAG, "Unknown turbo button " + name, e);
+            }
+        }
+        return buttons;
+    }
+
+    public static void removeTurboButtons(Context context) {
+        PreferenceManager.getDefaultSharedPreferences(context)
+                .edit()
+                .remove(TURBO_BUTTONS)
+                .apply();
+    }
+
+    /**
+     * @return reports per turbo press
+     */
+    public static int getTurboPeriod(Context context) {
+        String period = PreferenceManager.getDefaultSharedPreferences(context)
+                .getString(TURBO_PERIOD, String.valueOf(DEFAULT_TURBO_PERIOD));
+        try {
+            return Math.max(2, Integer.parseInt(period));
+        } catch (NumberFormatException e) {
+            log(TAG, "Unknown turbo period " + period, e);
+            return DEFAULT_TURBO_PERIOD;
+        }
+    }
+
+    public static void removeTurboPeriod(Context context) {
+        PreferenceManager.getDefaultSharedPreferences(context)
+                .edit()
+                .remove(TURBO_PERIOD)
+                .apply();
+    }
+
     public static String getAmiiboFileName(Context context) {
         return PreferenceManager.getDefaultSharedPreferences(context)
                 .getString(AMIIBO_FILE_NAME, null);
@@ -302,6 +447,17 @@ public class PreferenceUtils {
                 .apply();
     }
 
+    /**
+     * Library document: the URI is covered by the permission on the library tree.
+     */
+    public static void setAmiiboDocument(Context context, String name, Uri uri) {
+        PreferenceManager.getDefaultSharedPreferences(context)
+                .edit()
+                .putString(AMIIBO_FILE_NAME, name)
+                .putString(AMIIBO_FILE_URI, uri.toString())
+                .apply();
+    }
+
     public static Uri getAmiiboFileUri(Context context) {
         String uriStr = PreferenceManager.getDefaultSharedPreferences(context)
                 .getString(AMIIBO_FILE_URI, null);
@@ -325,4 +481,20 @@ public class PreferenceUtils {
                 .remove(AMIIBO_FILE_URI)
                 .apply();
     }
+
+    public static void setAmiiboLibraryUri(Context context, Uri uri) {
+        context.getContentResolver().takePersistableUriPermission(
+                uri,
+                Intent.FLAG_GRANT_READ_URI_PERMISSION | Intent.FLAG_GRANT_WRITE_URI_PERMISSION);
+        PreferenceManager.getDefaultSharedPreferences(context)
+                .edit()
+                .putString(AMIIBO_LIBRARY_URI, uri.toString())
+                .apply();
+    }
+
+    public static Uri getAmiiboLibraryUri(Context context) {
+        String uriStr = PreferenceManager.getDefaultSharedPreferences(context)
+                .getString(AMIIBO_LIBRARY_URI, null);
+        return uriStr != null ? Uri.parse(uriStr) : null;
+    }
 }
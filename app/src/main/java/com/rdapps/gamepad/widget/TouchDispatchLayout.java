@@ -0,0 +1,51 @@
+package com.rdapps.gamepad.widget;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+import android.widget.FrameLayout;
+import com.rdapps.gamepad.input.TouchDispatcher;
+import java.util.Objects;
+
+/**
+ * Root of the on-screen controller, takes every touch before the views below it do and hands
+ * it to one {@link TouchDispatcher}.
+ */
+public class TouchDispatchLayout extends FrameLayout {
+    private TouchDispatcher dispatcher;
+
+    public TouchDispatchLayout(Context context) {
+        super(context);
+    }
+
+    public TouchDispatchLayout(Context context, AttributeSet attrs) {
+        super(context, attrs);
+    }
+
+    public TouchDispatchLayout(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+    }
+
+    public void setDispatcher(TouchDispatcher dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
+    public TouchDispatcher getDispatcher() {
+        return dispatcher;
+    }
+
+    @Override
+    public boolean onInterceptTouchEvent(MotionEvent event) {
+        return Objects.nonNull(dispatcher);
+    }
+
+    @SuppressLint("ClickableViewAccessibility")
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (Objects.nonNull(dispatcher)) {
+            return dispatcher.onTouchEvent(event);
+        }
+        return super.onTouchEvent(event);
+    }
+}
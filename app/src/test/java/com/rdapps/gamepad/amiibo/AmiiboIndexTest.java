@@ -0,0 +1,72 @@
+package com.rdapps.gamepad.amiibo;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AmiiboIndexTest {
+
+    @Test
+    public void testReadEntry() throws IOException {
+        byte[] dump = dump(0x04);
+        AmiiboIndex.Entry entry = AmiiboIndex.readEntry(
+                "doc:1", "Link", 1234L, new ByteArrayInputStream(dump));
+        Assert.assertEquals("04112233445566", entry.getTagId());
+        Assert.assertEquals(0x0100000000030002L, entry.getCharacterId());
+        Assert.assertEquals(crc(dump), entry.getCrc());
+        Assert.assertEquals(540, entry.getSize());
+        Assert.assertEquals(1234L, entry.getLastModified());
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsOtherFiles() throws IOException {
+        AmiiboIndex.readEntry("doc:1", "notes", 0, new ByteArrayInputStream(new byte[100]));
+    }
+
+    @Test
+    public void testRoundTripAndLookup() throws IOException {
+        AmiiboIndex index = new AmiiboIndex(Arrays.asList(
+                AmiiboIndex.readEntry("doc:z", "Zelda", 2, new ByteArrayInputStream(dump(0x05))),
+                AmiiboIndex.readEntry("doc:l", "link", 1, new ByteArrayInputStream(dump(0x04)))));
+        Assert.assertEquals("link", index.get(0).getName());
+        Assert.assertEquals(1, index.indexOf("05112233445566"));
+        Assert.assertEquals(-1, index.indexOf("FFFFFFFFFFFFFF"));
+        Assert.assertEquals(1, index.indexOfDocument("doc:z"));
+        Assert.assertEquals(-1, index.indexOfDocument("doc:x"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        index.write(out);
+        AmiiboIndex read = AmiiboIndex.read(new ByteArrayInputStream(out.toByteArray()));
+        Assert.assertEquals(2, read.size());
+        for (int i = 0; i < 2; i++) {
+            Assert.assertEquals(index.get(i).getDocumentId(), read.get(i).getDocumentId());
+            Assert.assertEquals(index.get(i).getTagId(), read.get(i).getTagId());
+            Assert.assertEquals(index.get(i).getCharacterId(), read.get(i).getCharacterId());
+            Assert.assertEquals(index.get(i).getCrc(), read.get(i).getCrc());
+        }
+
+        Assert.assertNotNull(read.reuse("doc:z", 2, 540));
+        Assert.assertNull(read.reuse("doc:z", 3, 540));
+        Assert.assertNull(read.reuse("doc:x", 2, 540));
+    }
+
+    private static byte[] dump(int first) {
+        byte[] dump = new byte[540];
+        byte[] uid = {(byte) first, 0x11, 0x22, (byte) 0x99, 0x33, 0x44, 0x55, 0x66};
+        System.arraycopy(uid, 0, dump, 0, uid.length);
+        byte[] character = {0x01, 0x00, 0x00, 0x00, 0x00, 0x03, 0x00, 0x02};
+        System.arraycopy(character, 0, dump, 0x54, character.length);
+        dump[539] = 0x7F;
+        return dump;
+    }
+
+    private static long crc(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return crc.getValue();
+    }
+}
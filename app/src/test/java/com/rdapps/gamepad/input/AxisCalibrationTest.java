@@ -0,0 +1,82 @@
+package com.rdapps.gamepad.input;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AxisCalibrationTest {
+    private static final int AXIS = 1;
+
+    @Test
+    public void testInitialRange() {
+        AxisCalibration calibration = new AxisCalibration();
+        Assert.assertEquals(1, calibration.apply(AXIS, AxisCalibration.INITIAL_RANGE), 0.001);
+        Assert.assertEquals(-0.5f, calibration.apply(AXIS, -0.4f), 0.001);
+        Assert.assertFalse(calibration.takeDirty());
+    }
+
+    @Test
+    public void testLearnsRange() {
+        AxisCalibration calibration = new AxisCalibration();
+        Assert.assertEquals(1, calibration.apply(AXIS, 0.9f), 0.001);
+        Assert.assertTrue(calibration.takeDirty());
+        Assert.assertEquals(0.9f, calibration.getMax(AXIS), 0.001);
+        Assert.assertEquals(0.5f, calibration.apply(AXIS, 0.45f), 0.001);
+        // Other axes keep their range
+        Assert.assertEquals(AxisCalibration.INITIAL_RANGE, calibration.getMax(AXIS + 1), 0.001);
+    }
+
+    @Test
+    public void testLearnsCenter() {
+        AxisCalibration calibration = new AxisCalibration();
+        // A stick resting off center, flickering by one step
+        for (int i = 0; i < 5000; i++) {
+            calibration.apply(AXIS, i % 2 == 0 ? 0.08f : 0.082f);
+        }
+        Assert.assertEquals(0.081f, calibration.getCenter(AXIS), 0.005);
+        Assert.assertEquals(0, calibration.apply(AXIS, 0.081f), 0.01);
+        Assert.assertEquals(1, calibration.apply(AXIS, AxisCalibration.INITIAL_RANGE), 0.001);
+        Assert.assertEquals(-1, calibration.apply(AXIS, -AxisCalibration.INITIAL_RANGE), 0.001);
+    }
+
+    @Test
+    public void testCenterIsClamped() {
+        AxisCalibration calibration = new AxisCalibration();
+        // A stick held half way is not taken for the center
+        for (int i = 0; i < 500; i++) {
+            calibration.apply(AXIS, 0.5f);
+        }
+        Assert.assertEquals(0, calibration.getCenter(AXIS), 0.001);
+    }
+
+    @Test
+    public void testHeldDeflectionIsNotCenter() {
+        AxisCalibration calibration = new AxisCalibration();
+        // A thumb holding the stick slightly pushed, with the jitter of a hand
+        for (int i = 0; i < 5000; i++) {
+            calibration.apply(AXIS, 0.06f + 0.01f * (float) Math.sin(i * 0.7));
+        }
+        Assert.assertEquals(0, calibration.getCenter(AXIS), 0.001);
+        Assert.assertEquals(0.075f, calibration.apply(AXIS, 0.06f), 0.001);
+    }
+
+    @Test
+    public void testWriteRead() throws IOException {
+        AxisCalibration calibration = new AxisCalibration();
+        calibration.apply(AXIS, -0.95f);
+        calibration.apply(AXIS, 0.05f);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        calibration.write(out);
+        AxisCalibration read = AxisCalibration.read(new ByteArrayInputStream(out.toByteArray()));
+        Assert.assertEquals(-0.95f, read.getMin(AXIS), 0.0001);
+        Assert.assertEquals(calibration.getCenter(AXIS), read.getCenter(AXIS), 0.0001);
+        Assert.assertFalse(read.takeDirty());
+    }
+
+    @Test(expected = IOException.class)
+    public void testUnknownFormat() throws IOException {
+        AxisCalibration.read(new ByteArrayInputStream(new byte[16]));
+    }
+}
@@ -0,0 +1,57 @@
+package com.rdapps.gamepad.input;
+
+import com.rdapps.gamepad.device.ButtonType;
+import com.rdapps.gamepad.device.JoystickType;
+import com.rdapps.gamepad.model.ControllerAction;
+import java.util.Arrays;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ControllerMappingTest {
+
+    @Test
+    public void testButtons() {
+        ControllerMapping mapping = ControllerMapping.compile(Arrays.asList(
+                new ControllerAction(ButtonType.A, 96),
+                new ControllerAction(ButtonType.B, 97),
+                new ControllerAction(ButtonType.X, 96)));
+
+        Assert.assertEquals(ButtonType.X, mapping.getButton(96));
+        Assert.assertEquals(ButtonType.B, mapping.getButton(97));
+        Assert.assertNull(mapping.getButton(19));
+        Assert.assertNull(mapping.getButton(-1));
+        Assert.assertNull(mapping.getButton(1000));
+    }
+
+    @Test
+    public void testAxisButtons() {
+        ControllerMapping mapping = ControllerMapping.compile(Arrays.asList(
+                new ControllerAction(ButtonType.ZL, 17, 1),
+                new ControllerAction(ButtonType.ZR, 18, -1),
+                new ControllerAction(ButtonType.L, ControllerMapping.AXIS_COUNT, 1)));
+
+        Assert.assertEquals(2, mapping.getAxisButtonCount());
+        Assert.assertEquals(17, mapping.getAxisButtonAxis(0));
+        Assert.assertEquals(1, mapping.getAxisButtonDirection(0));
+        Assert.assertEquals(ButtonType.ZL, mapping.getAxisButton(0));
+        Assert.assertEquals(18, mapping.getAxisButtonAxis(1));
+        Assert.assertEquals(-1, mapping.getAxisButtonDirection(1));
+        Assert.assertEquals(ButtonType.ZR, mapping.getAxisButton(1));
+    }
+
+    @Test
+    public void testSticks() {
+        ControllerMapping mapping = ControllerMapping.compile(Arrays.asList(
+                new ControllerAction(JoystickType.LEFT_JOYSTICK, 0, 1, 1, -1),
+                new ControllerAction(JoystickType.RIGHT_JOYSTICK, 11, 1, -3, 1)));
+
+        Assert.assertTrue(mapping.hasStick(JoystickType.LEFT_JOYSTICK));
+        Assert.assertEquals(0, mapping.getStickAxisX(JoystickType.LEFT_JOYSTICK));
+        Assert.assertEquals(1, mapping.getStickDirectionX(JoystickType.LEFT_JOYSTICK));
+        Assert.assertEquals(1, mapping.getStickAxisY(JoystickType.LEFT_JOYSTICK));
+        Assert.assertEquals(-1, mapping.getStickDirectionY(JoystickType.LEFT_JOYSTICK));
+        Assert.assertFalse(mapping.hasStick(JoystickType.RIGHT_JOYSTICK));
+        Assert.assertNull(mapping.getButton(0));
+        Assert.assertEquals(0, mapping.getAxisButtonCount());
+    }
+}
@@ -0,0 +1,101 @@
+package com.rdapps.gamepad.input;
+
+import com.rdapps.gamepad.input.InputLatencyTracer.Histogram;
+import com.rdapps.gamepad.input.InputLatencyTracer.Source;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class InputLatencyTracerTest {
+
+    @Test
+    public void testOldestStampPerSource() {
+        InputLatencyTracer tracer = new InputLatencyTracer();
+        tracer.stamp(Source.TOUCH, 100);
+        tracer.stamp(Source.TOUCH, 90);
+        tracer.stamp(Source.TOUCH, 110);
+        tracer.stamp(Source.GAMEPAD, 105);
+        tracer.takePending();
+        tracer.onReportSent(120, true);
+
+        Histogram touch = tracer.getHistogram(Source.TOUCH);
+        Assert.assertEquals(1, touch.getCount());
+        Assert.assertEquals(30, touch.getMax());
+        Histogram gamepad = tracer.getHistogram(Source.GAMEPAD);
+        Assert.assertEquals(1, gamepad.getCount());
+        Assert.assertEquals(15, gamepad.getMax());
+        Assert.assertEquals(0, tracer.getHistogram(Source.WEB).getCount());
+    }
+
+    @Test
+    public void testStampAfterSnapshotCountsForNextReport() {
+        InputLatencyTracer tracer = new InputLatencyTracer();
+        tracer.stamp(Source.TOUCH, 100);
+        tracer.takePending();
+        tracer.stamp(Source.TOUCH, 104);
+        tracer.onReportSent(108, true);
+        tracer.takePending();
+        tracer.onReportSent(116, true);
+
+        Histogram touch = tracer.getHistogram(Source.TOUCH);
+        Assert.assertEquals(2, touch.getCount());
+        Assert.assertEquals(8, touch.getPercentile(50));
+        Assert.assertEquals(12, touch.getMax());
+    }
+
+    @Test
+    public void testNoReportWithoutChange() {
+        InputLatencyTracer tracer = new InputLatencyTracer();
+        tracer.takePending();
+        tracer.onReportSent(100, true);
+        Assert.assertEquals(0, tracer.getHistogram(Source.TOUCH).getCount());
+    }
+
+    @Test
+    public void testFailedSendKeepsStamp() {
+        InputLatencyTracer tracer = new InputLatencyTracer();
+        tracer.stamp(Source.WEB, 100);
+        tracer.takePending();
+        tracer.onReportSent(105, false);
+        tracer.stamp(Source.WEB, 103);
+        tracer.takePending();
+        tracer.onReportSent(110, true);
+
+        Histogram web = tracer.getHistogram(Source.WEB);
+        Assert.assertEquals(1, web.getCount());
+        Assert.assertEquals(10, web.getMax());
+    }
+
+    @Test
+    public void testHistogram() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+        histogram.record(-5);
+        histogram.record(1000);
+        Assert.assertEquals(102, histogram.getCount());
+        Assert.assertEquals(1000, histogram.getMax());
+        Assert.assertEquals(50, histogram.getPercentile(50));
+        Assert.assertEquals(0, histogram.getPercentile(0));
+        Assert.assertEquals(1000, histogram.getPercentile(100));
+        Assert.assertEquals((5050 + 1000) / 102.0, histogram.getMean(), 0.001);
+
+        histogram.reset();
+        Assert.assertEquals(0, histogram.getCount());
+        Assert.assertEquals(0, histogram.getPercentile(50));
+    }
+
+    @Test
+    public void testSummary() {
+        InputLatencyTracer tracer = new InputLatencyTracer();
+        tracer.stamp(Source.GAMEPAD, 10);
+        tracer.takePending();
+        tracer.onReportSent(14, true);
+        String summary = tracer.summary();
+        Assert.assertTrue(summary, summary.contains("GAMEPAD 1 changes p50 4ms"));
+        Assert.assertFalse(summary, summary.contains("TOUCH"));
+
+        tracer.reset();
+        Assert.assertEquals(0, tracer.getHistogram(Source.GAMEPAD).getCount());
+    }
+}
@@ -0,0 +1,93 @@
+package com.rdapps.gamepad.input;
+
+import com.rdapps.gamepad.device.ButtonType;
+import com.rdapps.gamepad.device.JoystickType;
+import com.rdapps.gamepad.model.ControllerAction;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MappingProfilesTest {
+    private static final List<ControllerAction> ACTIONS = Arrays.asList(
+            new ControllerAction(ButtonType.A, 96),
+            new ControllerAction(ButtonType.ZL, 17, 1),
+            new ControllerAction(JoystickType.LEFT_JOYSTICK, 0, 1, 1, -1));
+
+    @Test
+    public void testSwitch() {
+        MappingProfiles profiles = MappingProfiles.of("Default", ACTIONS)
+                .withProfile("Swapped", Arrays.asList(new ControllerAction(ButtonType.B, 96)));
+        Assert.assertEquals(2, profiles.size());
+        Assert.assertEquals("Swapped", profiles.getActive().getName());
+        Assert.assertEquals(ButtonType.B, profiles.getActive().getMapping().getButton(96));
+
+        MappingProfiles next = profiles.withNext(1);
+        Assert.assertEquals(0, next.getActiveIndex());
+        Assert.assertSame(profiles.get(0).getMapping(), next.getActive().getMapping());
+        Assert.assertEquals(ButtonType.A, next.getActive().getMapping().getButton(96));
+        Assert.assertEquals(1, next.withNext(-1).getActiveIndex());
+        Assert.assertSame(next, next.withActive(0));
+    }
+
+    @Test
+    public void testEdit() {
+        MappingProfiles profiles = MappingProfiles.of("Default", ACTIONS)
+                .withProfile("Second", ACTIONS)
+                .withProfile("Third", ACTIONS)
+                .withActive(1)
+                .withActions(Arrays.asList(new ControllerAction(ButtonType.X, 99)));
+        Assert.assertEquals(ButtonType.X, profiles.getActive().getMapping().getButton(99));
+        Assert.assertEquals(ACTIONS.size(), profiles.get(0).getActions().size());
+
+        MappingProfiles removed = profiles.without(1);
+        Assert.assertEquals(2, removed.size());
+        Assert.assertEquals("Third", removed.getActive().getName());
+        Assert.assertEquals(0, removed.without(1).getActiveIndex());
+        MappingProfiles single = MappingProfiles.of("Default", ACTIONS);
+        Assert.assertSame(single, single.without(0));
+    }
+
+    @Test
+    public void testProfileCap() throws IOException {
+        MappingProfiles profiles = MappingProfiles.of("Default", ACTIONS);
+        for (int i = 1; i < MappingProfiles.MAX_PROFILES; i++) {
+            profiles = profiles.withProfile("Profile " + i, ACTIONS);
+        }
+        Assert.assertEquals(MappingProfiles.MAX_PROFILES, profiles.size());
+        Assert.assertSame(profiles, profiles.withProfile("One too many", ACTIONS));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        profiles.write(out);
+        MappingProfiles read = MappingProfiles.read(new ByteArrayInputStream(out.toByteArray()));
+        Assert.assertEquals(MappingProfiles.MAX_PROFILES, read.size());
+        Assert.assertEquals(MappingProfiles.MAX_PROFILES - 1, read.getActiveIndex());
+    }
+
+    @Test
+    public void testWriteRead() throws IOException {
+        MappingProfiles profiles = MappingProfiles.of("Default", ACTIONS)
+                .withProfile("Racing", Arrays.asList(new ControllerAction(ButtonType.ZR, 23, -1)))
+                .withActive(0);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        profiles.write(out);
+
+        MappingProfiles read = MappingProfiles.read(new ByteArrayInputStream(out.toByteArray()));
+        Assert.assertEquals(2, read.size());
+        Assert.assertEquals(0, read.getActiveIndex());
+        Assert.assertEquals("Racing", read.get(1).getName());
+        ControllerMapping mapping = read.get(0).getMapping();
+        Assert.assertEquals(ButtonType.A, mapping.getButton(96));
+        Assert.assertEquals(17, mapping.getAxisButtonAxis(0));
+        Assert.assertEquals(-1, mapping.getStickDirectionY(JoystickType.LEFT_JOYSTICK));
+        Assert.assertEquals(-1, read.get(1).getMapping().getAxisButtonDirection(0));
+    }
+
+    @Test(expected = IOException.class)
+    public void testUnknownFormat() throws IOException {
+        MappingProfiles.read(new ByteArrayInputStream(new byte[] {1, 2, 3, 4, 0, 0, 0, 1}));
+    }
+}
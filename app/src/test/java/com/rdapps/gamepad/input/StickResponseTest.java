@@ -0,0 +1,61 @@
+package com.rdapps.gamepad.input;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StickResponseTest {
+    private float[] out;
+
+    @Before
+    public void setUp() {
+        out = new float[2];
+    }
+
+    @Test
+    public void testDeadzones() {
+        StickResponse response = new StickResponse(StickResponse.Mode.RADIAL, 0.1f, 0.9f, 0, 1);
+        response.apply(0.05f, -0.05f, out);
+        Assert.assertEquals(0, out[0], 0.001);
+        Assert.assertEquals(0, out[1], 0.001);
+        response.apply(0, 0.5f, out);
+        Assert.assertEquals(0, out[0], 0.001);
+        Assert.assertEquals(0.5f, out[1], 0.01);
+        response.apply(-0.95f, 0, out);
+        Assert.assertEquals(-1, out[0], 0.001);
+        Assert.assertEquals(0, out[1], 0.001);
+    }
+
+    @Test
+    public void testRadialKeepsDirection() {
+        StickResponse response = StickResponse.Preset.PRECISE.create();
+        response.apply(0.3f, 0.4f, out);
+        Assert.assertEquals(0.75f, out[0] / out[1], 0.001);
+        // Half way between the deadzones, squared
+        float t = (0.5f - 0.08f) / (0.95f - 0.08f);
+        Assert.assertEquals(t * t, Math.hypot(out[0], out[1]), 0.01);
+    }
+
+    @Test
+    public void testAntiDeadzone() {
+        StickResponse response = StickResponse.Preset.ANTI_DEADZONE.create();
+        response.apply(0.1f, 0, out);
+        Assert.assertTrue(out[0] >= 0.25f);
+        response.apply(0.05f, 0, out);
+        Assert.assertEquals(0, out[0], 0.001);
+    }
+
+    @Test
+    public void testAxial() {
+        StickResponse response = StickResponse.Preset.AXIAL.create();
+        // The small axis is dropped on its own, the large one is not scaled down by it
+        response.apply(0.1f, -1, out);
+        Assert.assertEquals(0, out[0], 0.001);
+        Assert.assertEquals(-1, out[1], 0.001);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalid() {
+        new StickResponse(StickResponse.Mode.RADIAL, 0.5f, 0.4f, 0, 1);
+    }
+}
@@ -0,0 +1,86 @@
+package com.rdapps.gamepad.input;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StickSamplerTest {
+    private StickSampler sampler;
+    private float[] out;
+
+    @Before
+    public void setUp() {
+        sampler = new StickSampler();
+        out = new float[2];
+    }
+
+    @Test
+    public void testLatest() {
+        sampler.setPolicy(StickSampler.Policy.LATEST);
+        sampler.add(10, 100, 0);
+        sampler.add(12, 20, -30);
+        Assert.assertTrue(sampler.sample(16, out));
+        Assert.assertEquals(20, out[0], 0.001);
+        Assert.assertEquals(-30, out[1], 0.001);
+    }
+
+    @Test
+    public void testPeakKeepsFlick() {
+        sampler.setPolicy(StickSampler.Policy.PEAK);
+        // Flick out and back between two reports
+        sampler.add(1, 0, 0);
+        sampler.add(3, -90, 40);
+        sampler.add(5, 0, 0);
+        Assert.assertTrue(sampler.sample(8, out));
+        Assert.assertEquals(-90, out[0], 0.001);
+        Assert.assertEquals(40, out[1], 0.001);
+        // Back to where the stick is now on the next report
+        Assert.assertTrue(sampler.sample(12, out));
+        Assert.assertEquals(0, out[0], 0.001);
+        Assert.assertEquals(0, out[1], 0.001);
+        Assert.assertFalse(sampler.sample(14, out));
+
+        sampler.add(10, 10, 0);
+        Assert.assertTrue(sampler.sample(16, out));
+        Assert.assertEquals(10, out[0], 0.001);
+    }
+
+    @Test
+    public void testAverage() {
+        sampler.setPolicy(StickSampler.Policy.AVERAGE);
+        sampler.add(0, 0, 0);
+        Assert.assertTrue(sampler.sample(0, out));
+
+        // 0 held for 4ms, 100 for 4ms, window 0..8
+        sampler.add(4, 100, -50);
+        Assert.assertTrue(sampler.sample(8, out));
+        Assert.assertEquals(50, out[0], 0.001);
+        Assert.assertEquals(-25, out[1], 0.001);
+
+        // 100 carried in for 2ms, 0 for 6ms
+        sampler.add(10, 0, 0);
+        Assert.assertTrue(sampler.sample(16, out));
+        Assert.assertEquals(25, out[0], 0.001);
+    }
+
+    @Test
+    public void testNoNewSamples() {
+        sampler.add(1, 50, 50);
+        Assert.assertTrue(sampler.sample(8, out));
+        out[0] = 7;
+        Assert.assertFalse(sampler.sample(16, out));
+        Assert.assertEquals(7, out[0], 0.001);
+    }
+
+    @Test
+    public void testOverflowDropsOldest() {
+        sampler = new StickSampler(4);
+        sampler.setPolicy(StickSampler.Policy.PEAK);
+        sampler.add(1, 100, 0);
+        for (int i = 0; i < 4; i++) {
+            sampler.add(2 + i, 10 + i, 0);
+        }
+        Assert.assertTrue(sampler.sample(8, out));
+        Assert.assertEquals(13, out[0], 0.001);
+    }
+}
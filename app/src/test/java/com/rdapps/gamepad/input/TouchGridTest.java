@@ -0,0 +1,78 @@
+package com.rdapps.gamepad.input;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TouchGridTest {
+
+    @Test
+    public void testHit() {
+        TouchGrid.Builder builder = TouchGrid.builder(1000, 500);
+        int a = builder.add(10, 10, 110, 110);
+        int b = builder.add(800, 300, 900, 400);
+        TouchGrid grid = builder.build();
+        Assert.assertEquals(2, grid.size());
+        Assert.assertEquals(a, grid.hit(50, 50));
+        Assert.assertEquals(a, grid.hit(10, 10));
+        Assert.assertEquals(b, grid.hit(899, 399));
+        Assert.assertEquals(TouchGrid.NONE, grid.hit(110, 50));
+        Assert.assertEquals(TouchGrid.NONE, grid.hit(500, 250));
+    }
+
+    @Test
+    public void testOutside() {
+        TouchGrid.Builder builder = TouchGrid.builder(100, 100);
+        builder.add(0, 0, 100, 100);
+        TouchGrid grid = builder.build();
+        Assert.assertEquals(TouchGrid.NONE, grid.hit(-1, 50));
+        Assert.assertEquals(TouchGrid.NONE, grid.hit(50, 100));
+        Assert.assertEquals(TouchGrid.NONE, grid.hit(100, 50));
+    }
+
+    @Test
+    public void testOverlapNearestCenter() {
+        TouchGrid.Builder builder = TouchGrid.builder(400, 400);
+        int left = builder.add(0, 0, 200, 200);
+        int right = builder.add(150, 0, 350, 200);
+        TouchGrid grid = builder.build();
+        Assert.assertEquals(left, grid.hit(170, 100));
+        Assert.assertEquals(right, grid.hit(180, 100));
+    }
+
+    @Test
+    public void testRegionAcrossCells() {
+        TouchGrid.Builder builder = TouchGrid.builder(1600, 1600);
+        int region = builder.add(95, 95, 1505, 1505);
+        TouchGrid grid = builder.build();
+        for (int i = 100; i < 1500; i += 100) {
+            Assert.assertEquals(region, grid.hit(i, i));
+            Assert.assertEquals(region, grid.hit(1500 - i, i));
+        }
+    }
+
+    @Test
+    public void testManyRegions() {
+        TouchGrid.Builder builder = TouchGrid.builder(1000, 1000);
+        int[] regions = new int[100];
+        for (int i = 0; i < regions.length; i++) {
+            float x = (i % 10) * 100;
+            float y = (i / 10) * 100;
+            regions[i] = builder.add(x, y, x + 90, y + 90);
+        }
+        TouchGrid grid = builder.build();
+        Assert.assertEquals(100, grid.size());
+        for (int i = 0; i < regions.length; i++) {
+            float x = (i % 10) * 100;
+            float y = (i / 10) * 100;
+            Assert.assertEquals(regions[i], grid.hit(x + 45, y + 45));
+            Assert.assertEquals(TouchGrid.NONE, grid.hit(x + 95, y + 45));
+        }
+    }
+
+    @Test
+    public void testEmpty() {
+        TouchGrid grid = TouchGrid.builder(0, 0).build();
+        Assert.assertEquals(0, grid.size());
+        Assert.assertEquals(TouchGrid.NONE, grid.hit(0, 0));
+    }
+}
@@ -0,0 +1,115 @@
+package com.rdapps.gamepad.macro;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class InputRecorderTest {
+    private static final int MOTION_OFFSET = 12;
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("recording", ".bin");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void testRecordPlay() throws IOException {
+        InputRecorder recorder = new InputRecorder(file, false, 60);
+        // More records than the buffer holds
+        for (int i = 0; i < 1000; i++) {
+            recorder.record(i, i % 201 - 100, -(i % 201 - 100), 100, -100, null, 0);
+        }
+        recorder.close();
+        Assert.assertEquals(16 + 1000 * 8, file.length());
+
+        InputPlayer player = new InputPlayer(file);
+        Assert.assertEquals(60, player.getPacketRate());
+        Assert.assertFalse(player.hasImu());
+        Assert.assertEquals(1000, player.getCount());
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertTrue(player.next());
+            Assert.assertEquals(i, player.getButtons());
+            Assert.assertEquals(i % 201 - 100, player.getAxis(0));
+            Assert.assertEquals(-(i % 201 - 100), player.getAxis(1));
+            Assert.assertEquals(100, player.getAxis(2));
+            Assert.assertEquals(-100, player.getAxis(3));
+        }
+        Assert.assertFalse(player.next());
+        Assert.assertFalse(player.hasRecord());
+    }
+
+    @Test
+    public void testImu() throws IOException {
+        byte[] report = new byte[48];
+        InputRecorder recorder = new InputRecorder(file, true, 120);
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < InputRecorder.IMU_SIZE; j++) {
+                report[MOTION_OFFSET + j] = (byte) (i * 40 + j);
+            }
+            recorder.record(1 << i, 0, 0, 0, 0, report, MOTION_OFFSET);
+        }
+        recorder.close();
+
+        InputPlayer player = new InputPlayer(file);
+        Assert.assertTrue(player.hasImu());
+        byte[] played = new byte[48];
+        for (int i = 0; i < 3; i++) {
+            Assert.assertTrue(player.next());
+            Assert.assertEquals(1 << i, player.getButtons());
+            player.copyImu(played, MOTION_OFFSET);
+            Assert.assertEquals((byte) (i * 40), played[MOTION_OFFSET]);
+            Assert.assertEquals((byte) (i * 40 + 35), played[MOTION_OFFSET + 35]);
+        }
+        Assert.assertEquals(0, played[0]);
+    }
+
+    @Test
+    public void testRecordingReplacesFileOnClose() throws IOException {
+        InputRecorder first = new InputRecorder(file, false, 60);
+        first.record(1, 0, 0, 0, 0, null, 0);
+        first.close();
+        InputPlayer player = new InputPlayer(file);
+
+        InputRecorder second = new InputRecorder(file, false, 60);
+        // The mapped recording keeps its size until the new one is done
+        Assert.assertEquals(16 + 8, file.length());
+        second.record(2, 0, 0, 0, 0, null, 0);
+        second.record(3, 0, 0, 0, 0, null, 0);
+        second.close();
+        Assert.assertFalse(new File(file.getPath() + ".tmp").exists());
+        Assert.assertEquals(2, new InputPlayer(file).getCount());
+
+        Assert.assertTrue(player.next());
+        Assert.assertEquals(1, player.getButtons());
+    }
+
+    @Test
+    public void testPartialRecordDropped() throws IOException {
+        InputRecorder recorder = new InputRecorder(file, false, 60);
+        recorder.record(7, 0, 0, 0, 0, null, 0);
+        recorder.close();
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(new byte[3]);
+        }
+        Assert.assertEquals(1, new InputPlayer(file).getCount());
+    }
+
+    @Test(expected = IOException.class)
+    public void testUnknownFormat() throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[32]);
+        }
+        new InputPlayer(file);
+    }
+}
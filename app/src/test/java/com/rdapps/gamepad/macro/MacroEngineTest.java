@@ -0,0 +1,100 @@
+package com.rdapps.gamepad.macro;
+
+import static com.rdapps.gamepad.button.ButtonEnum.A;
+import static com.rdapps.gamepad.button.ButtonEnum.B;
+import static com.rdapps.gamepad.macro.MacroProgram.mask;
+
+import java.util.Arrays;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MacroEngineTest {
+    private MacroEngine engine;
+
+    @Before
+    public void setUp() {
+        engine = new MacroEngine();
+    }
+
+    @Test
+    public void testSteps() {
+        engine.play(MacroProgram.builder().hold(3, A).hold(2, B).build());
+        int[] expected = {mask(A), mask(A), mask(A), mask(B), mask(B)};
+        for (int press : expected) {
+            engine.tick(0);
+            Assert.assertEquals(press, engine.getPressMask());
+            // The other button of the macro is held up
+            Assert.assertEquals(mask(A, B) & ~press, engine.getReleaseMask());
+        }
+        Assert.assertFalse(engine.isPlaying());
+        engine.tick(0);
+        Assert.assertEquals(0, engine.getPressMask());
+        Assert.assertEquals(0, engine.getReleaseMask());
+    }
+
+    @Test
+    public void testLoopAndStop() {
+        engine.play(MacroProgram.builder().hold(1, A).pause(1).loop().build());
+        for (int i = 0; i < 6; i++) {
+            engine.tick(0);
+            Assert.assertEquals(i % 2 == 0 ? mask(A) : 0, engine.getPressMask());
+        }
+        Assert.assertTrue(engine.isPlaying());
+        engine.stop();
+        engine.tick(mask(A));
+        Assert.assertEquals(0, engine.getPressMask());
+        Assert.assertEquals(0, engine.getReleaseMask());
+    }
+
+    @Test
+    public void testTurbo() {
+        engine.setTurbo(A, 4);
+        // Pressed on the first report it is held, then half of every period
+        boolean[] expected = {true, true, false, false, true, true, false, false};
+        for (boolean pressed : expected) {
+            engine.tick(mask(A, B));
+            Assert.assertEquals(pressed ? 0 : mask(A), engine.getReleaseMask());
+        }
+        // Letting go restarts the period
+        engine.tick(0);
+        engine.tick(mask(A));
+        Assert.assertEquals(0, engine.getReleaseMask());
+    }
+
+    @Test
+    public void testOddTurboPeriod() {
+        engine.setTurbo(B, 3);
+        int released = 0;
+        for (int i = 0; i < 30; i++) {
+            engine.tick(mask(B));
+            released += engine.getReleaseMask() != 0 ? 1 : 0;
+        }
+        Assert.assertEquals(10, released);
+    }
+
+    @Test
+    public void testDeterministic() {
+        Assert.assertArrayEquals(replay(), replay());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidTurbo() {
+        engine.setTurbo(A, 1);
+    }
+
+    private int[] replay() {
+        MacroEngine replay = new MacroEngine();
+        replay.setTurbo(B, 6);
+        int[] frames = new int[200];
+        for (int i = 0; i < frames.length; i++) {
+            if (i == 17) {
+                replay.play(MacroProgram.builder().hold(5, A).pause(3).hold(2, A, B).build());
+            }
+            replay.tick(i % 50 < 30 ? mask(B) : 0);
+            frames[i] = replay.getPressMask() << 16 | replay.getReleaseMask();
+        }
+        Assert.assertTrue(Arrays.stream(frames).anyMatch(frame -> frame != 0));
+        return frames;
+    }
+}
@@ -0,0 +1,80 @@
+package com.rdapps.gamepad.memory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ProfileSpiMemoryTest {
+    private static final int SIZE = 0x1000;
+    private static final int COLOR = 0x650;
+
+    private File directory;
+    private ProfileSpiMemory memory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("profiles").toFile();
+        directory.deleteOnExit();
+        File imageFile = new File(directory, "image.bin");
+        imageFile.deleteOnExit();
+        try (RandomAccessFile raf = new RandomAccessFile(imageFile, "rw")) {
+            raf.setLength(SIZE);
+        }
+        memory = new ProfileSpiMemory(new MappedSpiMemory(imageFile), directory, "test");
+    }
+
+    private void createProfile(String name) throws IOException {
+        memory.createProfile(name);
+        new File(directory, "test." + name + ".profile").deleteOnExit();
+    }
+
+    @Test
+    public void testDefaultWriteDoesNotLeakIntoProfile() throws IOException {
+        memory.write(COLOR, new byte[]{1, 2, 3});
+        createProfile("work");
+
+        memory.write(COLOR, new byte[]{4, 5, 6});
+        memory.activateProfile("work");
+        Assert.assertArrayEquals(new byte[]{1, 2, 3}, memory.read(COLOR, 3));
+
+        memory.activateProfile(ProfileSpiMemory.DEFAULT_PROFILE);
+        Assert.assertArrayEquals(new byte[]{4, 5, 6}, memory.read(COLOR, 3));
+    }
+
+    @Test
+    public void testProfilesAreIsolated() throws IOException {
+        createProfile("a");
+        createProfile("b");
+
+        memory.activateProfile("a");
+        memory.write(COLOR, new byte[]{10, 11, 12});
+        memory.activateProfile("b");
+        memory.write(COLOR + 1, new byte[]{20});
+        memory.activateProfile(ProfileSpiMemory.DEFAULT_PROFILE);
+        memory.write(COLOR + 2, new byte[]{30});
+
+        memory.activateProfile("a");
+        Assert.assertArrayEquals(new byte[]{10, 11, 12}, memory.read(COLOR, 3));
+        memory.activateProfile("b");
+        Assert.assertArrayEquals(new byte[]{0, 20, 0}, memory.read(COLOR, 3));
+        memory.activateProfile(ProfileSpiMemory.DEFAULT_PROFILE);
+        Assert.assertArrayEquals(new byte[]{0, 0, 30}, memory.read(COLOR, 3));
+    }
+
+    @Test
+    public void testListProfiles() throws IOException {
+        createProfile("work");
+        Assert.assertEquals(2, memory.listProfiles().size());
+        Assert.assertTrue(memory.listProfiles().contains("work"));
+        Assert.assertEquals(ProfileSpiMemory.DEFAULT_PROFILE, memory.getActiveProfile());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownProfile() {
+        memory.activateProfile("missing");
+    }
+}
@@ -0,0 +1,87 @@
+package com.rdapps.gamepad.memory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+public class SpiJournalTest {
+
+    private static File tempFile() throws IOException {
+        File file = File.createTempFile("spi", ".journal");
+        file.deleteOnExit();
+        return file;
+    }
+
+    @Test
+    public void testReplay() throws IOException {
+        File file = tempFile();
+        SpiJournal journal = new SpiJournal(file);
+        journal.append(0x6050, new byte[]{(byte) 0xFF, 0x00, 0x00});
+        journal.append(0x8010, new byte[]{(byte) 0xB2, (byte) 0xA1});
+        journal.append(0x6051, new byte[]{0x11});
+
+        SpiOverlay overlay = new SpiOverlay();
+        Assert.assertEquals(3, new SpiJournal(file).replay(overlay));
+        Assert.assertEquals(0xFF, overlay.get(0x6050));
+        Assert.assertEquals(0x11, overlay.get(0x6051));
+        Assert.assertEquals(0xA1, overlay.get(0x8011));
+    }
+
+    @Test
+    public void testTornTailIsDropped() throws IOException {
+        File file = tempFile();
+        SpiJournal journal = new SpiJournal(file);
+        journal.append(0x10, new byte[]{1, 2, 3});
+        long intact = file.length();
+        journal.append(0x20, new byte[]{4, 5, 6});
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(file.length() - 2);
+        }
+
+        SpiOverlay overlay = new SpiOverlay();
+        Assert.assertEquals(1, journal.replay(overlay));
+        Assert.assertEquals(-1, overlay.get(0x20));
+        Assert.assertEquals(intact, file.length());
+
+        // Appending after the cut continues a valid log
+        journal.append(0x30, new byte[]{7});
+        Assert.assertEquals(2, journal.replay(new SpiOverlay()));
+    }
+
+    @Test
+    public void testCorruptRecordStopsReplay() throws IOException {
+        File file = tempFile();
+        SpiJournal journal = new SpiJournal(file);
+        journal.append(0x10, new byte[]{1, 2, 3});
+        journal.append(0x20, new byte[]{4, 5, 6});
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(file.length() - 5);
+            raf.write(0x7F);
+        }
+        Assert.assertEquals(1, journal.replay(new SpiOverlay()));
+    }
+
+    @Test
+    public void testRewriteAndReset() throws IOException {
+        File file = tempFile();
+        SpiJournal journal = new SpiJournal(file);
+        for (int i = 0; i < 10; i++) {
+            journal.append(0x100 + i, new byte[]{(byte) i});
+        }
+        SpiOverlay overlay = new SpiOverlay();
+        journal.replay(overlay);
+        Assert.assertEquals(1, overlay.getRangeCount());
+
+        journal.rewrite(overlay);
+        SpiOverlay replayed = new SpiOverlay();
+        Assert.assertEquals(1, journal.replay(replayed));
+        Assert.assertEquals(9, replayed.get(0x109));
+
+        journal.reset();
+        Assert.assertEquals(0, journal.length());
+        Assert.assertEquals(0, journal.replay(new SpiOverlay()));
+    }
+}
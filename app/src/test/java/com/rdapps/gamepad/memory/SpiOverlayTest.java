@@ -0,0 +1,73 @@
+package com.rdapps.gamepad.memory;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+public class SpiOverlayTest {
+    private static final int SIZE = 0x200;
+
+    @Test
+    public void testMergesOverlappingAndAdjacentRanges() {
+        SpiOverlay overlay = new SpiOverlay();
+        overlay.put(0x10, new byte[]{1, 2, 3, 4});
+        overlay.put(0x20, new byte[]{5, 6});
+        Assert.assertEquals(2, overlay.getRangeCount());
+
+        // Adjacent on the right of the first range
+        overlay.put(0x14, new byte[]{7});
+        Assert.assertEquals(2, overlay.getRangeCount());
+        Assert.assertEquals(0x10, overlay.getRange(0).start);
+        Assert.assertEquals(5, overlay.getRange(0).data.length);
+
+        // Fills the gap up to the second range
+        overlay.put(0x12, new byte[0x0E]);
+        Assert.assertEquals(1, overlay.getRangeCount());
+        Assert.assertEquals(0x10, overlay.getRange(0).start);
+        Assert.assertEquals(0x22, overlay.getRange(0).end());
+        Assert.assertEquals(6, overlay.get(0x21));
+        Assert.assertEquals(-1, overlay.get(0x22));
+        Assert.assertEquals(-1, overlay.get(0x0F));
+    }
+
+    @Test
+    public void testMatchesFlatImage() {
+        Random random = new Random(3);
+        byte[] base = new byte[SIZE];
+        random.nextBytes(base);
+        byte[] expected = base.clone();
+        SpiOverlay overlay = new SpiOverlay();
+
+        for (int n = 0; n < 500; n++) {
+            int location = random.nextInt(SIZE - 32);
+            byte[] data = new byte[1 + random.nextInt(31)];
+            random.nextBytes(data);
+            overlay.put(location, data);
+            System.arraycopy(data, 0, expected, location, data.length);
+
+            int readLocation = random.nextInt(SIZE - 64);
+            int readLength = 1 + random.nextInt(63);
+            byte[] actual = Arrays.copyOfRange(base, readLocation, readLocation + readLength);
+            overlay.apply(readLocation, actual, 0, readLength);
+            Assert.assertArrayEquals(
+                    Arrays.copyOfRange(expected, readLocation, readLocation + readLength), actual);
+        }
+
+        for (int i = 1; i < overlay.getRangeCount(); i++) {
+            Assert.assertTrue(overlay.getRange(i - 1).end() < overlay.getRange(i).start);
+        }
+    }
+
+    @Test
+    public void testSnapshotIsStable() {
+        SpiOverlay overlay = new SpiOverlay();
+        overlay.put(0, new byte[]{1, 1});
+        SpiOverlay snapshot = overlay.snapshot();
+        overlay.put(1, new byte[]{2, 2});
+        Assert.assertEquals(1, snapshot.getRangeCount());
+        Assert.assertArrayEquals(new byte[]{1, 1}, snapshot.getRange(0).data);
+        Assert.assertNotEquals(snapshot.getVersion(), overlay.getVersion());
+    }
+}
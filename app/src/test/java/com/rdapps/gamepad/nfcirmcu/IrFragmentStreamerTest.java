@@ -0,0 +1,105 @@
+package com.rdapps.gamepad.nfcirmcu;
+
+import static com.rdapps.gamepad.nfcirmcu.IrFragmentStreamer.FRAGMENT_SIZE;
+import static com.rdapps.gamepad.nfcirmcu.IrFragmentStreamer.HEADER_SIZE;
+import static com.rdapps.gamepad.nfcirmcu.IrFragmentStreamer.STALL_REPORTS;
+import static com.rdapps.gamepad.nfcirmcu.IrFragmentStreamer.WINDOW;
+
+import java.util.Arrays;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class IrFragmentStreamerTest {
+    private static final IrResolution RESOLUTION = IrResolution.R40X30;
+
+    private final byte[] report = new byte[313];
+    private int requests;
+    private IrFragmentStreamer streamer;
+
+    @Before
+    public void setUp() {
+        requests = 0;
+        streamer = new IrFragmentStreamer(() -> requests++);
+        streamer.reset(RESOLUTION);
+    }
+
+    @Test
+    public void testEmptyUntilFirstFrame() {
+        Assert.assertEquals(-1, streamer.fill(report, 0));
+        Assert.assertEquals(IrFragmentStreamer.EMPTY, report[0]);
+        Assert.assertEquals(1, requests);
+    }
+
+    @Test
+    public void testStreamsFrameInOrder() {
+        publish(1);
+        Assert.assertEquals(2, requests);
+        for (int fragment = 0; fragment < RESOLUTION.getFragmentCount(); fragment++) {
+            Assert.assertEquals(fragment, streamer.fill(report, 0));
+            Assert.assertEquals(IrFragmentStreamer.IR_DATA, report[0]);
+            Assert.assertEquals(fragment, report[3]);
+            Assert.assertEquals(1, report[HEADER_SIZE]);
+            Assert.assertEquals(1, report[HEADER_SIZE + FRAGMENT_SIZE - 1]);
+            streamer.onAck(false, 0, fragment);
+        }
+
+        // Next frame is captured, it replaces the streamed one at the frame boundary
+        publish(2);
+        Assert.assertEquals(0, streamer.fill(report, 0));
+        Assert.assertEquals(2, report[HEADER_SIZE]);
+        Assert.assertEquals(3, requests);
+    }
+
+    @Test
+    public void testRepeatsFrameWhenNoNewOne() {
+        publish(1);
+        for (int fragment = 0; fragment < RESOLUTION.getFragmentCount(); fragment++) {
+            streamer.fill(report, 0);
+            streamer.onAck(false, 0, fragment);
+        }
+        Assert.assertEquals(0, streamer.fill(report, 0));
+        Assert.assertEquals(1, report[HEADER_SIZE]);
+    }
+
+    @Test
+    public void testResend() {
+        publish(1);
+        streamer.fill(report, 0);
+        streamer.fill(report, 0);
+        streamer.onAck(true, 0, 0);
+        Assert.assertEquals(0, streamer.fill(report, 0));
+        Assert.assertEquals(2, streamer.fill(report, 0));
+    }
+
+    @Test
+    public void testWindowAndStall() {
+        streamer.reset(IrResolution.R80X60);
+        publish(1);
+        for (int i = 0; i < WINDOW; i++) {
+            Assert.assertEquals(i, streamer.fill(report, 0));
+        }
+        for (int i = 1; i < STALL_REPORTS; i++) {
+            Assert.assertEquals(-1, streamer.fill(report, 0));
+        }
+        // No acknowledgement at all: restart from the first fragment
+        Assert.assertEquals(0, streamer.fill(report, 0));
+
+        streamer.onAck(false, 0, 0);
+        Assert.assertEquals(1, streamer.fill(report, 0));
+    }
+
+    @Test
+    public void testResolutionChangeDropsFrame() {
+        byte[] back = streamer.getBackBuffer();
+        streamer.reset(IrResolution.R80X60);
+        Arrays.fill(back, (byte) 1);
+        Assert.assertFalse(streamer.publish(RESOLUTION));
+        Assert.assertEquals(-1, streamer.fill(report, 0));
+    }
+
+    private void publish(int value) {
+        Arrays.fill(streamer.getBackBuffer(), (byte) value);
+        Assert.assertTrue(streamer.publish(streamer.getResolution()));
+    }
+}
@@ -0,0 +1,39 @@
+package com.rdapps.gamepad.nfcirmcu;
+
+import java.util.Arrays;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class NfcWriteBufferTest {
+
+    @Test
+    public void testAppendAndReset() {
+        NfcWriteBuffer buffer = new NfcWriteBuffer();
+        byte[] packet = new byte[64];
+        for (int i = 0; i < packet.length; i++) {
+            packet[i] = (byte) i;
+        }
+        buffer.append(packet, 15, 49);
+        buffer.append(packet, 15, 10);
+        Assert.assertEquals(59, buffer.size());
+        Assert.assertEquals(15, buffer.array()[0]);
+        Assert.assertEquals(24, buffer.array()[58]);
+
+        byte[] array = buffer.array();
+        buffer.reset();
+        Assert.assertEquals(0, buffer.size());
+        buffer.append(packet, 0, 1);
+        Assert.assertSame(array, buffer.array());
+    }
+
+    @Test
+    public void testGrows() {
+        NfcWriteBuffer buffer = new NfcWriteBuffer();
+        byte[] chunk = new byte[700];
+        Arrays.fill(chunk, (byte) 7);
+        buffer.append(chunk, 0, chunk.length);
+        buffer.append(chunk, 0, chunk.length);
+        Assert.assertEquals(1400, buffer.size());
+        Assert.assertEquals(7, buffer.array()[1399]);
+    }
+}
@@ -0,0 +1,60 @@
+package com.rdapps.gamepad.nfcirmcu;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PgmIrSourceTest {
+
+    @Test
+    public void testReadAndScale() throws IOException {
+        // 4x2 image, left half dark, right half bright
+        byte[] pixels = {10, 20, (byte) 200, (byte) 220, 30, 40, (byte) 240, (byte) 250};
+        PgmIrSource source = new PgmIrSource(pgm("P5\n# test\n4 2\n255\n", pixels));
+        Assert.assertEquals(4, source.getWidth());
+        Assert.assertEquals(2, source.getHeight());
+
+        byte[] luma = new byte[8];
+        Assert.assertTrue(source.readFrame(luma));
+        Assert.assertArrayEquals(pixels, luma);
+
+        byte[] scaled = new byte[2];
+        IrDownsampler.scale(luma, 4, 2, scaled, 2, 1);
+        Assert.assertEquals(25, scaled[0] & 0xFF);
+        Assert.assertEquals(228, scaled[1] & 0xFF);
+    }
+
+    @Test
+    public void testUpscaleRepeats() {
+        byte[] src = {1, 2, 3, 4};
+        byte[] dst = new byte[16];
+        IrDownsampler.scale(src, 2, 2, dst, 4, 4);
+        Assert.assertEquals(1, dst[0]);
+        Assert.assertEquals(1, dst[5]);
+        Assert.assertEquals(2, dst[3]);
+        Assert.assertEquals(4, dst[15]);
+    }
+
+    @Test
+    public void testMaxValueIsNormalized() throws IOException {
+        PgmIrSource source = new PgmIrSource(pgm("P5 1 1 15 ", new byte[]{15}));
+        byte[] luma = new byte[1];
+        source.readFrame(luma);
+        Assert.assertEquals(255, luma[0] & 0xFF);
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsAsciiPgm() throws IOException {
+        new PgmIrSource(pgm("P2\n1 1\n255\n", new byte[0]));
+    }
+
+    private static ByteArrayInputStream pgm(String header, byte[] pixels) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(header.getBytes(StandardCharsets.US_ASCII));
+        out.write(pixels);
+        return new ByteArrayInputStream(out.toByteArray());
+    }
+}
@@ -0,0 +1,126 @@
+package com.rdapps.gamepad.protocol;
+
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+public class GyroBiasEstimatorTest {
+    private static final float[] BIAS = {0.02f, -0.015f, 0.008f};
+    private static final float DT = 0.005f; // 200 Hz
+    private static final long DT_NS = 5_000_000L;
+    private static final float G = 9.81f;
+
+    private final Random random = new Random(7);
+
+    private float noise(float sigma) {
+        return (float) random.nextGaussian() * sigma;
+    }
+
+    @Test
+    public void testConvergesWhileStationary() {
+        GyroBiasEstimator estimator = new GyroBiasEstimator();
+        for (int n = 0; n < 2000; n++) {
+            estimator.updateAccel(noise(0.02f), noise(0.02f), G + noise(0.02f));
+            estimator.updateGyro(BIAS[0] + noise(0.004f), BIAS[1] + noise(0.004f),
+                    BIAS[2] + noise(0.004f), n * DT_NS);
+        }
+        Assert.assertTrue(estimator.isStationary());
+        Assert.assertEquals(BIAS[0], estimator.getBiasX(), 0.002);
+        Assert.assertEquals(BIAS[1], estimator.getBiasY(), 0.002);
+        Assert.assertEquals(BIAS[2], estimator.getBiasZ(), 0.002);
+    }
+
+    @Test
+    public void testLowSampleRate() {
+        // 45 Hz, the sampling rate at 15 reports a second: still as fast as at 200 Hz
+        GyroBiasEstimator estimator = new GyroBiasEstimator();
+        long dtNs = 1_000_000_000L / 45;
+        for (int n = 0; n < 45; n++) {
+            estimator.updateAccel(noise(0.02f), noise(0.02f), G + noise(0.02f));
+            estimator.updateGyro(BIAS[0] + noise(0.004f), BIAS[1] + noise(0.004f),
+                    BIAS[2] + noise(0.004f), n * dtNs);
+        }
+        Assert.assertFalse(estimator.isStationary());
+        for (int n = 45; n < 450; n++) {
+            estimator.updateAccel(noise(0.02f), noise(0.02f), G + noise(0.02f));
+            estimator.updateGyro(BIAS[0] + noise(0.004f), BIAS[1] + noise(0.004f),
+                    BIAS[2] + noise(0.004f), n * dtNs);
+            if (n == 50) {
+                Assert.assertTrue(estimator.isStationary());
+            }
+        }
+        Assert.assertEquals(BIAS[0], estimator.getBiasX(), 0.002);
+        Assert.assertEquals(BIAS[1], estimator.getBiasY(), 0.002);
+        Assert.assertEquals(BIAS[2], estimator.getBiasZ(), 0.002);
+    }
+
+    @Test
+    public void testIgnoresMotion() {
+        GyroBiasEstimator estimator = new GyroBiasEstimator();
+        for (int n = 0; n < 2000; n++) {
+            double t = n * DT;
+            float rate = (float) (2 * Math.sin(2 * Math.PI * t));
+            estimator.updateAccel((float) (3 * Math.cos(2 * Math.PI * t)), noise(0.02f), G);
+            estimator.updateGyro(BIAS[0] + rate, BIAS[1], BIAS[2] + noise(0.004f), n * DT_NS);
+        }
+        Assert.assertFalse(estimator.isStationary());
+        Assert.assertEquals(0f, estimator.getBiasX(), 1e-6);
+        Assert.assertEquals(0f, estimator.getBiasZ(), 1e-6);
+    }
+
+    @Test
+    public void testIgnoresSlowPan() {
+        // 10 s still, then a 20 s pan about z at under 1 deg/s with the phone held level
+        GyroBiasEstimator estimator = new GyroBiasEstimator();
+        for (int n = 0; n < 6000; n++) {
+            float rate = n < 2000 ? 0f : 0.015f;
+            estimator.updateAccel(noise(0.02f), noise(0.02f), G + noise(0.02f));
+            estimator.updateGyro(BIAS[0] + noise(0.004f), BIAS[1] + noise(0.004f),
+                    BIAS[2] + rate + noise(0.004f), n * DT_NS);
+        }
+        Assert.assertEquals(BIAS[0], estimator.getBiasX(), 0.002);
+        Assert.assertEquals(BIAS[2], estimator.getBiasZ(), 0.002);
+    }
+
+    @Test
+    public void testReducesDrift() {
+        // 10 s still, then 20 s of handling followed by rest: integrate z with and without
+        // the estimate and compare the accumulated error
+        GyroBiasEstimator estimator = new GyroBiasEstimator();
+        double rawAngle = 0;
+        double correctedAngle = 0;
+        double trueAngle = 0;
+        for (int n = 0; n < 6000; n++) {
+            double t = n * DT;
+            boolean moving = t > 10 && t < 15;
+            float rate = moving ? (float) (1.5 * Math.sin(2 * Math.PI * 0.5 * t)) : 0f;
+            float accX = moving ? (float) (2 * Math.sin(2 * Math.PI * t)) : 0f;
+            float gz = BIAS[2] + rate + noise(0.004f);
+
+            estimator.updateAccel(accX + noise(0.02f), noise(0.02f), G + noise(0.02f));
+            estimator.updateGyro(BIAS[0] + noise(0.004f), BIAS[1] + noise(0.004f), gz,
+                    n * DT_NS);
+
+            trueAngle += rate * DT;
+            rawAngle += gz * DT;
+            correctedAngle += (gz - estimator.getBiasZ()) * DT;
+        }
+        double rawError = Math.abs(rawAngle - trueAngle);
+        double correctedError = Math.abs(correctedAngle - trueAngle);
+        Assert.assertTrue(rawError > 0.2);
+        Assert.assertTrue(correctedError < rawError / 5);
+    }
+
+    @Test
+    public void testReset() {
+        GyroBiasEstimator estimator = new GyroBiasEstimator();
+        for (int n = 0; n < 500; n++) {
+            estimator.updateAccel(0, 0, G);
+            estimator.updateGyro(BIAS[0], BIAS[1], BIAS[2], n * DT_NS);
+        }
+        estimator.reset();
+        Assert.assertFalse(estimator.isStationary());
+        Assert.assertEquals(0f, estimator.getBiasX(), 0);
+    }
+}
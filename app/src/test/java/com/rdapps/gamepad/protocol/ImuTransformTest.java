@@ -0,0 +1,90 @@
+package com.rdapps.gamepad.protocol;
+
+import static com.rdapps.gamepad.protocol.ControllerType.PRO_CONTROLLER;
+import static com.rdapps.gamepad.protocol.ControllerType.RIGHT_JOYCON;
+
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+public class ImuTransformTest {
+    private static final double[] ACC_COEFFS = {418.2, 417.9, 418.6};
+    private static final double[] GYR_COEFFS = {10285.3, 10276.8, 10290.1};
+    private static final short[] GYR_OFFSET = {-12, 25, 3};
+
+    @Test
+    public void testMatchesFloatPath() {
+        Random random = new Random(42);
+        for (ControllerType type : ControllerType.values()) {
+            ImuTransform transform =
+                    ImuTransform.compile(type, ACC_COEFFS, GYR_COEFFS, GYR_OFFSET);
+            byte[] buf = new byte[12];
+            for (int n = 0; n < 10_000; n++) {
+                float x = (random.nextFloat() * 2 - 1) * 80;
+                float y = (random.nextFloat() * 2 - 1) * 80;
+                float z = (random.nextFloat() * 2 - 1) * 80;
+                transform.writeAccel(x, y, z, buf, 0);
+                short[] expected = floatAccel(type, x, y, z);
+                for (int i = 0; i < 3; i++) {
+                    Assert.assertTrue(Math.abs(readShort(buf, i * 2) - expected[i]) <= 1);
+                }
+
+                float gx = (random.nextFloat() * 2 - 1) * 3;
+                float gy = (random.nextFloat() * 2 - 1) * 3;
+                float gz = (random.nextFloat() * 2 - 1) * 3;
+                transform.writeGyro(gx, gy, gz, buf, 6);
+                expected = floatGyro(type, gx, gy, gz);
+                for (int i = 0; i < 3; i++) {
+                    Assert.assertTrue(Math.abs(readShort(buf, 6 + i * 2) - expected[i]) <= 1);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSaturates() {
+        ImuTransform transform =
+                ImuTransform.compile(PRO_CONTROLLER, ACC_COEFFS, GYR_COEFFS, GYR_OFFSET);
+        short[] out = new short[3];
+        transform.transformAccel(1000f, -1000f, 0f, out);
+        Assert.assertEquals(Short.MAX_VALUE, out[0]);
+        Assert.assertEquals(Short.MIN_VALUE, out[1]);
+        Assert.assertEquals(0, out[2]);
+    }
+
+    // Reference: the per-sample double path that was used before the transform was compiled.
+    private static short[] floatAccel(ControllerType type, float x, float y, float z) {
+        int multiplier = type == RIGHT_JOYCON ? -1 : 1;
+        boolean isPro = type == PRO_CONTROLLER;
+        float accX = multiplier * x;
+        float accY = y;
+        float accZ = multiplier * z;
+        return new short[]{
+                toShort((isPro ? accX : accY) * ACC_COEFFS[0]),
+                toShort((isPro ? accY : -accX) * ACC_COEFFS[1]),
+                toShort(accZ * ACC_COEFFS[2])
+        };
+    }
+
+    private static short[] floatGyro(ControllerType type, float x, float y, float z) {
+        int multiplier = type == RIGHT_JOYCON ? -1 : 1;
+        boolean isPro = type == PRO_CONTROLLER;
+        float gyrX = multiplier * x;
+        float gyrY = y;
+        float gyrZ = multiplier * z;
+        return new short[]{
+                toShort((isPro ? gyrX : gyrY) * GYR_COEFFS[0] + GYR_OFFSET[0]),
+                toShort((isPro ? gyrY : -gyrX) * GYR_COEFFS[1] + GYR_OFFSET[1]),
+                toShort(gyrZ * GYR_COEFFS[2] + GYR_OFFSET[2])
+        };
+    }
+
+    private static short toShort(double value) {
+        return (short) Math.round(Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, value)));
+    }
+
+    private static int readShort(byte[] buf, int offset) {
+        return (short) ((buf[offset] & 0xFF) | (buf[offset + 1] << 8));
+    }
+}
@@ -0,0 +1,148 @@
+package com.rdapps.gamepad.sensor;
+
+import android.hardware.Sensor;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+public class DirectReportParserTest {
+    private static final long MS = 1_000_000L;
+
+    private final List<long[]> samples = new ArrayList<>();
+
+    private final SensorSink sink = (sensorType, timestampNs, x, y, z) ->
+            samples.add(new long[]{sensorType, timestampNs, (long) x});
+
+    // x carries the timestamp in ms so ordering and values can be checked together
+    private static void waveform(int sensorType, long timestampNs, float[] out) {
+        out[0] = timestampNs / MS;
+        out[1] = sensorType;
+        out[2] = 0;
+    }
+
+    @Test
+    public void testDeliversSamplesInOrder() {
+        SyntheticSensorSource source =
+                new SyntheticSensorSource(sink, 64, DirectReportParserTest::waveform);
+        source.register(Sensor.TYPE_ACCELEROMETER, 5000, 0);
+        source.register(Sensor.TYPE_GYROSCOPE, 5000, 0);
+
+        source.advanceTo(15 * MS);
+        source.poll();
+        Assert.assertEquals(6, samples.size());
+        for (long[] sample : samples) {
+            Assert.assertEquals(sample[1] / MS, sample[2]);
+        }
+        Assert.assertEquals(3, samples.stream()
+                .filter(s -> s[0] == Sensor.TYPE_GYROSCOPE).count());
+
+        // Nothing new, nothing delivered
+        samples.clear();
+        source.poll();
+        Assert.assertTrue(samples.isEmpty());
+    }
+
+    @Test
+    public void testRingWrap() {
+        SyntheticSensorSource source =
+                new SyntheticSensorSource(sink, 8, DirectReportParserTest::waveform);
+        source.register(Sensor.TYPE_ACCELEROMETER, 1000, 0);
+
+        long lastTimestamp = 0;
+        for (int tick = 1; tick <= 20; tick++) {
+            source.advanceTo(tick * 5 * MS);
+            source.poll();
+            for (long[] sample : samples) {
+                Assert.assertEquals(lastTimestamp + MS, sample[1]);
+                lastTimestamp = sample[1];
+            }
+            samples.clear();
+        }
+        Assert.assertEquals(100 * MS, lastTimestamp);
+        Assert.assertEquals(0, source.getLostRecords());
+    }
+
+    @Test
+    public void testOverrunResyncsToOldest() {
+        SyntheticSensorSource source =
+                new SyntheticSensorSource(sink, 8, DirectReportParserTest::waveform);
+        source.register(Sensor.TYPE_ACCELEROMETER, 1000, 0);
+
+        // 20 samples into an 8 record ring: the first 12 are overwritten
+        source.advanceTo(20 * MS);
+        source.poll();
+        Assert.assertEquals(8, samples.size());
+        Assert.assertEquals(13 * MS, samples.get(0)[1]);
+        Assert.assertEquals(20 * MS, samples.get(7)[1]);
+        Assert.assertEquals(12, source.getLostRecords());
+
+        samples.clear();
+        source.advanceTo(23 * MS);
+        source.poll();
+        Assert.assertEquals(3, samples.size());
+        Assert.assertEquals(21 * MS, samples.get(0)[1]);
+    }
+
+    @Test
+    public void testCopiesOnlyNewRecords() {
+        int capacity = 256;
+        byte[] ring = new byte[capacity * DirectReportParser.RECORD_SIZE];
+        byte[] snapshot = new byte[ring.length];
+        int[] copied = new int[1];
+        DirectReportParser.RingReader reader = (buffer, offset, length) -> {
+            System.arraycopy(ring, offset, buffer, offset, length);
+            copied[0] += length;
+            return true;
+        };
+        DirectReportParser parser = new DirectReportParser(capacity);
+
+        Assert.assertFalse(parser.copyNew(reader, snapshot));
+        Assert.assertEquals(DirectReportParser.RECORD_SIZE, copied[0]);
+
+        int counter = 0;
+        for (int tick = 0; tick < 40; tick++) {
+            for (int i = 0; i < 20; i++) {
+                DirectReportParser.writeRecord(ring, counter % capacity, 1,
+                        Sensor.TYPE_ACCELEROMETER, counter + 1, (counter + 1) * MS, 0, 0, 0);
+                counter++;
+            }
+            copied[0] = 0;
+            Assert.assertTrue(parser.copyNew(reader, snapshot));
+            Assert.assertEquals(20, parser.parse(snapshot, sink));
+            Assert.assertTrue(copied[0] < ring.length / 4);
+        }
+        Assert.assertEquals(800, samples.size());
+        Assert.assertEquals(800 * MS, samples.get(799)[1]);
+        Assert.assertEquals(0, parser.getLostRecords());
+    }
+
+    @Test
+    public void testUnregisterStopsSamples() {
+        SyntheticSensorSource source =
+                new SyntheticSensorSource(sink, 64, DirectReportParserTest::waveform);
+        source.register(Sensor.TYPE_GYROSCOPE, 5000, 0);
+        source.advanceTo(10 * MS);
+        source.unregister(Sensor.TYPE_GYROSCOPE);
+        source.advanceTo(50 * MS);
+        source.poll();
+        Assert.assertEquals(2, samples.size());
+    }
+
+    @Test
+    public void testBatchingLatencyFollowsPacketRate() {
+        Assert.assertEquals(66_666, SensorTiming.maxReportLatencyUs(15, 5000));
+        Assert.assertEquals(0, SensorTiming.maxReportLatencyUs(120, 5000));
+        Assert.assertEquals(16_666, SensorTiming.maxReportLatencyUs(60, 5000));
+    }
+
+    @Test
+    public void testSamplingPeriodFollowsPacketRate() {
+        Assert.assertEquals(22_222, SensorTiming.samplingPeriodUs(15, false));
+        Assert.assertEquals(5_000, SensorTiming.samplingPeriodUs(15, true));
+        Assert.assertEquals(2_777, SensorTiming.samplingPeriodUs(120, true));
+        Assert.assertEquals(SensorTiming.MIN_SAMPLING_PERIOD_US,
+                SensorTiming.samplingPeriodUs(1000, false));
+    }
+}